@@ -0,0 +1,146 @@
+/*
+ * Created on 18.10.26 at 01:09.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.apache.commons.lang3.Validate;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * <p>
+ * Generates synthetic but realistic data in the format transmitted by the Freematics OBD II dongle. A generator
+ * simulates one vehicle driving along a straight line, with each generated body continuing where the last one ended.
+ * The generator is seeded, so the same sequence of calls always produces the same data. This is used by all the
+ * benchmarks to get comparable results between builds.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class FreematicsPayloadGenerator {
+
+    /**
+     * <p>
+     * The interval between two accelerometer samples in milliseconds, which is about 25 Hz.
+     * </p>
+     */
+    private static final int SAMPLE_INTERVAL = 40;
+
+    /**
+     * <p>
+     * Random number generator used to vary the generated values.
+     * </p>
+     */
+    private final Random random;
+    /**
+     * <p>
+     * The device time in milliseconds of the next generated sample.
+     * </p>
+     */
+    private long time;
+    /**
+     * <p>
+     * The current latitude of the simulated vehicle.
+     * </p>
+     */
+    private double latitude;
+    /**
+     * <p>
+     * The current longitude of the simulated vehicle.
+     * </p>
+     */
+    private double longitude;
+
+    /**
+     * <p>
+     * Creates a new completely initialized generator.
+     * </p>
+     *
+     * @param seed The seed for the generated values. Generators with the same seed produce the same data.
+     */
+    public FreematicsPayloadGenerator(final long seed) {
+        this.random = new Random(seed);
+        this.time = 6_103_000L + random.nextInt(1_000_000);
+        this.latitude = 51.0 + random.nextDouble();
+        this.longitude = 13.0 + random.nextDouble();
+    }
+
+    /**
+     * <p>
+     * Generates the next message body in the textual Freematics format. The body starts at a full second, so the
+     * parsed timestamps are exactly the generated ones.
+     * </p>
+     *
+     * @param accelerations The number of acceleration entries in the body.
+     * @param withGps Whether the body should contain a complete set of GPS entries.
+     * @return The generated message body.
+     */
+    public String nextBody(final int accelerations, final boolean withGps) {
+        Validate.isTrue(accelerations > 0);
+        StringBuilder ret = new StringBuilder(accelerations * 20 + 100);
+        // The absolute timestamp of a body is in seconds, so the first sample is moved to the next full second.
+        time = (time + 999L) / 1000L * 1000L;
+        final long start = time;
+        ret.append('#').append(start / 1000L);
+        for (int i = 0; i < accelerations; i++) {
+            if (i > 0) {
+                ret.append(' ').append(time - start);
+            }
+            ret.append(",ACC,").append(nextAcceleration()).append(',').append(nextAcceleration()).append(',')
+               .append(100 + nextAcceleration());
+            time += SAMPLE_INTERVAL;
+        }
+        if (withGps) {
+            latitude += 0.00005;
+            longitude += 0.00003;
+            ret.append(' ').append(time - start).append(",UTC,").append(time / 10L % 24_000_000L);
+            ret.append(" 0,LAT,").append(String.format(Locale.ROOT, "%.6f", latitude));
+            ret.append(" 0,LNG,").append(String.format(Locale.ROOT, "%.6f", longitude));
+            ret.append(" 0,ALT,").append(150 + random.nextInt(50));
+            ret.append(" 0,SPD,").append(String.format(Locale.ROOT, "%.1f", random.nextDouble() * 50.0));
+            ret.append(" 0,SAT,").append(4 + random.nextInt(8));
+        }
+        return ret.toString();
+    }
+
+    /**
+     * <p>
+     * Generates the next data in its parsed form.
+     * </p>
+     *
+     * @param accelerations The number of acceleration samples in the data.
+     * @param withGps Whether the data should contain GPS data.
+     * @return The generated data.
+     */
+    public InputData nextInputData(final int accelerations, final boolean withGps) {
+        InputData ret = new InputData();
+        for (int i = 0; i < accelerations; i++) {
+            ret.addAccelerationTuple(time, nextAcceleration(), nextAcceleration(), 100 + nextAcceleration());
+            time += SAMPLE_INTERVAL;
+        }
+        if (withGps) {
+            latitude += 0.00005;
+            longitude += 0.00003;
+            ret.addGpsData(new GpsData(time / 10L % 24_000_000L, latitude, longitude, 150 + random.nextInt(50),
+                    random.nextDouble() * 50.0, 4 + random.nextInt(8)));
+        }
+        return ret;
+    }
+
+    /**
+     * @return A small random acceleration value, as measured by the dongle in a driving car.
+     */
+    private int nextAcceleration() {
+        return random.nextInt(7) - 3;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Created on 18.10.26 at 01:09.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Measures the time required to allocate a new channel while many other channels are active and dongles continuously
+ * connect and disconnect. Each operation releases the oldest active channel and allocates a new one.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelAllocationBenchmark {
+
+    /**
+     * <p>
+     * The number of channels active at any time.
+     * </p>
+     */
+    @Param({"1", "1000", "10000"})
+    public int activeChannels;
+
+    /**
+     * <p>
+     * The channels to allocate from.
+     * </p>
+     */
+    private Channels channels;
+    /**
+     * <p>
+     * The identifiers of the active channels in the order of their allocation, used as a ring buffer.
+     * </p>
+     */
+    private int[] active;
+    /**
+     * <p>
+     * The position of the oldest active channel in {@link #active}.
+     * </p>
+     */
+    private int oldest;
+
+    /**
+     * <p>
+     * Creates the active channels before running the benchmark.
+     * </p>
+     */
+    @Setup
+    public void setUp() {
+        channels = new Channels();
+        active = new int[activeChannels];
+        for (int i = 0; i < activeChannels; i++) {
+            active[i] = channels.getNextFreeChannel("VIN" + i).getChannelIdentifier();
+        }
+    }
+
+    /**
+     * @return The newly allocated channel.
+     */
+    @Benchmark
+    public Channel churn() {
+        channels.releaseChannel(active[oldest]);
+        Channel ret = channels.getNextFreeChannel("VIN");
+        active[oldest] = ret.getChannelIdentifier();
+        oldest = (oldest + 1) % activeChannels;
+        return ret;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Created on 18.10.26 at 02:27.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.FreematicsPayloadGenerator;
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.InputData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Measures the time required to export all data of one vehicle with one hundred thousand entries of a dozen
+ * accelerations each, so more than a million samples. Compares the textual representation used by the query
+ * endpoints with comma separated values and the columnar binary format. Each benchmark returns the number of written
+ * characters or bytes, which shows the size of each format.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ExportBenchmark {
+
+    /**
+     * <p>
+     * The number of entries stored for the exported vehicle.
+     * </p>
+     */
+    private static final int ENTRIES = 100_000;
+
+    /**
+     * <p>
+     * The repository to export from.
+     * </p>
+     */
+    private DataRepository repository;
+
+    /**
+     * <p>
+     * Fills the repository before running the benchmark.
+     * </p>
+     */
+    @Setup
+    public void setUp() {
+        repository = new DataRepository();
+        FreematicsPayloadGenerator generator = new FreematicsPayloadGenerator(0L);
+        Channel channel = new Channel(0, "VIN0");
+        for (int entry = 0; entry < ENTRIES; entry++) {
+            channel.addInputData(generator.nextInputData(12, true));
+        }
+        repository.store(channel);
+    }
+
+    /**
+     * @return The number of characters of the textual representation of all entries.
+     * @throws IOException Never, since the {@code Writer} does not fail.
+     */
+    @Benchmark
+    public long text() throws IOException {
+        CountingWriter writer = new CountingWriter();
+        Iterator<InputData> entries = repository.iterateInputData("VIN0", Long.MIN_VALUE, Long.MAX_VALUE);
+        while (entries.hasNext()) {
+            writer.write(entries.next().toString());
+            writer.write('\n');
+        }
+        return writer.written;
+    }
+
+    /**
+     * @return The number of characters of all entries as comma separated values.
+     * @throws IOException Never, since the {@code Writer} does not fail.
+     */
+    @Benchmark
+    public long csv() throws IOException {
+        CountingWriter writer = new CountingWriter();
+        CsvEncoder encoder = new CsvEncoder(writer);
+        Iterator<InputData> entries = repository.iterateInputData("VIN0", Long.MIN_VALUE, Long.MAX_VALUE);
+        while (entries.hasNext()) {
+            encoder.write(entries.next());
+        }
+        encoder.finish();
+        return writer.written;
+    }
+
+    /**
+     * @return The number of bytes of all entries in the columnar binary format.
+     * @throws IOException Never, since the {@code OutputStream} does not fail.
+     */
+    @Benchmark
+    public long columnar() throws IOException {
+        CountingOutputStream output = new CountingOutputStream();
+        ColumnarEncoder encoder = new ColumnarEncoder(output);
+        Iterator<InputData> entries = repository.iterateInputData("VIN0", Long.MIN_VALUE, Long.MAX_VALUE);
+        while (entries.hasNext()) {
+            encoder.write(entries.next());
+        }
+        encoder.finish();
+        return output.written;
+    }
+
+    /**
+     * <p>
+     * A {@code Writer} discarding all output, only counting the written characters.
+     * </p>
+     */
+    private static final class CountingWriter extends Writer {
+        /**
+         * <p>
+         * The number of characters written.
+         * </p>
+         */
+        private long written;
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) {
+            written += length;
+        }
+
+        @Override
+        public void write(final String string) {
+            written += string.length();
+        }
+
+        @Override
+        public void flush() {
+            // Nothing to do here.
+        }
+
+        @Override
+        public void close() {
+            // Nothing to do here.
+        }
+    }
+
+    /**
+     * <p>
+     * An {@code OutputStream} discarding all output, only counting the written bytes.
+     * </p>
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        /**
+         * <p>
+         * The number of bytes written.
+         * </p>
+         */
+        private long written;
+
+        @Override
+        public void write(final int b) {
+            written++;
+        }
+
+        @Override
+        public void write(final byte[] buffer, final int offset, final int length) {
+            written += length;
+        }
+    }
+}
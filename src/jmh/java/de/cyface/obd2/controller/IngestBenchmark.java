@@ -0,0 +1,172 @@
+/*
+ * Created on 18.10.26 at 01:09.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.FreematicsPayloadGenerator;
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.InputData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Measures the throughput of concurrent data uploads via many channels. Each benchmark operation does the same work as
+ * a call to {@code /post}: parsing the body, looking up the channel and storing the new data in the repository.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Threads(4)
+public class IngestBenchmark {
+
+    /**
+     * <p>
+     * The number of different message bodies each thread cycles through.
+     * </p>
+     */
+    private static final int BODIES_PER_THREAD = 64;
+
+    /**
+     * <p>
+     * The server side state shared by all threads. It is recreated for every iteration, so the repository does not
+     * grow without bounds.
+     * </p>
+     */
+    @State(Scope.Benchmark)
+    public static class Server {
+        /**
+         * <p>
+         * The number of active channels uploading data concurrently.
+         * </p>
+         */
+        @Param({"16", "1024"})
+        public int activeChannels;
+
+        /**
+         * <p>
+         * The channels of the simulated server.
+         * </p>
+         */
+        private Channels channels;
+        /**
+         * <p>
+         * The repository of the simulated server.
+         * </p>
+         */
+        private DataRepository repository;
+        /**
+         * <p>
+         * Used to spread the threads over the active channels.
+         * </p>
+         */
+        private final AtomicInteger nextThread = new AtomicInteger();
+
+        /**
+         * <p>
+         * Creates an empty server and registers all the channels.
+         * </p>
+         */
+        @Setup(Level.Iteration)
+        public void setUp() {
+            channels = new Channels();
+            repository = new DataRepository();
+            for (int i = 0; i < activeChannels; i++) {
+                channels.getNextFreeChannel("VIN" + (i % (activeChannels / 2 + 1)));
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * The state of one simulated group of dongles, uploading via a disjoint subset of the active channels.
+     * </p>
+     */
+    @State(Scope.Thread)
+    public static class Dongles {
+        /**
+         * <p>
+         * The bodies uploaded by this thread.
+         * </p>
+         */
+        private String[] bodies;
+        /**
+         * <p>
+         * The index of the first channel used by this thread.
+         * </p>
+         */
+        private int firstChannel;
+        /**
+         * <p>
+         * The number of operations executed so far by this thread.
+         * </p>
+         */
+        private int operation;
+
+        /**
+         * <p>
+         * Generates the bodies and assigns the channels to use.
+         * </p>
+         *
+         * @param server The server to upload the data to.
+         */
+        @Setup(Level.Trial)
+        public void setUp(final Server server) {
+            int thread = server.nextThread.getAndIncrement();
+            FreematicsPayloadGenerator generator = new FreematicsPayloadGenerator(thread);
+            bodies = new String[BODIES_PER_THREAD];
+            for (int i = 0; i < bodies.length; i++) {
+                bodies[i] = generator.nextBody(12, true);
+            }
+            firstChannel = thread;
+        }
+    }
+
+    /**
+     * <p>
+     * Uploads one message body via the next channel of the current thread.
+     * </p>
+     *
+     * @param server The server to upload the data to.
+     * @param dongles The state of the uploading thread.
+     * @return The number of stored data entries.
+     */
+    @Benchmark
+    public int post(final Server server, final Dongles dongles) {
+        int operation = dongles.operation++;
+        String body = dongles.bodies[operation % BODIES_PER_THREAD];
+        int channelIdentifier = (dongles.firstChannel + operation * 4) % server.activeChannels;
+
+        InputData data = new FreematicsParser().parse(body);
+        Channel channel = server.channels.getChannel(channelIdentifier);
+        channel.addInputData(data);
+        return server.repository.store(channel);
+    }
+}
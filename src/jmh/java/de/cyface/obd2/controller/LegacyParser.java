@@ -0,0 +1,146 @@
+/*
+ * Created on 18.10.26 at 01:07.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * The original {@code String.split} based parser for the Freematics data format, as used by {@link Obd2Controller}
+ * before the introduction of the {@link FreematicsParser}. It is only kept as a baseline for benchmarks.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class LegacyParser {
+
+    /**
+     * <p>
+     * Logger for objects of this class.
+     * </p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(LegacyParser.class);
+
+    /**
+     * <p>
+     * Parses the raw message body as received from the Freematics OBD II dongle in the Freematics data format
+     * </p>
+     *
+     * @param body One row of data as received from the Freematics OBD II dongle.
+     * @return A parsed representation of the parsed body.
+     */
+    InputData parseBody(final String body) {
+        String[] entries = body.split(" ");
+
+        long lastAbsoluteTimestamp = 0L;
+        InputData ret = new InputData();
+        long gpsTime = 0L;
+        double latitude = 0.0;
+        double longitude = 0.0;
+        int altitude = 0;
+        double gpsSpeed = 0.0;
+        int satellites = 0;
+
+        for (String entry : entries) {
+            String[] values = entry.split(",");
+
+            long timestamp;
+            if (values[0].startsWith("#")) {
+                lastAbsoluteTimestamp = Long.valueOf(values[0].substring(1));
+                lastAbsoluteTimestamp *= 1000L;
+                timestamp = lastAbsoluteTimestamp;
+            } else {
+                timestamp = lastAbsoluteTimestamp + Long.valueOf(values[0]);
+            }
+
+            try {
+                EntryIdentifier lastEntryIdentifier = EntryIdentifier.valueOf(values[1]);
+                switch (lastEntryIdentifier) {
+                    case UTC:
+                        gpsTime = parseLongValue(values[2]);
+                        break;
+                    case LAT:
+                        latitude = parseDoubleValue(values[2]);
+                        break;
+                    case LNG:
+                        longitude = parseDoubleValue(values[2]);
+                        break;
+                    case ALT:
+                        altitude = parseIntValue(values[2]);
+                        break;
+                    case SPD:
+                        gpsSpeed = parseDoubleValue(values[2]);
+                        break;
+                    case SAT:
+                        satellites = parseIntValue(values[2]);
+                        break;
+                    case ACC:
+                        int ax = parseIntValue(values[2]);
+                        int ay = parseIntValue(values[3]);
+                        int az = parseIntValue(values[4]);
+                        ret.addAccelerationTuple(timestamp, ax, ay, az);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown data entry.");
+                }
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Unable to parse a data entry.", e);
+            }
+        }
+        if (gpsTime != 0L) {
+            GpsData gpsData = new GpsData(gpsTime, latitude, longitude, altitude, gpsSpeed, satellites);
+            ret.addGpsData(gpsData);
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Tries to parse a {@code String} value to a {@code long}.
+     * </p>
+     *
+     * @param value The {@code String} value to parse.
+     * @return The parsed result as {@code long}.
+     * @throws NumberFormatException If the provided {@code value} is not parseable a {@code long}.
+     */
+    private long parseLongValue(final String value) {
+        return Long.valueOf(value);
+    }
+
+    /**
+     * <p>
+     * Tries to parse a {@code String} value to a {@code double}.
+     * </p>
+     *
+     * @param value The {@code String} value to parse.
+     * @return The parsed result as {@code double}.
+     * @throws NumberFormatException If the provided {@code value} is not parseable to a {@code double}.
+     */
+    private double parseDoubleValue(final String value) {
+        return Double.valueOf(value);
+    }
+
+    /**
+     * <p>
+     * Tries to parse a {@code String} value to an integer.
+     * </p>
+     *
+     * @param value The {@code String} value to parse.
+     * @return The parsed result as {@code int}.
+     * @throws NumberFormatException If the provided {@code value} is not parseable to an integer.
+     */
+    private int parseIntValue(final String value) {
+        return Integer.valueOf(value);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Created on 18.10.26 at 01:07.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.FreematicsPayloadGenerator;
+import de.cyface.obd2.persistence.InputData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares the throughput of the {@link FreematicsParser} with the original {@code String.split} based parser and the
+ * {@link BinaryFormatDecoder} for message bodies of different sizes.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    /**
+     * <p>
+     * The number of acceleration entries in the parsed body. The Freematics dongle usually transmits about a dozen.
+     * </p>
+     */
+    @Param({"1", "12", "100", "1000"})
+    public int accelerations;
+
+    /**
+     * <p>
+     * The message body to parse.
+     * </p>
+     */
+    private String body;
+    /**
+     * <p>
+     * The parser under test.
+     * </p>
+     */
+    private FreematicsParser parser;
+    /**
+     * <p>
+     * The parser used as a baseline.
+     * </p>
+     */
+    private LegacyParser legacyParser;
+    /**
+     * <p>
+     * The message body in the binary format.
+     * </p>
+     */
+    private byte[] binaryBody;
+    /**
+     * <p>
+     * The decoder for the binary format.
+     * </p>
+     */
+    private BinaryFormatDecoder binaryDecoder;
+
+    /**
+     * <p>
+     * Creates the parsers and the parsed body before running the benchmark.
+     * </p>
+     */
+    @Setup
+    public void setUp() {
+        body = new FreematicsPayloadGenerator(42L).nextBody(accelerations, true);
+        parser = new FreematicsParser();
+        legacyParser = new LegacyParser();
+        binaryBody = BinaryFormatEncoder.encode(parser.parse(body));
+        binaryDecoder = new BinaryFormatDecoder();
+    }
+
+    /**
+     * @return The body parsed by the {@link FreematicsParser}.
+     */
+    @Benchmark
+    public InputData streamingParser() {
+        return parser.parse(body);
+    }
+
+    /**
+     * @return The body parsed by the original parser.
+     */
+    @Benchmark
+    public InputData legacyParser() {
+        return legacyParser.parseBody(body);
+    }
+
+    /**
+     * @return The same body decoded from the binary format.
+     */
+    @Benchmark
+    public InputData binaryDecoder() {
+        return binaryDecoder.decode(binaryBody, 0, binaryBody.length);
+    }
+}
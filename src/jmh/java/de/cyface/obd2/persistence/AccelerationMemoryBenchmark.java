@@ -0,0 +1,181 @@
+/*
+ * Created on 18.10.26 at 01:18.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares the memory required per acceleration sample by the column wise storage in {@link InputData} with the
+ * previous storage as a list of one object per sample. After each iteration the bytes retained per sample by the last
+ * result are measured using JOL and printed as {@code retained bytes per sample}. Each operation is one sample, so
+ * running this benchmark with the GC profiler, using
+ * {@code gradle jmh -PjmhInclude=AccelerationMemoryBenchmark -PjmhArgs="-prof gc"}, additionally reports the bytes
+ * allocated per sample as {@code gc.alloc.rate.norm}, which includes temporary arrays from growing the storage.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccelerationMemoryBenchmark {
+
+    /**
+     * <p>
+     * The number of samples stored per benchmark invocation.
+     * </p>
+     */
+    private static final int SAMPLES = 1000;
+
+    /**
+     * <p>
+     * Whether the samples are stored in one large or many small {@code InputData} objects, with a dozen samples each,
+     * as transmitted by the dongle.
+     * </p>
+     */
+    @Param({"12", "1000"})
+    public int samplesPerInputData;
+
+    /**
+     * <p>
+     * The result of the last benchmark invocation, used to measure the retained memory.
+     * </p>
+     */
+    private Object lastResult;
+
+    /**
+     * <p>
+     * Prints the memory retained per sample by the result of the last invocation.
+     * </p>
+     */
+    @TearDown(Level.Iteration)
+    public void printRetainedSize() {
+        if (lastResult != null) {
+            long bytes = GraphLayout.parseInstance(lastResult).totalSize();
+            System.out.printf("retained bytes per sample: %.1f%n", (double)bytes / SAMPLES);
+        }
+    }
+
+    /**
+     * @return The stored samples in column wise storage.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public List<InputData> columns() {
+        List<InputData> ret = new ArrayList<>(SAMPLES / samplesPerInputData + 1);
+        InputData current = null;
+        for (int i = 0; i < SAMPLES; i++) {
+            if (i % samplesPerInputData == 0) {
+                if (current != null) {
+                    current.trimToSize();
+                }
+                current = new InputData();
+                ret.add(current);
+            }
+            current.addAccelerationTuple(i * 40L, i % 3, i % 5, 100 + i % 7);
+        }
+        current.trimToSize();
+        lastResult = ret;
+        return ret;
+    }
+
+    /**
+     * @return The stored samples with one object per sample.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public List<List<Sample>> objects() {
+        List<List<Sample>> ret = new ArrayList<>(SAMPLES / samplesPerInputData + 1);
+        List<Sample> current = null;
+        for (int i = 0; i < SAMPLES; i++) {
+            if (i % samplesPerInputData == 0) {
+                current = new ArrayList<>();
+                ret.add(current);
+            }
+            current.add(new Sample(i * 40L, i % 3, i % 5, 100 + i % 7));
+        }
+        lastResult = ret;
+        return ret;
+    }
+
+    /**
+     * <p>
+     * One acceleration sample, as stored before the introduction of column wise storage.
+     * </p>
+     */
+    public static final class Sample {
+        /**
+         * <p>
+         * Time passed since startup of the measuring device in milliseconds.
+         * </p>
+         */
+        private final long timestamp;
+        /**
+         * <p>
+         * Acceleration in device local x direction.
+         * </p>
+         */
+        private final int ax;
+        /**
+         * <p>
+         * Acceleration in device local y direction.
+         * </p>
+         */
+        private final int ay;
+        /**
+         * <p>
+         * Acceleration in device local z direction.
+         * </p>
+         */
+        private final int az;
+
+        /**
+         * @param timestamp Time passed since startup of the measuring device in milliseconds.
+         * @param ax Acceleration in device local x direction.
+         * @param ay Acceleration in device local y direction.
+         * @param az Acceleration in device local z direction.
+         */
+        Sample(final long timestamp, final int ax, final int ay, final int az) {
+            this.timestamp = timestamp;
+            this.ax = ax;
+            this.ay = ay;
+            this.az = az;
+        }
+
+        /**
+         * @return The sum of all values, so that no value is unused.
+         */
+        long sum() {
+            return timestamp + ax + ay + az;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Created on 18.10.26 at 01:43.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import de.cyface.obd2.FreematicsPayloadGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares the {@link CompressedSeries} with the {@link AppendOnlyList} of uncompressed entries it replaced in the
+ * {@code DeviceData}. On setup the bytes retained per entry by both are measured using JOL and printed as
+ * {@code retained bytes per entry}. The benchmarks measure the cost of reading all entries one after the other, which
+ * includes decompressing the sealed blocks.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressedSeriesBenchmark {
+
+    /**
+     * <p>
+     * The number of entries stored in each series.
+     * </p>
+     */
+    private static final int ENTRIES = 10_000;
+
+    /**
+     * <p>
+     * The series of uncompressed entries used as a baseline.
+     * </p>
+     */
+    private AppendOnlyList<InputData> uncompressed;
+    /**
+     * <p>
+     * The series under test.
+     * </p>
+     */
+    private CompressedSeries compressed;
+
+    /**
+     * <p>
+     * Fills both series with the same entries, as transmitted by the dongle, and prints the memory they retain.
+     * </p>
+     */
+    @Setup
+    public void setUp() {
+        FreematicsPayloadGenerator generator = new FreematicsPayloadGenerator(42L);
+        uncompressed = new AppendOnlyList<>();
+        compressed = new CompressedSeries();
+        for (int i = 0; i < ENTRIES; i++) {
+            InputData entry = generator.nextInputData(12, true);
+            entry.trimToSize();
+            uncompressed.add(entry);
+            compressed.add(entry);
+        }
+        System.out.printf("retained bytes per entry: uncompressed %.1f, compressed %.1f%n",
+                (double)GraphLayout.parseInstance(uncompressed).totalSize() / ENTRIES,
+                (double)GraphLayout.parseInstance(compressed).totalSize() / ENTRIES);
+    }
+
+    /**
+     * @return The number of accelerations read from the uncompressed series.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public long readUncompressed() {
+        long ret = 0L;
+        for (int i = 0; i < ENTRIES; i++) {
+            ret += uncompressed.get(i).getAccelerationCount();
+        }
+        return ret;
+    }
+
+    /**
+     * @return The number of accelerations read from the compressed series.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public long readCompressed() {
+        long ret = 0L;
+        CompressedSeries.Cursor cursor = compressed.cursor();
+        for (int i = 0; i < ENTRIES; i++) {
+            ret += cursor.get(i).getAccelerationCount();
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Created on 18.10.26 at 02:19.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import de.cyface.obd2.FreematicsPayloadGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Measures the time required to report all vehicles with {@link DataRepository#report(ForkJoinPool)} depending on the
+ * number of threads of the pool. With one thread, the vehicles are read one after the other, as by
+ * {@link DataRepository#toString()}. The repository contains 64 vehicles with five thousand entries each, so the work
+ * is split evenly. The time should decrease with the number of threads up to the number of available cores.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class FleetReportBenchmark {
+
+    /**
+     * <p>
+     * The number of vehicles in the repository.
+     * </p>
+     */
+    private static final int VEHICLES = 64;
+    /**
+     * <p>
+     * The number of entries stored per vehicle.
+     * </p>
+     */
+    private static final int ENTRIES_PER_VEHICLE = 5_000;
+
+    /**
+     * <p>
+     * The number of threads creating the report.
+     * </p>
+     */
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /**
+     * <p>
+     * The repository to report.
+     * </p>
+     */
+    private DataRepository repository;
+    /**
+     * <p>
+     * The pool creating the report.
+     * </p>
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * <p>
+     * Fills the repository and starts the pool before running the benchmark.
+     * </p>
+     */
+    @Setup
+    public void setUp() {
+        repository = new DataRepository();
+        for (int vehicle = 0; vehicle < VEHICLES; vehicle++) {
+            FreematicsPayloadGenerator generator = new FreematicsPayloadGenerator(vehicle);
+            Channel channel = new Channel(vehicle, "VIN" + vehicle);
+            for (int entry = 0; entry < ENTRIES_PER_VEHICLE; entry++) {
+                channel.addInputData(generator.nextInputData(12, true));
+            }
+            repository.store(channel);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * <p>
+     * Stops the pool after running the benchmark.
+     * </p>
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * @return The reports of all vehicles.
+     */
+    @Benchmark
+    public List<VehicleReport> report() {
+        return repository.report(pool);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Created on 18.10.26 at 01:09.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import de.cyface.obd2.FreematicsPayloadGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Measures the time required to render the complete content of a {@link DataRepository}, as done for each request to
+ * the root path of the server. Compares building the whole output as one {@code String} with streaming it to a
+ * {@code Writer}.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class RepositoryRenderingBenchmark {
+
+    /**
+     * <p>
+     * The number of vehicles with data in the repository.
+     * </p>
+     */
+    @Param({"1", "100"})
+    public int vehicles;
+
+    /**
+     * <p>
+     * The number of data entries stored per vehicle. Each entry contains a dozen accelerations and GPS data.
+     * </p>
+     */
+    @Param({"100", "1000"})
+    public int entriesPerVehicle;
+
+    /**
+     * <p>
+     * The repository to render.
+     * </p>
+     */
+    private DataRepository repository;
+
+    /**
+     * <p>
+     * Fills the repository before running the benchmark.
+     * </p>
+     */
+    @Setup
+    public void setUp() {
+        repository = new DataRepository();
+        for (int vehicle = 0; vehicle < vehicles; vehicle++) {
+            FreematicsPayloadGenerator generator = new FreematicsPayloadGenerator(vehicle);
+            Channel channel = new Channel(vehicle, "VIN" + vehicle);
+            for (int entry = 0; entry < entriesPerVehicle; entry++) {
+                channel.addInputData(generator.nextInputData(12, true));
+                repository.store(channel);
+            }
+        }
+    }
+
+    /**
+     * @return The rendered repository.
+     */
+    @Benchmark
+    public String render() {
+        return repository.toString();
+    }
+
+    /**
+     * @return The number of characters streamed to a {@code Writer} discarding all output.
+     * @throws IOException Never, since the {@code Writer} does not fail.
+     */
+    @Benchmark
+    public long stream() throws IOException {
+        CountingWriter writer = new CountingWriter();
+        repository.writeTo(writer);
+        return writer.written;
+    }
+
+    /**
+     * <p>
+     * A {@code Writer} discarding all output, only counting the written characters.
+     * </p>
+     */
+    private static final class CountingWriter extends Writer {
+        /**
+         * <p>
+         * The number of characters written.
+         * </p>
+         */
+        private long written;
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) {
+            written += length;
+        }
+
+        @Override
+        public void flush() {
+            // Nothing to do here.
+        }
+
+        @Override
+        public void close() {
+            // Nothing to do here.
+        }
+    }
+}
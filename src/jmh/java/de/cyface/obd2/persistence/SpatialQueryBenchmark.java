@@ -0,0 +1,159 @@
+/*
+ * Created on 18.10.26 at 01:57.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import de.cyface.obd2.FreematicsPayloadGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Measures the time required to find the places inside a small area, about one kilometer wide, across all vehicles.
+ * Compares the query using the spatial index of the {@link DataRepository} with a scan of the data of all vehicles, as
+ * required without the index. The vehicles start at random places around Dresden and store one thousand entries each.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SpatialQueryBenchmark {
+
+    /**
+     * <p>
+     * The number of entries stored per vehicle.
+     * </p>
+     */
+    private static final int ENTRIES_PER_VEHICLE = 1_000;
+    /**
+     * <p>
+     * Half the edge length of the queried area in degrees.
+     * </p>
+     */
+    private static final double HALF_AREA_SIZE = 0.005;
+
+    /**
+     * <p>
+     * The number of entries stored in the repository by all vehicles.
+     * </p>
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    /**
+     * <p>
+     * The repository to query.
+     * </p>
+     */
+    private DataRepository repository;
+    /**
+     * <p>
+     * The vehicle identification numbers of all vehicles in the repository.
+     * </p>
+     */
+    private List<String> vehicleIdentificationNumbers;
+    /**
+     * <p>
+     * The southern border of the queried area.
+     * </p>
+     */
+    private double minLatitude;
+    /**
+     * <p>
+     * The western border of the queried area.
+     * </p>
+     */
+    private double minLongitude;
+    /**
+     * <p>
+     * The northern border of the queried area.
+     * </p>
+     */
+    private double maxLatitude;
+    /**
+     * <p>
+     * The eastern border of the queried area.
+     * </p>
+     */
+    private double maxLongitude;
+
+    /**
+     * <p>
+     * Fills the repository before running the benchmark and places the queried area around the first position of the
+     * first vehicle, so it contains at least part of its route.
+     * </p>
+     */
+    @Setup
+    public void setUp() {
+        repository = new DataRepository();
+        vehicleIdentificationNumbers = new ArrayList<>();
+        for (int vehicle = 0; vehicle < entries / ENTRIES_PER_VEHICLE; vehicle++) {
+            FreematicsPayloadGenerator generator = new FreematicsPayloadGenerator(vehicle);
+            Channel channel = new Channel(vehicle, "VIN" + vehicle);
+            for (int entry = 0; entry < ENTRIES_PER_VEHICLE; entry++) {
+                channel.addInputData(generator.nextInputData(12, true));
+            }
+            repository.store(channel);
+            vehicleIdentificationNumbers.add(channel.getVehicleIdentificationNumber());
+        }
+        GpsData center = repository.findInputData("VIN0", Long.MIN_VALUE, Long.MAX_VALUE, 0, 1).get(0).getGpsData();
+        minLatitude = center.getLatitude() - HALF_AREA_SIZE;
+        minLongitude = center.getLongitude() - HALF_AREA_SIZE;
+        maxLatitude = center.getLatitude() + HALF_AREA_SIZE;
+        maxLongitude = center.getLongitude() + HALF_AREA_SIZE;
+    }
+
+    /**
+     * @return The number of places found using the spatial index.
+     */
+    @Benchmark
+    public int index() {
+        return repository.findLocationsInArea(minLatitude, minLongitude, maxLatitude, maxLongitude,
+                Integer.MAX_VALUE).size();
+    }
+
+    /**
+     * @return The number of places found by reading the data of all vehicles.
+     */
+    @Benchmark
+    public int scan() {
+        int ret = 0;
+        for (final String vehicleIdentificationNumber : vehicleIdentificationNumbers) {
+            for (final InputData entry : repository.findInputData(vehicleIdentificationNumber, Long.MIN_VALUE,
+                    Long.MAX_VALUE, 0, Integer.MAX_VALUE)) {
+                final GpsData gpsData = entry.getGpsData();
+                if (entry.getAccelerationCount() > 0 && Geo.hasPosition(gpsData)
+                        && gpsData.getLatitude() >= minLatitude && gpsData.getLatitude() <= maxLatitude
+                        && gpsData.getLongitude() >= minLongitude && gpsData.getLongitude() <= maxLongitude) {
+                    ret++;
+                }
+            }
+        }
+        return ret;
+    }
+}
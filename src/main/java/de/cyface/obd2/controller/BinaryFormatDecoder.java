@@ -0,0 +1,301 @@
+/*
+ * Created on 18.10.26 at 01:35.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>
+ * Decodes message bodies in the compact binary alternative to the textual Freematics data format. Clients announce
+ * this format using the {@link #CONTENT_TYPE}. A message body is structured as follows:
+ * </p>
+ * <ol>
+ * <li>One byte containing the {@link #VERSION} of the format.</li>
+ * <li>One byte of flags. If bit 0 is set, GPS data follows.</li>
+ * <li>The optional GPS data: the GPS time as unsigned varint, latitude and longitude in millionths of a degree as
+ * zigzag varints, the altitude as zigzag varint, the speed in hundredths as unsigned varint and the number of
+ * satellites as unsigned varint.</li>
+ * <li>The number of accelerations as unsigned varint.</li>
+ * <li>If there are accelerations, the timestamp of the first one in milliseconds as unsigned varint. Each following
+ * timestamp is the zigzag varint encoded difference to the previous one.</li>
+ * <li>For each acceleration after its timestamp, the three acceleration values as signed 16 bit big endian
+ * integers.</li>
+ * </ol>
+ * <p>
+ * Varints use seven bits per byte with the least significant group first, where the highest bit of each byte signals
+ * that another byte follows. Zigzag encoding maps signed values to unsigned ones, so small negative values stay short.
+ * </p>
+ * <p>
+ * The decoder reads directly from a byte array or an {@code InputStream} into {@link InputData} without creating any
+ * intermediate objects. Objects of this class may be reused, but are not thread safe.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class BinaryFormatDecoder {
+
+    /**
+     * <p>
+     * The content type announcing a message body in the binary format.
+     * </p>
+     */
+    public static final String CONTENT_TYPE = "application/x-freematics-binary";
+    /**
+     * <p>
+     * The version of the binary format supported by this decoder.
+     * </p>
+     */
+    public static final int VERSION = 1;
+    /**
+     * <p>
+     * The flag signaling that GPS data follows.
+     * </p>
+     */
+    static final int FLAG_GPS = 0x01;
+    /**
+     * <p>
+     * The factor latitude and longitude are multiplied with before they are encoded as integers.
+     * </p>
+     */
+    static final double COORDINATE_SCALE = 1_000_000.0;
+    /**
+     * <p>
+     * The factor the GPS speed is multiplied with before it is encoded as an integer.
+     * </p>
+     */
+    static final double SPEED_SCALE = 100.0;
+    /**
+     * <p>
+     * The size of the buffer used for reading from an {@code InputStream}.
+     * </p>
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * <p>
+     * The buffer used for reading from an {@code InputStream}.
+     * </p>
+     */
+    private final byte[] streamBuffer;
+    /**
+     * <p>
+     * The bytes currently decoded, which is either the stream buffer or the decoded byte array.
+     * </p>
+     */
+    private byte[] bytes;
+    /**
+     * <p>
+     * The position of the next byte to decode.
+     * </p>
+     */
+    private int position;
+    /**
+     * <p>
+     * The position after the last byte available for decoding.
+     * </p>
+     */
+    private int limit;
+    /**
+     * <p>
+     * The stream to read more bytes from or {@code null} if a byte array is decoded.
+     * </p>
+     */
+    private InputStream stream;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code BinaryFormatDecoder}.
+     * </p>
+     */
+    public BinaryFormatDecoder() {
+        this.streamBuffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * <p>
+     * Decodes a complete message body read from a stream. The stream is read until its end, but not closed.
+     * </p>
+     *
+     * @param body The stream to read the message body from.
+     * @return The decoded data.
+     * @throws IOException If reading from the stream fails.
+     * @throws MalformedBodyException If the message body is not valid.
+     */
+    public InputData decode(final InputStream body) throws IOException {
+        Validate.notNull(body);
+        stream = body;
+        bytes = streamBuffer;
+        position = 0;
+        limit = 0;
+        try {
+            return decode();
+        } finally {
+            stream = null;
+        }
+    }
+
+    /**
+     * <p>
+     * Decodes a complete message body from a section of a byte array.
+     * </p>
+     *
+     * @param body The array containing the message body.
+     * @param offset The index of the first byte of the message body.
+     * @param length The number of bytes of the message body.
+     * @return The decoded data.
+     * @throws MalformedBodyException If the message body is not valid.
+     */
+    public InputData decode(final byte[] body, final int offset, final int length) {
+        Validate.notNull(body);
+        Validate.isTrue(offset >= 0 && length >= 0 && offset + length <= body.length, "Invalid range.");
+        bytes = body;
+        position = offset;
+        limit = offset + length;
+        try {
+            return decode();
+        } catch (final IOException e) {
+            // Only reading from a stream may fail.
+            throw new IllegalStateException(e);
+        } finally {
+            bytes = null;
+        }
+    }
+
+    /**
+     * @return The decoded data.
+     * @throws IOException If reading from the stream fails.
+     */
+    private InputData decode() throws IOException {
+        final int version = readByte();
+        if (version != VERSION) {
+            throw new MalformedBodyException(String.format("Unsupported version %d.", version));
+        }
+        final int flags = readByte();
+        InputData ret = new InputData();
+        if ((flags & FLAG_GPS) != 0) {
+            final long gpsTime = readVarLong();
+            final double latitude = readZigZagLong() / COORDINATE_SCALE;
+            final double longitude = readZigZagLong() / COORDINATE_SCALE;
+            final int altitude = toInt(readZigZagLong());
+            final double gpsSpeed = readVarLong() / SPEED_SCALE;
+            final int satellites = toInt(readVarLong());
+            ret.addGpsData(new GpsData(gpsTime, latitude, longitude, altitude, gpsSpeed, satellites));
+        }
+        final long accelerationCount = readVarLong();
+        long timestamp = 0L;
+        for (long i = 0; i < accelerationCount; i++) {
+            timestamp = i == 0 ? readVarLong() : timestamp + readZigZagLong();
+            final int ax = readShort();
+            final int ay = readShort();
+            final int az = readShort();
+            ret.addAccelerationTuple(timestamp, ax, ay, az);
+        }
+        if (hasMoreBytes()) {
+            throw new MalformedBodyException("Unexpected data after the end of the message body.");
+        }
+        return ret;
+    }
+
+    /**
+     * @return The next byte as a value between 0 and 255.
+     * @throws IOException If reading from the stream fails.
+     * @throws MalformedBodyException If the message body ended unexpectedly.
+     */
+    private int readByte() throws IOException {
+        if (position == limit && !fill()) {
+            throw new MalformedBodyException("Message body ended unexpectedly.");
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    /**
+     * @return The next two bytes as a signed big endian integer.
+     * @throws IOException If reading from the stream fails.
+     */
+    private int readShort() throws IOException {
+        return (short)((readByte() << 8) | readByte());
+    }
+
+    /**
+     * @return The next unsigned varint.
+     * @throws IOException If reading from the stream fails.
+     * @throws MalformedBodyException If the varint does not fit into a {@code long}.
+     */
+    private long readVarLong() throws IOException {
+        long ret = 0L;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final int current = readByte();
+            ret |= (long)(current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return ret;
+            }
+        }
+        throw new MalformedBodyException("Varint is too long.");
+    }
+
+    /**
+     * @return The next zigzag encoded signed varint.
+     * @throws IOException If reading from the stream fails.
+     */
+    private long readZigZagLong() throws IOException {
+        final long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    /**
+     * @param value A decoded value.
+     * @return The value as {@code int}.
+     * @throws MalformedBodyException If the value does not fit into an {@code int}.
+     */
+    private int toInt(final long value) {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new MalformedBodyException(String.format("Value %d is out of range.", value));
+        }
+        return (int)value;
+    }
+
+    /**
+     * @return {@code true} if there are bytes left in the message body; {@code false} otherwise.
+     * @throws IOException If reading from the stream fails.
+     */
+    private boolean hasMoreBytes() throws IOException {
+        return position < limit || fill();
+    }
+
+    /**
+     * <p>
+     * Reads the next bytes from the stream into the buffer, if a stream is decoded.
+     * </p>
+     *
+     * @return {@code true} if at least one byte was read; {@code false} if the end of the message body was reached.
+     * @throws IOException If reading from the stream fails.
+     */
+    private boolean fill() throws IOException {
+        if (stream == null) {
+            return false;
+        }
+        int read;
+        do {
+            read = stream.read(streamBuffer, 0, streamBuffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Created on 18.10.26 at 01:38.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>
+ * An {@code InputStream} failing with a {@link BodyTooLargeException} as soon as more than a maximum number of bytes
+ * is read from it. Wrapped around a decompressing stream, it protects against bodies inflating to huge sizes.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class BoundedInputStream extends FilterInputStream {
+
+    /**
+     * <p>
+     * The maximum number of bytes that may be read.
+     * </p>
+     */
+    private final long maxBytes;
+    /**
+     * <p>
+     * The number of bytes read so far.
+     * </p>
+     */
+    private long readBytes;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code BoundedInputStream}.
+     * </p>
+     *
+     * @param in The stream to read from.
+     * @param maxBytes The maximum number of bytes that may be read.
+     */
+    BoundedInputStream(final InputStream in, final long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int ret = super.read();
+        if (ret != -1) {
+            count(1);
+        }
+        return ret;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int ret = super.read(b, off, len);
+        if (ret > 0) {
+            count(ret);
+        }
+        return ret;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long ret = super.skip(n);
+        count(ret);
+        return ret;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @param bytes The number of bytes just read.
+     * @throws BodyTooLargeException If the maximum number of bytes was exceeded.
+     */
+    private void count(final long bytes) {
+        readBytes += bytes;
+        if (readBytes > maxBytes) {
+            throw new BodyTooLargeException(String.format("Message body exceeds %d bytes.", maxBytes));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Created on 18.10.26 at 01:13.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Closes channels of dongles, which stopped transmitting data without closing their channel, for example because they
+ * were powered off. The data remaining in such a channel is stored to the {@link DataRepository} and the channel
+ * identifier becomes available for new dongles. If storing the data of an evicted channel fails, the channel is kept
+ * and stored again on the next run, so its data is not lost.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Component
+public class ChannelEvictor {
+
+    /**
+     * <p>
+     * Logger for objects of this class. Configure it using SpringBoot settings in
+     * <tt>resources/application.properties</tt>.
+     * </p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChannelEvictor.class);
+
+    /**
+     * <p>
+     * An object managing the active {@link Channel} objects.
+     * </p>
+     */
+    private final Channels channels;
+    /**
+     * <p>
+     * The repository used to store the remaining data of evicted channels.
+     * </p>
+     */
+    private final DataRepository repo;
+    /**
+     * <p>
+     * The time in milliseconds without any activity after which a channel is evicted.
+     * </p>
+     */
+    private final long idleTimeout;
+    /**
+     * <p>
+     * The number of channels evicted since startup.
+     * </p>
+     */
+    private final AtomicLong evictedChannels;
+    /**
+     * <p>
+     * The estimated number of bytes freed by evicting channels since startup.
+     * </p>
+     */
+    private final AtomicLong freedBytes;
+    /**
+     * <p>
+     * The released channels whose data failed to be stored, which are stored again on the next run.
+     * </p>
+     */
+    private final Queue<Channel> unstoredChannels;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code ChannelEvictor}.
+     * </p>
+     *
+     * @param channels An object managing the active {@link Channel} objects.
+     * @param repo The repository used to store the remaining data of evicted channels.
+     * @param idleTimeout The time in milliseconds without any activity after which a channel is evicted.
+     */
+    @Autowired
+    public ChannelEvictor(final Channels channels, final DataRepository repo,
+            @Value("${freematics.channels.idle-timeout:600000}") final long idleTimeout) {
+        Validate.notNull(channels);
+        Validate.notNull(repo);
+        Validate.isTrue(idleTimeout > 0L, "Idle timeout must be positive.");
+        this.channels = channels;
+        this.repo = repo;
+        this.idleTimeout = idleTimeout;
+        this.evictedChannels = new AtomicLong();
+        this.freedBytes = new AtomicLong();
+        this.unstoredChannels = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * <p>
+     * Evicts all channels that have been idle for longer than the configured timeout. This is called periodically by
+     * the Spring scheduler.
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${freematics.channels.eviction-interval:60000}")
+    public void evictIdleChannels() {
+        evictIdleChannels(System.currentTimeMillis());
+    }
+
+    /**
+     * <p>
+     * Evicts all channels that have been idle for longer than the configured timeout at the provided point in time.
+     * Channels released by a previous run, whose data failed to be stored, are stored again first.
+     * </p>
+     *
+     * @param now The current time in milliseconds since the epoch.
+     * @return The number of evicted channels, whose data was stored successfully.
+     */
+    int evictIdleChannels(final long now) {
+        List<Channel> released = new ArrayList<>();
+        for (Channel channel = unstoredChannels.poll(); channel != null; channel = unstoredChannels.poll()) {
+            released.add(channel);
+        }
+        // The channels are already unregistered, so each one must be kept until its data is stored.
+        released.addAll(channels.releaseIdleChannels(now - idleTimeout));
+
+        int ret = 0;
+        for (final Channel channel : released) {
+            // Estimate before storing, since storing removes the buffered data from the channel.
+            long size = channel.estimateSize();
+            try {
+                repo.store(channel);
+            } catch (final RuntimeException e) {
+                LOGGER.error("Unable to store data of evicted channel {}. Keeping it for the next run.",
+                        channel.getChannelIdentifier(), e);
+                unstoredChannels.offer(channel);
+                continue;
+            }
+            freedBytes.addAndGet(size);
+            ret++;
+            LOGGER.debug("Evicted idle channel {}.", channel.getChannelIdentifier());
+        }
+        evictedChannels.addAndGet(ret);
+        return ret;
+    }
+
+    /**
+     * @return The number of channels evicted since startup.
+     */
+    public long getEvictedChannels() {
+        return evictedChannels.get();
+    }
+
+    /**
+     * @return The estimated number of bytes freed by evicting channels since startup. This includes the data buffered
+     *         in evicted channels, which has been moved to the {@link DataRepository}.
+     */
+    public long getFreedBytes() {
+        return freedBytes.get();
+    }
+}
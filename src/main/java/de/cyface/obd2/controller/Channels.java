@@ -11,14 +11,26 @@ package de.cyface.obd2.controller;
 import de.cyface.obd2.persistence.Channel;
 import org.springframework.stereotype.Component;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
  * Class for an object managing the currently active channels on the server.
  * </p>
+ * <p>
+ * Allocating and releasing a channel takes constant time, independent of the number of active channels. The lower
+ * {@link #SLOT_BITS} bits of an identifier select a slot, while the remaining bits count how often that slot has been
+ * reused. Released slots are reused in the order they were released, each time with an incremented generation, so the
+ * identifier of a released channel is not valid again before the generation wraps around. A client still sending with
+ * the identifier of an evicted channel therefore gets the answer for an unknown channel instead of adding its data to
+ * the channel of another vehicle. All methods of this class are thread safe and none of them blocks.
+ * </p>
  *
  * @author Klemens Muthmann
  * @version 1.0.0
@@ -26,12 +38,38 @@ import java.util.Map;
  */
 @Component
 public class Channels {
+    /**
+     * <p>
+     * The number of bits of a channel identifier selecting its slot.
+     * </p>
+     */
+    static final int SLOT_BITS = 20;
+    /**
+     * <p>
+     * The mask selecting the slot of a channel identifier.
+     * </p>
+     */
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
     /**
      * <p>
      * Mapping from the channel identifier to the channel object for all the active channels.
      * </p>
      */
-    private final Map<Integer, Channel> activeChannels;
+    private final ConcurrentMap<Integer, Channel> activeChannels;
+    /**
+     * <p>
+     * The identifiers of released channels, whose slots are available for reuse. The identifier released first is
+     * reused first.
+     * </p>
+     */
+    private final Queue<Integer> freeIdentifiers;
+    /**
+     * <p>
+     * The smallest slot never assigned so far. It is used if there are no released slots to reuse.
+     * </p>
+     */
+    private final AtomicInteger nextUnusedIdentifier;
 
     /**
      * <p>
@@ -39,13 +77,15 @@ public class Channels {
      * </p>
      */
     public Channels() {
-        this.activeChannels = Collections.synchronizedMap(new HashMap<>());
+        this.activeChannels = new ConcurrentHashMap<>();
+        this.freeIdentifiers = new ConcurrentLinkedQueue<>();
+        this.nextUnusedIdentifier = new AtomicInteger();
     }
 
     /**
      * <p>
-     * Provides the next free channel. {@link Channel} identifiers are assigned as increasing number. If one in the
-     * middle is removed this method will find the missing value and assign it.
+     * Provides the next free channel. {@link Channel} slots are assigned as increasing number. If one in the middle is
+     * released using {@link #releaseChannel(int)} this method will reuse the released slot with the next generation.
      * </p>
      * <p>
      * This method is thread safe to avoid duplication for channel identifiers.
@@ -53,17 +93,78 @@ public class Channels {
      *
      * @param vehicleIdentificationNumber The vehicle identification number for the new {@link Channel}.
      * @return The newly created {@link Channel}.
+     * @throws IllegalStateException If all slots are in use.
      */
-    synchronized Channel getNextFreeChannel(final String vehicleIdentificationNumber) {
-        int i = 0;
-        while (activeChannels.get(i) != null) {
-            i++;
+    Channel getNextFreeChannel(final String vehicleIdentificationNumber) {
+        final Integer released = freeIdentifiers.poll();
+        final int identifier;
+        if (released == null) {
+            identifier = nextUnusedIdentifier.getAndIncrement();
+            if (identifier > SLOT_MASK) {
+                nextUnusedIdentifier.decrementAndGet();
+                throw new IllegalStateException("No free channel available.");
+            }
+        } else {
+            final int nextGeneration = released + (1 << SLOT_BITS);
+            // Identifiers stay positive, so the generation starts over once it reaches the sign bit.
+            identifier = nextGeneration < 0 ? released & SLOT_MASK : nextGeneration;
         }
-        Channel ret = new Channel(i, vehicleIdentificationNumber);
-        activeChannels.put(i, ret);
+        Channel ret = new Channel(identifier, vehicleIdentificationNumber);
+        activeChannels.put(identifier, ret);
         return ret;
     }
 
+    /**
+     * <p>
+     * Releases an active channel, so that its slot may be reused by a new channel.
+     * </p>
+     *
+     * @param channelIdentifier The identifier of the channel to release.
+     * @return The released {@link Channel} or {@code null} if there was no active channel with that identifier.
+     */
+    Channel releaseChannel(final int channelIdentifier) {
+        Channel ret = activeChannels.remove(channelIdentifier);
+        if (ret != null) {
+            freeIdentifiers.offer(channelIdentifier);
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Releases all channels without any activity since the provided point in time.
+     * </p>
+     *
+     * @param idleSince Channels with their last activity before this time in milliseconds since the epoch are released.
+     * @return The released channels.
+     */
+    Collection<Channel> releaseIdleChannels(final long idleSince) {
+        Collection<Channel> ret = new ArrayList<>();
+        for (final Channel channel : activeChannels.values()) {
+            if (channel.getLastActivity() < idleSince
+                    && activeChannels.remove(channel.getChannelIdentifier(), channel)) {
+                freeIdentifiers.offer(channel.getChannelIdentifier());
+                ret.add(channel);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param channelIdentifier The identifier of a channel.
+     * @return The slot the channel occupies, which is shared by all generations of that identifier.
+     */
+    static int slot(final int channelIdentifier) {
+        return channelIdentifier & SLOT_MASK;
+    }
+
+    /**
+     * @return The number of currently active channels.
+     */
+    int size() {
+        return activeChannels.size();
+    }
+
     /**
      * @param channelIdentifier The identifier of the channel to get.
      * @return The {@link Channel} for the provided {@code channelIdentifier} or {@code null} if none exists.
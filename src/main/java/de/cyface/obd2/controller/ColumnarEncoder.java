@@ -0,0 +1,311 @@
+/*
+ * Created on 18.10.26 at 02:24.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * Encodes stored data into a compact columnar binary format for bulk loading by analytics jobs. Clients request this
+ * format as {@link #CONTENT_TYPE}. The data starts with one byte containing the {@link #VERSION} of the format,
+ * followed by groups of up to {@link #GROUP_SIZE} entries. Each group starts with its number of entries as unsigned
+ * varint and a group with 0 entries ends the data. The entries of a group follow column by column:
+ * </p>
+ * <ol>
+ * <li>The number of accelerations of each entry as unsigned varint.</li>
+ * <li>The timestamps of all accelerations of the group as the zigzag varint encoded difference of consecutive
+ * differences, which is zero for samples taken at a constant rate.</li>
+ * <li>The x, y and z values of all accelerations of the group, one column per axis.</li>
+ * <li>One bit per entry, which is set if the entry has GPS data, packed into bytes with the first entry in the least
+ * significant bit.</li>
+ * <li>The GPS time, latitude, longitude, altitude, speed and number of satellites of all entries with GPS data, one
+ * column per value.</li>
+ * </ol>
+ * <p>
+ * As by the storage of the repository, other integer values are encoded as the zigzag varint encoded difference to the
+ * previous value of their column, and floating point values as the unsigned varint of the exclusive or of their bits
+ * with the previous value of their column. The first value of each column of a group is compared to 0, so each group
+ * is decoded on its own. The encoding is lossless. Varints are encoded as described by {@link BinaryFormatDecoder}.
+ * </p>
+ * <p>
+ * Only the entries of the current group are kept, while the encoded data is written to the {@code OutputStream} in
+ * chunks of constant size. Objects of this class are not thread safe.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ColumnarEncoder {
+
+    /**
+     * <p>
+     * The content type of the encoded data.
+     * </p>
+     */
+    public static final String CONTENT_TYPE = "application/x-freematics-columnar";
+    /**
+     * <p>
+     * The version of the format written by this encoder.
+     * </p>
+     */
+    public static final int VERSION = 1;
+    /**
+     * <p>
+     * The largest number of entries per group.
+     * </p>
+     */
+    public static final int GROUP_SIZE = 1024;
+    /**
+     * <p>
+     * The number of bytes passed to the {@code OutputStream} at once.
+     * </p>
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * <p>
+     * The largest number of bytes of one varint.
+     * </p>
+     */
+    private static final int MAX_VARINT_SIZE = 10;
+
+    /**
+     * <p>
+     * The stream the encoded data is written to.
+     * </p>
+     */
+    private final OutputStream output;
+    /**
+     * <p>
+     * The buffer encoded bytes are collected in before they are written.
+     * </p>
+     */
+    private final byte[] buffer;
+    /**
+     * <p>
+     * The entries of the current group.
+     * </p>
+     */
+    private final InputData[] group;
+    /**
+     * <p>
+     * The number of bytes in the buffer.
+     * </p>
+     */
+    private int position;
+    /**
+     * <p>
+     * The number of entries of the current group.
+     * </p>
+     */
+    private int groupSize;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code ColumnarEncoder}. Nothing is written before the first group is
+     * complete or {@link #finish()} is called.
+     * </p>
+     *
+     * @param output The stream to write the encoded data to.
+     */
+    public ColumnarEncoder(final OutputStream output) {
+        Validate.notNull(output);
+        this.output = output;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.group = new InputData[GROUP_SIZE];
+        buffer[position++] = (byte)VERSION;
+    }
+
+    /**
+     * <p>
+     * Encodes one entry.
+     * </p>
+     *
+     * @param entry The entry to encode.
+     * @throws IOException If writing fails.
+     */
+    public void write(final InputData entry) throws IOException {
+        Validate.notNull(entry);
+        group[groupSize++] = entry;
+        if (groupSize == GROUP_SIZE) {
+            writeGroup();
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the last group, the end of the data and flushes the {@code OutputStream}, which is not closed.
+     * </p>
+     *
+     * @throws IOException If writing fails.
+     */
+    public void finish() throws IOException {
+        if (groupSize > 0) {
+            writeGroup();
+        }
+        writeVarLong(0L);
+        output.write(buffer, 0, position);
+        position = 0;
+        output.flush();
+    }
+
+    /**
+     * <p>
+     * Writes the current group column by column and starts a new one.
+     * </p>
+     *
+     * @throws IOException If writing fails.
+     */
+    private void writeGroup() throws IOException {
+        writeVarLong(groupSize);
+        for (int i = 0; i < groupSize; i++) {
+            writeVarLong(group[i].getAccelerationCount());
+        }
+        long previous = 0L;
+        long previousDifference = 0L;
+        for (int i = 0; i < groupSize; i++) {
+            for (int j = 0; j < group[i].getAccelerationCount(); j++) {
+                final long timestamp = group[i].getAccelerationTimestamp(j);
+                final long difference = timestamp - previous;
+                writeVarLong(zigzag(difference - previousDifference));
+                previous = timestamp;
+                previousDifference = difference;
+            }
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            writeAccelerations(axis);
+        }
+
+        for (int i = 0; i < groupSize; i += 8) {
+            int bits = 0;
+            for (int j = i; j < Math.min(i + 8, groupSize); j++) {
+                if (group[j].getGpsData() != null) {
+                    bits |= 1 << (j - i);
+                }
+            }
+            ensureCapacity(1);
+            buffer[position++] = (byte)bits;
+        }
+        writeGpsDifferences(GpsData::getGpsTime);
+        writeGpsExclusiveOrs(GpsData::getLatitude);
+        writeGpsExclusiveOrs(GpsData::getLongitude);
+        writeGpsDifferences(GpsData::getAltitude);
+        writeGpsExclusiveOrs(GpsData::getGpsSpeed);
+        writeGpsDifferences(GpsData::getSatellites);
+
+        for (int i = 0; i < groupSize; i++) {
+            group[i] = null;
+        }
+        groupSize = 0;
+    }
+
+    /**
+     * <p>
+     * Writes the column of one axis of all accelerations of the current group.
+     * </p>
+     *
+     * @param axis The axis to write, which is 0 for x, 1 for y and 2 for z.
+     * @throws IOException If writing fails.
+     */
+    private void writeAccelerations(final int axis) throws IOException {
+        long previous = 0L;
+        for (int i = 0; i < groupSize; i++) {
+            final InputData entry = group[i];
+            for (int j = 0; j < entry.getAccelerationCount(); j++) {
+                final long value = axis == 0 ? entry.getAx(j) : axis == 1 ? entry.getAy(j) : entry.getAz(j);
+                writeVarLong(zigzag(value - previous));
+                previous = value;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Writes a column of integer GPS values of the current group as differences to the previous value.
+     * </p>
+     *
+     * @param column The function selecting the value of the column.
+     * @throws IOException If writing fails.
+     */
+    private void writeGpsDifferences(final ToLongFunction<GpsData> column) throws IOException {
+        long previous = 0L;
+        for (int i = 0; i < groupSize; i++) {
+            final GpsData gpsData = group[i].getGpsData();
+            if (gpsData != null) {
+                final long value = column.applyAsLong(gpsData);
+                writeVarLong(zigzag(value - previous));
+                previous = value;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Writes a column of floating point GPS values of the current group as exclusive or with the previous value.
+     * </p>
+     *
+     * @param column The function selecting the value of the column.
+     * @throws IOException If writing fails.
+     */
+    private void writeGpsExclusiveOrs(final ToDoubleFunction<GpsData> column) throws IOException {
+        long previous = 0L;
+        for (int i = 0; i < groupSize; i++) {
+            final GpsData gpsData = group[i].getGpsData();
+            if (gpsData != null) {
+                final long bits = Double.doubleToLongBits(column.applyAsDouble(gpsData));
+                writeVarLong(bits ^ previous);
+                previous = bits;
+            }
+        }
+    }
+
+    /**
+     * @param value The value to write as unsigned varint.
+     * @throws IOException If writing fails.
+     */
+    private void writeVarLong(final long value) throws IOException {
+        ensureCapacity(MAX_VARINT_SIZE);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0L) {
+            buffer[position++] = (byte)((remaining & 0x7FL) | 0x80L);
+            remaining >>>= 7;
+        }
+        buffer[position++] = (byte)remaining;
+    }
+
+    /**
+     * <p>
+     * Writes the buffer to the {@code OutputStream} if it has less than the required space left.
+     * </p>
+     *
+     * @param required The number of bytes about to be added to the buffer.
+     * @throws IOException If writing fails.
+     */
+    private void ensureCapacity(final int required) throws IOException {
+        if (position + required > buffer.length) {
+            output.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * @param value A signed value.
+     * @return The zigzag encoding of the value.
+     */
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
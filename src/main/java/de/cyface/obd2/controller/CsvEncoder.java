@@ -0,0 +1,155 @@
+/*
+ * Created on 18.10.26 at 02:22.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <p>
+ * Encodes stored data as comma separated values for bulk loading by other tools. The first line contains the
+ * {@link #HEADER}. Each acceleration is written as one line with its timestamp and values, followed by the GPS data of
+ * its entry. The GPS columns are empty for entries without GPS data and the acceleration columns are empty for entries
+ * with GPS data, but without accelerations. Entries without any data are left out.
+ * </p>
+ * <p>
+ * Numbers are appended to a reused buffer, which is passed to the {@code Writer} in chunks of constant size, so no
+ * {@code String} is created per value or line. Objects of this class are not thread safe.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class CsvEncoder {
+
+    /**
+     * <p>
+     * The content type of the encoded data.
+     * </p>
+     */
+    public static final String CONTENT_TYPE = "text/csv";
+    /**
+     * <p>
+     * The first line of the encoded data naming the columns.
+     * </p>
+     */
+    public static final String HEADER = "timestamp,ax,ay,az,gps_time,latitude,longitude,altitude,speed,satellites\n";
+    /**
+     * <p>
+     * The number of characters passed to the {@code Writer} at once.
+     * </p>
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * <p>
+     * The {@code Writer} the encoded data is written to.
+     * </p>
+     */
+    private final Writer writer;
+    /**
+     * <p>
+     * The buffer lines are appended to before they are written.
+     * </p>
+     */
+    private final StringBuilder buffer;
+    /**
+     * <p>
+     * The GPS columns and the end of the line of the current entry, which are the same for all its lines.
+     * </p>
+     */
+    private final StringBuilder gpsColumns;
+    /**
+     * <p>
+     * The array used to pass characters to the {@code Writer}.
+     * </p>
+     */
+    private final char[] chunk;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code CsvEncoder}. Nothing is written before the first entry or
+     * {@link #finish()}.
+     * </p>
+     *
+     * @param writer The {@code Writer} to write the encoded data to.
+     */
+    public CsvEncoder(final Writer writer) {
+        Validate.notNull(writer);
+        this.writer = writer;
+        this.buffer = new StringBuilder(2 * CHUNK_SIZE);
+        this.gpsColumns = new StringBuilder();
+        this.chunk = new char[CHUNK_SIZE];
+        buffer.append(HEADER);
+    }
+
+    /**
+     * <p>
+     * Encodes one entry.
+     * </p>
+     *
+     * @param entry The entry to encode.
+     * @throws IOException If writing fails.
+     */
+    public void write(final InputData entry) throws IOException {
+        final GpsData gpsData = entry.getGpsData();
+        // Formatting floating point values is expensive, so the GPS columns are formatted once per entry.
+        gpsColumns.setLength(0);
+        if (gpsData == null) {
+            gpsColumns.append(",,,,,,\n");
+        } else {
+            gpsColumns.append(',').append(gpsData.getGpsTime()).append(',').append(gpsData.getLatitude()).append(',')
+                    .append(gpsData.getLongitude()).append(',').append(gpsData.getAltitude()).append(',')
+                    .append(gpsData.getGpsSpeed()).append(',').append(gpsData.getSatellites()).append('\n');
+        }
+        if (entry.getAccelerationCount() == 0 && gpsData != null) {
+            buffer.append(",,,").append(gpsColumns);
+        }
+        for (int i = 0; i < entry.getAccelerationCount(); i++) {
+            buffer.append(entry.getAccelerationTimestamp(i)).append(',').append(entry.getAx(i)).append(',')
+                    .append(entry.getAy(i)).append(',').append(entry.getAz(i)).append(gpsColumns);
+        }
+        if (buffer.length() >= CHUNK_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * <p>
+     * Writes all remaining data and flushes the {@code Writer}, which is not closed.
+     * </p>
+     *
+     * @throws IOException If writing fails.
+     */
+    public void finish() throws IOException {
+        flush();
+        writer.flush();
+    }
+
+    /**
+     * <p>
+     * Writes the content of the buffer to the {@code Writer} and clears the buffer.
+     * </p>
+     *
+     * @throws IOException If writing fails.
+     */
+    private void flush() throws IOException {
+        for (int offset = 0; offset < buffer.length(); offset += chunk.length) {
+            final int length = Math.min(chunk.length, buffer.length() - offset);
+            buffer.getChars(offset, offset + length, chunk, 0);
+            writer.write(chunk, 0, length);
+        }
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Created on 18.10.26 at 02:37.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+/**
+ * <p>
+ * An enumeration with all the possible data identifiers, expected as part of a data set.
+ * </p>
+ */
+enum EntryIdentifier {
+    /**
+     * <p>
+     * Identifier for accelerometer data.
+     * </p>
+     */
+    ACC,
+    /**
+     * <p>
+     * Identifier for GPS timestamp in UTC.
+     * </p>
+     */
+    UTC,
+    /**
+     * <p>
+     * Identifier for GPS latitude information.
+     * </p>
+     */
+    LAT,
+    /**
+     * <p>
+     * Identifier for GPS longitude information.
+     * </p>
+     */
+    LNG,
+    /**
+     * <p>
+     * Identifier for altitude information captured by GPS.
+     * </p>
+     */
+    ALT,
+    /**
+     * <p>
+     * Identifier for GPS speed information.
+     * </p>
+     */
+    SPD,
+    /**
+     * <p>
+     * Identifier for GPS Satellite information.
+     * </p>
+     */
+    SAT
+}
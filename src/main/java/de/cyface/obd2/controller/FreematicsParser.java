@@ -0,0 +1,658 @@
+/*
+ * Created on 18.10.26 at 01:05.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>
+ * A single pass parser for the message body format transmitted by the Freematics OBD II dongle. A body consists of
+ * entries separated by spaces. Each entry consists of comma separated fields: a timestamp, a data identifier and one or
+ * more values, like for example {@code #6103,ACC,2,-1,109 0,ACC,2,0,109 7728,UTC,7284200}. A timestamp starting with
+ * {@code #} is an absolute timestamp in seconds, all other timestamps are relative to the last absolute one.
+ * </p>
+ * <p>
+ * The parser reads the body character by character and parses all numbers directly from a small internal field buffer,
+ * so it does not create any intermediate {@code String} objects or arrays. Entries with an unknown identifier or with
+ * values that are not parseable are skipped.
+ * </p>
+ * <p>
+ * Objects of this class are not thread safe, but may be reused for parsing several bodies one after the other.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class FreematicsParser {
+
+    /**
+     * <p>
+     * Logger for objects of this class. Configure it using SpringBoot settings in
+     * <tt>resources/application.properties</tt>.
+     * </p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(FreematicsParser.class);
+    /**
+     * <p>
+     * The maximum number of characters supported per field. Entries containing longer fields are skipped.
+     * </p>
+     */
+    private static final int MAX_FIELD_LENGTH = 32;
+    /**
+     * <p>
+     * The maximum number of value fields per entry. Acceleration entries have the most values with three.
+     * </p>
+     */
+    private static final int MAX_VALUES = 3;
+    /**
+     * <p>
+     * The number of bytes read at once when parsing from a stream.
+     * </p>
+     */
+    private static final int READ_BUFFER_SIZE = 4096;
+    /**
+     * <p>
+     * The largest mantissa, that is still exactly representable as a {@code double}.
+     * </p>
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    /**
+     * <p>
+     * Powers of ten exactly representable as a {@code double}, used to scale parsed decimal values.
+     * </p>
+     */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+            1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * <p>
+     * Buffer for the characters of the field currently read.
+     * </p>
+     */
+    private final char[] field;
+    /**
+     * <p>
+     * The buffer used when parsing from a stream, which is only allocated when needed.
+     * </p>
+     */
+    private byte[] readBuffer;
+    /**
+     * <p>
+     * The number of valid characters in {@link #field}.
+     * </p>
+     */
+    private int fieldLength;
+    /**
+     * <p>
+     * The index of the field currently read within the current entry.
+     * </p>
+     */
+    private int fieldIndex;
+    /**
+     * <p>
+     * Whether the current entry is still valid. An entry becomes invalid as soon as one of its fields is not parseable.
+     * </p>
+     */
+    private boolean entryValid;
+    /**
+     * <p>
+     * The identifier of the current entry or {@code null} if it has not been read yet or is unknown.
+     * </p>
+     */
+    private EntryIdentifier identifier;
+    /**
+     * <p>
+     * Whether the current entry has an identifier unknown to this parser. Such entries are skipped without being
+     * counted as invalid.
+     * </p>
+     */
+    private boolean unknownIdentifier;
+    /**
+     * <p>
+     * The number of malformed entries skipped during the current or last parsing run.
+     * </p>
+     */
+    private int invalidEntries;
+    /**
+     * <p>
+     * The timestamp of the current entry in milliseconds.
+     * </p>
+     */
+    private long timestamp;
+    /**
+     * <p>
+     * The integral values read for the current entry.
+     * </p>
+     */
+    private final long[] longValues;
+    /**
+     * <p>
+     * The decimal values read for the current entry.
+     * </p>
+     */
+    private final double[] doubleValues;
+    /**
+     * <p>
+     * The result of the last call to {@link #parseLong(int, long)}.
+     * </p>
+     */
+    private long parsedLong;
+    /**
+     * <p>
+     * The result of the last call to {@link #parseDouble()}.
+     * </p>
+     */
+    private double parsedDouble;
+    /**
+     * <p>
+     * The last absolute timestamp in milliseconds. Relative timestamps are added to this value.
+     * </p>
+     */
+    private long lastAbsoluteTimestamp;
+    /**
+     * <p>
+     * The result of the current parsing run.
+     * </p>
+     */
+    private InputData result;
+    /**
+     * <p>
+     * The GPS time as a UTC timestamp or {@code 0} if no GPS data was found so far.
+     * </p>
+     */
+    private long gpsTime;
+    /**
+     * <p>
+     * Geographic latitude as a decimal value.
+     * </p>
+     */
+    private double latitude;
+    /**
+     * <p>
+     * Geographic longitude as a decimal value.
+     * </p>
+     */
+    private double longitude;
+    /**
+     * <p>
+     * The altitude captured by GPS.
+     * </p>
+     */
+    private int altitude;
+    /**
+     * <p>
+     * The GPS speed.
+     * </p>
+     */
+    private double gpsSpeed;
+    /**
+     * <p>
+     * The satellite information.
+     * </p>
+     */
+    private int satellites;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code FreematicsParser}.
+     * </p>
+     */
+    public FreematicsParser() {
+        this.field = new char[MAX_FIELD_LENGTH];
+        this.longValues = new long[MAX_VALUES];
+        this.doubleValues = new double[MAX_VALUES];
+    }
+
+    /**
+     * <p>
+     * Parses a complete message body as received from the Freematics OBD II dongle.
+     * </p>
+     *
+     * @param body The message body to parse.
+     * @return A parsed representation of the body.
+     */
+    public InputData parse(final CharSequence body) {
+        Validate.notNull(body);
+        return parse(body, 0, body.length());
+    }
+
+    /**
+     * <p>
+     * Parses a message body stored in a section of a larger character sequence.
+     * </p>
+     *
+     * @param body The character sequence containing the message body.
+     * @param start The index of the first character of the message body.
+     * @param end The index after the last character of the message body.
+     * @return A parsed representation of the body.
+     */
+    public InputData parse(final CharSequence body, final int start, final int end) {
+        Validate.notNull(body);
+        Validate.isTrue(start >= 0 && start <= end && end <= body.length(), "Invalid range.");
+        reset();
+        for (int i = start; i < end; i++) {
+            accept(body.charAt(i));
+        }
+        return finish();
+    }
+
+    /**
+     * <p>
+     * Parses a message body encoded as ASCII (or UTF-8) bytes.
+     * </p>
+     *
+     * @param body The buffer containing the message body.
+     * @param offset The index of the first byte of the message body.
+     * @param length The number of bytes of the message body.
+     * @return A parsed representation of the body.
+     */
+    public InputData parse(final byte[] body, final int offset, final int length) {
+        Validate.notNull(body);
+        Validate.isTrue(offset >= 0 && length >= 0 && offset + length <= body.length, "Invalid range.");
+        reset();
+        for (int i = offset; i < offset + length; i++) {
+            accept((char)(body[i] & 0xFF));
+        }
+        return finish();
+    }
+
+    /**
+     * <p>
+     * Parses a complete message body read from a stream of ASCII encoded bytes. The stream is read in chunks until its
+     * end, so the body is never held in memory as a whole. The stream is not closed.
+     * </p>
+     *
+     * @param body The stream to read the message body from.
+     * @return A parsed representation of the body.
+     * @throws IOException If reading from the stream fails.
+     */
+    public InputData parse(final InputStream body) throws IOException {
+        Validate.notNull(body);
+        if (readBuffer == null) {
+            readBuffer = new byte[READ_BUFFER_SIZE];
+        }
+        reset();
+        int read;
+        while ((read = body.read(readBuffer, 0, readBuffer.length)) != -1) {
+            for (int i = 0; i < read; i++) {
+                accept((char)(readBuffer[i] & 0xFF));
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * @return The number of malformed entries skipped by the last call to one of the {@code parse} methods. Entries
+     *         with an unknown identifier are skipped as well, but are not counted.
+     */
+    public int getInvalidEntries() {
+        return invalidEntries;
+    }
+
+    /**
+     * <p>
+     * Resets the state of this parser to start parsing a new message body.
+     * </p>
+     */
+    private void reset() {
+        result = new InputData();
+        lastAbsoluteTimestamp = 0L;
+        gpsTime = 0L;
+        latitude = 0.0;
+        longitude = 0.0;
+        altitude = 0;
+        gpsSpeed = 0.0;
+        satellites = 0;
+        invalidEntries = 0;
+        startEntry();
+    }
+
+    /**
+     * <p>
+     * Resets the state of this parser to read a new entry.
+     * </p>
+     */
+    private void startEntry() {
+        fieldLength = 0;
+        fieldIndex = 0;
+        entryValid = true;
+        identifier = null;
+        unknownIdentifier = false;
+    }
+
+    /**
+     * <p>
+     * Processes the next character of the message body.
+     * </p>
+     *
+     * @param character The character to process.
+     */
+    private void accept(final char character) {
+        switch (character) {
+            case ',':
+                finishField();
+                break;
+            case ' ':
+            case '\t':
+            case '\r':
+            case '\n':
+                finishEntry();
+                break;
+            default:
+                if (fieldLength < MAX_FIELD_LENGTH) {
+                    field[fieldLength] = character;
+                    fieldLength++;
+                } else {
+                    entryValid = false;
+                }
+        }
+    }
+
+    /**
+     * <p>
+     * Finishes the current parsing run.
+     * </p>
+     *
+     * @return The parsed {@link InputData}.
+     */
+    private InputData finish() {
+        finishEntry();
+        if (gpsTime != 0L) {
+            result.addGpsData(new GpsData(gpsTime, latitude, longitude, altitude, gpsSpeed, satellites));
+        }
+        InputData ret = result;
+        result = null;
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Interprets the field read so far, based on its position within the current entry.
+     * </p>
+     */
+    private void finishField() {
+        if (entryValid) {
+            if (fieldIndex == 0) {
+                entryValid = parseTimestamp();
+            } else if (fieldIndex == 1) {
+                identifier = parseIdentifier();
+                entryValid = identifier != null;
+                unknownIdentifier = identifier == null;
+            } else if (fieldIndex - 2 < MAX_VALUES) {
+                entryValid = parseValue(fieldIndex - 2);
+            }
+        }
+        fieldIndex++;
+        fieldLength = 0;
+    }
+
+    /**
+     * <p>
+     * Finishes the current entry and applies its values to the result, if it was valid. Empty entries, as for example
+     * caused by duplicate separators, are ignored.
+     * </p>
+     */
+    private void finishEntry() {
+        if (fieldIndex == 0 && fieldLength == 0) {
+            return;
+        }
+        finishField();
+        if (entryValid && fieldIndex >= 3) {
+            applyEntry();
+        } else if (!unknownIdentifier) {
+            invalidEntries++;
+        }
+        startEntry();
+    }
+
+    /**
+     * <p>
+     * Applies the values of a completely read and valid entry.
+     * </p>
+     */
+    private void applyEntry() {
+        switch (identifier) {
+            case UTC:
+                gpsTime = longValues[0];
+                break;
+            case LAT:
+                latitude = doubleValues[0];
+                break;
+            case LNG:
+                longitude = doubleValues[0];
+                break;
+            case ALT:
+                altitude = (int)longValues[0];
+                break;
+            case SPD:
+                gpsSpeed = doubleValues[0];
+                break;
+            case SAT:
+                satellites = (int)longValues[0];
+                break;
+            case ACC:
+                if (fieldIndex < 5) {
+                    LOGGER.warn("Unable to parse an acceleration entry with missing values.");
+                    invalidEntries++;
+                    return;
+                }
+                result.addAccelerationTuple(timestamp, (int)longValues[0], (int)longValues[1], (int)longValues[2]);
+                break;
+            default:
+                throw new IllegalStateException("Unknown data entry.");
+        }
+    }
+
+    /**
+     * <p>
+     * Parses the timestamp field of an entry, updating the last absolute timestamp if necessary.
+     * </p>
+     *
+     * @return {@code true} if the timestamp was parseable; {@code false} otherwise.
+     */
+    private boolean parseTimestamp() {
+        if (fieldLength > 0 && field[0] == '#') {
+            if (!parseLong(1, Long.MAX_VALUE / 1000L)) {
+                LOGGER.warn("Unable to parse absolute timestamp.");
+                return false;
+            }
+            lastAbsoluteTimestamp = parsedLong * 1000L;
+            timestamp = lastAbsoluteTimestamp;
+        } else {
+            if (!parseLong(0, Long.MAX_VALUE)) {
+                LOGGER.warn("Unable to parse relative timestamp.");
+                return false;
+            }
+            timestamp = lastAbsoluteTimestamp + parsedLong;
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Identifies the data identifier in the current field by switching over its characters.
+     * </p>
+     *
+     * @return The {@link EntryIdentifier} or {@code null} if the identifier is unknown.
+     */
+    private EntryIdentifier parseIdentifier() {
+        EntryIdentifier ret = null;
+        if (fieldLength == 3) {
+            final char second = field[1];
+            final char third = field[2];
+            switch (field[0]) {
+                case 'A':
+                    if (second == 'C' && third == 'C') {
+                        ret = EntryIdentifier.ACC;
+                    } else if (second == 'L' && third == 'T') {
+                        ret = EntryIdentifier.ALT;
+                    }
+                    break;
+                case 'U':
+                    if (second == 'T' && third == 'C') {
+                        ret = EntryIdentifier.UTC;
+                    }
+                    break;
+                case 'L':
+                    if (second == 'A' && third == 'T') {
+                        ret = EntryIdentifier.LAT;
+                    } else if (second == 'N' && third == 'G') {
+                        ret = EntryIdentifier.LNG;
+                    }
+                    break;
+                case 'S':
+                    if (second == 'P' && third == 'D') {
+                        ret = EntryIdentifier.SPD;
+                    } else if (second == 'A' && third == 'T') {
+                        ret = EntryIdentifier.SAT;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (ret == null && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Skipping entry with unknown identifier {}.", new String(field, 0, fieldLength));
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Parses a value field of the current entry according to the entries identifier.
+     * </p>
+     *
+     * @param valueIndex The index of the value within the entry.
+     * @return {@code true} if the value was parseable; {@code false} otherwise.
+     */
+    private boolean parseValue(final int valueIndex) {
+        final boolean ret;
+        switch (identifier) {
+            case LAT:
+            case LNG:
+            case SPD:
+                ret = parseDouble();
+                doubleValues[valueIndex] = parsedDouble;
+                break;
+            case UTC:
+                ret = parseLong(0, Long.MAX_VALUE);
+                longValues[valueIndex] = parsedLong;
+                break;
+            default:
+                ret = parseLong(0, Integer.MAX_VALUE) && parsedLong >= Integer.MIN_VALUE;
+                longValues[valueIndex] = parsedLong;
+                break;
+        }
+        if (!ret) {
+            LOGGER.warn("Unable to parse value of {} entry.", identifier);
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Parses an optionally signed integral number from the current field, storing the result in {@link #parsedLong}.
+     * </p>
+     *
+     * @param start The index of the first character of the number within the field.
+     * @param maximum The largest absolute value allowed.
+     * @return {@code true} if the field contained a valid number; {@code false} otherwise.
+     */
+    private boolean parseLong(final int start, final long maximum) {
+        int position = start;
+        boolean negative = false;
+        if (position < fieldLength && (field[position] == '-' || field[position] == '+')) {
+            negative = field[position] == '-';
+            position++;
+        }
+        if (position == fieldLength) {
+            return false;
+        }
+        long value = 0L;
+        for (; position < fieldLength; position++) {
+            final int digit = field[position] - '0';
+            if (digit < 0 || digit > 9 || value > (maximum - digit) / 10L) {
+                return false;
+            }
+            value = value * 10L + digit;
+        }
+        parsedLong = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * <p>
+     * Parses an optionally signed decimal number from the current field, storing the result in {@link #parsedDouble}.
+     * Numbers with up to 15 significant digits are calculated directly from the buffer and yield the same result as
+     * {@link Double#parseDouble(String)}. Other numbers are rare and handed over to the JDK.
+     * </p>
+     *
+     * @return {@code true} if the field contained a valid number; {@code false} otherwise.
+     */
+    private boolean parseDouble() {
+        int position = 0;
+        boolean negative = false;
+        if (position < fieldLength && (field[position] == '-' || field[position] == '+')) {
+            negative = field[position] == '-';
+            position++;
+        }
+        long mantissa = 0L;
+        int fractionDigits = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; position < fieldLength; position++) {
+            final char character = field[position];
+            if (character == '.' && !fraction) {
+                fraction = true;
+            } else if (character >= '0' && character <= '9') {
+                mantissa = mantissa * 10L + (character - '0');
+                digits++;
+                if (fraction) {
+                    fractionDigits++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+                    return parseDoubleFallback();
+                }
+            } else {
+                return parseDoubleFallback();
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        final double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        parsedDouble = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * <p>
+     * Parses the current field using the JDK. This is only required for unusual numbers, like numbers with an exponent
+     * or with more digits than exactly representable by a {@code double}.
+     * </p>
+     *
+     * @return {@code true} if the field contained a valid number; {@code false} otherwise.
+     */
+    private boolean parseDoubleFallback() {
+        try {
+            parsedDouble = Double.parseDouble(new String(field, 0, fieldLength));
+            return true;
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+}
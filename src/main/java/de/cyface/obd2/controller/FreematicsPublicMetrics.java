@@ -0,0 +1,138 @@
+/*
+ * Created on 18.10.26 at 01:31.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.DataRepository;
+import org.apache.commons.lang3.Validate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Publishes the metrics of this server via the <tt>/metrics</tt> endpoint of the Spring Boot Actuator. Besides the
+ * measurements collected by {@link IngestMetrics}, it reports the current state of the channels, the repository, the
+ * {@link ChannelEvictor} and the {@link IngestPipeline}. All values are only calculated when the endpoint is read.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Component
+public class FreematicsPublicMetrics implements PublicMetrics {
+
+    /**
+     * <p>
+     * The measurements collected on the ingest hot paths.
+     * </p>
+     */
+    private final IngestMetrics ingestMetrics;
+    /**
+     * <p>
+     * An object managing the active channels.
+     * </p>
+     */
+    private final Channels channels;
+    /**
+     * <p>
+     * The repository containing all the captured data.
+     * </p>
+     */
+    private final DataRepository repo;
+    /**
+     * <p>
+     * The component closing idle channels.
+     * </p>
+     */
+    private final ChannelEvictor evictor;
+    /**
+     * <p>
+     * The pipeline processing received data asynchronously.
+     * </p>
+     */
+    private final IngestPipeline pipeline;
+    /**
+     * <p>
+     * The limiter for the rate of data transmission requests per vehicle.
+     * </p>
+     */
+    private final RateLimiter rateLimiter;
+    /**
+     * <p>
+     * The listener receiving data over UDP.
+     * </p>
+     */
+    private final UdpListener udpListener;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code FreematicsPublicMetrics} object.
+     * </p>
+     *
+     * @param ingestMetrics The measurements collected on the ingest hot paths.
+     * @param channels An object managing the active channels.
+     * @param repo The repository containing all the captured data.
+     * @param evictor The component closing idle channels.
+     * @param pipeline The pipeline processing received data asynchronously.
+     * @param rateLimiter The limiter for the rate of data transmission requests per vehicle.
+     * @param udpListener The listener receiving data over UDP.
+     */
+    @Autowired
+    public FreematicsPublicMetrics(final IngestMetrics ingestMetrics, final Channels channels,
+            final DataRepository repo, final ChannelEvictor evictor, final IngestPipeline pipeline,
+            final RateLimiter rateLimiter, final UdpListener udpListener) {
+        Validate.notNull(ingestMetrics);
+        Validate.notNull(channels);
+        Validate.notNull(repo);
+        Validate.notNull(evictor);
+        Validate.notNull(pipeline);
+        Validate.notNull(rateLimiter);
+        Validate.notNull(udpListener);
+        this.ingestMetrics = ingestMetrics;
+        this.channels = channels;
+        this.repo = repo;
+        this.evictor = evictor;
+        this.pipeline = pipeline;
+        this.rateLimiter = rateLimiter;
+        this.udpListener = udpListener;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final String prefix = IngestMetrics.PREFIX;
+        final double nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1L);
+        Collection<Metric<?>> ret = new ArrayList<>();
+        ingestMetrics.export(ret);
+        ret.add(new Metric<>(prefix + "channels.active", channels.size()));
+        ret.add(new Metric<>(prefix + "channels.evicted", evictor.getEvictedChannels()));
+        ret.add(new Metric<>(prefix + "channels.evicted.bytes", evictor.getFreedBytes()));
+        ret.add(new Metric<>(prefix + "repository.vehicles", repo.countVehicles()));
+        ret.add(new Metric<>(prefix + "repository.entries", repo.countInputData()));
+        ret.add(new Metric<>(prefix + "repository.duplicates", repo.countDuplicates()));
+        ret.add(new Metric<>(prefix + "ingest.queue.depth", pipeline.getQueueDepth()));
+        ret.add(new Metric<>(prefix + "ingest.processed", pipeline.getProcessed()));
+        ret.add(new Metric<>(prefix + "ingest.rejected", pipeline.getRejected()));
+        ret.add(new Metric<>(prefix + "ingest.store.failures", pipeline.getFailedStores()));
+        ret.add(new Metric<>(prefix + "ingest.lag.last", pipeline.getLastLag() / nanosPerMilli));
+        ret.add(new Metric<>(prefix + "ingest.lag.max", pipeline.getMaxLag() / nanosPerMilli));
+        ret.add(new Metric<>(prefix + "ratelimit.throttled", rateLimiter.getThrottled()));
+        ret.add(new Metric<>(prefix + "ratelimit.vehicles", rateLimiter.getTrackedVehicles()));
+        ret.add(new Metric<>(prefix + "udp.received", udpListener.getReceived()));
+        ret.add(new Metric<>(prefix + "udp.duplicates", udpListener.getDuplicates()));
+        ret.add(new Metric<>(prefix + "udp.lost", udpListener.getLost()));
+        ret.add(new Metric<>(prefix + "udp.malformed", udpListener.getMalformed()));
+        return ret;
+    }
+}
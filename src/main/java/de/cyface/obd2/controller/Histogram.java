@@ -0,0 +1,132 @@
+/*
+ * Created on 18.10.26 at 01:30.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Records the distribution of non negative values, like durations or sizes, in buckets of powers of two. Recording a
+ * value only increments two striped counters, so many threads may record concurrently without contention. Counts,
+ * means and percentiles are only calculated when read. Percentiles are approximated by the upper bound of their bucket.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class Histogram {
+    /**
+     * <p>
+     * The number of buckets, which is enough for any non negative {@code long} value.
+     * </p>
+     */
+    private static final int BUCKETS = Long.SIZE;
+
+    /**
+     * <p>
+     * The number of values per bucket. Bucket {@code i} counts the values between 2^(i-1) and 2^i - 1, while bucket 0
+     * counts the value 0.
+     * </p>
+     */
+    private final LongAdder[] buckets;
+    /**
+     * <p>
+     * The sum of all recorded values.
+     * </p>
+     */
+    private final LongAdder sum;
+    /**
+     * <p>
+     * The largest recorded value.
+     * </p>
+     */
+    private final LongAccumulator max;
+
+    /**
+     * <p>
+     * Creates a new empty {@code Histogram}.
+     * </p>
+     */
+    Histogram() {
+        this.buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+        this.sum = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0L);
+    }
+
+    /**
+     * @param value The value to record. Negative values are recorded as 0.
+     */
+    void record(final long value) {
+        final long nonNegativeValue = Math.max(0L, value);
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(nonNegativeValue)].increment();
+        sum.add(nonNegativeValue);
+        max.accumulate(nonNegativeValue);
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    long count() {
+        long ret = 0L;
+        for (final LongAdder bucket : buckets) {
+            ret += bucket.sum();
+        }
+        return ret;
+    }
+
+    /**
+     * @return The sum of all recorded values.
+     */
+    long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return The largest recorded value or 0 if no value was recorded.
+     */
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * @return The mean of all recorded values or 0 if no value was recorded.
+     */
+    double mean() {
+        final long count = count();
+        return count == 0L ? 0.0 : (double)sum() / count;
+    }
+
+    /**
+     * @param quantile The quantile to calculate, between 0 and 1.
+     * @return An upper bound of the provided quantile of all recorded values or 0 if no value was recorded.
+     */
+    long percentile(final double quantile) {
+        final long[] counts = new long[BUCKETS];
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        final long rank = (long)Math.ceil(quantile * total);
+        long cumulated = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulated += counts[i];
+            if (cumulated >= rank && counts[i] > 0L) {
+                final long upperBound = i == 0 ? 0L : (1L << i) - 1L;
+                return i == BUCKETS - 1 ? max() : Math.min(upperBound, max());
+            }
+        }
+        return 0L;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Created on 18.10.26 at 01:30.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Collects measurements from the ingest hot paths: allocating channels, receiving and parsing data, storing it and
+ * rendering the root page. Recording is cheap enough to stay enabled all the time, since it only updates striped
+ * counters. All aggregation happens when the metrics are read via {@link FreematicsPublicMetrics}.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Component
+public class IngestMetrics {
+
+    /**
+     * <p>
+     * The prefix of the names of all metrics reported by this server.
+     * </p>
+     */
+    static final String PREFIX = "freematics.";
+
+    /**
+     * <p>
+     * The time in nanoseconds required to allocate a channel for a {@code /push} request.
+     * </p>
+     */
+    private final Histogram pushTime;
+    /**
+     * <p>
+     * The time in nanoseconds required to handle a {@code /post} request.
+     * </p>
+     */
+    private final Histogram postTime;
+    /**
+     * <p>
+     * The time in nanoseconds required to render the root page.
+     * </p>
+     */
+    private final Histogram rootTime;
+    /**
+     * <p>
+     * The time in nanoseconds required to parse one message body.
+     * </p>
+     */
+    private final Histogram parseTime;
+    /**
+     * <p>
+     * The time in nanoseconds required to store the data of a channel.
+     * </p>
+     */
+    private final Histogram storeTime;
+    /**
+     * <p>
+     * The number of accelerations per parsed message body.
+     * </p>
+     */
+    private final Histogram accelerationsPerBody;
+    /**
+     * <p>
+     * The number of malformed entries skipped while parsing.
+     * </p>
+     */
+    private final LongAdder parseErrors;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code IngestMetrics} object without any measurements.
+     * </p>
+     */
+    public IngestMetrics() {
+        this.pushTime = new Histogram();
+        this.postTime = new Histogram();
+        this.rootTime = new Histogram();
+        this.parseTime = new Histogram();
+        this.storeTime = new Histogram();
+        this.accelerationsPerBody = new Histogram();
+        this.parseErrors = new LongAdder();
+    }
+
+    /**
+     * @param nanos The time in nanoseconds required to allocate a channel.
+     */
+    public void recordPush(final long nanos) {
+        pushTime.record(nanos);
+    }
+
+    /**
+     * @param nanos The time in nanoseconds required to handle a {@code /post} request.
+     */
+    public void recordPost(final long nanos) {
+        postTime.record(nanos);
+    }
+
+    /**
+     * @param nanos The time in nanoseconds required to render the root page.
+     */
+    public void recordRoot(final long nanos) {
+        rootTime.record(nanos);
+    }
+
+    /**
+     * @param nanos The time in nanoseconds required to parse a message body.
+     * @param accelerations The number of accelerations in the parsed message body.
+     * @param invalidEntries The number of malformed entries skipped in the parsed message body.
+     */
+    public void recordParse(final long nanos, final int accelerations, final int invalidEntries) {
+        parseTime.record(nanos);
+        accelerationsPerBody.record(accelerations);
+        if (invalidEntries > 0) {
+            parseErrors.add(invalidEntries);
+        }
+    }
+
+    /**
+     * @param nanos The time in nanoseconds required to store the data of a channel.
+     */
+    public void recordStore(final long nanos) {
+        storeTime.record(nanos);
+    }
+
+    /**
+     * <p>
+     * Adds the current state of all measurements to the provided collection.
+     * </p>
+     *
+     * @param metrics The collection to add the metrics to.
+     */
+    void export(final Collection<Metric<?>> metrics) {
+        exportTimer("push", pushTime, metrics);
+        exportTimer("post", postTime, metrics);
+        exportTimer("root", rootTime, metrics);
+        exportTimer("parse", parseTime, metrics);
+        exportTimer("store", storeTime, metrics);
+        metrics.add(new Metric<>(PREFIX + "parse.accelerations.mean", accelerationsPerBody.mean()));
+        metrics.add(new Metric<>(PREFIX + "parse.accelerations.max", accelerationsPerBody.max()));
+        metrics.add(new Metric<>(PREFIX + "parse.accelerations.p99", accelerationsPerBody.percentile(0.99)));
+        metrics.add(new Metric<>(PREFIX + "parse.errors", parseErrors.sum()));
+    }
+
+    /**
+     * <p>
+     * Adds the number of measurements, as well as mean, 50th and 99th percentile and maximum in milliseconds of a
+     * histogram of durations to the provided collection.
+     * </p>
+     *
+     * @param name The name of the measured operation.
+     * @param histogram The histogram of durations in nanoseconds.
+     * @param metrics The collection to add the metrics to.
+     */
+    private static void exportTimer(final String name, final Histogram histogram,
+            final Collection<Metric<?>> metrics) {
+        final double nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1L);
+        metrics.add(new Metric<>(PREFIX + name + ".count", histogram.count()));
+        metrics.add(new Metric<>(PREFIX + name + ".time.mean", histogram.mean() / nanosPerMilli));
+        metrics.add(new Metric<>(PREFIX + name + ".time.p50", histogram.percentile(0.5) / nanosPerMilli));
+        metrics.add(new Metric<>(PREFIX + name + ".time.p99", histogram.percentile(0.99) / nanosPerMilli));
+        metrics.add(new Metric<>(PREFIX + name + ".time.max", histogram.max() / nanosPerMilli));
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * Created on 18.10.26 at 01:26.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.InputData;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Decouples receiving data from parsing and storing it. Received message bodies are put into bounded queues, from
+ * which worker threads take them in batches, parse them and store them in the {@link DataRepository}. Each channel is
+ * always processed by the same worker, so data from one dongle is stored in the order it was received.
+ * </p>
+ * <p>
+ * If a queue is full, new data is either rejected or the receiving thread waits for free space, depending on the
+ * configured {@link BackPressure}. The pipeline is only used if {@code freematics.ingest.async} is set to {@code true}.
+ * Otherwise data is processed on the receiving thread as before.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Component
+public class IngestPipeline {
+
+    /**
+     * <p>
+     * Logger for objects of this class. Configure it using SpringBoot settings in
+     * <tt>resources/application.properties</tt>.
+     * </p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestPipeline.class);
+
+    /**
+     * <p>
+     * The strategies for handling data arriving while the queue is full.
+     * </p>
+     */
+    public enum BackPressure {
+        /**
+         * <p>
+         * Reject the data with an {@link IngestQueueFullException}.
+         * </p>
+         */
+        REJECT,
+        /**
+         * <p>
+         * Wait until there is free space in the queue.
+         * </p>
+         */
+        BLOCK
+    }
+
+    /**
+     * <p>
+     * The repository used to store the parsed data.
+     * </p>
+     */
+    private final DataRepository repo;
+    /**
+     * <p>
+     * The measurements of parsing and storing.
+     * </p>
+     */
+    private final IngestMetrics metrics;
+    /**
+     * <p>
+     * Whether received data is processed by this pipeline.
+     * </p>
+     */
+    private final boolean enabled;
+    /**
+     * <p>
+     * One queue per worker containing the data waiting to be processed.
+     * </p>
+     */
+    private final List<BlockingQueue<Task>> queues;
+    /**
+     * <p>
+     * The maximum number of tasks a worker processes at once.
+     * </p>
+     */
+    private final int batchSize;
+    /**
+     * <p>
+     * The strategy for handling data arriving while a queue is full.
+     * </p>
+     */
+    private final BackPressure backPressure;
+    /**
+     * <p>
+     * The worker threads processing the queues.
+     * </p>
+     */
+    private final List<Thread> workers;
+    /**
+     * <p>
+     * The number of message bodies processed since startup.
+     * </p>
+     */
+    private final AtomicLong processed;
+    /**
+     * <p>
+     * The number of message bodies rejected since startup, because the queue was full.
+     * </p>
+     */
+    private final AtomicLong rejected;
+    /**
+     * <p>
+     * The number of times storing the data of a channel failed since startup.
+     * </p>
+     */
+    private final AtomicLong failedStores;
+    /**
+     * <p>
+     * The time in nanoseconds from receiving to storing the most recently processed message body.
+     * </p>
+     */
+    private final AtomicLong lastLag;
+    /**
+     * <p>
+     * The longest time in nanoseconds from receiving to storing any message body since startup.
+     * </p>
+     */
+    private final AtomicLong maxLag;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code IngestPipeline}. The workers are started by {@link #start()}.
+     * </p>
+     *
+     * @param repo The repository used to store the parsed data.
+     * @param metrics The measurements of parsing and storing.
+     * @param enabled Whether received data is processed by this pipeline.
+     * @param capacity The maximum number of message bodies waiting to be processed over all workers.
+     * @param numberOfWorkers The number of worker threads.
+     * @param batchSize The maximum number of message bodies a worker processes at once.
+     * @param backPressure The strategy for handling data arriving while the queue is full.
+     */
+    @Autowired
+    public IngestPipeline(final DataRepository repo, final IngestMetrics metrics,
+            @Value("${freematics.ingest.async:false}") final boolean enabled,
+            @Value("${freematics.ingest.queue-capacity:4096}") final int capacity,
+            @Value("${freematics.ingest.workers:2}") final int numberOfWorkers,
+            @Value("${freematics.ingest.batch-size:64}") final int batchSize,
+            @Value("${freematics.ingest.back-pressure:REJECT}") final BackPressure backPressure) {
+        Validate.notNull(repo);
+        Validate.notNull(metrics);
+        Validate.notNull(backPressure);
+        Validate.isTrue(numberOfWorkers > 0, "Number of workers must be positive.");
+        Validate.isTrue(capacity >= numberOfWorkers, "Capacity must be at least the number of workers.");
+        Validate.isTrue(batchSize > 0, "Batch size must be positive.");
+        this.repo = repo;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.backPressure = backPressure;
+        this.queues = new ArrayList<>(numberOfWorkers);
+        for (int i = 0; i < numberOfWorkers; i++) {
+            queues.add(new ArrayBlockingQueue<>(capacity / numberOfWorkers));
+        }
+        this.workers = new ArrayList<>(numberOfWorkers);
+        this.processed = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.failedStores = new AtomicLong();
+        this.lastLag = new AtomicLong();
+        this.maxLag = new AtomicLong();
+    }
+
+    /**
+     * <p>
+     * Starts the worker threads, if this pipeline is enabled.
+     * </p>
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || !workers.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < queues.size(); i++) {
+            final BlockingQueue<Task> queue = queues.get(i);
+            Thread worker = new Thread(() -> work(queue), String.format("ingest-worker-%d", i));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        LOGGER.info("Started {} ingest workers.", workers.size());
+    }
+
+    /**
+     * <p>
+     * Stops the worker threads after all data already received has been processed.
+     * </p>
+     *
+     * @throws InterruptedException If interrupted while waiting for the workers to finish.
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        for (int i = 0; i < workers.size(); i++) {
+            queues.get(i).put(Task.SHUTDOWN);
+        }
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        workers.clear();
+    }
+
+    /**
+     * @return Whether received data should be processed by this pipeline.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * <p>
+     * Queues a message body for processing. The body is parsed and stored to the provided channel later.
+     * </p>
+     *
+     * @param channel The channel the data was received on.
+     * @param body The message body containing the received data.
+     * @throws IngestQueueFullException If the queue is full and the {@link BackPressure} is
+     *             {@link BackPressure#REJECT} or the thread was interrupted while waiting for free space.
+     */
+    public void submit(final Channel channel, final String body) {
+        Validate.notNull(channel);
+        Validate.notNull(body);
+        enqueue(new Task(channel, body, null, System.nanoTime()));
+    }
+
+    /**
+     * <p>
+     * Queues already decoded data for storage, as for example received in the binary format.
+     * </p>
+     *
+     * @param channel The channel the data was received on.
+     * @param data The received data.
+     * @throws IngestQueueFullException If the queue is full and the {@link BackPressure} is
+     *             {@link BackPressure#REJECT} or the thread was interrupted while waiting for free space.
+     */
+    public void submit(final Channel channel, final InputData data) {
+        Validate.notNull(channel);
+        Validate.notNull(data);
+        enqueue(new Task(channel, null, data, System.nanoTime()));
+    }
+
+    /**
+     * <p>
+     * Puts a task into the queue of the worker responsible for its channel, applying the configured back pressure.
+     * </p>
+     *
+     * @param task The task to queue.
+     */
+    private void enqueue(final Task task) {
+        final BlockingQueue<Task> queue = queues.get(Math.floorMod(task.channel.getChannelIdentifier(), queues.size()));
+        if (backPressure == BackPressure.BLOCK) {
+            try {
+                queue.put(task);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.incrementAndGet();
+                throw new IngestQueueFullException("Interrupted while waiting for free space in the ingest queue.");
+            }
+        } else if (!queue.offer(task)) {
+            rejected.incrementAndGet();
+            throw new IngestQueueFullException(
+                    String.format("Ingest queue for channel %d is full.", task.channel.getChannelIdentifier()));
+        }
+    }
+
+    /**
+     * @return The number of message bodies currently waiting to be processed.
+     */
+    public int getQueueDepth() {
+        int ret = 0;
+        for (final BlockingQueue<Task> queue : queues) {
+            ret += queue.size();
+        }
+        return ret;
+    }
+
+    /**
+     * @return The number of message bodies processed since startup.
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * @return The number of message bodies rejected since startup.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return The number of times storing the data of a channel failed since startup. The data is kept in the channel
+     *         and stored with its next data, or when it is closed or evicted.
+     */
+    public long getFailedStores() {
+        return failedStores.get();
+    }
+
+    /**
+     * @return The time in nanoseconds from receiving to storing the most recently processed message body.
+     */
+    public long getLastLag() {
+        return lastLag.get();
+    }
+
+    /**
+     * @return The longest time in nanoseconds from receiving to storing any message body since startup.
+     */
+    public long getMaxLag() {
+        return maxLag.get();
+    }
+
+    /**
+     * <p>
+     * The loop run by each worker. It waits for data, takes all available data up to the batch size and processes it,
+     * until it receives {@link Task#SHUTDOWN}.
+     * </p>
+     *
+     * @param queue The queue processed by the worker.
+     */
+    private void work(final BlockingQueue<Task> queue) {
+        final List<Task> batch = new ArrayList<>(batchSize);
+        final FreematicsParser parser = new FreematicsParser();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (final InterruptedException e) {
+                LOGGER.warn("Ingest worker interrupted.", e);
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            running = !batch.remove(Task.SHUTDOWN);
+            try {
+                process(batch, parser);
+            } catch (final RuntimeException e) {
+                LOGGER.error("Unable to process received data.", e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * <p>
+     * Parses a batch of message bodies and stores each affected channel once. If storing a channel fails, the
+     * {@link DataRepository} keeps its data in the channel, so it is stored with the next data of the channel, or when
+     * the channel is closed or evicted. The failure is counted and the other channels are stored anyway.
+     * </p>
+     *
+     * @param batch The batch to process.
+     * @param parser The parser used by the current worker.
+     */
+    private void process(final List<Task> batch, final FreematicsParser parser) {
+        final Map<Channel, Channel> touchedChannels = new IdentityHashMap<>();
+        for (final Task task : batch) {
+            InputData data = task.data;
+            if (data == null) {
+                final long parseStart = System.nanoTime();
+                data = parser.parse(task.body);
+                metrics.recordParse(System.nanoTime() - parseStart, data.getAccelerationCount(),
+                        parser.getInvalidEntries());
+            }
+            task.channel.addInputData(data);
+            touchedChannels.put(task.channel, task.channel);
+        }
+        for (final Channel channel : touchedChannels.keySet()) {
+            final long storeStart = System.nanoTime();
+            try {
+                repo.store(channel);
+            } catch (final RuntimeException e) {
+                failedStores.incrementAndGet();
+                LOGGER.error("Unable to store data of channel {}. Keeping it for the next attempt.",
+                        channel.getChannelIdentifier(), e);
+                continue;
+            }
+            metrics.recordStore(System.nanoTime() - storeStart);
+        }
+
+        final long now = System.nanoTime();
+        for (final Task task : batch) {
+            final long lag = now - task.receivedAt;
+            lastLag.set(lag);
+            long max = maxLag.get();
+            while (lag > max && !maxLag.compareAndSet(max, lag)) {
+                max = maxLag.get();
+            }
+        }
+        processed.addAndGet(batch.size());
+    }
+
+    /**
+     * <p>
+     * A received message body waiting to be processed.
+     * </p>
+     */
+    private static final class Task {
+        /**
+         * <p>
+         * A marker telling a worker to stop after processing all data queued before it.
+         * </p>
+         */
+        private static final Task SHUTDOWN = new Task(null, null, null, 0L);
+
+        /**
+         * <p>
+         * The channel the data was received on.
+         * </p>
+         */
+        private final Channel channel;
+        /**
+         * <p>
+         * The received message body or {@code null} if the data was received already decoded.
+         * </p>
+         */
+        private final String body;
+        /**
+         * <p>
+         * The received data, if it was received already decoded, or {@code null} if the body still needs parsing.
+         * </p>
+         */
+        private final InputData data;
+        /**
+         * <p>
+         * The value of {@link System#nanoTime()} when the message body was received.
+         * </p>
+         */
+        private final long receivedAt;
+
+        /**
+         * @param channel The channel the data was received on.
+         * @param body The received message body or {@code null} if the data was received already decoded.
+         * @param data The received data or {@code null} if the body still needs parsing.
+         * @param receivedAt The value of {@link System#nanoTime()} when the message body was received.
+         */
+        private Task(final Channel channel, final String body, final InputData data, final long receivedAt) {
+            this.channel = channel;
+            this.body = body;
+            this.data = data;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Created on 18.10.26 at 01:26.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * <p>
+ * Thrown if received data could not be accepted, because the {@link IngestPipeline} is full. Clients receive a
+ * <tt>503 Service Unavailable</tt> response and should retry later.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Ingest queue is full.")
+public class IngestQueueFullException extends RuntimeException {
+
+    /**
+     * <p>
+     * Used for serializing objects of this class. Only change this if the classes attribute set changes.
+     * </p>
+     */
+    private static final long serialVersionUID = -4127736427613458210L;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code IngestQueueFullException}.
+     * </p>
+     *
+     * @param message A message explaining which queue was full.
+     */
+    public IngestQueueFullException(final String message) {
+        super(message);
+    }
+}
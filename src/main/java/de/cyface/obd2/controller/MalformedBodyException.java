@@ -0,0 +1,44 @@
+/*
+ * Created on 18.10.26 at 01:35.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * <p>
+ * Thrown if a message body could not be decoded, because it does not follow the announced format. Clients receive a
+ * <tt>400 Bad Request</tt> response.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Malformed message body.")
+public class MalformedBodyException extends RuntimeException {
+
+    /**
+     * <p>
+     * Used for serializing objects of this class. Only change this if the classes attribute set changes.
+     * </p>
+     */
+    private static final long serialVersionUID = 3349814286201436592L;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code MalformedBodyException}.
+     * </p>
+     *
+     * @param message A message explaining what is wrong with the message body.
+     */
+    public MalformedBodyException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Created on 18.10.26 at 02:00.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * Reads the message bodies of data transmission requests without blocking a request thread, if enabled. Dongles on
+ * poor cellular links often need seconds to upload a message body. In the default servlet model the request thread
+ * waits for the body during all that time, so a few hundred slow dongles exhaust the thread pool of the server.
+ * </p>
+ * <p>
+ * This filter puts <tt>POST</tt> requests to <tt>/post</tt> and <tt>/batch</tt> into asynchronous mode and receives
+ * their bodies using a Servlet 3.1 {@code ReadListener}, which is only called by the container if data arrived. Only
+ * after the complete body was received, the request is dispatched again with the buffered body and handled by the
+ * {@link Obd2Controller} as usual, so parsing, rate limiting and storage work the same in both modes. Bodies larger
+ * than the configured maximum size are answered with <tt>413 Payload Too Large</tt> and bodies not received completely
+ * within the configured timeout with <tt>408 Request Timeout</tt>.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class NonBlockingBodyFilter extends OncePerRequestFilter {
+
+    /**
+     * <p>
+     * Logger for objects of this class. Configure it using SpringBoot settings in
+     * <tt>resources/application.properties</tt>.
+     * </p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(NonBlockingBodyFilter.class);
+    /**
+     * <p>
+     * The size of the chunks message bodies are read in.
+     * </p>
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * <p>
+     * Whether message bodies are read without blocking at all.
+     * </p>
+     */
+    private final boolean enabled;
+    /**
+     * <p>
+     * The maximum size in bytes of a received message body.
+     * </p>
+     */
+    private final long maxBodySize;
+    /**
+     * <p>
+     * The time in milliseconds a client may take to send the complete message body.
+     * </p>
+     */
+    private final long readTimeout;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code NonBlockingBodyFilter}.
+     * </p>
+     *
+     * @param enabled Whether message bodies are read without blocking at all.
+     * @param maxBodySize The maximum size in bytes of a received message body, which must fit into a byte array.
+     * @param readTimeout The time in milliseconds a client may take to send the complete message body.
+     */
+    @Autowired
+    public NonBlockingBodyFilter(@Value("${freematics.ingest.non-blocking:false}") final boolean enabled,
+            @Value("${freematics.post.max-body-size:10485760}") final long maxBodySize,
+            @Value("${freematics.ingest.read-timeout:60000}") final long readTimeout) {
+        Validate.isTrue(maxBodySize > 0L, "Maximum body size must be positive.");
+        Validate.isTrue(maxBodySize <= Integer.MAX_VALUE, "Maximum body size must not be larger than %d bytes.",
+                Integer.MAX_VALUE);
+        Validate.isTrue(readTimeout > 0L, "Read timeout must be positive.");
+        this.enabled = enabled;
+        this.maxBodySize = maxBodySize;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        // The dispatch after the body was received is handled by the controller as usual.
+        if (!enabled || request.getDispatcherType() != DispatcherType.REQUEST || !"POST".equals(request.getMethod())) {
+            return true;
+        }
+        final String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !"/post".equals(path) && !"/batch".equals(path);
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+            final FilterChain filterChain) throws IOException {
+        final long contentLength = request.getContentLengthLong();
+        if (contentLength > maxBodySize) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "Message body too large.");
+            return;
+        }
+
+        // The announced length is only trusted up to one chunk, so clients can not reserve memory without sending data.
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(
+                contentLength > 0L ? (int)Math.min(contentLength, CHUNK_SIZE) : CHUNK_SIZE);
+        final AsyncContext asyncContext = request.startAsync(new BufferedBodyRequest(request, body), response);
+        asyncContext.setTimeout(readTimeout);
+        final BodyReader reader = new BodyReader(asyncContext, request.getInputStream(), body);
+        asyncContext.addListener(reader);
+        request.getInputStream().setReadListener(reader);
+    }
+
+    /**
+     * <p>
+     * Receives the message body of one request, whenever the container signals that data arrived.
+     * </p>
+     */
+    private final class BodyReader implements ReadListener, AsyncListener {
+        /**
+         * <p>
+         * The context of the asynchronous request, which is dispatched after the complete body was received.
+         * </p>
+         */
+        private final AsyncContext asyncContext;
+        /**
+         * <p>
+         * The stream of the message body as provided by the container.
+         * </p>
+         */
+        private final ServletInputStream input;
+        /**
+         * <p>
+         * The message body received so far.
+         * </p>
+         */
+        private final ByteArrayOutputStream body;
+        /**
+         * <p>
+         * The buffer used for reading one chunk of the message body.
+         * </p>
+         */
+        private final byte[] chunk;
+        /**
+         * <p>
+         * Whether the request was already dispatched or answered, so no further events are handled.
+         * </p>
+         */
+        private final AtomicBoolean finished;
+
+        /**
+         * @param asyncContext The context of the asynchronous request.
+         * @param input The stream of the message body as provided by the container.
+         * @param body The buffer to receive the message body into.
+         */
+        BodyReader(final AsyncContext asyncContext, final ServletInputStream input,
+                final ByteArrayOutputStream body) {
+            this.asyncContext = asyncContext;
+            this.input = input;
+            this.body = body;
+            this.chunk = new byte[CHUNK_SIZE];
+            this.finished = new AtomicBoolean();
+        }
+
+        @Override
+        public void onDataAvailable() throws IOException {
+            while (!finished.get() && input.isReady() && !input.isFinished()) {
+                final int read = input.read(chunk);
+                if (read == -1) {
+                    return;
+                }
+                if (body.size() + read > maxBodySize) {
+                    fail(HttpStatus.PAYLOAD_TOO_LARGE, "Message body too large.");
+                    return;
+                }
+                body.write(chunk, 0, read);
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            if (finished.compareAndSet(false, true)) {
+                asyncContext.dispatch();
+            }
+        }
+
+        @Override
+        public void onError(final Throwable error) {
+            LOGGER.debug("Failed to receive message body.", error);
+            fail(HttpStatus.BAD_REQUEST, "Failed to receive message body.");
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            fail(HttpStatus.REQUEST_TIMEOUT, "Message body not received in time.");
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            onError(event.getThrowable());
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            // Nothing to do here.
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // Nothing to do here.
+        }
+
+        /**
+         * <p>
+         * Answers the request with an error instead of dispatching it, unless this already happened.
+         * </p>
+         *
+         * @param status The status to answer with.
+         * @param message The message explaining the error.
+         */
+        private void fail(final HttpStatus status, final String message) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                ((HttpServletResponse)asyncContext.getResponse()).sendError(status.value(), message);
+            } catch (final IOException | IllegalStateException e) {
+                LOGGER.debug("Failed to send error response.", e);
+            }
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * <p>
+     * A request providing its message body from a buffer filled by a {@link BodyReader}. The buffer is only read after
+     * the request was dispatched, when the body was received completely.
+     * </p>
+     */
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+        /**
+         * <p>
+         * The buffer containing the message body.
+         * </p>
+         */
+        private final ByteArrayOutputStream body;
+
+        /**
+         * @param request The request to wrap.
+         * @param body The buffer containing the message body.
+         */
+        BufferedBodyRequest(final HttpServletRequest request, final ByteArrayOutputStream body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return new BufferedInputStream(new ByteArrayInputStream(body.toByteArray()));
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            final String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding)));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.size();
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.size();
+        }
+    }
+
+    /**
+     * <p>
+     * A {@code ServletInputStream} reading a completely received message body.
+     * </p>
+     */
+    private static final class BufferedInputStream extends ServletInputStream {
+        /**
+         * <p>
+         * The stream of the received message body.
+         * </p>
+         */
+        private final ByteArrayInputStream input;
+
+        /**
+         * @param input The stream of the received message body.
+         */
+        BufferedInputStream(final ByteArrayInputStream input) {
+            this.input = input;
+        }
+
+        @Override
+        public int read() {
+            return input.read();
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) {
+            return input.read(buffer, offset, length);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return input.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(final ReadListener readListener) {
+            throw new IllegalStateException("The message body was already received.");
+        }
+    }
+}
@@ -9,16 +9,27 @@ package de.cyface.obd2.controller;
 
 import de.cyface.obd2.persistence.Channel;
 import de.cyface.obd2.persistence.DataRepository;
-import de.cyface.obd2.persistence.GpsData;
 import de.cyface.obd2.persistence.InputData;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Writer;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
 
 /**
  * <p>
@@ -39,6 +50,12 @@ public final class Obd2Controller {
      * </p>
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(Obd2Controller.class);
+    /**
+     * <p>
+     * The size of the buffers used for decompressing message bodies.
+     * </p>
+     */
+    private static final int DECOMPRESSION_BUFFER_SIZE = 4096;
 
     /**
      * <p>
@@ -58,7 +75,41 @@ public final class Obd2Controller {
 
     /**
      * <p>
-     * Root method for printing the already received data to the screen.
+     * The pipeline processing received data asynchronously, if enabled.
+     * </p>
+     */
+    @Autowired
+    private IngestPipeline pipeline;
+
+    /**
+     * <p>
+     * The measurements collected while handling requests.
+     * </p>
+     */
+    @Autowired
+    private IngestMetrics metrics;
+
+    /**
+     * <p>
+     * The limiter for the rate of data transmission requests per vehicle.
+     * </p>
+     */
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    /**
+     * <p>
+     * The maximum size in bytes of a binary message body, which for compressed message bodies applies after
+     * decompression.
+     * </p>
+     */
+    @Value("${freematics.post.max-body-size:10485760}")
+    private long maxBodySize;
+
+    /**
+     * <p>
+     * Root method for printing the already received data to the screen. The data is streamed to the client, so the
+     * response is never built in memory as a whole.
      * </p>
      *
      * @param outputWriter A {@code Writer} taking the output to write to the screen.
@@ -66,7 +117,9 @@ public final class Obd2Controller {
      */
     @RequestMapping(method = RequestMethod.GET, path = "/")
     public void root(final Writer outputWriter) throws IOException {
-        outputWriter.write(repo.toString());
+        final long start = System.nanoTime();
+        repo.writeTo(outputWriter);
+        metrics.recordRoot(System.nanoTime() - start);
     }
 
     /**
@@ -83,7 +136,9 @@ public final class Obd2Controller {
     public String push(@RequestParam("VIN") final String vehicleIdentificationNumber) {
         Validate.notEmpty(vehicleIdentificationNumber);
         LOGGER.debug("Received request for new Channel with VIN {}.");
+        final long start = System.nanoTime();
         Channel newChannel = channels.getNextFreeChannel(vehicleIdentificationNumber);
+        metrics.recordPush(System.nanoTime() - start);
         LOGGER.debug("New channel with identifier {} assigned to VIN {}.", newChannel.getChannelIdentifier(),
                 vehicleIdentificationNumber);
         return String.format("CH:%s", newChannel.getChannelIdentifier());
@@ -91,186 +146,350 @@ public final class Obd2Controller {
 
     /**
      * <p>
-     * Handler method for data transmission requests.
+     * Handler method for data transmission requests. If the {@link IngestPipeline} is enabled, the data is only queued
+     * and parsed and stored later. Otherwise it is parsed and stored before the response is sent.
      * </p>
      *
      * @param body The message body containing the transmitted data.
      * @param channelIdentifier The identifier of the channel to transmit to. This must be an active channel or the call
      *            will fail.
+     * @throws RateLimitExceededException If the vehicle of the channel sent too many requests.
+     * @throws IngestQueueFullException If the data is processed asynchronously and the queue is full.
      */
     @RequestMapping(method = RequestMethod.POST, path = "/post")
     public void post(@RequestBody final String body, @RequestParam("id") final int channelIdentifier) {
         LOGGER.debug("Received data for channel {}", channelIdentifier);
         LOGGER.debug("Received: {}", body);
-        InputData data = parseBody(body);
-        Channel channel = channels.getChannel(channelIdentifier);
-        if (channel == null) {
-            throw new IllegalStateException(
-                    String.format("Channel with identifier %s does not exist.", channelIdentifier));
+        final long start = System.nanoTime();
+        Channel channel = activeChannel(channelIdentifier);
+        rateLimiter.acquire(channel);
+        if (pipeline.isEnabled()) {
+            pipeline.submit(channel, body);
+        } else {
+            FreematicsParser parser = new FreematicsParser();
+            final long parseStart = System.nanoTime();
+            InputData data = parser.parse(body);
+            metrics.recordParse(System.nanoTime() - parseStart, data.getAccelerationCount(),
+                    parser.getInvalidEntries());
+            store(channel, data);
         }
-        channel.addInputData(data);
-        repo.store(channel);
+        metrics.recordPost(System.nanoTime() - start);
     }
 
     /**
      * <p>
-     * Parses the raw message body as received from the Freematics OBD II dongle in the Freematics data format
+     * Handler method for data transmission requests in the compact binary format described by
+     * {@link BinaryFormatDecoder}. The data is decoded directly from the request. Bodies larger than the configured
+     * maximum size are rejected.
      * </p>
      *
-     * @param body One row of data as received from the Freematics OBD II dongle.
-     * @return A parsed representation of the parsed body.
+     * @param body The message body containing the transmitted data.
+     * @param channelIdentifier The identifier of the channel to transmit to. This must be an active channel or the call
+     *            will fail.
+     * @throws IOException If reading the message body fails.
+     * @throws BodyTooLargeException If the message body is too large.
+     * @throws MalformedBodyException If the message body is not valid.
+     * @throws RateLimitExceededException If the vehicle of the channel sent too many requests.
+     * @throws IngestQueueFullException If the data is processed asynchronously and the queue is full.
      */
-    private InputData parseBody(final String body) {
-        String[] entries = body.split(" ");
-
-        long lastAbsoluteTimestamp = 0L;
-        InputData ret = new InputData();
-        long gpsTime = 0L;
-        double latitude = 0.0;
-        double longitude = 0.0;
-        int altitude = 0;
-        double gpsSpeed = 0.0;
-        int satellites = 0;
-
-        for (String entry : entries) {
-            String[] values = entry.split(",");
-
-            long timestamp;
-            if (values[0].startsWith("#")) {
-                lastAbsoluteTimestamp = Long.valueOf(values[0].substring(1));
-                lastAbsoluteTimestamp *= 1000L;
-                timestamp = lastAbsoluteTimestamp;
-            } else {
-                timestamp = lastAbsoluteTimestamp + Long.valueOf(values[0]);
-            }
-
-            try {
-                EntryIdentifier lastEntryIdentifier = EntryIdentifier.valueOf(values[1]);
-                switch (lastEntryIdentifier) {
-                    case UTC:
-                        gpsTime = parseLongValue(values[2]);
-                        break;
-                    case LAT:
-                        latitude = parseDoubleValue(values[2]);
-                        break;
-                    case LNG:
-                        longitude = parseDoubleValue(values[2]);
-                        break;
-                    case ALT:
-                        altitude = parseIntValue(values[2]);
-                        break;
-                    case SPD:
-                        gpsSpeed = parseDoubleValue(values[2]);
-                        break;
-                    case SAT:
-                        satellites = parseIntValue(values[2]);
-                        break;
-                    case ACC:
-                        int ax = parseIntValue(values[2]);
-                        int ay = parseIntValue(values[3]);
-                        int az = parseIntValue(values[4]);
-                        ret.addAccelerationTuple(timestamp, ax, ay, az);
-                        break;
-                    default:
-                        throw new IllegalStateException("Unknown data entry.");
-                }
-            } catch (IllegalArgumentException e) {
-                LOGGER.error("Unable to parse a data entry.", e);
-            }
+    @RequestMapping(method = RequestMethod.POST, path = "/post", consumes = BinaryFormatDecoder.CONTENT_TYPE)
+    public void postBinary(final InputStream body, @RequestParam("id") final int channelIdentifier)
+            throws IOException {
+        LOGGER.debug("Received binary data for channel {}", channelIdentifier);
+        final long start = System.nanoTime();
+        Channel channel = activeChannel(channelIdentifier);
+        rateLimiter.acquire(channel);
+        InputData data;
+        try (InputStream boundedBody = new BoundedInputStream(body, maxBodySize)) {
+            data = new BinaryFormatDecoder().decode(boundedBody);
         }
-        if (gpsTime != 0L) {
-            GpsData gpsData = new GpsData(gpsTime, latitude, longitude, altitude, gpsSpeed, satellites);
-            ret.addGpsData(gpsData);
+        metrics.recordParse(System.nanoTime() - start, data.getAccelerationCount(), 0);
+        if (pipeline.isEnabled()) {
+            pipeline.submit(channel, data);
+        } else {
+            store(channel, data);
         }
-        return ret;
+        metrics.recordPost(System.nanoTime() - start);
     }
 
     /**
      * <p>
-     * Tries to parse a {@code String} value to a {@code long}.
+     * Handler method for data transmission requests with a compressed message body, as announced by the
+     * {@code Content-Encoding} header. Supported encodings are <tt>gzip</tt> and <tt>deflate</tt>. The body is
+     * decompressed while it is parsed, so it is never held in memory as a whole. Bodies inflating to more than the
+     * configured maximum size are rejected. The body may either be in the textual Freematics format or in the binary
+     * format described by {@link BinaryFormatDecoder}, depending on its content type.
      * </p>
      *
-     * @param value The {@code String} value to parse.
-     * @return The parsed result as {@code long}.
-     * @throws NumberFormatException If the provided {@code value} is not parseable a {@code long}.
+     * @param request The request containing the compressed message body.
+     * @param contentEncoding The value of the {@code Content-Encoding} header.
+     * @param channelIdentifier The identifier of the channel to transmit to. This must be an active channel or the call
+     *            will fail.
+     * @throws IOException If reading the message body fails.
+     * @throws UnsupportedContentEncodingException If the content encoding is not supported.
+     * @throws BodyTooLargeException If the decompressed message body is too large.
+     * @throws MalformedBodyException If the message body is not valid.
+     * @throws RateLimitExceededException If the vehicle of the channel sent too many requests.
+     * @throws IngestQueueFullException If the data is processed asynchronously and the queue is full.
      */
-    private long parseLongValue(final String value) {
-        return Long.valueOf(value);
+    @RequestMapping(method = RequestMethod.POST, path = "/post", headers = "Content-Encoding")
+    public void postCompressed(final HttpServletRequest request,
+            @RequestHeader("Content-Encoding") final String contentEncoding,
+            @RequestParam("id") final int channelIdentifier) throws IOException {
+        LOGGER.debug("Received {} encoded data for channel {}", contentEncoding, channelIdentifier);
+        final long start = System.nanoTime();
+        Channel channel = activeChannel(channelIdentifier);
+        rateLimiter.acquire(channel);
+        final boolean binary = request.getContentType() != null && MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(MediaType.parseMediaType(BinaryFormatDecoder.CONTENT_TYPE));
+
+        InputData data;
+        int invalidEntries = 0;
+        try (InputStream body = new BoundedInputStream(decompress(request.getInputStream(), contentEncoding),
+                maxBodySize)) {
+            if (binary) {
+                data = new BinaryFormatDecoder().decode(body);
+            } else {
+                FreematicsParser parser = new FreematicsParser();
+                data = parser.parse(body);
+                invalidEntries = parser.getInvalidEntries();
+            }
+        } catch (final ZipException | EOFException e) {
+            throw new MalformedBodyException(String.format("Invalid %s encoded body: %s", contentEncoding,
+                    e.getMessage()));
+        }
+        metrics.recordParse(System.nanoTime() - start, data.getAccelerationCount(), invalidEntries);
+
+        if (pipeline.isEnabled()) {
+            pipeline.submit(channel, data);
+        } else {
+            store(channel, data);
+        }
+        metrics.recordPost(System.nanoTime() - start);
     }
 
     /**
      * <p>
-     * Tries to parse a {@code String} value to a {@code double}.
+     * Handler method for transmitting many message bodies at once, as for example sent by dongles replaying buffered
+     * data after a loss of connectivity. Each line of the request body is one item. If a channel identifier is
+     * provided, each line contains one message body for that channel. Otherwise each line has the form
+     * {@code <channel identifier>:<message body>}, which allows sending data for many channels at once. Empty lines are
+     * ignored.
+     * </p>
+     * <p>
+     * All items are parsed in one pass and all affected channels are stored together. The response contains one line
+     * per item in the form {@code <item index>,<status>}, where the status is one of {@link BatchItemStatus}. Each item
+     * counts as one request for the rate limit of its vehicle.
      * </p>
      *
-     * @param value The {@code String} value to parse.
-     * @return The parsed result as {@code double}.
-     * @throws NumberFormatException If the provided {@code value} is not parseable to a {@code double}.
+     * @param body The message body containing one item per line.
+     * @param channelIdentifier The identifier of the channel all items belong to or {@code null} if each line starts
+     *            with its channel identifier.
+     * @return The status of each item.
      */
-    private double parseDoubleValue(final String value) {
-        return Double.valueOf(value);
+    @RequestMapping(method = RequestMethod.POST, path = "/batch")
+    public String batch(@RequestBody final String body,
+            @RequestParam(value = "id", required = false) final Integer channelIdentifier) {
+        final long start = System.nanoTime();
+        FreematicsParser parser = new FreematicsParser();
+        Map<Channel, Channel> touchedChannels = new IdentityHashMap<>();
+        StringBuilder ret = new StringBuilder();
+        int item = 0;
+        int lineStart = 0;
+        while (lineStart < body.length()) {
+            int lineEnd = body.indexOf('\n', lineStart);
+            if (lineEnd == -1) {
+                lineEnd = body.length();
+            }
+            if (lineEnd > lineStart && !(lineEnd == lineStart + 1 && body.charAt(lineStart) == '\r')) {
+                BatchItemStatus status = batchItem(body, lineStart, lineEnd, channelIdentifier, parser,
+                        touchedChannels);
+                ret.append(item).append(',').append(status).append('\n');
+                item++;
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        final long storeStart = System.nanoTime();
+        repo.storeAll(touchedChannels.keySet());
+        metrics.recordStore(System.nanoTime() - storeStart);
+        metrics.recordPost(System.nanoTime() - start);
+        LOGGER.debug("Received batch of {} items for {} channels.", item, touchedChannels.size());
+        return ret.toString();
     }
 
     /**
      * <p>
-     * Tries to parse a {@code String} value to an integer.
+     * Handler method for closing a channel, when a dongle stops transmitting data. All remaining data is stored and the
+     * channel identifier becomes available for new dongles.
      * </p>
      *
-     * @param value The {@code String} value to parse.
-     * @return The parsed result as {@code int}.
-     * @throws NumberFormatException If the provided {@code value} is not parseable to an integer.
+     * @param channelIdentifier The identifier of the channel to close. This must be an active channel or the call will
+     *            fail.
      */
-    private int parseIntValue(final String value) {
-        return Integer.valueOf(value);
+    @RequestMapping(method = RequestMethod.GET, path = "/close")
+    public void close(@RequestParam("id") final int channelIdentifier) {
+        LOGGER.debug("Received request to close channel {}", channelIdentifier);
+        Channel channel = channels.releaseChannel(channelIdentifier);
+        if (channel == null) {
+            throw new IllegalStateException(
+                    String.format("Channel with identifier %s does not exist.", channelIdentifier));
+        }
+        repo.store(channel);
     }
-}
 
-/**
- * <p>
- * An enumeration with all the possible data identifiers, expected as part of a data set.
- * </p>
- */
-enum EntryIdentifier {
-    /**
-     * <p>
-     * Identifier for accelerometer data.
-     * </p>
-     */
-    ACC,
-    /**
-     * <p>
-     * Identifier for GPS timestamp in UTC.
-     * </p>
-     */
-    UTC,
     /**
-     * <p>
-     * Identifier for GPS latitude information.
-     * </p>
+     * @param body The compressed message body.
+     * @param contentEncoding The content encoding of the message body.
+     * @return A stream decompressing the message body while it is read. It must be closed to release the native
+     *         memory used for decompression.
+     * @throws IOException If reading the header of the compressed message body fails.
+     * @throws UnsupportedContentEncodingException If the content encoding is not supported.
      */
-    LAT,
+    private InputStream decompress(final InputStream body, final String contentEncoding) throws IOException {
+        switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(body, DECOMPRESSION_BUFFER_SIZE);
+            case "deflate":
+                return new InflaterInputStream(body, new Inflater(), DECOMPRESSION_BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        // An explicitly provided Inflater is not ended by the stream, which would leak its native
+                        // memory.
+                        try {
+                            super.close();
+                        } finally {
+                            inf.end();
+                        }
+                    }
+                };
+            case "identity":
+                return body;
+            default:
+                throw new UnsupportedContentEncodingException(
+                        String.format("Content encoding %s is not supported.", contentEncoding));
+        }
+    }
+
     /**
-     * <p>
-     * Identifier for GPS longitude information.
-     * </p>
+     * @param channelIdentifier The identifier of a channel.
+     * @return The active channel with the provided identifier.
+     * @throws IllegalStateException If there is no active channel with the provided identifier.
      */
-    LNG,
+    private Channel activeChannel(final int channelIdentifier) {
+        Channel ret = channels.getChannel(channelIdentifier);
+        if (ret == null) {
+            throw new IllegalStateException(
+                    String.format("Channel with identifier %s does not exist.", channelIdentifier));
+        }
+        return ret;
+    }
+
     /**
      * <p>
-     * Identifier for altitude information captured by GPS.
+     * Adds received data to a channel and stores it in the repository.
      * </p>
+     *
+     * @param channel The channel the data was received on.
+     * @param data The received data.
      */
-    ALT,
+    private void store(final Channel channel, final InputData data) {
+        channel.addInputData(data);
+        final long storeStart = System.nanoTime();
+        repo.store(channel);
+        metrics.recordStore(System.nanoTime() - storeStart);
+    }
+
     /**
      * <p>
-     * Identifier for GPS speed information.
+     * Processes one item of a batch upload.
      * </p>
+     *
+     * @param body The complete batch.
+     * @param start The index of the first character of the item.
+     * @param end The index after the last character of the item.
+     * @param channelIdentifier The identifier of the channel all items belong to or {@code null} if the item starts
+     *            with its channel identifier.
+     * @param parser The parser used for all items of the batch.
+     * @param touchedChannels The channels data was added to, which is extended by this method.
+     * @return The status of the item.
      */
-    SPD,
+    private BatchItemStatus batchItem(final String body, final int start, final int end,
+            final Integer channelIdentifier, final FreematicsParser parser,
+            final Map<Channel, Channel> touchedChannels) {
+        int bodyStart = start;
+        int identifier;
+        if (channelIdentifier == null) {
+            final int separator = body.indexOf(':', start);
+            if (separator == -1 || separator >= end) {
+                return BatchItemStatus.MALFORMED;
+            }
+            try {
+                identifier = Integer.parseInt(body.substring(start, separator).trim());
+            } catch (final NumberFormatException e) {
+                return BatchItemStatus.MALFORMED;
+            }
+            bodyStart = separator + 1;
+        } else {
+            identifier = channelIdentifier;
+        }
+
+        Channel channel = channels.getChannel(identifier);
+        if (channel == null) {
+            return BatchItemStatus.UNKNOWN_CHANNEL;
+        }
+        try {
+            rateLimiter.acquire(channel);
+        } catch (final RateLimitExceededException e) {
+            return BatchItemStatus.REJECTED;
+        }
+        if (pipeline.isEnabled()) {
+            try {
+                pipeline.submit(channel, body.substring(bodyStart, end));
+            } catch (final IngestQueueFullException e) {
+                return BatchItemStatus.REJECTED;
+            }
+            return BatchItemStatus.OK;
+        }
+        final long parseStart = System.nanoTime();
+        InputData data = parser.parse(body, bodyStart, end);
+        metrics.recordParse(System.nanoTime() - parseStart, data.getAccelerationCount(), parser.getInvalidEntries());
+        channel.addInputData(data);
+        touchedChannels.put(channel, channel);
+        return BatchItemStatus.OK;
+    }
+
     /**
      * <p>
-     * Identifier for GPS Satellite information.
+     * The status of a single item of a batch upload.
      * </p>
      */
-    SAT
+    enum BatchItemStatus {
+        /**
+         * <p>
+         * The item was accepted.
+         * </p>
+         */
+        OK,
+        /**
+         * <p>
+         * The item was not accepted, since it had no valid channel identifier.
+         * </p>
+         */
+        MALFORMED,
+        /**
+         * <p>
+         * The item was not accepted, since its channel does not exist.
+         * </p>
+         */
+        UNKNOWN_CHANNEL,
+        /**
+         * <p>
+         * The item was not accepted, since the ingest queue was full or the vehicle of its channel sent too many
+         * requests. It should be sent again later.
+         * </p>
+         */
+        REJECTED
+    }
 }
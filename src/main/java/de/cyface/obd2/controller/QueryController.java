@@ -0,0 +1,258 @@
+/*
+ * Created on 18.10.26 at 01:24.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.InputData;
+import de.cyface.obd2.persistence.Rollup;
+import de.cyface.obd2.persistence.Trip;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+
+/**
+ * <p>
+ * Class responsible for answering queries for the data of a single vehicle inside a time range. Results are split into
+ * pages, which are returned in the same format as used by the root path of the server. Besides the raw data, the
+ * statistics of the accelerations per time window and the summaries of the trips of a vehicle may be queried, which
+ * are much smaller. For bulk loading, the raw data of a time range is exported as a whole in a format for machines.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@RestController
+public final class QueryController {
+
+    /**
+     * <p>
+     * The name of the response header containing the number of entries inside the queried time range.
+     * </p>
+     */
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    /**
+     * <p>
+     * The largest number of entries returned with one page.
+     * </p>
+     */
+    static final int MAX_PAGE_SIZE = 1000;
+    /**
+     * <p>
+     * The name of the export format producing comma separated values, as encoded by {@link CsvEncoder}.
+     * </p>
+     */
+    static final String CSV_FORMAT = "csv";
+    /**
+     * <p>
+     * The name of the export format producing columnar binary data, as encoded by {@link ColumnarEncoder}.
+     * </p>
+     */
+    static final String COLUMNAR_FORMAT = "columnar";
+
+    /**
+     * <p>
+     * The repository containing all the captured data.
+     * </p>
+     */
+    @Autowired
+    private DataRepository repo;
+
+    /**
+     * <p>
+     * Handler method for querying the data of one vehicle inside a time range. The time of each entry is the timestamp
+     * of its first acceleration. The number of entries inside the time range is returned in the {@code X-Total-Count}
+     * header, so clients know how many pages there are.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number of the vehicle to query the data for.
+     * @param from The start of the time range in milliseconds, inclusive. If not provided, the time range is open to
+     *            the past.
+     * @param to The end of the time range in milliseconds, inclusive. If not provided, the time range is open to the
+     *            future.
+     * @param page The number of the page to return, starting at 0.
+     * @param size The number of entries per page, which must be between 1 and 1000.
+     * @param response The response to write the found entries to.
+     * @throws IOException If anything fails while writing the output.
+     * @throws InvalidQueryException If the page or page size is out of range.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/vehicles/{vin}/data")
+    public void data(@PathVariable("vin") final String vehicleIdentificationNumber,
+            @RequestParam(value = "from", required = false) final Long from,
+            @RequestParam(value = "to", required = false) final Long to,
+            @RequestParam(value = "page", defaultValue = "0") final int page,
+            @RequestParam(value = "size", defaultValue = "100") final int size, final HttpServletResponse response)
+            throws IOException {
+        validatePage(page, size);
+        final long start = from == null ? Long.MIN_VALUE : from;
+        final long end = to == null ? Long.MAX_VALUE : to;
+
+        final int total = repo.countInputData(vehicleIdentificationNumber, start, end);
+        response.setHeader(TOTAL_COUNT_HEADER, String.valueOf(total));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        final Writer writer = response.getWriter();
+        for (final InputData entry : repo.findInputData(vehicleIdentificationNumber, start, end,
+                (int)Math.min((long)page * size, Integer.MAX_VALUE), size)) {
+            writer.write(entry.toString());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * <p>
+     * Handler method for exporting all data of one vehicle inside a time range ordered by time, either as comma
+     * separated values described by {@link CsvEncoder} or in the columnar binary format described by
+     * {@link ColumnarEncoder}. The data is not split into pages, but streamed as it is read from the repository.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number of the vehicle to export the data for.
+     * @param from The start of the time range in milliseconds, inclusive. If not provided, the time range is open to
+     *            the past.
+     * @param to The end of the time range in milliseconds, inclusive. If not provided, the time range is open to the
+     *            future.
+     * @param format The export format, which is either {@code csv} or {@code columnar}.
+     * @param response The response to write the exported data to.
+     * @throws IOException If anything fails while writing the output.
+     * @throws InvalidQueryException If the format is not supported.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/vehicles/{vin}/export")
+    public void export(@PathVariable("vin") final String vehicleIdentificationNumber,
+            @RequestParam(value = "from", required = false) final Long from,
+            @RequestParam(value = "to", required = false) final Long to,
+            @RequestParam(value = "format", defaultValue = CSV_FORMAT) final String format,
+            final HttpServletResponse response) throws IOException {
+        if (!CSV_FORMAT.equals(format) && !COLUMNAR_FORMAT.equals(format)) {
+            throw new InvalidQueryException("Format must be csv or columnar.");
+        }
+        final Iterator<InputData> entries = repo.iterateInputData(vehicleIdentificationNumber,
+                from == null ? Long.MIN_VALUE : from, to == null ? Long.MAX_VALUE : to);
+
+        if (CSV_FORMAT.equals(format)) {
+            response.setContentType(CsvEncoder.CONTENT_TYPE);
+            final CsvEncoder encoder = new CsvEncoder(response.getWriter());
+            while (entries.hasNext()) {
+                encoder.write(entries.next());
+            }
+            encoder.finish();
+        } else {
+            response.setContentType(ColumnarEncoder.CONTENT_TYPE);
+            final ColumnarEncoder encoder = new ColumnarEncoder(response.getOutputStream());
+            while (entries.hasNext()) {
+                encoder.write(entries.next());
+            }
+            encoder.finish();
+        }
+    }
+
+    /**
+     * <p>
+     * Handler method for querying the statistics of the accelerations of one vehicle per time window, as described by
+     * {@link Rollup}. Each window is returned as one line of comma separated values: the start of the window in
+     * milliseconds, the number of samples and the minimum, maximum, mean and root mean square of the x, y and z axis.
+     * Only windows starting inside the time range and containing at least one sample are returned. Paging works as for
+     * the raw data and the number of windows inside the time range is returned in the {@code X-Total-Count} header.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number of the vehicle to query the data for.
+     * @param from The start of the time range in milliseconds, inclusive. If not provided, the time range is open to
+     *            the past.
+     * @param to The end of the time range in milliseconds, inclusive. If not provided, the time range is open to the
+     *            future.
+     * @param page The number of the page to return, starting at 0.
+     * @param size The number of windows per page, which must be between 1 and 1000.
+     * @param response The response to write the found windows to.
+     * @throws IOException If anything fails while writing the output.
+     * @throws InvalidQueryException If the page or page size is out of range.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/vehicles/{vin}/rollups")
+    public void rollups(@PathVariable("vin") final String vehicleIdentificationNumber,
+            @RequestParam(value = "from", required = false) final Long from,
+            @RequestParam(value = "to", required = false) final Long to,
+            @RequestParam(value = "page", defaultValue = "0") final int page,
+            @RequestParam(value = "size", defaultValue = "100") final int size, final HttpServletResponse response)
+            throws IOException {
+        validatePage(page, size);
+        final long start = from == null ? Long.MIN_VALUE : from;
+        final long end = to == null ? Long.MAX_VALUE : to;
+
+        final int total = repo.countRollups(vehicleIdentificationNumber, start, end);
+        response.setHeader(TOTAL_COUNT_HEADER, String.valueOf(total));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        final StringBuilder buffer = new StringBuilder();
+        for (final Rollup rollup : repo.findRollups(vehicleIdentificationNumber, start, end,
+                (int)Math.min((long)page * size, Integer.MAX_VALUE), size)) {
+            rollup.appendTo(buffer);
+            buffer.append('\n');
+        }
+        final Writer writer = response.getWriter();
+        writer.write(buffer.toString());
+        writer.flush();
+    }
+
+    /**
+     * <p>
+     * Handler method for listing the trips of one vehicle, as described by {@link Trip}. The summaries of the trips are
+     * maintained while data is stored, so this does not read the stored data. Each trip is returned as one line of
+     * comma separated values: the number of the trip, its start, end and duration in milliseconds, the distance in
+     * meters, the maximum speed, the number of entries and the number of accelerations. The latest trip is included,
+     * even if it is still ongoing. The number of trips is returned in the {@code X-Total-Count} header.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number of the vehicle to list the trips for.
+     * @param page The number of the page to return, starting at 0.
+     * @param size The number of trips per page, which must be between 1 and 1000.
+     * @param response The response to write the found trips to.
+     * @throws IOException If anything fails while writing the output.
+     * @throws InvalidQueryException If the page or page size is out of range.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/vehicles/{vin}/trips")
+    public void trips(@PathVariable("vin") final String vehicleIdentificationNumber,
+            @RequestParam(value = "page", defaultValue = "0") final int page,
+            @RequestParam(value = "size", defaultValue = "100") final int size, final HttpServletResponse response)
+            throws IOException {
+        validatePage(page, size);
+
+        final int total = repo.countTrips(vehicleIdentificationNumber);
+        response.setHeader(TOTAL_COUNT_HEADER, String.valueOf(total));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        final StringBuilder buffer = new StringBuilder();
+        for (final Trip trip : repo.findTrips(vehicleIdentificationNumber,
+                (int)Math.min((long)page * size, Integer.MAX_VALUE), size)) {
+            trip.appendTo(buffer);
+            buffer.append('\n');
+        }
+        final Writer writer = response.getWriter();
+        writer.write(buffer.toString());
+        writer.flush();
+    }
+
+    /**
+     * @param page The number of the requested page, which must not be negative.
+     * @param size The number of results per page, which must be between 1 and {@link #MAX_PAGE_SIZE}.
+     * @throws InvalidQueryException If the page or page size is out of range.
+     */
+    private static void validatePage(final int page, final int size) {
+        if (page < 0) {
+            throw new InvalidQueryException("Page must not be negative.");
+        }
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new InvalidQueryException("Page size must be between 1 and 1000.");
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Created on 18.10.26 at 01:45.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Limits the rate of requests accepted per vehicle, so a single dongle with buggy firmware flooding the server cannot
+ * monopolize request threads and memory. Each vehicle has a token bucket allowing the configured number of requests per
+ * second on average and bursts of up to the configured size. Requests are counted per vehicle instead of per channel,
+ * so a dongle cannot escape its limit by requesting new channels.
+ * </p>
+ * <p>
+ * The bucket is implemented as a generic cell rate algorithm, which stores only the theoretical arrival time of the
+ * next request per vehicle. Accepting a request moves that time forward by one emission interval with a single
+ * compare and set, so no locks are taken on the hot path.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Component
+public class RateLimiter {
+
+    /**
+     * <p>
+     * Logger for objects of this class. Configure it using SpringBoot settings in
+     * <tt>resources/application.properties</tt>.
+     * </p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimiter.class);
+
+    /**
+     * <p>
+     * Whether requests are limited at all.
+     * </p>
+     */
+    private final boolean enabled;
+    /**
+     * <p>
+     * The time in nanoseconds one request uses up, which is the inverse of the allowed rate.
+     * </p>
+     */
+    private final long emissionInterval;
+    /**
+     * <p>
+     * The maximum time in nanoseconds the theoretical arrival time of a vehicle may be ahead of the current time, which
+     * allows bursts of the configured size.
+     * </p>
+     */
+    private final long burstTolerance;
+    /**
+     * <p>
+     * The theoretical arrival time of the next request per vehicle identification number, in nanoseconds as returned
+     * by {@code System.nanoTime()}.
+     * </p>
+     */
+    private final ConcurrentMap<String, AtomicLong> theoreticalArrivalTimes;
+    /**
+     * <p>
+     * The number of requests rejected since startup.
+     * </p>
+     */
+    private final LongAdder throttled;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code RateLimiter}.
+     * </p>
+     *
+     * @param enabled Whether requests are limited at all.
+     * @param requestsPerSecond The average number of requests per second accepted per vehicle.
+     * @param burst The number of requests per vehicle accepted at once after a period of silence.
+     */
+    @Autowired
+    public RateLimiter(@Value("${freematics.rate-limit.enabled:false}") final boolean enabled,
+            @Value("${freematics.rate-limit.requests-per-second:10}") final double requestsPerSecond,
+            @Value("${freematics.rate-limit.burst:50}") final int burst) {
+        Validate.isTrue(requestsPerSecond > 0.0, "Requests per second must be positive.");
+        Validate.isTrue(burst > 0, "Burst must be positive.");
+        this.enabled = enabled;
+        this.emissionInterval = Math.max(1L, (long)(TimeUnit.SECONDS.toNanos(1L) / requestsPerSecond));
+        this.burstTolerance = emissionInterval * burst;
+        this.theoreticalArrivalTimes = new ConcurrentHashMap<>();
+        this.throttled = new LongAdder();
+    }
+
+    /**
+     * <p>
+     * Accounts for one request on the provided channel, if the vehicle of the channel has not exceeded its limit.
+     * </p>
+     *
+     * @param channel The channel the request was received on.
+     * @throws RateLimitExceededException If the vehicle of the channel exceeded its limit.
+     */
+    public void acquire(final Channel channel) {
+        if (enabled && !tryAcquire(channel.getVehicleIdentificationNumber(), System.nanoTime())) {
+            throw new RateLimitExceededException(String.format("Vehicle %s exceeded its rate limit.",
+                    channel.getVehicleIdentificationNumber()));
+        }
+    }
+
+    /**
+     * <p>
+     * Accounts for one request of a vehicle at the provided point in time, if the vehicle has not exceeded its limit.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number of the vehicle sending the request.
+     * @param now The current time in nanoseconds as returned by {@code System.nanoTime()}.
+     * @return {@code true} if the request was accepted; {@code false} if the vehicle exceeded its limit.
+     */
+    boolean tryAcquire(final String vehicleIdentificationNumber, final long now) {
+        AtomicLong theoreticalArrivalTime = theoreticalArrivalTimes.get(vehicleIdentificationNumber);
+        if (theoreticalArrivalTime == null) {
+            theoreticalArrivalTime = theoreticalArrivalTimes.computeIfAbsent(vehicleIdentificationNumber,
+                    key -> new AtomicLong(now));
+        }
+        while (true) {
+            final long current = theoreticalArrivalTime.get();
+            // Differences instead of comparisons, since nano time values may overflow.
+            final long next = (current - now > 0L ? current : now) + emissionInterval;
+            if (next - now > burstTolerance) {
+                throttled.increment();
+                LOGGER.debug("Throttled request of vehicle {}.", vehicleIdentificationNumber);
+                return false;
+            }
+            if (theoreticalArrivalTime.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Forgets all vehicles, whose bucket is full again. This is called periodically by the Spring scheduler.
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${freematics.rate-limit.cleanup-interval:60000}")
+    public void removeIdleVehicles() {
+        removeIdleVehicles(System.nanoTime());
+    }
+
+    /**
+     * <p>
+     * Forgets all vehicles, whose bucket is full at the provided point in time. Since a full bucket behaves like a new
+     * one, this only releases memory. A request accounted concurrently to removing its vehicle may be lost, which only
+     * ever admits one additional request.
+     * </p>
+     *
+     * @param now The current time in nanoseconds as returned by {@code System.nanoTime()}.
+     * @return The number of vehicles removed.
+     */
+    int removeIdleVehicles(final long now) {
+        int ret = 0;
+        for (final Map.Entry<String, AtomicLong> entry : theoreticalArrivalTimes.entrySet()) {
+            if (entry.getValue().get() - now <= 0L
+                    && theoreticalArrivalTimes.remove(entry.getKey(), entry.getValue())) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return The number of vehicles with requests in their bucket.
+     */
+    public int getTrackedVehicles() {
+        return theoreticalArrivalTimes.size();
+    }
+
+    /**
+     * @return The number of requests rejected since startup.
+     */
+    public long getThrottled() {
+        return throttled.sum();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Created on 18.10.26 at 02:18.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.VehicleReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * <p>
+ * Class responsible for reporting a summary of the data of every vehicle, as described by {@link VehicleReport}. The
+ * data of the vehicles is read in parallel.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@RestController
+public final class ReportController {
+
+    /**
+     * <p>
+     * The repository containing all the captured data.
+     * </p>
+     */
+    @Autowired
+    private DataRepository repo;
+
+    /**
+     * <p>
+     * Handler method for reporting all vehicles ordered by vehicle identification number. Each vehicle is returned as
+     * one line of comma separated values: the vehicle identification number, the number of entries, the number of
+     * accelerations, the largest acceleration, the distance in meters and the maximum speed. The number of vehicles is
+     * returned in the {@code X-Total-Count} header.
+     * </p>
+     *
+     * @param response The response to write the report to.
+     * @throws IOException If anything fails while writing the output.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/report")
+    public void report(final HttpServletResponse response) throws IOException {
+        final List<VehicleReport> reports = repo.report();
+        response.setHeader(QueryController.TOTAL_COUNT_HEADER, String.valueOf(reports.size()));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        final StringBuilder buffer = new StringBuilder();
+        for (final VehicleReport report : reports) {
+            report.appendTo(buffer);
+            buffer.append('\n');
+        }
+        final Writer writer = response.getWriter();
+        writer.write(buffer.toString());
+        writer.flush();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Created on 18.10.26 at 02:06.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+/**
+ * <p>
+ * Tracks the sequence numbers received on one channel, to detect duplicated and missing datagrams. The window
+ * remembers the highest sequence number received and which of the {@link #SIZE} sequence numbers below it were
+ * received as well, in a single bit mask. Only sequence numbers recorded in the window are duplicates. Datagrams with a
+ * sequence number below the window may be data sent again after a long loss, so they are not rejected, but left to
+ * the deduplication of the repository. They are not recorded, since the window does not reach them anymore.
+ * </p>
+ * <p>
+ * Sequence numbers skipped when the highest sequence number increases are counted as missing, until they arrive late
+ * while still inside the window. Sequence numbers below the first one received on the channel were never skipped, so
+ * they are not counted as missing.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class SequenceWindow {
+
+    /**
+     * <p>
+     * The number of sequence numbers tracked, including the highest one.
+     * </p>
+     */
+    static final int SIZE = Long.SIZE;
+
+    /**
+     * <p>
+     * Whether any sequence number was received yet.
+     * </p>
+     */
+    private boolean started;
+    /**
+     * <p>
+     * The first sequence number received.
+     * </p>
+     */
+    private long first;
+    /**
+     * <p>
+     * The highest sequence number received.
+     * </p>
+     */
+    private long highest;
+    /**
+     * <p>
+     * The sequence numbers received inside the window. Bit {@code i} is set if {@code highest - i} was received.
+     * </p>
+     */
+    private long received;
+    /**
+     * <p>
+     * The number of sequence numbers skipped, which did not arrive yet.
+     * </p>
+     */
+    private long missing;
+
+    /**
+     * @param sequence The sequence number of a received datagram.
+     * @return {@code true} if the sequence number was recorded as received; {@code false} otherwise, which includes
+     *         sequence numbers below the window.
+     */
+    boolean isDuplicate(final long sequence) {
+        if (!started || sequence > highest) {
+            return false;
+        }
+        final long offset = highest - sequence;
+        return offset < SIZE && (received & (1L << offset)) != 0L;
+    }
+
+    /**
+     * <p>
+     * Records a sequence number as received, which must not be a duplicate. Sequence numbers below the window are
+     * ignored.
+     * </p>
+     *
+     * @param sequence The sequence number of a received datagram.
+     */
+    void accept(final long sequence) {
+        if (!started) {
+            started = true;
+            first = sequence;
+            highest = sequence;
+            received = 1L;
+        } else if (sequence > highest) {
+            final long shift = sequence - highest;
+            missing += shift - 1L;
+            received = shift >= SIZE ? 1L : (received << shift) | 1L;
+            highest = sequence;
+        } else if (highest - sequence < SIZE) {
+            received |= 1L << (highest - sequence);
+            if (sequence > first) {
+                missing--;
+            }
+        }
+    }
+
+    /**
+     * @return The number of sequence numbers skipped, which did not arrive yet.
+     */
+    long getMissing() {
+        return missing;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Created on 18.10.26 at 01:55.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.Location;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * <p>
+ * Class responsible for answering which vehicles have been at a place, across all vehicles. Each found place is
+ * returned as one line of comma separated values: the vehicle identification number, the time in milliseconds, the
+ * latitude and the longitude.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@RestController
+public final class SpatialQueryController {
+
+    /**
+     * <p>
+     * The largest number of locations returned by one query.
+     * </p>
+     */
+    static final int MAX_LIMIT = 10_000;
+
+    /**
+     * <p>
+     * The repository containing all the captured data.
+     * </p>
+     */
+    @Autowired
+    private DataRepository repo;
+
+    /**
+     * <p>
+     * Handler method for finding the places inside a bounding box, where any vehicle has been, ordered by vehicle
+     * identification number and time.
+     * </p>
+     *
+     * @param minLatitude The southern border of the area in degrees, inclusive.
+     * @param minLongitude The western border of the area in degrees, inclusive.
+     * @param maxLatitude The northern border of the area in degrees, inclusive.
+     * @param maxLongitude The eastern border of the area in degrees, inclusive.
+     * @param limit The maximum number of locations to return, which must be between 1 and 10000.
+     * @param response The response to write the found locations to.
+     * @throws IOException If anything fails while writing the output.
+     * @throws InvalidQueryException If a border is larger than the opposite one or the limit is out of range.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/locations")
+    public void inArea(@RequestParam("minLat") final double minLatitude,
+            @RequestParam("minLon") final double minLongitude, @RequestParam("maxLat") final double maxLatitude,
+            @RequestParam("maxLon") final double maxLongitude,
+            @RequestParam(value = "limit", defaultValue = "1000") final int limit, final HttpServletResponse response)
+            throws IOException {
+        if (minLatitude > maxLatitude) {
+            throw new InvalidQueryException("Minimum latitude must not be larger than maximum latitude.");
+        }
+        if (minLongitude > maxLongitude) {
+            throw new InvalidQueryException("Minimum longitude must not be larger than maximum longitude.");
+        }
+        validateLimit(limit);
+        write(repo.findLocationsInArea(minLatitude, minLongitude, maxLatitude, maxLongitude, limit), response);
+    }
+
+    /**
+     * <p>
+     * Handler method for finding the places around a center, where any vehicle has been, the nearest first.
+     * </p>
+     *
+     * @param latitude The latitude of the center in degrees.
+     * @param longitude The longitude of the center in degrees.
+     * @param radius The largest distance from the center in meters.
+     * @param limit The maximum number of locations to return, which must be between 1 and 10000.
+     * @param response The response to write the found locations to.
+     * @throws IOException If anything fails while writing the output.
+     * @throws InvalidQueryException If the radius is negative or the limit is out of range.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/locations/near")
+    public void near(@RequestParam("lat") final double latitude, @RequestParam("lon") final double longitude,
+            @RequestParam("radius") final double radius,
+            @RequestParam(value = "limit", defaultValue = "1000") final int limit, final HttpServletResponse response)
+            throws IOException {
+        if (!(radius >= 0.0)) {
+            throw new InvalidQueryException("Radius must not be negative.");
+        }
+        validateLimit(limit);
+        write(repo.findLocationsNear(latitude, longitude, radius, limit), response);
+    }
+
+    /**
+     * @param limit The maximum number of locations to return.
+     * @throws InvalidQueryException If the limit is not between 1 and {@link #MAX_LIMIT}.
+     */
+    private static void validateLimit(final int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new InvalidQueryException("Limit must be between 1 and 10000.");
+        }
+    }
+
+    /**
+     * @param locations The locations to write.
+     * @param response The response to write the locations to.
+     * @throws IOException If anything fails while writing the output.
+     */
+    private void write(final List<Location> locations, final HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        final StringBuilder buffer = new StringBuilder();
+        for (final Location location : locations) {
+            location.appendTo(buffer);
+            buffer.append('\n');
+        }
+        final Writer writer = response.getWriter();
+        writer.write(buffer.toString());
+        writer.flush();
+    }
+}
@@ -0,0 +1,542 @@
+/*
+ * Created on 18.10.26 at 02:06.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.InputData;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Receives data from dongles transmitting over UDP instead of HTTP, if enabled. Each datagram contains exactly one
+ * message in plain ASCII:
+ * </p>
+ * <ul>
+ * <li>{@code VIN=<vehicle identification number>} allocates a new channel, like a request to <tt>/push</tt>. The
+ * answer is {@code CH:<channel identifier>}.</li>
+ * <li>{@code <channel identifier>:<sequence number>:<message body>} transmits data, like a request to <tt>/post</tt>.
+ * The message body is in the textual Freematics format. The answer is {@code ACK:<sequence number>}. Dongles should
+ * send a datagram again if it is not acknowledged in time.</li>
+ * </ul>
+ * <p>
+ * Since UDP may lose, duplicate and reorder datagrams, the sequence numbers of each channel are tracked in a
+ * {@link SequenceWindow}. Duplicates are acknowledged again, but not stored. Datagrams too old for the window are
+ * stored and acknowledged, so data sent again after a long loss is kept, while replays of it are dropped by the
+ * deduplication of the {@link DataRepository}. Data for an unknown channel is answered with
+ * {@code ERR:<sequence number>}, after which the dongle should allocate a new channel. Data rejected by the
+ * {@link RateLimiter} or a full {@link IngestPipeline} is not acknowledged, so the dongle sends it again later.
+ * Channels are never closed via UDP, but are closed by the {@link ChannelEvictor} when they become idle.
+ * </p>
+ * <p>
+ * A single thread receives all datagrams into a direct buffer, which is reused, as are the buffers for the message
+ * body and the answer. Message bodies are parsed directly from bytes, so no {@code String} is created per datagram.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Component
+public class UdpListener {
+
+    /**
+     * <p>
+     * Logger for objects of this class. Configure it using SpringBoot settings in
+     * <tt>resources/application.properties</tt>.
+     * </p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(UdpListener.class);
+    /**
+     * <p>
+     * The largest possible size of a datagram in bytes.
+     * </p>
+     */
+    private static final int MAX_DATAGRAM_SIZE = 65_536;
+    /**
+     * <p>
+     * The size of the buffer for answers in bytes.
+     * </p>
+     */
+    private static final int ANSWER_SIZE = 32;
+    /**
+     * <p>
+     * The prefix of datagrams allocating a new channel.
+     * </p>
+     */
+    private static final byte[] HANDSHAKE = "VIN=".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * <p>
+     * The prefix of answers to datagrams allocating a new channel.
+     * </p>
+     */
+    private static final byte[] CHANNEL = "CH:".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * <p>
+     * The prefix of answers acknowledging data.
+     * </p>
+     */
+    private static final byte[] ACKNOWLEDGED = "ACK:".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * <p>
+     * The prefix of answers to data for unknown channels.
+     * </p>
+     */
+    private static final byte[] UNKNOWN_CHANNEL = "ERR:".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * <p>
+     * An object managing the active {@link Channel} objects.
+     * </p>
+     */
+    private final Channels channels;
+    /**
+     * <p>
+     * The repository used to store all the captured data to.
+     * </p>
+     */
+    private final DataRepository repo;
+    /**
+     * <p>
+     * The pipeline processing received data asynchronously, if enabled.
+     * </p>
+     */
+    private final IngestPipeline pipeline;
+    /**
+     * <p>
+     * The measurements collected while handling datagrams.
+     * </p>
+     */
+    private final IngestMetrics metrics;
+    /**
+     * <p>
+     * The limiter for the rate of data transmissions per vehicle.
+     * </p>
+     */
+    private final RateLimiter rateLimiter;
+    /**
+     * <p>
+     * Whether datagrams are received at all.
+     * </p>
+     */
+    private final boolean enabled;
+    /**
+     * <p>
+     * The port to receive datagrams on or 0 to use any free port.
+     * </p>
+     */
+    private final int port;
+    /**
+     * <p>
+     * The sequence numbers received per channel slot. Keying by slot instead of channel identifier lets a channel
+     * reusing the slot replace the sequence of the released one, so the map holds at most one entry per slot. Only
+     * accessed by the receiving thread.
+     * </p>
+     */
+    private final Map<Integer, ChannelSequence> sequences;
+    /**
+     * <p>
+     * The number of datagrams received since startup.
+     * </p>
+     */
+    private final AtomicLong received;
+    /**
+     * <p>
+     * The number of duplicated datagrams received since startup.
+     * </p>
+     */
+    private final AtomicLong duplicates;
+    /**
+     * <p>
+     * The number of datagrams that were skipped since startup and did not arrive late.
+     * </p>
+     */
+    private final AtomicLong lost;
+    /**
+     * <p>
+     * The number of datagrams received since startup, which were not valid.
+     * </p>
+     */
+    private final AtomicLong malformed;
+
+    /**
+     * <p>
+     * The channel datagrams are received on, while this listener is running.
+     * </p>
+     */
+    private DatagramChannel datagramChannel;
+    /**
+     * <p>
+     * The thread receiving datagrams, while this listener is running.
+     * </p>
+     */
+    private Thread receiver;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code UdpListener}, which is not yet receiving datagrams.
+     * </p>
+     *
+     * @param channels An object managing the active {@link Channel} objects.
+     * @param repo The repository used to store all the captured data to.
+     * @param pipeline The pipeline processing received data asynchronously, if enabled.
+     * @param metrics The measurements collected while handling datagrams.
+     * @param rateLimiter The limiter for the rate of data transmissions per vehicle.
+     * @param enabled Whether datagrams are received at all.
+     * @param port The port to receive datagrams on or 0 to use any free port.
+     */
+    @Autowired
+    public UdpListener(final Channels channels, final DataRepository repo, final IngestPipeline pipeline,
+            final IngestMetrics metrics, final RateLimiter rateLimiter,
+            @Value("${freematics.udp.enabled:false}") final boolean enabled,
+            @Value("${freematics.udp.port:8081}") final int port) {
+        Validate.notNull(channels);
+        Validate.notNull(repo);
+        Validate.notNull(pipeline);
+        Validate.notNull(metrics);
+        Validate.notNull(rateLimiter);
+        Validate.isTrue(port >= 0 && port <= 65535, "Port must be between 0 and 65535.");
+        this.channels = channels;
+        this.repo = repo;
+        this.pipeline = pipeline;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+        this.enabled = enabled;
+        this.port = port;
+        this.sequences = new HashMap<>();
+        this.received = new AtomicLong();
+        this.duplicates = new AtomicLong();
+        this.lost = new AtomicLong();
+        this.malformed = new AtomicLong();
+    }
+
+    /**
+     * <p>
+     * Starts receiving datagrams, if this listener is enabled.
+     * </p>
+     *
+     * @throws IOException If the port can not be opened.
+     */
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        if (!enabled || receiver != null) {
+            return;
+        }
+        datagramChannel = DatagramChannel.open();
+        datagramChannel.bind(new InetSocketAddress(port));
+        receiver = new Thread(this::receive, "udp-listener");
+        receiver.setDaemon(true);
+        receiver.start();
+        LOGGER.info("Receiving datagrams on port {}.", getPort());
+    }
+
+    /**
+     * <p>
+     * Stops receiving datagrams. Datagrams already received are processed before.
+     * </p>
+     *
+     * @throws IOException If closing the port fails.
+     * @throws InterruptedException If interrupted while waiting for the receiving thread to finish.
+     */
+    @PreDestroy
+    public synchronized void stop() throws IOException, InterruptedException {
+        if (receiver == null) {
+            return;
+        }
+        datagramChannel.close();
+        receiver.join();
+        receiver = null;
+    }
+
+    /**
+     * @return The port datagrams are received on or -1 if this listener is not running.
+     * @throws IOException If the port can not be determined.
+     */
+    public synchronized int getPort() throws IOException {
+        if (datagramChannel == null || !datagramChannel.isOpen()) {
+            return -1;
+        }
+        return ((InetSocketAddress)datagramChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * @return The number of datagrams received since startup.
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return The number of duplicated datagrams received since startup.
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    /**
+     * @return The number of datagrams that were skipped since startup and did not arrive late.
+     */
+    public long getLost() {
+        return lost.get();
+    }
+
+    /**
+     * @return The number of datagrams received since startup, which were not valid.
+     */
+    public long getMalformed() {
+        return malformed.get();
+    }
+
+    /**
+     * @return The number of channel slots sequence numbers are remembered for. Only exact while no datagrams are
+     *         received.
+     */
+    int getSequenceCount() {
+        return sequences.size();
+    }
+
+    /**
+     * <p>
+     * The loop run by the receiving thread until the port is closed.
+     * </p>
+     */
+    private void receive() {
+        final ByteBuffer datagram = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+        final ByteBuffer answer = ByteBuffer.allocateDirect(ANSWER_SIZE);
+        final byte[] message = new byte[MAX_DATAGRAM_SIZE];
+        final FreematicsParser parser = new FreematicsParser();
+        while (true) {
+            try {
+                datagram.clear();
+                final SocketAddress sender = datagramChannel.receive(datagram);
+                datagram.flip();
+                final int length = datagram.remaining();
+                datagram.get(message, 0, length);
+                received.incrementAndGet();
+
+                answer.clear();
+                handle(message, length, parser, answer);
+                answer.flip();
+                if (answer.hasRemaining()) {
+                    datagramChannel.send(answer, sender);
+                }
+            } catch (final ClosedChannelException e) {
+                return;
+            } catch (final IOException | RuntimeException e) {
+                LOGGER.warn("Failed to handle datagram.", e);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Handles one datagram.
+     * </p>
+     *
+     * @param message The buffer containing the datagram.
+     * @param length The size of the datagram in bytes.
+     * @param parser The parser for message bodies.
+     * @param answer The buffer to write the answer to, which stays empty if there is no answer.
+     */
+    private void handle(final byte[] message, final int length, final FreematicsParser parser,
+            final ByteBuffer answer) {
+        if (startsWith(message, length, HANDSHAKE)) {
+            final long start = System.nanoTime();
+            final String vehicleIdentificationNumber = new String(message, HANDSHAKE.length,
+                    length - HANDSHAKE.length, StandardCharsets.US_ASCII).trim();
+            if (vehicleIdentificationNumber.isEmpty()) {
+                malformed.incrementAndGet();
+                return;
+            }
+            Channel channel = channels.getNextFreeChannel(vehicleIdentificationNumber);
+            metrics.recordPush(System.nanoTime() - start);
+            answer.put(CHANNEL);
+            putDecimal(answer, channel.getChannelIdentifier());
+            return;
+        }
+
+        final int channelEnd = indexOf(message, 0, length, (byte)':');
+        final int sequenceEnd = indexOf(message, channelEnd + 1, length, (byte)':');
+        final long channelIdentifier = parseDecimal(message, 0, channelEnd);
+        final long sequence = parseDecimal(message, channelEnd + 1, sequenceEnd);
+        if (sequenceEnd == -1 || channelIdentifier < 0L || channelIdentifier > Integer.MAX_VALUE || sequence < 0L) {
+            malformed.incrementAndGet();
+            return;
+        }
+
+        final long start = System.nanoTime();
+        Channel channel = channels.getChannel((int)channelIdentifier);
+        if (channel == null) {
+            answer.put(UNKNOWN_CHANNEL);
+            putDecimal(answer, sequence);
+            return;
+        }
+        final int slot = Channels.slot(channel.getChannelIdentifier());
+        ChannelSequence channelSequence = sequences.get(slot);
+        if (channelSequence == null || channelSequence.channel != channel) {
+            // The slot was released and allocated again since the last datagram.
+            channelSequence = new ChannelSequence(channel);
+            sequences.put(slot, channelSequence);
+        }
+        if (channelSequence.window.isDuplicate(sequence)) {
+            duplicates.incrementAndGet();
+            answer.put(ACKNOWLEDGED);
+            putDecimal(answer, sequence);
+            return;
+        }
+
+        try {
+            rateLimiter.acquire(channel);
+            final long parseStart = System.nanoTime();
+            InputData data = parser.parse(message, sequenceEnd + 1, length - sequenceEnd - 1);
+            metrics.recordParse(System.nanoTime() - parseStart, data.getAccelerationCount(),
+                    parser.getInvalidEntries());
+            if (pipeline.isEnabled()) {
+                pipeline.submit(channel, data);
+            } else {
+                channel.addInputData(data);
+                final long storeStart = System.nanoTime();
+                repo.store(channel);
+                metrics.recordStore(System.nanoTime() - storeStart);
+            }
+        } catch (final RateLimitExceededException | IngestQueueFullException e) {
+            LOGGER.debug("Rejected datagram {} on channel {}: {}", sequence, channelIdentifier, e.getMessage());
+            return;
+        }
+        // Only stored data is recorded, so rejected datagrams are accepted when they are sent again.
+        final long missingBefore = channelSequence.window.getMissing();
+        channelSequence.window.accept(sequence);
+        lost.addAndGet(channelSequence.window.getMissing() - missingBefore);
+        metrics.recordPost(System.nanoTime() - start);
+        answer.put(ACKNOWLEDGED);
+        putDecimal(answer, sequence);
+    }
+
+    /**
+     * @param message The buffer containing a datagram.
+     * @param length The size of the datagram in bytes.
+     * @param prefix The expected prefix.
+     * @return Whether the datagram starts with the prefix.
+     */
+    private static boolean startsWith(final byte[] message, final int length, final byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (message[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param message The buffer containing a datagram.
+     * @param from The index to start searching at.
+     * @param length The size of the datagram in bytes.
+     * @param value The byte to search for.
+     * @return The index of the first occurrence of the byte at or after {@code from} or -1 if there is none.
+     */
+    private static int indexOf(final byte[] message, final int from, final int length, final byte value) {
+        if (from < 0) {
+            return -1;
+        }
+        for (int i = from; i < length; i++) {
+            if (message[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param message The buffer containing a datagram.
+     * @param start The index of the first digit.
+     * @param end The index after the last digit.
+     * @return The parsed non negative number or -1 if the range is empty, too long or contains anything but digits.
+     */
+    private static long parseDecimal(final byte[] message, final int start, final int end) {
+        if (start < 0 || end <= start || end - start > 18) {
+            return -1L;
+        }
+        long ret = 0L;
+        for (int i = start; i < end; i++) {
+            final int digit = message[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1L;
+            }
+            ret = ret * 10L + digit;
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Writes a non negative number as ASCII digits.
+     * </p>
+     *
+     * @param buffer The buffer to write to.
+     * @param value The number to write.
+     */
+    private static void putDecimal(final ByteBuffer buffer, final long value) {
+        long divisor = 1L;
+        while (value / divisor >= 10L) {
+            divisor *= 10L;
+        }
+        for (; divisor > 0L; divisor /= 10L) {
+            buffer.put((byte)('0' + value / divisor % 10L));
+        }
+    }
+
+    /**
+     * <p>
+     * The sequence numbers received on one channel. The channel is kept to notice when its slot is reused.
+     * </p>
+     */
+    private static final class ChannelSequence {
+        /**
+         * <p>
+         * The channel the sequence numbers were received on.
+         * </p>
+         */
+        private final Channel channel;
+        /**
+         * <p>
+         * The sequence numbers received on the channel.
+         * </p>
+         */
+        private final SequenceWindow window;
+
+        /**
+         * @param channel The channel the sequence numbers are received on.
+         */
+        ChannelSequence(final Channel channel) {
+            this.channel = channel;
+            this.window = new SequenceWindow();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Created on 18.10.26 at 01:10.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <p>
+ * A list only supporting appending elements to its end, which allows reading without any locking concurrently to one
+ * writer. Elements are stored in chunks, that double in size and are never copied, once allocated. An element is
+ * published to readers by a write to the volatile size of the list, after it has been placed in its chunk.
+ * </p>
+ * <p>
+ * Calls to {@link #add(Object)} must be synchronized externally, while all reading methods may be called from any
+ * thread at any time. A reader sees all elements up to the size it read last.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ * @param <E> The type of the elements stored in this list.
+ */
+final class AppendOnlyList<E> {
+    /**
+     * <p>
+     * The binary logarithm of the size of the first chunk.
+     * </p>
+     */
+    private static final int FIRST_CHUNK_SHIFT = 4;
+    /**
+     * <p>
+     * The size of the first chunk. Every following chunk is twice as large as the previous one.
+     * </p>
+     */
+    private static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_SHIFT;
+    /**
+     * <p>
+     * The maximum number of chunks, which is sufficient to address {@code Integer.MAX_VALUE} elements.
+     * </p>
+     */
+    private static final int MAX_CHUNKS = Integer.SIZE - FIRST_CHUNK_SHIFT;
+
+    /**
+     * <p>
+     * The chunks containing the elements of this list. Chunks are allocated lazily.
+     * </p>
+     */
+    private final Object[][] chunks;
+    /**
+     * <p>
+     * The number of elements published to readers.
+     * </p>
+     */
+    private volatile int size;
+
+    /**
+     * <p>
+     * Creates a new empty list.
+     * </p>
+     */
+    AppendOnlyList() {
+        this.chunks = new Object[MAX_CHUNKS][];
+    }
+
+    /**
+     * <p>
+     * Appends an element to the end of this list. Calls to this method must be synchronized by the caller.
+     * </p>
+     *
+     * @param element The element to append.
+     */
+    void add(final E element) {
+        Validate.notNull(element);
+        final int index = size;
+        Validate.validState(index < Integer.MAX_VALUE - FIRST_CHUNK_SIZE, "List is full.");
+        final int chunk = chunkOf(index);
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Object[FIRST_CHUNK_SIZE << chunk];
+        }
+        chunks[chunk][offsetOf(index, chunk)] = element;
+        size = index + 1;
+    }
+
+    /**
+     * @param index The index of the element to get.
+     * @return The element at the provided index.
+     * @throws IndexOutOfBoundsException If the element at the index was not published yet.
+     */
+    @SuppressWarnings("unchecked")
+    E get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d is out of bounds.", index));
+        }
+        final int chunk = chunkOf(index);
+        return (E)chunks[chunk][offsetOf(index, chunk)];
+    }
+
+    /**
+     * @return The number of published elements. Elements added concurrently may not be included.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index An index of an element.
+     * @return The chunk containing the element with the provided index.
+     */
+    private static int chunkOf(final int index) {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(index + FIRST_CHUNK_SIZE) - FIRST_CHUNK_SHIFT;
+    }
+
+    /**
+     * @param index An index of an element.
+     * @param chunk The chunk containing the element.
+     * @return The position of the element inside its chunk.
+     */
+    private static int offsetOf(final int index, final int chunk) {
+        return index + FIRST_CHUNK_SIZE - (FIRST_CHUNK_SIZE << chunk);
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Created on 18.10.26 at 01:41.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Encodes a block of consecutive {@link InputData} entries of one vehicle into a compact byte array and back. The
+ * encoding exploits that consecutive values of a time series are close to each other:
+ * </p>
+ * <ul>
+ * <li>Acceleration timestamps are stored as the difference of consecutive differences, which is zero for samples taken
+ * at a constant rate.</li>
+ * <li>Acceleration values, GPS times, altitudes and the number of satellites are stored as the difference to the
+ * previous value.</li>
+ * <li>Floating point GPS values are stored as the exclusive or of their bits with the previous value, which has only a
+ * few significant bits for values that hardly change.</li>
+ * </ul>
+ * <p>
+ * All numbers are written as variable length integers with seven bits per byte, signed differences in zigzag encoding.
+ * The encoding is lossless, so decoding returns entries equal to the encoded ones.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class BlockCodec {
+
+    /**
+     * <p>
+     * The initial capacity of the buffer used for encoding a block, which grows as required.
+     * </p>
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * <p>
+     * Private constructor for utility class.
+     * </p>
+     */
+    private BlockCodec() {
+        // Nothing to do here.
+    }
+
+    /**
+     * @param entries The entries to encode.
+     * @param count The number of entries from the start of the array to encode.
+     * @return The encoded entries in an array of exactly the required size.
+     */
+    static byte[] encode(final InputData[] entries, final int count) {
+        Encoder encoder = new Encoder();
+        for (int i = 0; i < count; i++) {
+            encoder.write(entries[i]);
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * @param block An array created by {@link #encode(InputData[], int)}.
+     * @param count The number of entries encoded in the array.
+     * @return The decoded entries.
+     */
+    static InputData[] decode(final byte[] block, final int count) {
+        Decoder decoder = new Decoder(block);
+        InputData[] ret = new InputData[count];
+        for (int i = 0; i < count; i++) {
+            ret[i] = decoder.read();
+        }
+        return ret;
+    }
+
+    /**
+     * @param value A signed value.
+     * @return The value in zigzag encoding, which maps values of small magnitude to small unsigned values.
+     */
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * @param value A value in zigzag encoding.
+     * @return The signed value.
+     */
+    private static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    /**
+     * <p>
+     * Writes the entries of one block, remembering the previous values to encode differences.
+     * </p>
+     */
+    private static final class Encoder {
+        /**
+         * <p>
+         * The encoded bytes.
+         * </p>
+         */
+        private byte[] buffer = new byte[INITIAL_CAPACITY];
+        /**
+         * <p>
+         * The number of encoded bytes.
+         * </p>
+         */
+        private int length;
+        /**
+         * <p>
+         * The previous acceleration timestamp.
+         * </p>
+         */
+        private long timestamp;
+        /**
+         * <p>
+         * The previous difference between two acceleration timestamps.
+         * </p>
+         */
+        private long timestampDelta;
+        /**
+         * <p>
+         * The previous acceleration in device local x direction.
+         * </p>
+         */
+        private int ax;
+        /**
+         * <p>
+         * The previous acceleration in device local y direction.
+         * </p>
+         */
+        private int ay;
+        /**
+         * <p>
+         * The previous acceleration in device local z direction.
+         * </p>
+         */
+        private int az;
+        /**
+         * <p>
+         * The previous GPS time.
+         * </p>
+         */
+        private long gpsTime;
+        /**
+         * <p>
+         * The bits of the previous latitude.
+         * </p>
+         */
+        private long latitude;
+        /**
+         * <p>
+         * The bits of the previous longitude.
+         * </p>
+         */
+        private long longitude;
+        /**
+         * <p>
+         * The previous altitude.
+         * </p>
+         */
+        private int altitude;
+        /**
+         * <p>
+         * The bits of the previous GPS speed.
+         * </p>
+         */
+        private long gpsSpeed;
+        /**
+         * <p>
+         * The previous number of satellites.
+         * </p>
+         */
+        private int satellites;
+
+        /**
+         * @param entry The next entry to encode.
+         */
+        void write(final InputData entry) {
+            final GpsData gpsData = entry.getGpsData();
+            writeVarint(((long)entry.getAccelerationCount() << 1) | (gpsData == null ? 0L : 1L));
+            if (gpsData != null) {
+                writeVarint(zigzag(gpsData.getGpsTime() - gpsTime));
+                gpsTime = gpsData.getGpsTime();
+                latitude = writeXor(gpsData.getLatitude(), latitude);
+                longitude = writeXor(gpsData.getLongitude(), longitude);
+                writeVarint(zigzag(gpsData.getAltitude() - altitude));
+                altitude = gpsData.getAltitude();
+                gpsSpeed = writeXor(gpsData.getGpsSpeed(), gpsSpeed);
+                writeVarint(zigzag(gpsData.getSatellites() - satellites));
+                satellites = gpsData.getSatellites();
+            }
+            for (int i = 0; i < entry.getAccelerationCount(); i++) {
+                final long delta = entry.getAccelerationTimestamp(i) - timestamp;
+                writeVarint(zigzag(delta - timestampDelta));
+                timestamp = entry.getAccelerationTimestamp(i);
+                timestampDelta = delta;
+                writeVarint(zigzag(entry.getAx(i) - ax));
+                writeVarint(zigzag(entry.getAy(i) - ay));
+                writeVarint(zigzag(entry.getAz(i) - az));
+                ax = entry.getAx(i);
+                ay = entry.getAy(i);
+                az = entry.getAz(i);
+            }
+        }
+
+        /**
+         * @param value The floating point value to write.
+         * @param previous The bits of the previously written value of the same kind.
+         * @return The bits of the written value.
+         */
+        private long writeXor(final double value, final long previous) {
+            final long bits = Double.doubleToRawLongBits(value);
+            // Small changes only flip low mantissa bits, which leaves a small number taking only a few bytes.
+            writeVarint(bits ^ previous);
+            return bits;
+        }
+
+        /**
+         * @param value The value to write as an unsigned variable length integer.
+         */
+        private void writeVarint(final long value) {
+            if (buffer.length - length < 10) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0L) {
+                buffer[length++] = (byte)((remaining & 0x7F) | 0x80);
+                remaining >>>= 7;
+            }
+            buffer[length++] = (byte)remaining;
+        }
+
+        /**
+         * @return The encoded bytes.
+         */
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+
+    /**
+     * <p>
+     * Reads the entries of one block, remembering the previous values to decode differences.
+     * </p>
+     */
+    private static final class Decoder {
+        /**
+         * <p>
+         * The encoded bytes.
+         * </p>
+         */
+        private final byte[] buffer;
+        /**
+         * <p>
+         * The position of the next byte to read.
+         * </p>
+         */
+        private int position;
+        /**
+         * <p>
+         * The previous acceleration timestamp.
+         * </p>
+         */
+        private long timestamp;
+        /**
+         * <p>
+         * The previous difference between two acceleration timestamps.
+         * </p>
+         */
+        private long timestampDelta;
+        /**
+         * <p>
+         * The previous acceleration in device local x direction.
+         * </p>
+         */
+        private int ax;
+        /**
+         * <p>
+         * The previous acceleration in device local y direction.
+         * </p>
+         */
+        private int ay;
+        /**
+         * <p>
+         * The previous acceleration in device local z direction.
+         * </p>
+         */
+        private int az;
+        /**
+         * <p>
+         * The previous GPS time.
+         * </p>
+         */
+        private long gpsTime;
+        /**
+         * <p>
+         * The bits of the previous latitude.
+         * </p>
+         */
+        private long latitude;
+        /**
+         * <p>
+         * The bits of the previous longitude.
+         * </p>
+         */
+        private long longitude;
+        /**
+         * <p>
+         * The previous altitude.
+         * </p>
+         */
+        private int altitude;
+        /**
+         * <p>
+         * The bits of the previous GPS speed.
+         * </p>
+         */
+        private long gpsSpeed;
+        /**
+         * <p>
+         * The previous number of satellites.
+         * </p>
+         */
+        private int satellites;
+
+        /**
+         * @param buffer The encoded bytes.
+         */
+        Decoder(final byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * @return The next decoded entry.
+         */
+        InputData read() {
+            final long header = readVarint();
+            final int accelerationCount = (int)(header >>> 1);
+            InputData ret = new InputData();
+            if ((header & 1L) != 0L) {
+                gpsTime += unzigzag(readVarint());
+                latitude ^= readVarint();
+                longitude ^= readVarint();
+                altitude += (int)unzigzag(readVarint());
+                gpsSpeed ^= readVarint();
+                satellites += (int)unzigzag(readVarint());
+                ret.addGpsData(new GpsData(gpsTime, Double.longBitsToDouble(latitude),
+                        Double.longBitsToDouble(longitude), altitude, Double.longBitsToDouble(gpsSpeed), satellites));
+            }
+            for (int i = 0; i < accelerationCount; i++) {
+                timestampDelta += unzigzag(readVarint());
+                timestamp += timestampDelta;
+                ax += (int)unzigzag(readVarint());
+                ay += (int)unzigzag(readVarint());
+                az += (int)unzigzag(readVarint());
+                ret.addAccelerationTuple(timestamp, ax, ay, az);
+            }
+            ret.trimToSize();
+            return ret;
+        }
+
+        /**
+         * @return The next unsigned variable length integer.
+         */
+        private long readVarint() {
+            long ret = 0L;
+            int shift = 0;
+            byte current;
+            do {
+                current = buffer[position++];
+                ret |= (long)(current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return ret;
+        }
+    }
+}
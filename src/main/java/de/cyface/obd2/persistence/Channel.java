@@ -40,10 +40,18 @@ public final class Channel {
     private final String vehicleIdentificationNumber;
     /**
      * <p>
-     * The data captured and transmitted via this channel.
+     * The data captured and transmitted via this channel, which has not been handed over to a {@link DataRepository}
+     * yet. The repository takes over all data on each store operation, so this buffer stays small.
      * </p>
      */
-    private final List<InputData> data;
+    private List<InputData> data;
+    /**
+     * <p>
+     * The time of the last activity on this channel in milliseconds since the epoch. This is the creation time of the
+     * channel or the time the last data was received.
+     * </p>
+     */
+    private volatile long lastActivity;
 
     /**
      * <p>
@@ -60,6 +68,7 @@ public final class Channel {
         this.channelIdentifier = channelIdentifier;
         this.vehicleIdentificationNumber = vehicleIdentificationNumber;
         this.data = new ArrayList<>();
+        this.lastActivity = System.currentTimeMillis();
     }
 
     /**
@@ -73,10 +82,18 @@ public final class Channel {
      * @return The world wide unique vehicle identification (VIN) number for each car. This is used to merge data
      * collected by the same car.
      */
-    String getVehicleIdentificationNumber() {
+    public String getVehicleIdentificationNumber() {
         return vehicleIdentificationNumber;
     }
 
+    /**
+     * @return The time of the last activity on this channel in milliseconds since the epoch. This is the creation time
+     *         of the channel or the time the last data was received.
+     */
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
     /**
      * <p>
      * Adds the provided {@link InputData} to this {@code Channel} possibly merging it with existing data.
@@ -84,21 +101,70 @@ public final class Channel {
      *
      * @param inputData The {@link InputData} to merge with the existing data.
      */
-    public void addInputData(final InputData inputData) {
+    public synchronized void addInputData(final InputData inputData) {
         Validate.notNull(inputData);
 
         data.add(inputData);
+        lastActivity = System.currentTimeMillis();
     }
 
     /**
-     * @return All the data received via this channel.
+     * @return All the data received via this channel, which has not been stored to a {@link DataRepository} yet.
+     */
+    public synchronized Collection<InputData> getInputData() {
+        return Collections.unmodifiableCollection(new ArrayList<>(data));
+    }
+
+    /**
+     * <p>
+     * Provides all the data received via this channel since the last call to this method and removes it from this
+     * channel, handing it over to a {@link DataRepository}. This happens atomically, so concurrent calls never provide
+     * the same data twice.
+     * </p>
+     *
+     * @return The newly received data in the order of arrival.
      */
-    public Collection<InputData> getInputData() {
-        return Collections.unmodifiableCollection(data);
+    synchronized List<InputData> takeUnstoredInputData() {
+        if (data.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<InputData> ret = data;
+        data = new ArrayList<>();
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Puts data provided by {@link #takeUnstoredInputData()} back in front of the data received since, because it
+     * could not be stored. It is provided again by the next call to {@link #takeUnstoredInputData()}.
+     * </p>
+     *
+     * @param unstored The data that could not be stored in the order of arrival.
+     */
+    synchronized void returnUnstoredInputData(final List<InputData> unstored) {
+        if (unstored.isEmpty()) {
+            return;
+        }
+        List<InputData> ret = new ArrayList<>(unstored.size() + data.size());
+        ret.addAll(unstored);
+        ret.addAll(data);
+        data = ret;
+    }
+
+    /**
+     * @return An estimation of the number of bytes on the heap occupied by this channel and its buffered data.
+     */
+    public synchronized long estimateSize() {
+        // Object header, fields and the buffer list with its array.
+        long ret = 48L + 40L + 4L * data.size();
+        for (final InputData entry : data) {
+            ret += entry.estimateSize();
+        }
+        return ret;
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         StringBuilder ret = new StringBuilder();
         for (InputData entry : data) {
             ret.append("\t\t").append(entry).append(":\n");
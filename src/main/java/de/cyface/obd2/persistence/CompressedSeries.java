@@ -0,0 +1,226 @@
+/*
+ * Created on 18.10.26 at 01:42.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <p>
+ * The time series of {@link InputData} entries of one vehicle. Entries are appended to blocks of
+ * {@link #BLOCK_SIZE} entries. As soon as a block is full it is sealed, which compresses it with the
+ * {@link BlockCodec} and releases the entry objects. Reading an entry of a sealed block decompresses the block on
+ * demand. Only the most recent, unsealed block keeps its entries as objects.
+ * </p>
+ * <p>
+ * Like the {@link AppendOnlyList}, calls to {@link #add(InputData)} must be synchronized externally, while all reading
+ * methods may be called from any thread at any time without locking.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class CompressedSeries {
+    /**
+     * <p>
+     * The number of entries per block.
+     * </p>
+     */
+    static final int BLOCK_SIZE = 64;
+
+    /**
+     * <p>
+     * The blocks containing the entries of this series.
+     * </p>
+     */
+    private final AppendOnlyList<Block> blocks;
+    /**
+     * <p>
+     * The number of entries published to readers.
+     * </p>
+     */
+    private volatile int size;
+
+    /**
+     * <p>
+     * Creates a new empty series.
+     * </p>
+     */
+    CompressedSeries() {
+        this.blocks = new AppendOnlyList<>();
+    }
+
+    /**
+     * <p>
+     * Appends an entry to the end of this series. Calls to this method must be synchronized by the caller. The entry
+     * must not be modified afterwards.
+     * </p>
+     *
+     * @param entry The entry to append.
+     */
+    void add(final InputData entry) {
+        Validate.notNull(entry);
+        final int index = size;
+        final int offset = index % BLOCK_SIZE;
+        if (offset == 0) {
+            blocks.add(new Block());
+        }
+        final Block block = blocks.get(index / BLOCK_SIZE);
+        block.entries[offset] = entry;
+        size = index + 1;
+        if (offset == BLOCK_SIZE - 1) {
+            block.seal();
+        }
+    }
+
+    /**
+     * <p>
+     * Reads a single entry. Use a {@link Cursor} to read many entries, which decompresses each block only once.
+     * </p>
+     *
+     * @param index The index of the entry to get.
+     * @return The entry at the provided index.
+     * @throws IndexOutOfBoundsException If the entry at the index was not published yet.
+     */
+    InputData get(final int index) {
+        checkIndex(index);
+        return blocks.get(index / BLOCK_SIZE).get(index % BLOCK_SIZE);
+    }
+
+    /**
+     * @return A new cursor to read entries of this series.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * @return The number of published entries. Entries added concurrently may not be included.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of bytes used by the compressed blocks of this series.
+     */
+    long compressedBytes() {
+        long ret = 0L;
+        final int sealed = size / BLOCK_SIZE;
+        for (int i = 0; i < sealed; i++) {
+            final byte[] compressed = blocks.get(i).compressed;
+            ret += compressed == null ? 0 : compressed.length;
+        }
+        return ret;
+    }
+
+    /**
+     * @param index The index of an entry.
+     * @throws IndexOutOfBoundsException If the entry at the index was not published yet.
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d is out of bounds.", index));
+        }
+    }
+
+    /**
+     * <p>
+     * Reads entries of the series, keeping the entries of the last decompressed block, so that reading the entries of
+     * a block one after the other decompresses the block only once. A cursor must only be used by one thread.
+     * </p>
+     */
+    final class Cursor {
+        /**
+         * <p>
+         * The index of the block whose entries are cached or -1 if there are none.
+         * </p>
+         */
+        private int cachedBlock = -1;
+        /**
+         * <p>
+         * The entries of the cached block.
+         * </p>
+         */
+        private InputData[] cachedEntries;
+
+        /**
+         * @param index The index of the entry to get.
+         * @return The entry at the provided index.
+         * @throws IndexOutOfBoundsException If the entry at the index was not published yet.
+         */
+        InputData get(final int index) {
+            checkIndex(index);
+            final int blockIndex = index / BLOCK_SIZE;
+            if (blockIndex != cachedBlock) {
+                final Block block = blocks.get(blockIndex);
+                final InputData[] entries = block.entries;
+                if (entries != null) {
+                    // The block is not sealed yet and may still grow, so it is not cached.
+                    return entries[index % BLOCK_SIZE];
+                }
+                cachedEntries = BlockCodec.decode(block.compressed, BLOCK_SIZE);
+                cachedBlock = blockIndex;
+            }
+            return cachedEntries[index % BLOCK_SIZE];
+        }
+    }
+
+    /**
+     * <p>
+     * A block of {@link #BLOCK_SIZE} consecutive entries, which is either still open or sealed and compressed.
+     * </p>
+     */
+    private static final class Block {
+        /**
+         * <p>
+         * The entries of the block, which are released once it is sealed. Sealing writes {@link #compressed} before
+         * clearing this field, so a reader seeing {@code null} here always sees the compressed entries.
+         * </p>
+         */
+        private volatile InputData[] entries;
+        /**
+         * <p>
+         * The compressed entries of the block or {@code null} if it is not sealed yet.
+         * </p>
+         */
+        private volatile byte[] compressed;
+
+        /**
+         * <p>
+         * Creates a new open block.
+         * </p>
+         */
+        Block() {
+            this.entries = new InputData[BLOCK_SIZE];
+        }
+
+        /**
+         * @param offset The position of an entry inside this block, which must be published already.
+         * @return The entry at the provided position.
+         */
+        InputData get(final int offset) {
+            final InputData[] current = entries;
+            if (current != null) {
+                return current[offset];
+            }
+            return BlockCodec.decode(compressed, offset + 1)[offset];
+        }
+
+        /**
+         * <p>
+         * Compresses the full block and releases its entries.
+         * </p>
+         */
+        void seal() {
+            compressed = BlockCodec.encode(entries, BLOCK_SIZE);
+            entries = null;
+        }
+    }
+}
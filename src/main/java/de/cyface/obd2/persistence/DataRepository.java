@@ -8,17 +8,51 @@
  */
 package de.cyface.obd2.persistence;
 
+import org.apache.commons.lang3.Validate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * <p>
  * Data storage repository storing all the information received by this server instance.
  * </p>
+ * <p>
+ * The repository is thread safe. Data for different vehicles is stored in parallel, while data for the same vehicle is
+ * appended one after the other. Reading never blocks storing new data.
+ * </p>
+ * <p>
+ * If a {@link TelemetryLog} is configured, all stored data is written to it before it becomes visible in the
+ * repository and the repository is restored from the log on startup.
+ * </p>
+ * <p>
+ * Besides the raw data, the repository keeps {@link Rollup} statistics of the accelerations of each vehicle per time
+ * window, the summaries of the {@link Trip}s of each vehicle and a spatial index of the GPS positions of all vehicles,
+ * which are updated as data arrives.
+ * </p>
+ * <p>
+ * Entries equal to one of the latest entries stored for the same vehicle are dropped, so uploads sent again by a
+ * dongle, which did not receive the answer to its first attempt, are stored only once.
+ * </p>
+ * <p>
+ * Reports across all vehicles are created in parallel on a {@code ForkJoinPool}, splitting the work by vehicle.
+ * </p>
  *
  * @author Klemens Muthmann
  * @version 1.0.0
@@ -26,48 +60,604 @@ import java.util.Map;
  */
 @Component
 public class DataRepository {
+    /**
+     * <p>
+     * The number of characters passed to the {@code Writer} at once by {@link #writeTo(Writer)}.
+     * </p>
+     */
+    private static final int CHUNK_SIZE = 8192;
+    /**
+     * <p>
+     * The length of the {@link Rollup} windows in milliseconds used if nothing else is configured.
+     * </p>
+     */
+    private static final long DEFAULT_ROLLUP_WINDOW = 1000L;
+    /**
+     * <p>
+     * The largest time in milliseconds between two entries of the same {@link Trip} used if nothing else is
+     * configured.
+     * </p>
+     */
+    private static final long DEFAULT_TRIP_GAP = 300_000L;
+    /**
+     * <p>
+     * The GPS speed below which a vehicle is considered standing used if nothing else is configured.
+     * </p>
+     */
+    private static final double DEFAULT_TRIP_STOP_SPEED = 2.0;
+    /**
+     * <p>
+     * The time in milliseconds a vehicle must stand to end a {@link Trip} used if nothing else is configured.
+     * </p>
+     */
+    private static final long DEFAULT_TRIP_STOP_DURATION = 180_000L;
+    /**
+     * <p>
+     * The edge length in degrees of the cells of the spatial index used if nothing else is configured.
+     * </p>
+     */
+    private static final double DEFAULT_SPATIAL_CELL_SIZE = 0.01;
+    /**
+     * <p>
+     * The number of latest entries per vehicle, which are recognized for sure when stored again, used if nothing else
+     * is configured.
+     * </p>
+     */
+    private static final int DEFAULT_DEDUP_WINDOW = 256;
     /**
      * <p>
      * A mapping from a vehicle identification number to all the data captured for that vehicle on this server.
      * </p>
      */
-    private final Map<String, DeviceData> dataPerDevice;
+    private final ConcurrentMap<String, DeviceData> dataPerDevice;
+    /**
+     * <p>
+     * The log all stored data is written to or {@code null} if data is only kept in memory.
+     * </p>
+     */
+    private TelemetryLog telemetryLog;
+    /**
+     * <p>
+     * The length of the {@link Rollup} windows in milliseconds.
+     * </p>
+     */
+    private final long rollupWindow;
+    /**
+     * <p>
+     * The largest time in milliseconds between two entries of the same {@link Trip}.
+     * </p>
+     */
+    private final long tripGap;
+    /**
+     * <p>
+     * The GPS speed below which a vehicle is considered standing.
+     * </p>
+     */
+    private final double tripStopSpeed;
+    /**
+     * <p>
+     * The time in milliseconds a vehicle must stand to end a {@link Trip}.
+     * </p>
+     */
+    private final long tripStopDuration;
+    /**
+     * <p>
+     * The index of the GPS positions of all vehicles.
+     * </p>
+     */
+    private final SpatialIndex spatialIndex;
+    /**
+     * <p>
+     * The number of latest entries per vehicle, which are recognized for sure when stored again, or 0 if entries are
+     * never dropped as duplicates.
+     * </p>
+     */
+    private final int dedupWindow;
 
     /**
      * <p>
-     * Creates a new completely initialized {@code DataRepository}.
+     * Creates a new completely initialized {@code DataRepository} with {@link Rollup} windows of one second and trips
+     * ending after a gap of five minutes or standing for three minutes. The spatial index uses cells of one hundredth
+     * of a degree. Replays of the latest 256 entries per vehicle are dropped.
      * </p>
      */
     public DataRepository() {
-        this.dataPerDevice = new HashMap<>();
+        this(DEFAULT_ROLLUP_WINDOW, DEFAULT_TRIP_GAP, DEFAULT_TRIP_STOP_SPEED, DEFAULT_TRIP_STOP_DURATION,
+                DEFAULT_SPATIAL_CELL_SIZE, DEFAULT_DEDUP_WINDOW);
+    }
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code DataRepository}.
+     * </p>
+     *
+     * @param rollupWindow The length of the {@link Rollup} windows in milliseconds.
+     * @param tripGap The largest time in milliseconds between two entries of the same {@link Trip}.
+     * @param tripStopSpeed The GPS speed below which a vehicle is considered standing.
+     * @param tripStopDuration The time in milliseconds a vehicle must stand to end a {@link Trip}.
+     * @param spatialCellSize The edge length in degrees of the cells of the spatial index.
+     * @param dedupWindow The number of latest entries per vehicle, which are recognized for sure when stored again, or
+     *            0 to never drop entries as duplicates.
+     */
+    @Autowired
+    public DataRepository(@Value("${freematics.rollup.window:1000}") final long rollupWindow,
+            @Value("${freematics.trips.gap:300000}") final long tripGap,
+            @Value("${freematics.trips.stop-speed:2.0}") final double tripStopSpeed,
+            @Value("${freematics.trips.stop-duration:180000}") final long tripStopDuration,
+            @Value("${freematics.spatial.cell-size:0.01}") final double spatialCellSize,
+            @Value("${freematics.dedup.window:256}") final int dedupWindow) {
+        Validate.isTrue(rollupWindow > 0L, "Rollup window must be positive.");
+        Validate.isTrue(tripGap > 0L, "Trip gap must be positive.");
+        Validate.isTrue(tripStopDuration > 0L, "Trip stop duration must be positive.");
+        Validate.isTrue(dedupWindow >= 0, "Deduplication window must not be negative.");
+        this.dataPerDevice = new ConcurrentHashMap<>();
+        this.rollupWindow = rollupWindow;
+        this.tripGap = tripGap;
+        this.tripStopSpeed = tripStopSpeed;
+        this.tripStopDuration = tripStopDuration;
+        this.spatialIndex = new SpatialIndex(spatialCellSize);
+        this.dedupWindow = dedupWindow;
+    }
+
+    /**
+     * <p>
+     * Sets the log to write all stored data to and restores all data from that log into this repository. This must
+     * be called before any data is stored.
+     * </p>
+     *
+     * @param telemetryLog The log to write all stored data to.
+     * @throws IOException If reading the log failed.
+     */
+    @Autowired(required = false)
+    public void setTelemetryLog(final TelemetryLog telemetryLog) throws IOException {
+        Validate.notNull(telemetryLog);
+        Validate.validState(dataPerDevice.isEmpty(), "Unable to set a log after data was stored.");
+        this.telemetryLog = telemetryLog;
+        telemetryLog.replay((vehicleIdentificationNumber, data) -> getDeviceData(vehicleIdentificationNumber)
+                .restore(data));
     }
 
     /**
      * <p>
      * Stores the data from the provided {@link Channel} in this repository, possibly merging it with existing data for
-     * the same vehicle.
+     * the same vehicle. Only data that arrived on the channel since the last call for that channel is merged, so the
+     * cost of this operation does not grow with the history of the channel. The merged data is removed from the
+     * channel.
      * </p>
      *
      * @param data The {@code data} to store in the repository.
+     * @return The number of {@link InputData} entries newly added to the repository by this call.
+     * @throws java.io.UncheckedIOException If writing the data to the {@link TelemetryLog} failed.
+     */
+    public int store(final Channel data) {
+        return getDeviceData(data.getVehicleIdentificationNumber()).addChannelInformation(data);
+    }
+
+    /**
+     * <p>
+     * Stores the data from all provided channels, as if {@link #store(Channel)} was called for each of them. Each
+     * channel is stored once, even if it is provided multiple times.
+     * </p>
+     *
+     * @param data The channels to store in the repository.
+     * @return The number of {@link InputData} entries newly added to the repository by this call.
+     * @throws java.io.UncheckedIOException If writing the data to the {@link TelemetryLog} failed.
+     */
+    public int storeAll(final Collection<Channel> data) {
+        int ret = 0;
+        for (final Channel channel : data) {
+            ret += store(channel);
+        }
+        return ret;
+    }
+
+    /**
+     * @return The number of vehicles with data in this repository.
+     */
+    public int countVehicles() {
+        return dataPerDevice.size();
+    }
+
+    /**
+     * @return The number of {@link InputData} entries stored for all vehicles.
+     */
+    public long countInputData() {
+        long ret = 0L;
+        for (final DeviceData deviceData : dataPerDevice.values()) {
+            ret += deviceData.size();
+        }
+        return ret;
+    }
+
+    /**
+     * @return The number of {@link InputData} entries of all vehicles dropped, because they were stored before.
+     */
+    public long countDuplicates() {
+        long ret = 0L;
+        for (final DeviceData deviceData : dataPerDevice.values()) {
+            ret += deviceData.getDuplicates();
+        }
+        return ret;
+    }
+
+    /**
+     * @param vehicleIdentificationNumber The vehicle identification number to count the stored data for.
+     * @return The number of {@link InputData} entries stored for the provided vehicle or 0 if there are none.
+     */
+    public int countInputData(final String vehicleIdentificationNumber) {
+        DeviceData deviceData = dataPerDevice.get(vehicleIdentificationNumber);
+        return deviceData == null ? 0 : deviceData.size();
+    }
+
+    /**
+     * <p>
+     * Counts the entries stored for a vehicle inside a time range. The time of an entry is the timestamp of its first
+     * acceleration. Entries without accelerations carry no timestamp and are never part of a time range.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number to count the stored data for.
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @return The number of {@link InputData} entries stored for the provided vehicle inside the time range.
+     */
+    public int countInputData(final String vehicleIdentificationNumber, final long from, final long to) {
+        DeviceData deviceData = dataPerDevice.get(vehicleIdentificationNumber);
+        return deviceData == null ? 0 : deviceData.count(from, to);
+    }
+
+    /**
+     * <p>
+     * Finds the entries stored for a vehicle inside a time range, ordered by time. Since a time range might contain a
+     * lot of data, only one page of the result is returned. The time of an entry is the timestamp of its first
+     * acceleration, as for {@link #countInputData(String, long, long)}.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number to find the stored data for.
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @param offset The number of entries inside the time range to skip.
+     * @param limit The maximum number of entries to return.
+     * @return The found entries, which are at most {@code limit}.
+     */
+    public List<InputData> findInputData(final String vehicleIdentificationNumber, final long from, final long to,
+            final int offset, final int limit) {
+        Validate.isTrue(offset >= 0, "Offset must not be negative.");
+        Validate.isTrue(limit >= 0, "Limit must not be negative.");
+        DeviceData deviceData = dataPerDevice.get(vehicleIdentificationNumber);
+        return deviceData == null ? Collections.<InputData>emptyList() : deviceData.find(from, to, offset, limit);
+    }
+
+    /**
+     * <p>
+     * Iterates all entries stored for a vehicle inside a time range, ordered by time as returned by
+     * {@link #findInputData(String, long, long, int, int)}, but without collecting them into a list. Entries are read
+     * while iterating, so exporting a large time range does not require memory for all its entries at once. Only the
+     * entries stored at the time this method was called are iterated, while storing new data concurrently is not
+     * blocked.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number to iterate the stored data for.
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @return An iterator over the entries inside the time range.
+     */
+    public Iterator<InputData> iterateInputData(final String vehicleIdentificationNumber, final long from,
+            final long to) {
+        DeviceData deviceData = dataPerDevice.get(vehicleIdentificationNumber);
+        return deviceData == null ? Collections.<InputData>emptyIterator() : deviceData.iterate(from, to);
+    }
+
+    /**
+     * <p>
+     * Counts the {@link Rollup} windows of a vehicle starting inside a time range.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number to count the windows for.
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @return The number of windows with accelerations of the provided vehicle starting inside the time range.
+     */
+    public int countRollups(final String vehicleIdentificationNumber, final long from, final long to) {
+        DeviceData deviceData = dataPerDevice.get(vehicleIdentificationNumber);
+        return deviceData == null ? 0 : deviceData.countRollups(from, to);
+    }
+
+    /**
+     * <p>
+     * Finds the {@link Rollup} statistics of the accelerations of a vehicle for all windows starting inside a time
+     * range, ordered by time. Only windows containing at least one acceleration exist. As for
+     * {@link #findInputData(String, long, long, int, int)} only one page of the result is returned.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number to find the windows for.
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @param offset The number of windows inside the time range to skip.
+     * @param limit The maximum number of windows to return.
+     * @return The found windows, which are at most {@code limit}.
+     */
+    public List<Rollup> findRollups(final String vehicleIdentificationNumber, final long from, final long to,
+            final int offset, final int limit) {
+        Validate.isTrue(offset >= 0, "Offset must not be negative.");
+        Validate.isTrue(limit >= 0, "Limit must not be negative.");
+        DeviceData deviceData = dataPerDevice.get(vehicleIdentificationNumber);
+        return deviceData == null ? Collections.<Rollup>emptyList()
+                : deviceData.findRollups(from, to, offset, limit);
+    }
+
+    /**
+     * @param vehicleIdentificationNumber The vehicle identification number to count the trips for.
+     * @return The number of {@link Trip}s of the provided vehicle, including the current one.
+     */
+    public int countTrips(final String vehicleIdentificationNumber) {
+        DeviceData deviceData = dataPerDevice.get(vehicleIdentificationNumber);
+        return deviceData == null ? 0 : deviceData.countTrips();
+    }
+
+    /**
+     * <p>
+     * Finds the summaries of the {@link Trip}s of a vehicle in chronological order. The summaries are maintained while
+     * data is stored, so this never reads the stored data itself. The latest trip is included, even if it is still
+     * ongoing. As for {@link #findInputData(String, long, long, int, int)} only one page of the result is returned.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number to find the trips for.
+     * @param offset The number of trips to skip.
+     * @param limit The maximum number of trips to return.
+     * @return The found trips, which are at most {@code limit}.
+     */
+    public List<Trip> findTrips(final String vehicleIdentificationNumber, final int offset, final int limit) {
+        Validate.isTrue(offset >= 0, "Offset must not be negative.");
+        Validate.isTrue(limit >= 0, "Limit must not be negative.");
+        DeviceData deviceData = dataPerDevice.get(vehicleIdentificationNumber);
+        return deviceData == null ? Collections.<Trip>emptyList() : deviceData.findTrips(offset, limit);
+    }
+
+    /**
+     * <p>
+     * Finds the places inside an area, where any vehicle has been. This is answered by a spatial index, so the cost
+     * depends on the size of the area and the data inside it, but not on all the stored data. Only entries with a GPS
+     * position and at least one acceleration, which provides their time, are found. Areas do not wrap around at the
+     * antimeridian.
+     * </p>
+     *
+     * @param minLatitude The southern border of the area in degrees, inclusive.
+     * @param minLongitude The western border of the area in degrees, inclusive.
+     * @param maxLatitude The northern border of the area in degrees, inclusive.
+     * @param maxLongitude The eastern border of the area in degrees, inclusive.
+     * @param limit The maximum number of locations to return.
+     * @return The found locations ordered by vehicle identification number and time, which are at most {@code limit}.
+     */
+    public List<Location> findLocationsInArea(final double minLatitude, final double minLongitude,
+            final double maxLatitude, final double maxLongitude, final int limit) {
+        Validate.isTrue(minLatitude <= maxLatitude, "Minimum latitude must not be larger than maximum latitude.");
+        Validate.isTrue(minLongitude <= maxLongitude, "Minimum longitude must not be larger than maximum longitude.");
+        Validate.isTrue(limit >= 0, "Limit must not be negative.");
+        return spatialIndex.findInArea(minLatitude, minLongitude, maxLatitude, maxLongitude, limit);
+    }
+
+    /**
+     * <p>
+     * Finds the places around a center, where any vehicle has been, the nearest first. As for
+     * {@link #findLocationsInArea(double, double, double, double, int)} this is answered by a spatial index. Unlike
+     * areas, circles crossing the antimeridian include the places on both sides of it.
+     * </p>
+     *
+     * @param latitude The latitude of the center in degrees.
+     * @param longitude The longitude of the center in degrees.
+     * @param radius The largest distance from the center in meters.
+     * @param limit The maximum number of locations to return.
+     * @return The found locations ordered by their distance from the center, which are at most {@code limit}.
+     */
+    public List<Location> findLocationsNear(final double latitude, final double longitude, final double radius,
+            final int limit) {
+        Validate.isTrue(radius >= 0.0, "Radius must not be negative.");
+        Validate.isTrue(limit >= 0, "Limit must not be negative.");
+        return spatialIndex.findNear(latitude, longitude, radius, limit);
+    }
+
+    /**
+     * @param vehicleIdentificationNumber The vehicle identification number to get the data for.
+     * @return The data stored for the provided vehicle, which is created if there is none yet.
+     */
+    private DeviceData getDeviceData(final String vehicleIdentificationNumber) {
+        DeviceData ret = dataPerDevice.get(vehicleIdentificationNumber);
+        if (ret == null) {
+            // Only fall back to computeIfAbsent on a miss, since it locks even if the mapping exists.
+            ret = dataPerDevice.computeIfAbsent(vehicleIdentificationNumber,
+                    key -> new DeviceData(key, telemetryLog, new RollupSeries(rollupWindow),
+                            new TripDetector(tripGap, tripStopSpeed, tripStopDuration), spatialIndex,
+                            dedupWindow == 0 ? null : new UploadFilter(dedupWindow)));
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Creates a report summarizing the data of each vehicle, as described by {@link VehicleReport}, using the common
+     * {@code ForkJoinPool}.
+     * </p>
+     *
+     * @return The reports of all vehicles ordered by vehicle identification number.
+     * @see #report(ForkJoinPool)
+     */
+    public List<VehicleReport> report() {
+        return report(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * <p>
+     * Creates a report summarizing the data of each vehicle, as described by {@link VehicleReport}. The vehicles are
+     * split among the threads of the provided pool, while the data of one vehicle is read by one thread. The report
+     * contains the data stored at the time this method was called, while storing new data concurrently is not
+     * blocked.
+     * </p>
+     *
+     * @param pool The pool to create the report with.
+     * @return The reports of all vehicles ordered by vehicle identification number.
      */
-    public void store(final Channel data) {
-        String vehicleIdentificationNumber = data.getVehicleIdentificationNumber();
-        DeviceData existingDeviceData = dataPerDevice.get(vehicleIdentificationNumber);
-        if (existingDeviceData == null) {
-            existingDeviceData = new DeviceData();
+    public List<VehicleReport> report(final ForkJoinPool pool) {
+        Validate.notNull(pool);
+        // As for writeTo, the number of entries per vehicle is captured up front, so all vehicles are reported as of
+        // the same moment.
+        List<Map.Entry<String, DeviceData>> devices = new ArrayList<>(dataPerDevice.entrySet());
+        devices.sort(Map.Entry.comparingByKey());
+        DeviceData[] snapshot = new DeviceData[devices.size()];
+        int[] sizes = new int[snapshot.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = devices.get(i).getValue();
+            sizes[i] = snapshot[i].size();
         }
-        existingDeviceData.addChannelInformation(data);
-        dataPerDevice.put(vehicleIdentificationNumber, existingDeviceData);
+
+        VehicleReport[] ret = new VehicleReport[snapshot.length];
+        pool.invoke(new ReportTask(snapshot, sizes, ret, 0, snapshot.length));
+        return Arrays.asList(ret);
+    }
+
+    /**
+     * <p>
+     * Writes the textual representation of all data in this repository, as returned by {@link #toString()}, to the
+     * provided {@code Writer}. The output is written in chunks of constant size, so memory usage does not grow with the
+     * amount of stored data. The output contains the data stored at the time this method was called, while storing
+     * new data concurrently is not blocked.
+     * </p>
+     *
+     * @param writer The {@code Writer} to write to.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(final Writer writer) throws IOException {
+        // The number of entries per vehicle is captured up front, so data stored while writing is left out.
+        List<Map.Entry<String, DeviceData>> devices = new ArrayList<>(dataPerDevice.entrySet());
+        int[] sizes = new int[devices.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = devices.get(i).getValue().size();
+        }
+
+        StringBuilder buffer = new StringBuilder(2 * CHUNK_SIZE);
+        char[] chunk = new char[CHUNK_SIZE];
+        for (int i = 0; i < sizes.length; i++) {
+            buffer.append(devices.get(i).getKey()).append(": \n");
+            CompressedSeries.Cursor cursor = devices.get(i).getValue().cursor();
+            for (int entry = 0; entry < sizes[i]; entry++) {
+                cursor.get(entry).appendTo(buffer);
+                buffer.append('\n');
+                if (buffer.length() >= CHUNK_SIZE) {
+                    flush(buffer, chunk, writer);
+                }
+            }
+        }
+        flush(buffer, chunk, writer);
+        writer.flush();
     }
 
     @Override
     public String toString() {
-        StringBuilder ret = new StringBuilder();
-        for (final Map.Entry<String, DeviceData> entry : dataPerDevice.entrySet()) {
-            ret.append(entry.getKey()).append(": \n").append(entry.getValue());
+        StringWriter ret = new StringWriter();
+        try {
+            writeTo(ret);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
         }
         return ret.toString();
     }
+
+    /**
+     * <p>
+     * Writes the content of the provided buffer to a {@code Writer} in pieces no larger than the provided chunk and
+     * clears the buffer afterwards.
+     * </p>
+     *
+     * @param buffer The buffer to write.
+     * @param chunk The array used to pass characters to the {@code Writer}.
+     * @param writer The {@code Writer} to write to.
+     * @throws IOException If writing fails.
+     */
+    private static void flush(final StringBuilder buffer, final char[] chunk, final Writer writer) throws IOException {
+        for (int offset = 0; offset < buffer.length(); offset += chunk.length) {
+            final int length = Math.min(chunk.length, buffer.length() - offset);
+            buffer.getChars(offset, offset + length, chunk, 0);
+            writer.write(chunk, 0, length);
+        }
+        buffer.setLength(0);
+    }
+
+    /**
+     * <p>
+     * Creates the reports of a range of vehicles, splitting the range in halves until each task reports a single
+     * vehicle.
+     * </p>
+     */
+    private static final class ReportTask extends RecursiveAction {
+
+        /**
+         * <p>
+         * Used for serializing objects of this class. Only change this if the classes attribute set changes.
+         * </p>
+         */
+        private static final long serialVersionUID = 2934507618249731205L;
+
+        /**
+         * <p>
+         * The data of all reported vehicles.
+         * </p>
+         */
+        private final DeviceData[] devices;
+        /**
+         * <p>
+         * The number of entries to report per vehicle.
+         * </p>
+         */
+        private final int[] sizes;
+        /**
+         * <p>
+         * The array the reports are written to, at the same index as the data of the vehicle.
+         * </p>
+         */
+        private final VehicleReport[] reports;
+        /**
+         * <p>
+         * The index of the first vehicle reported by this task, inclusive.
+         * </p>
+         */
+        private final int from;
+        /**
+         * <p>
+         * The index of the last vehicle reported by this task, exclusive.
+         * </p>
+         */
+        private final int to;
+
+        /**
+         * <p>
+         * Creates a new completely initialized {@code ReportTask}.
+         * </p>
+         *
+         * @param devices The data of all reported vehicles.
+         * @param sizes The number of entries to report per vehicle.
+         * @param reports The array the reports are written to, at the same index as the data of the vehicle.
+         * @param from The index of the first vehicle reported by this task, inclusive.
+         * @param to The index of the last vehicle reported by this task, exclusive.
+         */
+        ReportTask(final DeviceData[] devices, final int[] sizes, final VehicleReport[] reports, final int from,
+                final int to) {
+            this.devices = devices;
+            this.sizes = sizes;
+            this.reports = reports;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                reports[from] = devices[from].report(sizes[from]);
+            } else if (to - from > 1) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new ReportTask(devices, sizes, reports, from, middle),
+                        new ReportTask(devices, sizes, reports, middle, to));
+            }
+        }
+    }
 }
 
 /**
@@ -75,42 +665,420 @@ public class DataRepository {
  * Data captured per device. A device will in most cases be a car identified by its vehicle identification number, which
  * it broadcasts over its OBD II interface.
  * </p>
+ * <p>
+ * Adding information is synchronized per {@code DeviceData} object, including writing it to the {@link TelemetryLog}.
+ * The stored entries are read without any locks. Queries of the index, the acceleration statistics and the trips only
+ * hold a separate lock, which adding information holds while changing them in memory, but never while writing to the
+ * log. So queries never wait for the storage device.
+ * </p>
+ * <p>
+ * The data is kept in a {@link CompressedSeries}, so all but the most recent entries are held in compressed form and
+ * decompressed when they are read.
+ * </p>
  */
 class DeviceData {
 
+    /**
+     * <p>
+     * The vehicle identification number of the vehicle this data belongs to.
+     * </p>
+     */
+    private final String vehicleIdentificationNumber;
+    /**
+     * <p>
+     * The log new data is written to or {@code null} if data is only kept in memory.
+     * </p>
+     */
+    private final TelemetryLog telemetryLog;
+
     /**
      * <p>
      * This attribute stores the captured data.
      * </p>
      */
-    private final List<InputData> data;
+    private final CompressedSeries data;
+    /**
+     * <p>
+     * The index of the stored entries by the timestamp of their first acceleration. It is guarded by
+     * {@link #queryLock}.
+     * </p>
+     */
+    private final TimestampIndex index;
+    /**
+     * <p>
+     * The statistics of the stored accelerations per time window. It is guarded by {@link #queryLock}.
+     * </p>
+     */
+    private final RollupSeries rollups;
+    /**
+     * <p>
+     * The detector splitting the stored data into trips. It is guarded by {@link #queryLock}.
+     * </p>
+     */
+    private final TripDetector trips;
+    /**
+     * <p>
+     * The lock guarding the index, the acceleration statistics and the trips. In contrast to the lock of this object,
+     * it is not held while writing to the {@link TelemetryLog}.
+     * </p>
+     */
+    private final Object queryLock;
+    /**
+     * <p>
+     * The index of the GPS positions of all vehicles, which is shared with the other {@code DeviceData} objects.
+     * </p>
+     */
+    private final SpatialIndex spatialIndex;
+    /**
+     * <p>
+     * The filter recognizing entries stored recently or {@code null} if entries are never dropped as duplicates. It is
+     * guarded by the lock of this object.
+     * </p>
+     */
+    private final UploadFilter uploadFilter;
+    /**
+     * <p>
+     * The number of entries dropped, because they were stored before. It is only changed while holding the lock of
+     * this object.
+     * </p>
+     */
+    private volatile long duplicates;
 
     /**
      * <p>
      * Creates a new completely initialized {@code DeviceData} object for one specific vehicle.
      * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number of the vehicle this data belongs to.
+     * @param telemetryLog The log new data is written to or {@code null} if data is only kept in memory.
+     * @param rollups The empty statistics of the accelerations per time window.
+     * @param trips The detector splitting the stored data into trips, which has not seen any data yet.
+     * @param spatialIndex The index of the GPS positions of all vehicles.
+     * @param uploadFilter The empty filter recognizing entries stored recently or {@code null} if entries are never
+     *            dropped as duplicates.
      */
-    DeviceData() {
-        data = new ArrayList<>();
+    DeviceData(final String vehicleIdentificationNumber, final TelemetryLog telemetryLog, final RollupSeries rollups,
+            final TripDetector trips, final SpatialIndex spatialIndex, final UploadFilter uploadFilter) {
+        this.vehicleIdentificationNumber = vehicleIdentificationNumber;
+        this.telemetryLog = telemetryLog;
+        this.data = new CompressedSeries();
+        this.index = new TimestampIndex();
+        this.rollups = rollups;
+        this.trips = trips;
+        this.spatialIndex = spatialIndex;
+        this.uploadFilter = uploadFilter;
+        this.queryLock = new Object();
     }
 
     /**
      * <p>
      * Adds all the information from the provided channel to this {@code DeviceData} object, merging it with existing
-     * information from the same channel if there are some.
+     * information from the same channel if there are some. Information already merged by a previous call is skipped.
+     * Entries equal to a recently stored entry are dropped. Each entry is written to the {@link TelemetryLog} before
+     * it becomes visible to readers. If writing to the log fails, the entry and all entries after it are returned to
+     * the channel, so they are stored by the next call.
      * </p>
      *
      * @param channel The channel information to merge into this {@code DeviceData} object.
+     * @return The number of newly added entries.
+     * @throws java.io.UncheckedIOException If writing to the {@link TelemetryLog} failed.
+     */
+    synchronized int addChannelInformation(final Channel channel) {
+        final List<InputData> entries = channel.takeUnstoredInputData();
+        int ret = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            final InputData entry = entries.get(i);
+            if (isDuplicate(entry)) {
+                continue;
+            }
+            entry.trimToSize();
+            if (telemetryLog != null) {
+                try {
+                    telemetryLog.append(vehicleIdentificationNumber, entry);
+                } catch (final RuntimeException e) {
+                    channel.returnUnstoredInputData(entries.subList(i, entries.size()));
+                    throw e;
+                }
+            }
+            add(entry);
+            ret++;
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Adds an entry read from the {@link TelemetryLog} without writing it to the log again.
+     * </p>
+     *
+     * @param entry The entry to add.
+     */
+    synchronized void restore(final InputData entry) {
+        // Everything in the log was accepted before, so it is restored as is. Adding it still feeds the filter, which
+        // recognizes replays of uploads stored before a restart.
+        add(entry);
+    }
+
+    /**
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @return The number of entries inside the time range.
      */
-    void addChannelInformation(final Channel channel) {
-        data.addAll(channel.getInputData());
+    int count(final long from, final long to) {
+        synchronized (queryLock) {
+            return from > to ? 0 : index.upperBound(to) - index.lowerBound(from);
+        }
+    }
+
+    /**
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @param offset The number of entries inside the time range to skip.
+     * @param limit The maximum number of entries to return.
+     * @return The entries inside the time range ordered by time, skipping {@code offset} and at most {@code limit}.
+     */
+    List<InputData> find(final long from, final long to, final int offset, final int limit) {
+        if (from > to) {
+            return Collections.emptyList();
+        }
+        final int[] positions;
+        synchronized (queryLock) {
+            final long start = (long)index.lowerBound(from) + offset;
+            final long end = Math.min(start + limit, index.upperBound(to));
+            positions = new int[(int)Math.max(0L, end - start)];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = index.position((int)start + i);
+            }
+        }
+        List<InputData> ret = new ArrayList<>(positions.length);
+        CompressedSeries.Cursor cursor = data.cursor();
+        for (final int position : positions) {
+            ret.add(cursor.get(position));
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Captures the positions of the entries inside a time range while holding {@link #queryLock} and reads the
+     * entries without it while iterating.
+     * </p>
+     *
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @return An iterator over the entries inside the time range ordered by time.
+     */
+    Iterator<InputData> iterate(final long from, final long to) {
+        final int[] positions;
+        synchronized (queryLock) {
+            final int start = from > to ? 0 : index.lowerBound(from);
+            final int end = from > to ? 0 : index.upperBound(to);
+            positions = new int[Math.max(0, end - start)];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = index.position(start + i);
+            }
+        }
+        final CompressedSeries.Cursor cursor = data.cursor();
+        return new Iterator<InputData>() {
+            /**
+             * <p>
+             * The number of entries returned so far.
+             * </p>
+             */
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < positions.length;
+            }
+
+            @Override
+            public InputData next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return cursor.get(positions[next++]);
+            }
+        };
+    }
+
+    /**
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @return The number of acceleration statistics windows starting inside the time range.
+     */
+    int countRollups(final long from, final long to) {
+        synchronized (queryLock) {
+            return rollups.count(from, to);
+        }
+    }
+
+    /**
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @param offset The number of windows inside the time range to skip.
+     * @param limit The maximum number of windows to return.
+     * @return The acceleration statistics of the windows starting inside the time range ordered by time.
+     */
+    List<Rollup> findRollups(final long from, final long to, final int offset, final int limit) {
+        synchronized (queryLock) {
+            return rollups.find(from, to, offset, limit);
+        }
+    }
+
+    /**
+     * @return The number of trips including the current one.
+     */
+    int countTrips() {
+        synchronized (queryLock) {
+            return trips.count();
+        }
+    }
+
+    /**
+     * @param offset The number of trips to skip.
+     * @param limit The maximum number of trips to return.
+     * @return The summaries of the trips in chronological order.
+     */
+    List<Trip> findTrips(final int offset, final int limit) {
+        synchronized (queryLock) {
+            return trips.find(offset, limit);
+        }
+    }
+
+    /**
+     * @param index The index of the entry to get.
+     * @return The entry at the provided index.
+     * @throws IndexOutOfBoundsException If there is no entry with the provided index.
+     */
+    InputData get(final int index) {
+        return data.get(index);
+    }
+
+    /**
+     * @return A new cursor to read many entries of this {@code DeviceData} object one after the other.
+     */
+    CompressedSeries.Cursor cursor() {
+        return data.cursor();
+    }
+
+    /**
+     * @return The number of entries stored in this {@code DeviceData} object.
+     */
+    int size() {
+        return data.size();
+    }
+
+    /**
+     * <p>
+     * Summarizes the first entries of this {@code DeviceData} object in the order they were stored. Reading does not
+     * lock, so entries may be added concurrently.
+     * </p>
+     *
+     * @param size The number of entries to summarize, which must not exceed the number of stored entries.
+     * @return The summary of the entries.
+     */
+    VehicleReport report(final int size) {
+        long accelerations = 0L;
+        long maxSquaredAcceleration = 0L;
+        double distance = 0.0;
+        double maxSpeed = 0.0;
+        boolean hasPosition = false;
+        double latitude = 0.0;
+        double longitude = 0.0;
+        CompressedSeries.Cursor cursor = data.cursor();
+        for (int i = 0; i < size; i++) {
+            final InputData entry = cursor.get(i);
+            accelerations += entry.getAccelerationCount();
+            for (int j = 0; j < entry.getAccelerationCount(); j++) {
+                final long ax = entry.getAx(j);
+                final long ay = entry.getAy(j);
+                final long az = entry.getAz(j);
+                maxSquaredAcceleration = Math.max(maxSquaredAcceleration, ax * ax + ay * ay + az * az);
+            }
+            final GpsData gpsData = entry.getGpsData();
+            if (gpsData != null) {
+                maxSpeed = Math.max(maxSpeed, gpsData.getGpsSpeed());
+            }
+            if (Geo.hasPosition(gpsData)) {
+                if (hasPosition) {
+                    distance += Geo.distance(latitude, longitude, gpsData.getLatitude(), gpsData.getLongitude());
+                }
+                latitude = gpsData.getLatitude();
+                longitude = gpsData.getLongitude();
+                hasPosition = true;
+            }
+        }
+        return new VehicleReport(vehicleIdentificationNumber, size, accelerations,
+                Math.sqrt(maxSquaredAcceleration), distance, maxSpeed);
+    }
+
+    /**
+     * @return The number of entries dropped, because they were stored before.
+     */
+    long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * <p>
+     * Checks whether an entry equals a recently stored entry and counts it if so. Must be called while holding the lock
+     * of this object.
+     * </p>
+     *
+     * @param entry The entry to check.
+     * @return {@code true} if the entry should be dropped; {@code false} otherwise.
+     */
+    private boolean isDuplicate(final InputData entry) {
+        if (!isFiltered(entry) || !uploadFilter.contains(entry, data::get)) {
+            return false;
+        }
+        duplicates++;
+        return true;
+    }
+
+    /**
+     * @param entry An entry.
+     * @return {@code true} if the entry is passed through the filter recognizing recently stored entries;
+     *         {@code false} if there is no filter or the entry has no values. Such entries are never duplicates,
+     *         since they carry no timestamp.
+     */
+    private boolean isFiltered(final InputData entry) {
+        return uploadFilter != null && (entry.getAccelerationCount() > 0 || entry.getGpsData() != null);
+    }
+
+    /**
+     * <p>
+     * Makes an entry visible to readers and adds it to the index, the acceleration statistics, the current trip, the
+     * spatial index and the filter recognizing recently stored entries. Must be called while holding the lock of this
+     * object.
+     * </p>
+     *
+     * @param entry The entry to add.
+     */
+    private void add(final InputData entry) {
+        final int position = data.size();
+        data.add(entry);
+        synchronized (queryLock) {
+            if (entry.getAccelerationCount() > 0) {
+                index.add(entry.getAccelerationTimestamp(0), position);
+                rollups.add(entry);
+            }
+            trips.add(entry);
+        }
+        spatialIndex.add(vehicleIdentificationNumber, entry);
+        if (isFiltered(entry)) {
+            uploadFilter.add(entry, position);
+        }
     }
 
     @Override
     public String toString() {
         StringBuilder ret = new StringBuilder();
-        for (final InputData entry : data) {
-            ret.append(entry).append("\n");
+        final int size = data.size();
+        CompressedSeries.Cursor cursor = data.cursor();
+        for (int i = 0; i < size; i++) {
+            ret.append(cursor.get(i)).append("\n");
         }
         return ret.toString();
     }
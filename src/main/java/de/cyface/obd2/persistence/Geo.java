@@ -0,0 +1,67 @@
+/*
+ * Created on 18.10.26 at 01:50.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+/**
+ * <p>
+ * Geographic calculations on coordinates in degrees, as reported by the GPS receiver of the dongle.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class Geo {
+
+    /**
+     * <p>
+     * The mean radius of the earth in meters.
+     * </p>
+     */
+    public static final double EARTH_RADIUS = 6_371_008.8;
+
+    /**
+     * <p>
+     * Private constructor for utility class.
+     * </p>
+     */
+    private Geo() {
+        // Nothing to do here.
+    }
+
+    /**
+     * <p>
+     * Calculates the great circle distance between two points using the haversine formula.
+     * </p>
+     *
+     * @param latitude1 The latitude of the first point in degrees.
+     * @param longitude1 The longitude of the first point in degrees.
+     * @param latitude2 The latitude of the second point in degrees.
+     * @param longitude2 The longitude of the second point in degrees.
+     * @return The distance between both points in meters.
+     */
+    public static double distance(final double latitude1, final double longitude1, final double latitude2,
+            final double longitude2) {
+        final double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2.0);
+        final double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2.0);
+        final double a = sinLatitude * sinLatitude + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+        return 2.0 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * @param gpsData A GPS fix.
+     * @return {@code true} if the fix contains a position; {@code false} if the receiver reported no position, which
+     *         the dongle transmits as latitude and longitude zero.
+     */
+    public static boolean hasPosition(final GpsData gpsData) {
+        return gpsData != null && !(gpsData.getLatitude() == 0.0 && gpsData.getLongitude() == 0.0)
+                && !Double.isNaN(gpsData.getLatitude()) && !Double.isNaN(gpsData.getLongitude());
+    }
+}
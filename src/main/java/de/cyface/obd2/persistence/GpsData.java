@@ -86,42 +86,42 @@ public final class GpsData {
     /**
      * @return The GPS time as a UTC timestamp
      */
-    long getGpsTime() {
+    public long getGpsTime() {
         return gpsTime;
     }
 
     /**
      * @return The GPS speed for this input data.
      */
-    double getGpsSpeed() {
+    public double getGpsSpeed() {
         return gpsSpeed;
     }
 
     /**
      * @return The altitude for this input data.
      */
-    int getAltitude() {
+    public int getAltitude() {
         return altitude;
     }
 
     /**
      * @return Geographic latitude as a decimal value.
      */
-    double getLatitude() {
+    public double getLatitude() {
         return latitude;
     }
 
     /**
      * @return Geographic longitude as a decimal value.
      */
-    double getLongitude() {
+    public double getLongitude() {
         return longitude;
     }
 
     /**
      * @return The satellite information for this input data.
      */
-    int getSatellites() {
+    public int getSatellites() {
         return satellites;
     }
 
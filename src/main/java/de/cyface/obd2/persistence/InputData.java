@@ -8,22 +8,64 @@
  */
 package de.cyface.obd2.persistence;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * <p>
  * A value object for storing the parsed input data in a structured manner.
  * </p>
+ * <p>
+ * Accelerations are stored column wise in growable primitive arrays instead of one object per sample. They are read
+ * using an index between {@code 0} and {@link #getAccelerationCount()}, as for example in:
+ * </p>
+ *
+ * <pre>
+ * for (int i = 0; i &lt; data.getAccelerationCount(); i++) {
+ *     process(data.getAccelerationTimestamp(i), data.getAx(i), data.getAy(i), data.getAz(i));
+ * }
+ * </pre>
  */
 public final class InputData {
 
     /**
      * <p>
-     * All accelerations collected within this {@code InputData}.
+     * The number of accelerations space is reserved for on creation. The Freematics dongle transmits about a dozen
+     * accelerations per message.
+     * </p>
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * <p>
+     * The timestamps of all accelerations collected within this {@code InputData}.
+     * </p>
+     */
+    private long[] timestamps;
+    /**
+     * <p>
+     * The accelerations in device local x direction collected within this {@code InputData}.
+     * </p>
+     */
+    private int[] ax;
+    /**
+     * <p>
+     * The accelerations in device local y direction collected within this {@code InputData}.
+     * </p>
+     */
+    private int[] ay;
+    /**
+     * <p>
+     * The accelerations in device local z direction collected within this {@code InputData}.
+     * </p>
+     */
+    private int[] az;
+    /**
+     * <p>
+     * The number of accelerations collected within this {@code InputData}. The arrays storing the accelerations may be
+     * larger.
      * </p>
      */
-    private final List<Acceleration> accelerations;
+    private int accelerationCount;
 
     /**
      * <p>
@@ -39,7 +81,10 @@ public final class InputData {
      * </p>
      */
     public InputData() {
-        this.accelerations = new ArrayList<>();
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.ax = new int[INITIAL_CAPACITY];
+        this.ay = new int[INITIAL_CAPACITY];
+        this.az = new int[INITIAL_CAPACITY];
     }
 
     /**
@@ -54,7 +99,14 @@ public final class InputData {
      * @param az        Acceleration in device local z direction.
      */
     public void addAccelerationTuple(final long timestamp, final int ax, final int ay, final int az) {
-        accelerations.add(new Acceleration(timestamp, ax, ay, az));
+        if (accelerationCount == timestamps.length) {
+            resize(Math.max(INITIAL_CAPACITY, accelerationCount * 2));
+        }
+        this.timestamps[accelerationCount] = timestamp;
+        this.ax[accelerationCount] = ax;
+        this.ay[accelerationCount] = ay;
+        this.az[accelerationCount] = az;
+        accelerationCount++;
     }
 
     /**
@@ -72,6 +124,123 @@ public final class InputData {
         this.gpsData = gpsData;
     }
 
+    /**
+     * @return An object containing all the information from the GPS sensor captured for this {@code InputData} or
+     *         {@code null} if no GPS data was available during capturing.
+     */
+    public GpsData getGpsData() {
+        return gpsData;
+    }
+
+    /**
+     * @return The number of accelerations collected within this {@code InputData}.
+     */
+    public int getAccelerationCount() {
+        return accelerationCount;
+    }
+
+    /**
+     * @param index The index of an acceleration between {@code 0} and {@link #getAccelerationCount()}.
+     * @return The timestamp at which the acceleration was captured, counted from the start of the measurement device.
+     */
+    public long getAccelerationTimestamp(final int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    /**
+     * @param index The index of an acceleration between {@code 0} and {@link #getAccelerationCount()}.
+     * @return Acceleration in device local x direction.
+     */
+    public int getAx(final int index) {
+        checkIndex(index);
+        return ax[index];
+    }
+
+    /**
+     * @param index The index of an acceleration between {@code 0} and {@link #getAccelerationCount()}.
+     * @return Acceleration in device local y direction.
+     */
+    public int getAy(final int index) {
+        checkIndex(index);
+        return ay[index];
+    }
+
+    /**
+     * @param index The index of an acceleration between {@code 0} and {@link #getAccelerationCount()}.
+     * @return Acceleration in device local z direction.
+     */
+    public int getAz(final int index) {
+        checkIndex(index);
+        return az[index];
+    }
+
+    /**
+     * <p>
+     * Shrinks the arrays storing the accelerations to the number of accelerations actually collected. This is called
+     * once no more accelerations are expected, to avoid wasting memory for long term storage.
+     * </p>
+     */
+    void trimToSize() {
+        if (accelerationCount < timestamps.length) {
+            resize(accelerationCount);
+        }
+    }
+
+    /**
+     * <p>
+     * Appends the textual representation of this object, as returned by {@link #toString()}, to the provided builder.
+     * This allows rendering many objects into one reused buffer.
+     * </p>
+     *
+     * @param builder The builder to append to.
+     */
+    void appendTo(final StringBuilder builder) {
+        if (gpsData != null) {
+            builder.append("\t\t\t").append("timestamp: ").append(gpsData.getGpsTime()).append(" Lat: ")
+                    .append(gpsData.getLatitude()).append(" Lon: ").append(gpsData.getLongitude()).append(" Speed: ")
+                    .append(gpsData.getGpsSpeed()).append(" Altitude: ").append(gpsData.getAltitude())
+                    .append(" Satellites: ").append(gpsData.getSatellites()).append("\n");
+        }
+        for (int i = 0; i < accelerationCount; i++) {
+            builder.append("\t\t\t").append("timestamp: ").append(timestamps[i]).append(" ax: ").append(ax[i])
+                    .append(" ay: ").append(ay[i]).append(" az: ").append(az[i]).append("\n");
+        }
+    }
+
+    /**
+     * @return An estimation of the number of bytes on the heap occupied by this object including all its samples,
+     *         assuming a 64 bit JVM with compressed object pointers.
+     */
+    long estimateSize() {
+        // This object plus the four arrays storing the accelerations, each with its header.
+        long ret = 40L + 4L * 16L + 20L * timestamps.length;
+        if (gpsData != null) {
+            ret += 56L;
+        }
+        return ret;
+    }
+
+    /**
+     * @param capacity The new number of accelerations the arrays storing the accelerations may hold.
+     */
+    private void resize(final int capacity) {
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        ax = Arrays.copyOf(ax, capacity);
+        ay = Arrays.copyOf(ay, capacity);
+        az = Arrays.copyOf(az, capacity);
+    }
+
+    /**
+     * @param index The index to check.
+     * @throws IndexOutOfBoundsException If there is no acceleration with the provided index.
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= accelerationCount) {
+            throw new IndexOutOfBoundsException(String.format("Index %d is out of bounds.", index));
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -83,16 +252,30 @@ public final class InputData {
 
         InputData inputData = (InputData)o;
 
-        if (!accelerations.equals(inputData.accelerations)) {
+        if (accelerationCount != inputData.accelerationCount) {
             return false;
         }
+        for (int i = 0; i < accelerationCount; i++) {
+            if (timestamps[i] != inputData.timestamps[i] || ax[i] != inputData.ax[i] || ay[i] != inputData.ay[i]
+                    || az[i] != inputData.az[i]) {
+                return false;
+            }
+        }
         return gpsData != null ? gpsData.equals(inputData.gpsData) : inputData.gpsData == null;
 
     }
 
     @Override
     public int hashCode() {
-        int result = accelerations.hashCode();
+        // Same value as the hash code of a list with one value object per acceleration.
+        int result = 1;
+        for (int i = 0; i < accelerationCount; i++) {
+            int accelerationHash = (int)(timestamps[i] ^ (timestamps[i] >>> 32));
+            accelerationHash = 31 * accelerationHash + ax[i];
+            accelerationHash = 31 * accelerationHash + ay[i];
+            accelerationHash = 31 * accelerationHash + az[i];
+            result = 31 * result + accelerationHash;
+        }
         result = 31 * result + (gpsData != null ? gpsData.hashCode() : 0);
         return result;
     }
@@ -100,17 +283,7 @@ public final class InputData {
     @Override
     public String toString() {
         StringBuilder ret = new StringBuilder();
-        if (gpsData != null) {
-            ret.append("\t\t\t").append("timestamp: ").append(gpsData.getGpsTime()).append(" Lat: ")
-               .append(gpsData.getLatitude()).append(" Lon: ").append(gpsData.getLongitude()).append(" Speed: ")
-               .append(gpsData.getGpsSpeed()).append(" Altitude: ").append(gpsData.getAltitude())
-               .append(" Satellites: ").append(gpsData.getSatellites()).append("\n");
-        }
-        for (Acceleration acceleration : accelerations) {
-            ret.append("\t\t\t").append("timestamp: ").append(acceleration.getTimestamp()).append(" ax: ").append(acceleration.getAx()).append(" ay: ")
-               .append(acceleration.getAy()).append(" az: ").append(acceleration.getAz()).append("\n");
-        }
+        appendTo(ret);
         return ret.toString();
-
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * Created on 18.10.26 at 01:15.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Converts {@link InputData} to and from a fixed width binary representation, as used by the {@link TelemetryLog}.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class InputDataCodec {
+
+    /**
+     * <p>
+     * The number of bytes of the header with the number of accelerations and a flag for GPS data. This is also the
+     * smallest number of bytes of encoded data.
+     * </p>
+     */
+    static final int HEADER_SIZE = 5;
+    /**
+     * <p>
+     * The number of bytes used for GPS data.
+     * </p>
+     */
+    private static final int GPS_SIZE = 40;
+    /**
+     * <p>
+     * The number of bytes used for one acceleration.
+     * </p>
+     */
+    private static final int ACCELERATION_SIZE = 20;
+
+    /**
+     * <p>
+     * Private constructor for utility class.
+     * </p>
+     */
+    private InputDataCodec() {
+        // Nothing to do here.
+    }
+
+    /**
+     * @param data The data to encode.
+     * @return The number of bytes required to encode the provided data.
+     */
+    static int encodedSize(final InputData data) {
+        return HEADER_SIZE + (data.getGpsData() == null ? 0 : GPS_SIZE)
+                + ACCELERATION_SIZE * data.getAccelerationCount();
+    }
+
+    /**
+     * <p>
+     * Writes the binary representation of the provided data to a buffer.
+     * </p>
+     *
+     * @param data The data to encode.
+     * @param buffer The buffer to write to, which must have at least {@link #encodedSize(InputData)} bytes remaining.
+     */
+    static void encode(final InputData data, final ByteBuffer buffer) {
+        final GpsData gpsData = data.getGpsData();
+        buffer.putInt(data.getAccelerationCount());
+        buffer.put(gpsData == null ? (byte)0 : (byte)1);
+        if (gpsData != null) {
+            buffer.putLong(gpsData.getGpsTime());
+            buffer.putDouble(gpsData.getLatitude());
+            buffer.putDouble(gpsData.getLongitude());
+            buffer.putInt(gpsData.getAltitude());
+            buffer.putDouble(gpsData.getGpsSpeed());
+            buffer.putInt(gpsData.getSatellites());
+        }
+        for (int i = 0; i < data.getAccelerationCount(); i++) {
+            buffer.putLong(data.getAccelerationTimestamp(i));
+            buffer.putInt(data.getAx(i));
+            buffer.putInt(data.getAy(i));
+            buffer.putInt(data.getAz(i));
+        }
+    }
+
+    /**
+     * <p>
+     * Reads data from its binary representation.
+     * </p>
+     *
+     * @param buffer The buffer to read from.
+     * @return The decoded data.
+     * @throws IllegalArgumentException If the buffer does not contain valid data.
+     */
+    static InputData decode(final ByteBuffer buffer) {
+        try {
+            final int accelerationCount = buffer.getInt();
+            final byte gpsFlag = buffer.get();
+            if (accelerationCount < 0 || gpsFlag < 0 || gpsFlag > 1) {
+                throw new IllegalArgumentException("Invalid header.");
+            }
+            InputData ret = new InputData();
+            if (gpsFlag == 1) {
+                ret.addGpsData(new GpsData(buffer.getLong(), buffer.getDouble(), buffer.getDouble(), buffer.getInt(),
+                        buffer.getDouble(), buffer.getInt()));
+            }
+            for (int i = 0; i < accelerationCount; i++) {
+                ret.addAccelerationTuple(buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+            }
+            ret.trimToSize();
+            return ret;
+        } catch (final BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated data.", e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Created on 18.10.26 at 01:53.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+/**
+ * <p>
+ * A place a vehicle has been at a certain time, as found by a spatial query. The time is the timestamp of the first
+ * acceleration of the {@link InputData} entry, which contained the GPS position.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class Location {
+
+    /**
+     * <p>
+     * The vehicle identification number of the vehicle.
+     * </p>
+     */
+    private final String vehicleIdentificationNumber;
+    /**
+     * <p>
+     * The time the vehicle was at this location in milliseconds.
+     * </p>
+     */
+    private final long timestamp;
+    /**
+     * <p>
+     * The latitude in degrees.
+     * </p>
+     */
+    private final double latitude;
+    /**
+     * <p>
+     * The longitude in degrees.
+     * </p>
+     */
+    private final double longitude;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code Location}.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number of the vehicle.
+     * @param timestamp The time the vehicle was at this location in milliseconds.
+     * @param latitude The latitude in degrees.
+     * @param longitude The longitude in degrees.
+     */
+    Location(final String vehicleIdentificationNumber, final long timestamp, final double latitude,
+            final double longitude) {
+        this.vehicleIdentificationNumber = vehicleIdentificationNumber;
+        this.timestamp = timestamp;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * @return The vehicle identification number of the vehicle.
+     */
+    public String getVehicleIdentificationNumber() {
+        return vehicleIdentificationNumber;
+    }
+
+    /**
+     * @return The time the vehicle was at this location in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The latitude in degrees.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * @return The longitude in degrees.
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * <p>
+     * Appends the textual representation of this location to a {@code StringBuilder}. It is a comma separated line with
+     * the vehicle identification number, the time, the latitude and the longitude.
+     * </p>
+     *
+     * @param builder The builder to append to.
+     */
+    public void appendTo(final StringBuilder builder) {
+        builder.append(vehicleIdentificationNumber).append(',').append(timestamp).append(',').append(latitude)
+                .append(',').append(longitude);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ret = new StringBuilder();
+        appendTo(ret);
+        return ret.toString();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Created on 18.10.26 at 01:47.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Aggregated statistics of all acceleration samples of one vehicle inside a time window: the minimum, maximum, mean
+ * and root mean square value per axis. Objects of this class are immutable snapshots of the statistics at the time they
+ * were read.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class Rollup {
+
+    /**
+     * <p>
+     * The start of the window in milliseconds, inclusive.
+     * </p>
+     */
+    private final long start;
+    /**
+     * <p>
+     * The length of the window in milliseconds.
+     * </p>
+     */
+    private final long duration;
+    /**
+     * <p>
+     * The number of samples inside the window.
+     * </p>
+     */
+    private final int count;
+    /**
+     * <p>
+     * The minimum value per axis, indexed by the ordinal of the {@link Axis}.
+     * </p>
+     */
+    private final int[] min;
+    /**
+     * <p>
+     * The maximum value per axis, indexed by the ordinal of the {@link Axis}.
+     * </p>
+     */
+    private final int[] max;
+    /**
+     * <p>
+     * The sum of all values per axis, indexed by the ordinal of the {@link Axis}.
+     * </p>
+     */
+    private final long[] sum;
+    /**
+     * <p>
+     * The sum of the squares of all values per axis, indexed by the ordinal of the {@link Axis}.
+     * </p>
+     */
+    private final double[] sumOfSquares;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code Rollup}. The arrays are indexed by the ordinal of the {@link Axis} and
+     * are not copied.
+     * </p>
+     *
+     * @param start The start of the window in milliseconds, inclusive.
+     * @param duration The length of the window in milliseconds.
+     * @param count The number of samples inside the window.
+     * @param min The minimum value per axis.
+     * @param max The maximum value per axis.
+     * @param sum The sum of all values per axis.
+     * @param sumOfSquares The sum of the squares of all values per axis.
+     */
+    Rollup(final long start, final long duration, final int count, final int[] min, final int[] max, final long[] sum,
+            final double[] sumOfSquares) {
+        this.start = start;
+        this.duration = duration;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.sumOfSquares = sumOfSquares;
+    }
+
+    /**
+     * @return The start of the window in milliseconds, inclusive.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return The length of the window in milliseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return The number of samples inside the window.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param axis The axis to get the statistics for.
+     * @return The minimum acceleration along the provided axis.
+     */
+    public int getMin(final Axis axis) {
+        return min[axis.ordinal()];
+    }
+
+    /**
+     * @param axis The axis to get the statistics for.
+     * @return The maximum acceleration along the provided axis.
+     */
+    public int getMax(final Axis axis) {
+        return max[axis.ordinal()];
+    }
+
+    /**
+     * @param axis The axis to get the statistics for.
+     * @return The mean acceleration along the provided axis.
+     */
+    public double getMean(final Axis axis) {
+        return (double)sum[axis.ordinal()] / count;
+    }
+
+    /**
+     * @param axis The axis to get the statistics for.
+     * @return The root mean square of the acceleration along the provided axis.
+     */
+    public double getRms(final Axis axis) {
+        return Math.sqrt(sumOfSquares[axis.ordinal()] / count);
+    }
+
+    /**
+     * <p>
+     * Appends the textual representation of this window to a {@code StringBuilder}. It is a comma separated line with
+     * the start, the number of samples and the minimum, maximum, mean and root mean square for each axis.
+     * </p>
+     *
+     * @param builder The builder to append to.
+     */
+    public void appendTo(final StringBuilder builder) {
+        builder.append(start).append(',').append(count);
+        for (final Axis axis : Axis.values()) {
+            builder.append(',').append(getMin(axis)).append(',').append(getMax(axis)).append(',')
+                    .append(getMean(axis)).append(',').append(getRms(axis));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ret = new StringBuilder();
+        appendTo(ret);
+        return ret.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        Rollup rollup = (Rollup)o;
+
+        return start == rollup.start && duration == rollup.duration && count == rollup.count
+                && Arrays.equals(min, rollup.min) && Arrays.equals(max, rollup.max) && Arrays.equals(sum, rollup.sum)
+                && Arrays.equals(sumOfSquares, rollup.sumOfSquares);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int)(start ^ (start >>> 32));
+        result = 31 * result + count;
+        result = 31 * result + Arrays.hashCode(sum);
+        return result;
+    }
+
+    /**
+     * <p>
+     * The axes of the device local coordinate system accelerations are measured in.
+     * </p>
+     */
+    public enum Axis {
+        /**
+         * <p>
+         * The device local x direction.
+         * </p>
+         */
+        X,
+        /**
+         * <p>
+         * The device local y direction.
+         * </p>
+         */
+        Y,
+        /**
+         * <p>
+         * The device local z direction.
+         * </p>
+         */
+        Z
+    }
+}
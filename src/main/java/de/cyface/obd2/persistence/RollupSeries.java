@@ -0,0 +1,266 @@
+/*
+ * Created on 18.10.26 at 01:48.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * The {@link Rollup} statistics of the accelerations of one vehicle per time window of constant length. The statistics
+ * are updated incrementally for every added sample, so reading them never touches the raw samples. Windows are kept in
+ * ascending order in parallel primitive arrays, like the {@link TimestampIndex}, which makes adding samples in
+ * chronological order constant time, while samples arriving late are still added to the correct window.
+ * </p>
+ * <p>
+ * This class is not thread safe. It is guarded by the lock of the {@code DeviceData} object it belongs to.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class RollupSeries {
+    /**
+     * <p>
+     * The number of windows the series is able to hold initially.
+     * </p>
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * <p>
+     * The number of axes statistics are collected for.
+     * </p>
+     */
+    private static final int AXES = Rollup.Axis.values().length;
+
+    /**
+     * <p>
+     * The length of each window in milliseconds.
+     * </p>
+     */
+    private final long windowLength;
+    /**
+     * <p>
+     * The start of each window in milliseconds in ascending order.
+     * </p>
+     */
+    private long[] starts;
+    /**
+     * <p>
+     * The number of samples per window.
+     * </p>
+     */
+    private int[] counts;
+    /**
+     * <p>
+     * The minimum value per window and axis.
+     * </p>
+     */
+    private int[] min;
+    /**
+     * <p>
+     * The maximum value per window and axis.
+     * </p>
+     */
+    private int[] max;
+    /**
+     * <p>
+     * The sum of all values per window and axis.
+     * </p>
+     */
+    private long[] sum;
+    /**
+     * <p>
+     * The sum of the squares of all values per window and axis.
+     * </p>
+     */
+    private double[] sumOfSquares;
+    /**
+     * <p>
+     * The number of windows.
+     * </p>
+     */
+    private int size;
+
+    /**
+     * <p>
+     * Creates a new empty series.
+     * </p>
+     *
+     * @param windowLength The length of each window in milliseconds.
+     */
+    RollupSeries(final long windowLength) {
+        Validate.isTrue(windowLength > 0L, "Window length must be positive.");
+        this.windowLength = windowLength;
+        this.starts = new long[INITIAL_CAPACITY];
+        this.counts = new int[INITIAL_CAPACITY];
+        this.min = new int[INITIAL_CAPACITY * AXES];
+        this.max = new int[INITIAL_CAPACITY * AXES];
+        this.sum = new long[INITIAL_CAPACITY * AXES];
+        this.sumOfSquares = new double[INITIAL_CAPACITY * AXES];
+    }
+
+    /**
+     * <p>
+     * Adds all acceleration samples of an entry to the statistics of their windows.
+     * </p>
+     *
+     * @param entry The entry to add.
+     */
+    void add(final InputData entry) {
+        int window = -1;
+        for (int i = 0; i < entry.getAccelerationCount(); i++) {
+            final long start = Math.floorDiv(entry.getAccelerationTimestamp(i), windowLength) * windowLength;
+            if (window == -1 || starts[window] != start) {
+                window = windowOf(start);
+            }
+            counts[window]++;
+            update(window * AXES, entry.getAx(i));
+            update(window * AXES + 1, entry.getAy(i));
+            update(window * AXES + 2, entry.getAz(i));
+        }
+    }
+
+    /**
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @return The number of windows starting inside the time range.
+     */
+    int count(final long from, final long to) {
+        return from > to ? 0 : upperBound(to) - lowerBound(from);
+    }
+
+    /**
+     * @param from The start of the time range in milliseconds, inclusive.
+     * @param to The end of the time range in milliseconds, inclusive.
+     * @param offset The number of windows inside the time range to skip.
+     * @param limit The maximum number of windows to return.
+     * @return The statistics of the windows starting inside the time range ordered by time, skipping {@code offset} and
+     *         at most {@code limit}.
+     */
+    List<Rollup> find(final long from, final long to, final int offset, final int limit) {
+        if (from > to) {
+            return Collections.emptyList();
+        }
+        final long first = (long)lowerBound(from) + offset;
+        final long end = Math.min(first + limit, upperBound(to));
+        if (first >= end) {
+            return Collections.emptyList();
+        }
+        List<Rollup> ret = new ArrayList<>((int)(end - first));
+        for (int window = (int)first; window < end; window++) {
+            final int axes = window * AXES;
+            ret.add(new Rollup(starts[window], windowLength, counts[window], Arrays.copyOfRange(min, axes, axes + AXES),
+                    Arrays.copyOfRange(max, axes, axes + AXES), Arrays.copyOfRange(sum, axes, axes + AXES),
+                    Arrays.copyOfRange(sumOfSquares, axes, axes + AXES)));
+        }
+        return ret;
+    }
+
+    /**
+     * @return The number of windows.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index The index of the statistics of one window and axis.
+     * @param value The value to add to the statistics.
+     */
+    private void update(final int index, final int value) {
+        min[index] = Math.min(min[index], value);
+        max[index] = Math.max(max[index], value);
+        sum[index] += value;
+        sumOfSquares[index] += (double)value * value;
+    }
+
+    /**
+     * @param start The start of a window.
+     * @return The index of the window with the provided start, which is created if it does not exist yet.
+     */
+    private int windowOf(final long start) {
+        final int ret = lowerBound(start);
+        if (ret < size && starts[ret] == start) {
+            return ret;
+        }
+        if (size == starts.length) {
+            final int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            min = Arrays.copyOf(min, capacity * AXES);
+            max = Arrays.copyOf(max, capacity * AXES);
+            sum = Arrays.copyOf(sum, capacity * AXES);
+            sumOfSquares = Arrays.copyOf(sumOfSquares, capacity * AXES);
+        }
+        if (ret < size) {
+            System.arraycopy(starts, ret, starts, ret + 1, size - ret);
+            System.arraycopy(counts, ret, counts, ret + 1, size - ret);
+            System.arraycopy(min, ret * AXES, min, (ret + 1) * AXES, (size - ret) * AXES);
+            System.arraycopy(max, ret * AXES, max, (ret + 1) * AXES, (size - ret) * AXES);
+            System.arraycopy(sum, ret * AXES, sum, (ret + 1) * AXES, (size - ret) * AXES);
+            System.arraycopy(sumOfSquares, ret * AXES, sumOfSquares, (ret + 1) * AXES, (size - ret) * AXES);
+        }
+        starts[ret] = start;
+        counts[ret] = 0;
+        Arrays.fill(min, ret * AXES, (ret + 1) * AXES, Integer.MAX_VALUE);
+        Arrays.fill(max, ret * AXES, (ret + 1) * AXES, Integer.MIN_VALUE);
+        Arrays.fill(sum, ret * AXES, (ret + 1) * AXES, 0L);
+        Arrays.fill(sumOfSquares, ret * AXES, (ret + 1) * AXES, 0.0);
+        size++;
+        return ret;
+    }
+
+    /**
+     * @param timestamp A timestamp.
+     * @return The index of the first window starting at or after the provided timestamp or the size of this series if
+     *         there is none.
+     */
+    private int lowerBound(final long timestamp) {
+        // Checking the last window first makes adding in chronological order constant time.
+        if (size == 0 || starts[size - 1] < timestamp) {
+            return size;
+        }
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (starts[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param timestamp A timestamp.
+     * @return The index of the first window starting after the provided timestamp or the size of this series if there
+     *         is none.
+     */
+    private int upperBound(final long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (starts[middle] <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
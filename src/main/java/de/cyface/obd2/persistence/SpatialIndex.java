@@ -0,0 +1,363 @@
+/*
+ * Created on 18.10.26 at 01:54.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * An index of the GPS positions of all vehicles, which answers which vehicles have been inside an area without reading
+ * the stored data. Positions are kept in a grid of cells with a constant size in degrees. A query only reads the
+ * cells overlapping the queried area, or all non empty cells if there are fewer of them.
+ * </p>
+ * <p>
+ * Only entries with a GPS position and at least one acceleration, which provides their time, are indexed. Areas do not
+ * wrap around at the antimeridian, while circles do. Queries keep only the requested number of locations in a bounded
+ * heap, so their memory does not depend on the number of matches.
+ * </p>
+ * <p>
+ * The index is thread safe. Each cell is locked separately, so vehicles at different places are indexed in parallel.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class SpatialIndex {
+
+    /**
+     * <p>
+     * The order of the locations found inside an area.
+     * </p>
+     */
+    private static final Comparator<Location> AREA_ORDER = Comparator
+            .comparing(Location::getVehicleIdentificationNumber).thenComparingLong(Location::getTimestamp);
+    /**
+     * <p>
+     * The largest initial capacity of the heap collecting the found locations, so large limits only cost memory if
+     * there are that many locations.
+     * </p>
+     */
+    private static final int INITIAL_HEAP_CAPACITY = 64;
+
+    /**
+     * <p>
+     * The edge length of a cell in degrees.
+     * </p>
+     */
+    private final double cellSize;
+    /**
+     * <p>
+     * The non empty cells by their row and column, as returned by {@link #key(int, int)}.
+     * </p>
+     */
+    private final ConcurrentMap<Long, Cell> cells;
+
+    /**
+     * <p>
+     * Creates a new empty index.
+     * </p>
+     *
+     * @param cellSize The edge length of a cell in degrees.
+     */
+    SpatialIndex(final double cellSize) {
+        Validate.isTrue(cellSize > 0.0, "Cell size must be positive.");
+        this.cellSize = cellSize;
+        this.cells = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * <p>
+     * Adds the position of an entry to the index, if it has one.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number of the vehicle the entry belongs to.
+     * @param entry The entry to add.
+     */
+    void add(final String vehicleIdentificationNumber, final InputData entry) {
+        final GpsData gpsData = entry.getGpsData();
+        if (entry.getAccelerationCount() == 0 || !Geo.hasPosition(gpsData)) {
+            return;
+        }
+        final Long key = key(row(gpsData.getLatitude()), column(gpsData.getLongitude()));
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = cells.computeIfAbsent(key, k -> new Cell());
+        }
+        cell.add(vehicleIdentificationNumber, entry.getAccelerationTimestamp(0), gpsData.getLatitude(),
+                gpsData.getLongitude());
+    }
+
+    /**
+     * @param minLatitude The southern border of the area in degrees, inclusive.
+     * @param minLongitude The western border of the area in degrees, inclusive.
+     * @param maxLatitude The northern border of the area in degrees, inclusive.
+     * @param maxLongitude The eastern border of the area in degrees, inclusive.
+     * @param limit The maximum number of locations to return.
+     * @return The first indexed locations inside the area ordered by vehicle identification number and time, which
+     *         are at most {@code limit}.
+     */
+    List<Location> findInArea(final double minLatitude, final double minLongitude, final double maxLatitude,
+            final double maxLongitude, final int limit) {
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+        // The heap holds the last of the locations kept so far at its head, so it never grows beyond the limit.
+        final PriorityQueue<Location> heap = new PriorityQueue<>(Math.min(limit, INITIAL_HEAP_CAPACITY),
+                AREA_ORDER.reversed());
+        visit(minLatitude, minLongitude, maxLatitude, maxLongitude, location -> offer(heap, location, limit));
+        List<Location> ret = new ArrayList<>(heap);
+        ret.sort(AREA_ORDER);
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Circles crossing the antimeridian are split into one area at each side of it.
+     * </p>
+     *
+     * @param latitude The latitude of the center in degrees.
+     * @param longitude The longitude of the center in degrees.
+     * @param radius The radius around the center in meters.
+     * @param limit The maximum number of locations to return.
+     * @return The indexed locations not further away from the center than the radius, the nearest first, which are at
+     *         most {@code limit}.
+     */
+    List<Location> findNear(final double latitude, final double longitude, final double radius, final int limit) {
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+        final double angularRadius = radius / Geo.EARTH_RADIUS;
+        final double latitudeDelta = Math.toDegrees(angularRadius);
+        double minLongitude = -180.0;
+        double maxLongitude = 180.0;
+        if (Math.abs(latitude) + latitudeDelta < 90.0 && angularRadius < Math.PI / 2.0) {
+            // The widest longitude range of a circle not containing a pole.
+            final double longitudeDelta = Math.toDegrees(
+                    Math.asin(Math.min(1.0, Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude)))));
+            minLongitude = longitude - longitudeDelta;
+            maxLongitude = longitude + longitudeDelta;
+        }
+
+        final PriorityQueue<Map.Entry<Double, Location>> heap = new PriorityQueue<>(
+                Math.min(limit, INITIAL_HEAP_CAPACITY), Map.Entry.<Double, Location>comparingByKey().reversed());
+        final Consumer<Location> matcher = candidate -> {
+            final double distance = Geo.distance(latitude, longitude, candidate.getLatitude(),
+                    candidate.getLongitude());
+            if (distance <= radius) {
+                offer(heap, new AbstractMap.SimpleImmutableEntry<>(distance, candidate), limit);
+            }
+        };
+        final double minLatitude = latitude - latitudeDelta;
+        final double maxLatitude = latitude + latitudeDelta;
+        if (minLongitude < -180.0) {
+            visit(minLatitude, minLongitude + 360.0, maxLatitude, 180.0, matcher);
+            visit(minLatitude, -180.0, maxLatitude, maxLongitude, matcher);
+        } else if (maxLongitude > 180.0) {
+            visit(minLatitude, minLongitude, maxLatitude, 180.0, matcher);
+            visit(minLatitude, -180.0, maxLatitude, maxLongitude - 360.0, matcher);
+        } else {
+            visit(minLatitude, minLongitude, maxLatitude, maxLongitude, matcher);
+        }
+
+        List<Map.Entry<Double, Location>> matches = new ArrayList<>(heap);
+        matches.sort(Map.Entry.comparingByKey());
+        List<Location> ret = new ArrayList<>(matches.size());
+        for (final Map.Entry<Double, Location> match : matches) {
+            ret.add(match.getValue());
+        }
+        return ret;
+    }
+
+    /**
+     * @return The number of non empty cells.
+     */
+    int cellCount() {
+        return cells.size();
+    }
+
+    /**
+     * @param minLatitude The southern border of the area in degrees, inclusive.
+     * @param minLongitude The western border of the area in degrees, inclusive.
+     * @param maxLatitude The northern border of the area in degrees, inclusive.
+     * @param maxLongitude The eastern border of the area in degrees, inclusive.
+     * @param visitor Called with each indexed location inside the area in no particular order.
+     */
+    private void visit(final double minLatitude, final double minLongitude, final double maxLatitude,
+            final double maxLongitude, final Consumer<Location> visitor) {
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            return;
+        }
+        final int minRow = row(minLatitude);
+        final int maxRow = row(maxLatitude);
+        final int minColumn = column(minLongitude);
+        final int maxColumn = column(maxLongitude);
+        final long overlappingCells = ((long)maxRow - minRow + 1L) * ((long)maxColumn - minColumn + 1L);
+
+        if (overlappingCells <= cells.size()) {
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int column = minColumn; column <= maxColumn; column++) {
+                    Cell cell = cells.get(key(row, column));
+                    if (cell != null) {
+                        cell.find(minLatitude, minLongitude, maxLatitude, maxLongitude, visitor);
+                    }
+                }
+            }
+        } else {
+            // Large areas contain more cells than exist, so it is cheaper to check each existing cell.
+            for (final Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                final int row = (int)(entry.getKey() >> 32);
+                final int column = (int)entry.getKey().longValue();
+                if (row >= minRow && row <= maxRow && column >= minColumn && column <= maxColumn) {
+                    entry.getValue().find(minLatitude, minLongitude, maxLatitude, maxLongitude, visitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Adds an element to a heap ordered with the last element at its head, as long as the heap holds less than
+     * {@code limit} elements or the new element comes before its head, which is removed in that case.
+     * </p>
+     *
+     * @param heap The heap to add the element to.
+     * @param element The element to add.
+     * @param limit The maximum number of elements of the heap, which must be positive.
+     * @param <T> The type of the elements.
+     */
+    private static <T> void offer(final PriorityQueue<T> heap, final T element, final int limit) {
+        if (heap.size() < limit) {
+            heap.add(element);
+        } else if (heap.comparator().compare(element, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    /**
+     * @param latitude A latitude in degrees.
+     * @return The row of the cells containing the latitude.
+     */
+    private int row(final double latitude) {
+        return (int)Math.floor(latitude / cellSize);
+    }
+
+    /**
+     * @param longitude A longitude in degrees.
+     * @return The column of the cells containing the longitude.
+     */
+    private int column(final double longitude) {
+        return (int)Math.floor(longitude / cellSize);
+    }
+
+    /**
+     * @param row The row of a cell.
+     * @param column The column of a cell.
+     * @return The key of the cell in {@link #cells}.
+     */
+    private static Long key(final int row, final int column) {
+        return ((long)row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * <p>
+     * The positions inside one cell of the grid, stored in parallel arrays.
+     * </p>
+     */
+    private static final class Cell {
+        /**
+         * <p>
+         * The number of positions the cell is able to hold initially.
+         * </p>
+         */
+        private static final int INITIAL_CAPACITY = 8;
+
+        /**
+         * <p>
+         * The vehicle identification number per position.
+         * </p>
+         */
+        private String[] vehicleIdentificationNumbers = new String[INITIAL_CAPACITY];
+        /**
+         * <p>
+         * The time per position in milliseconds.
+         * </p>
+         */
+        private long[] timestamps = new long[INITIAL_CAPACITY];
+        /**
+         * <p>
+         * The latitude per position in degrees.
+         * </p>
+         */
+        private double[] latitudes = new double[INITIAL_CAPACITY];
+        /**
+         * <p>
+         * The longitude per position in degrees.
+         * </p>
+         */
+        private double[] longitudes = new double[INITIAL_CAPACITY];
+        /**
+         * <p>
+         * The number of positions in this cell.
+         * </p>
+         */
+        private int size;
+
+        /**
+         * @param vehicleIdentificationNumber The vehicle identification number of the vehicle at the position.
+         * @param timestamp The time the vehicle was at the position in milliseconds.
+         * @param latitude The latitude of the position in degrees.
+         * @param longitude The longitude of the position in degrees.
+         */
+        synchronized void add(final String vehicleIdentificationNumber, final long timestamp, final double latitude,
+                final double longitude) {
+            if (size == timestamps.length) {
+                vehicleIdentificationNumbers = Arrays.copyOf(vehicleIdentificationNumbers, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+            }
+            vehicleIdentificationNumbers[size] = vehicleIdentificationNumber;
+            timestamps[size] = timestamp;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+        }
+
+        /**
+         * @param minLatitude The southern border of the area in degrees, inclusive.
+         * @param minLongitude The western border of the area in degrees, inclusive.
+         * @param maxLatitude The northern border of the area in degrees, inclusive.
+         * @param maxLongitude The eastern border of the area in degrees, inclusive.
+         * @param visitor Called with each position of this cell inside the area.
+         */
+        synchronized void find(final double minLatitude, final double minLongitude, final double maxLatitude,
+                final double maxLongitude, final Consumer<Location> visitor) {
+            for (int i = 0; i < size; i++) {
+                if (latitudes[i] >= minLatitude && latitudes[i] <= maxLatitude && longitudes[i] >= minLongitude
+                        && longitudes[i] <= maxLongitude) {
+                    visitor.accept(new Location(vehicleIdentificationNumbers[i], timestamps[i], latitudes[i],
+                            longitudes[i]));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,633 @@
+/*
+ * Created on 18.10.26 at 01:16.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * A durable, append only log of all the {@link InputData} stored for each vehicle. Each vehicle gets its own directory
+ * containing numbered segment files. Data is only ever appended to the last segment, which makes writing sequential and
+ * fast. As soon as a segment reaches the configured size, a new segment is started.
+ * </p>
+ * <p>
+ * Each record in a segment consists of the length of the encoded data, a CRC32 checksum and the data itself. A record
+ * only partially written, for example because the server crashed or the power failed, is detected by its length, its
+ * checksum or data that cannot be decoded. It is cut off together with everything after it the next time the log for
+ * that vehicle is opened. A record failing to be written while the server keeps running is removed right away, so it
+ * is not followed by the record written when the data is stored again. The {@link FsyncPolicy} decides how often
+ * written data is forced to the storage device.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class TelemetryLog implements Closeable {
+
+    /**
+     * <p>
+     * Logger for objects of this class. Configure it using SpringBoot settings in
+     * <tt>resources/application.properties</tt>.
+     * </p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TelemetryLog.class);
+    /**
+     * <p>
+     * The file name extension of segment files.
+     * </p>
+     */
+    private static final String SEGMENT_SUFFIX = ".seg";
+    /**
+     * <p>
+     * The number of bytes of the header preceding each record, which consists of the length and the checksum.
+     * </p>
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * <p>
+     * Policies on how often data written to the log is forced to the storage device.
+     * </p>
+     */
+    public enum FsyncPolicy {
+        /**
+         * <p>
+         * Force every record to the storage device before returning from {@link TelemetryLog#append(String, InputData)}.
+         * This is the safest but slowest option.
+         * </p>
+         */
+        ALWAYS,
+        /**
+         * <p>
+         * Force data to the storage device after a configurable number of records per vehicle.
+         * </p>
+         */
+        BATCH,
+        /**
+         * <p>
+         * Leave it to the operating system when to write data to the storage device. Data only survives crashes of the
+         * server process, but not of the operating system.
+         * </p>
+         */
+        NEVER
+    }
+
+    /**
+     * <p>
+     * The directory containing one sub directory per vehicle.
+     * </p>
+     */
+    private final Path directory;
+    /**
+     * <p>
+     * The size in bytes after which a new segment is started.
+     * </p>
+     */
+    private final long segmentSize;
+    /**
+     * <p>
+     * The policy on how often data is forced to the storage device.
+     * </p>
+     */
+    private final FsyncPolicy fsyncPolicy;
+    /**
+     * <p>
+     * The number of records per vehicle after which data is forced to the storage device, if the policy is
+     * {@link FsyncPolicy#BATCH}.
+     * </p>
+     */
+    private final int batchSize;
+    /**
+     * <p>
+     * Opens a segment file for reading and writing.
+     * </p>
+     */
+    private final SegmentOpener segmentOpener;
+    /**
+     * <p>
+     * The open logs per vehicle identification number.
+     * </p>
+     */
+    private final ConcurrentMap<String, VehicleLog> vehicleLogs;
+    /**
+     * <p>
+     * Whether this log has been closed.
+     * </p>
+     */
+    private volatile boolean closed;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code TelemetryLog}, creating the log directory if necessary.
+     * </p>
+     *
+     * @param directory The directory containing one sub directory per vehicle.
+     * @param segmentSize The size in bytes after which a new segment is started. Since segments are read through a
+     *            single memory mapping, this must not be larger than {@link Integer#MAX_VALUE}.
+     * @param fsyncPolicy The policy on how often data is forced to the storage device.
+     * @param batchSize The number of records per vehicle after which data is forced to the storage device, if the
+     *            policy is {@link FsyncPolicy#BATCH}.
+     * @throws IOException If the log directory could not be created.
+     */
+    public TelemetryLog(final Path directory, final long segmentSize, final FsyncPolicy fsyncPolicy,
+            final int batchSize) throws IOException {
+        this(directory, segmentSize, fsyncPolicy, batchSize, segmentFile -> FileChannel.open(segmentFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code TelemetryLog} opening its segment files with the provided
+     * {@code SegmentOpener}, creating the log directory if necessary.
+     * </p>
+     *
+     * @param directory The directory containing one sub directory per vehicle.
+     * @param segmentSize The size in bytes after which a new segment is started. Since segments are read through a
+     *            single memory mapping, this must not be larger than {@link Integer#MAX_VALUE}.
+     * @param fsyncPolicy The policy on how often data is forced to the storage device.
+     * @param batchSize The number of records per vehicle after which data is forced to the storage device, if the
+     *            policy is {@link FsyncPolicy#BATCH}.
+     * @param segmentOpener Opens a segment file for reading and writing.
+     * @throws IOException If the log directory could not be created.
+     */
+    TelemetryLog(final Path directory, final long segmentSize, final FsyncPolicy fsyncPolicy, final int batchSize,
+            final SegmentOpener segmentOpener) throws IOException {
+        Validate.notNull(directory);
+        Validate.notNull(fsyncPolicy);
+        Validate.notNull(segmentOpener);
+        Validate.isTrue(segmentSize > RECORD_HEADER_SIZE, "Segment size too small.");
+        Validate.isTrue(segmentSize <= Integer.MAX_VALUE, "Segment size must not be larger than %d bytes.",
+                Integer.MAX_VALUE);
+        Validate.isTrue(batchSize > 0, "Batch size must be positive.");
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.batchSize = batchSize;
+        this.segmentOpener = segmentOpener;
+        this.vehicleLogs = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * <p>
+     * Appends data for a vehicle to the log.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number of the vehicle the data belongs to.
+     * @param data The data to append.
+     * @throws UncheckedIOException If writing to the log failed.
+     */
+    public void append(final String vehicleIdentificationNumber, final InputData data) {
+        Validate.notEmpty(vehicleIdentificationNumber);
+        Validate.notNull(data);
+        Validate.validState(!closed, "Log is closed.");
+        try {
+            openVehicleLog(vehicleIdentificationNumber).append(data);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(
+                    String.format("Unable to write data for vehicle %s.", vehicleIdentificationNumber), e);
+        }
+    }
+
+    /**
+     * <p>
+     * Reads all data from the log, in the order it was appended per vehicle. Incomplete records at the end of the log
+     * are removed.
+     * </p>
+     *
+     * @param consumer Called with the vehicle identification number and the data for every record in the log.
+     * @return The number of records read.
+     * @throws IOException If reading the log failed.
+     */
+    public long replay(final BiConsumer<String, InputData> consumer) throws IOException {
+        Validate.notNull(consumer);
+        long ret = 0L;
+        try (DirectoryStream<Path> vehicleDirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (final Path vehicleDirectory : vehicleDirectories) {
+                final String vehicleIdentificationNumber = decodeName(vehicleDirectory.getFileName().toString());
+                final VehicleLog vehicleLog = openVehicleLog(vehicleIdentificationNumber);
+                ret += vehicleLog.replay(data -> consumer.accept(vehicleIdentificationNumber, data));
+            }
+        }
+        LOGGER.info("Replayed {} records from {}.", ret, directory);
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Forces all data to the storage device and closes all open files.
+     * </p>
+     *
+     * @throws IOException If closing any of the files failed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        IOException exception = null;
+        for (final VehicleLog vehicleLog : vehicleLogs.values()) {
+            try {
+                vehicleLog.close();
+            } catch (final IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * @param vehicleIdentificationNumber The vehicle identification number to get the log for.
+     * @return The open log for the vehicle, which is opened if necessary.
+     * @throws IOException If opening the log failed.
+     */
+    private VehicleLog openVehicleLog(final String vehicleIdentificationNumber) throws IOException {
+        VehicleLog ret = vehicleLogs.get(vehicleIdentificationNumber);
+        if (ret == null) {
+            try {
+                ret = vehicleLogs.computeIfAbsent(vehicleIdentificationNumber, vin -> {
+                    try {
+                        return new VehicleLog(directory.resolve(encodeName(vin)));
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Converts a vehicle identification number into a name safe to use as a file name on all platforms. Letters and
+     * digits are kept, while all other characters are replaced by an underscore followed by their hexadecimal code.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number to convert.
+     * @return The file name for the provided vehicle identification number.
+     */
+    static String encodeName(final String vehicleIdentificationNumber) {
+        StringBuilder ret = new StringBuilder(vehicleIdentificationNumber.length());
+        for (int i = 0; i < vehicleIdentificationNumber.length(); i++) {
+            final char character = vehicleIdentificationNumber.charAt(i);
+            if (character < 128 && Character.isLetterOrDigit(character)) {
+                ret.append(character);
+            } else {
+                ret.append('_').append(String.format("%04x", (int)character));
+            }
+        }
+        return ret.toString();
+    }
+
+    /**
+     * @param name A file name created by {@link #encodeName(String)}.
+     * @return The vehicle identification number the provided file name was created from.
+     */
+    static String decodeName(final String name) {
+        StringBuilder ret = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            final char character = name.charAt(i);
+            if (character == '_' && i + 4 < name.length()) {
+                ret.append((char)Integer.parseInt(name.substring(i + 1, i + 5), 16));
+                i += 4;
+            } else {
+                ret.append(character);
+            }
+        }
+        return ret.toString();
+    }
+
+    /**
+     * <p>
+     * The log of a single vehicle, consisting of numbered segment files in one directory.
+     * </p>
+     */
+    private final class VehicleLog {
+        /**
+         * <p>
+         * The directory containing the segments of this log.
+         * </p>
+         */
+        private final Path vehicleDirectory;
+        /**
+         * <p>
+         * Calculates the checksums of written records.
+         * </p>
+         */
+        private final CRC32 checksum;
+        /**
+         * <p>
+         * Buffer reused for encoding records.
+         * </p>
+         */
+        private ByteBuffer buffer;
+        /**
+         * <p>
+         * The segment data is currently appended to.
+         * </p>
+         */
+        private FileChannel segment;
+        /**
+         * <p>
+         * The sequence number of the current segment.
+         * </p>
+         */
+        private long segmentNumber;
+        /**
+         * <p>
+         * The number of bytes in the current segment.
+         * </p>
+         */
+        private long currentSize;
+        /**
+         * <p>
+         * The number of records written since data was last forced to the storage device.
+         * </p>
+         */
+        private int unforcedRecords;
+
+        /**
+         * <p>
+         * Opens the log in the provided directory for appending, creating it if necessary. An incomplete record at the
+         * end of the last segment is removed.
+         * </p>
+         *
+         * @param vehicleDirectory The directory containing the segments of this log.
+         * @throws IOException If opening the log failed.
+         */
+        VehicleLog(final Path vehicleDirectory) throws IOException {
+            this.vehicleDirectory = Files.createDirectories(vehicleDirectory);
+            this.checksum = new CRC32();
+            this.buffer = ByteBuffer.allocate(1024);
+            final List<Path> segments = segments();
+            if (segments.isEmpty()) {
+                openSegment(0L);
+            } else {
+                final Path lastSegment = segments.get(segments.size() - 1);
+                openSegment(segmentNumber(lastSegment));
+                final long validSize = readSegment(lastSegment, null);
+                if (validSize < segment.size()) {
+                    LOGGER.warn("Removing {} bytes of incomplete data from {}.", segment.size() - validSize,
+                            lastSegment);
+                    segment.truncate(validSize);
+                    segment.force(true);
+                }
+                currentSize = validSize;
+                segment.position(validSize);
+            }
+        }
+
+        /**
+         * <p>
+         * Appends one record to the current segment, starting a new segment if the current one is full. If writing
+         * fails, the segment is cut back to its previous size.
+         * </p>
+         *
+         * @param data The data to append.
+         * @throws IOException If writing failed.
+         */
+        synchronized void append(final InputData data) throws IOException {
+            final int length = InputDataCodec.encodedSize(data);
+            final int recordSize = RECORD_HEADER_SIZE + length;
+            if (buffer.capacity() < recordSize) {
+                buffer = ByteBuffer.allocate(Math.max(recordSize, buffer.capacity() * 2));
+            }
+            buffer.clear();
+            buffer.position(RECORD_HEADER_SIZE);
+            InputDataCodec.encode(data, buffer);
+            checksum.reset();
+            checksum.update(buffer.array(), RECORD_HEADER_SIZE, length);
+            buffer.putInt(0, length);
+            buffer.putInt(4, (int)checksum.getValue());
+            buffer.flip();
+
+            if (currentSize > 0L && currentSize + recordSize > segmentSize) {
+                rollSegment();
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    segment.write(buffer);
+                }
+            } catch (final IOException | RuntimeException e) {
+                // Otherwise the record written when the data is stored again would follow the partial one, which
+                // ends reading the segment after a restart.
+                try {
+                    segment.truncate(currentSize);
+                    segment.position(currentSize);
+                } catch (final IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            currentSize += recordSize;
+            unforcedRecords++;
+            if (fsyncPolicy == FsyncPolicy.ALWAYS || fsyncPolicy == FsyncPolicy.BATCH && unforcedRecords >= batchSize) {
+                force();
+            }
+        }
+
+        /**
+         * <p>
+         * Reads all records of this log.
+         * </p>
+         *
+         * @param consumer Called for each record.
+         * @return The number of records read.
+         * @throws IOException If reading failed.
+         */
+        synchronized long replay(final RecordConsumer consumer) throws IOException {
+            final long[] count = new long[1];
+            for (final Path segmentFile : segments()) {
+                readSegment(segmentFile, data -> {
+                    consumer.accept(data);
+                    count[0]++;
+                });
+            }
+            return count[0];
+        }
+
+        /**
+         * <p>
+         * Forces all data to the storage device and closes the current segment.
+         * </p>
+         *
+         * @throws IOException If closing failed.
+         */
+        synchronized void close() throws IOException {
+            if (segment.isOpen()) {
+                force();
+                segment.close();
+            }
+        }
+
+        /**
+         * <p>
+         * Reads all valid records from a segment using a read only memory mapping. Reading stops at the first record,
+         * which is too short, does not match its checksum or cannot be decoded.
+         * </p>
+         *
+         * @param segmentFile The segment to read.
+         * @param consumer Called for each valid record or {@code null} if records should only be validated.
+         * @return The number of bytes at the start of the segment containing valid records.
+         * @throws IOException If reading failed.
+         */
+        private long readSegment(final Path segmentFile, final RecordConsumer consumer) throws IOException {
+            try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+                final MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+                final CRC32 readChecksum = new CRC32();
+                while (mapping.remaining() >= RECORD_HEADER_SIZE) {
+                    final int start = mapping.position();
+                    final int length = mapping.getInt();
+                    final int expectedChecksum = mapping.getInt();
+                    // A zero filled tail, as left by a power loss, has a length of 0 and the matching checksum of 0.
+                    if (length < InputDataCodec.HEADER_SIZE || length > mapping.remaining()) {
+                        return start;
+                    }
+                    final ByteBuffer record = mapping.slice();
+                    record.limit(length);
+                    readChecksum.reset();
+                    readChecksum.update(record.duplicate());
+                    if ((int)readChecksum.getValue() != expectedChecksum) {
+                        return start;
+                    }
+                    final InputData data;
+                    try {
+                        data = InputDataCodec.decode(record);
+                    } catch (final IllegalArgumentException e) {
+                        return start;
+                    }
+                    if (consumer != null) {
+                        consumer.accept(data);
+                    }
+                    mapping.position(start + RECORD_HEADER_SIZE + length);
+                }
+                return mapping.position();
+            }
+        }
+
+        /**
+         * <p>
+         * Closes the current segment and starts the next one.
+         * </p>
+         *
+         * @throws IOException If switching the segment failed.
+         */
+        private void rollSegment() throws IOException {
+            force();
+            segment.close();
+            openSegment(segmentNumber + 1L);
+        }
+
+        /**
+         * <p>
+         * Opens the segment with the provided number for appending, creating it if necessary.
+         * </p>
+         *
+         * @param number The number of the segment to open.
+         * @throws IOException If opening the segment failed.
+         */
+        private void openSegment(final long number) throws IOException {
+            final Path segmentFile = vehicleDirectory.resolve(String.format("%020d%s", number, SEGMENT_SUFFIX));
+            segment = segmentOpener.open(segmentFile);
+            segmentNumber = number;
+            currentSize = 0L;
+        }
+
+        /**
+         * <p>
+         * Forces all data written to the current segment to the storage device.
+         * </p>
+         *
+         * @throws IOException If forcing failed.
+         */
+        private void force() throws IOException {
+            if (unforcedRecords > 0) {
+                segment.force(false);
+                unforcedRecords = 0;
+            }
+        }
+
+        /**
+         * @return All segments of this log ordered by their number.
+         * @throws IOException If listing the segments failed.
+         */
+        private List<Path> segments() throws IOException {
+            List<Path> ret = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(vehicleDirectory, "*" + SEGMENT_SUFFIX)) {
+                for (final Path file : files) {
+                    ret.add(file);
+                }
+            }
+            Collections.sort(ret);
+            return ret;
+        }
+
+        /**
+         * @param segmentFile A segment file.
+         * @return The number of the provided segment file.
+         */
+        private long segmentNumber(final Path segmentFile) {
+            final String name = segmentFile.getFileName().toString();
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        }
+    }
+
+    /**
+     * <p>
+     * Opens segment files, which allows tests to inject failures.
+     * </p>
+     */
+    @FunctionalInterface
+    interface SegmentOpener {
+        /**
+         * @param segmentFile The segment file to open, which is created if it does not exist.
+         * @return A channel for reading and writing the segment file.
+         * @throws IOException If opening the segment file failed.
+         */
+        FileChannel open(Path segmentFile) throws IOException;
+    }
+
+    /**
+     * <p>
+     * Callback for records read from a segment.
+     * </p>
+     */
+    @FunctionalInterface
+    private interface RecordConsumer {
+        /**
+         * @param data The data read from a record.
+         */
+        void accept(InputData data);
+    }
+}
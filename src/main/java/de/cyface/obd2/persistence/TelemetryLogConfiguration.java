@@ -0,0 +1,50 @@
+/*
+ * Created on 18.10.26 at 01:19.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * <p>
+ * Creates the {@link TelemetryLog} used by the {@link DataRepository}, if {@code freematics.log.enabled} is set to
+ * {@code true}. Without it, all data is only kept in memory.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Configuration
+@ConditionalOnProperty(name = "freematics.log.enabled", havingValue = "true")
+public class TelemetryLogConfiguration {
+
+    /**
+     * @param directory The directory to store the log in.
+     * @param segmentSize The size in bytes after which a new segment is started, which must not be larger than
+     *            {@link Integer#MAX_VALUE}.
+     * @param fsyncPolicy The policy on how often data is forced to the storage device.
+     * @param batchSize The number of records per vehicle after which data is forced to the storage device, if the
+     *            policy is {@link TelemetryLog.FsyncPolicy#BATCH}.
+     * @return The log to write all stored data to.
+     * @throws IOException If the log directory could not be created.
+     */
+    @Bean
+    public TelemetryLog telemetryLog(@Value("${freematics.log.directory:data}") final String directory,
+            @Value("${freematics.log.segment-size:67108864}") final long segmentSize,
+            @Value("${freematics.log.fsync:BATCH}") final TelemetryLog.FsyncPolicy fsyncPolicy,
+            @Value("${freematics.log.fsync-batch:64}") final int batchSize) throws IOException {
+        return new TelemetryLog(Paths.get(directory), segmentSize, fsyncPolicy, batchSize);
+    }
+}
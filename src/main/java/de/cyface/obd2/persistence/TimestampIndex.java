@@ -0,0 +1,146 @@
+/*
+ * Created on 18.10.26 at 01:23.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * An index mapping timestamps to the positions of entries in a list, sorted by timestamp. It allows finding all
+ * entries inside a time range by binary search. Timestamps and positions are stored in primitive arrays.
+ * </p>
+ * <p>
+ * Data usually arrives in chronological order, which makes adding to the index an append. Entries arriving out of
+ * order are inserted at their correct position. Entries with equal timestamps keep the order they were added in.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class TimestampIndex {
+    /**
+     * <p>
+     * The number of entries the index is able to hold initially.
+     * </p>
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * <p>
+     * The indexed timestamps in ascending order.
+     * </p>
+     */
+    private long[] timestamps;
+    /**
+     * <p>
+     * The positions of the entries, in the same order as their timestamps.
+     * </p>
+     */
+    private int[] positions;
+    /**
+     * <p>
+     * The number of indexed entries.
+     * </p>
+     */
+    private int size;
+
+    /**
+     * <p>
+     * Creates a new empty index.
+     * </p>
+     */
+    TimestampIndex() {
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.positions = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * <p>
+     * Adds an entry to the index.
+     * </p>
+     *
+     * @param timestamp The timestamp of the entry.
+     * @param position The position of the entry.
+     */
+    void add(final long timestamp, final int position) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            positions = Arrays.copyOf(positions, size * 2);
+        }
+        final int index = upperBound(timestamp);
+        if (index < size) {
+            System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+            System.arraycopy(positions, index, positions, index + 1, size - index);
+        }
+        timestamps[index] = timestamp;
+        positions[index] = position;
+        size++;
+    }
+
+    /**
+     * @param timestamp A timestamp.
+     * @return The index of the first entry with a timestamp equal to or larger than the provided one or the size of
+     *         this index if there is none.
+     */
+    int lowerBound(final long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (timestamps[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param timestamp A timestamp.
+     * @return The index of the first entry with a timestamp larger than the provided one or the size of this index if
+     *         there is none.
+     */
+    int upperBound(final long timestamp) {
+        // Checking the last entry first makes adding in chronological order constant time.
+        if (size == 0 || timestamps[size - 1] <= timestamp) {
+            return size;
+        }
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (timestamps[middle] <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param index An index between 0 and the size of this index.
+     * @return The position of the entry at the provided index.
+     */
+    int position(final int index) {
+        return positions[index];
+    }
+
+    /**
+     * @return The number of indexed entries.
+     */
+    int size() {
+        return size;
+    }
+}
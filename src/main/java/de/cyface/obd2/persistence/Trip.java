@@ -0,0 +1,167 @@
+/*
+ * Created on 18.10.26 at 01:50.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+/**
+ * <p>
+ * The summary of one trip of a vehicle, as detected while its data was stored. Times are measured by the dongle in
+ * milliseconds since it was started, as for the acceleration timestamps. Objects of this class are immutable snapshots;
+ * the summary of the latest trip of a vehicle changes as long as data for that trip arrives.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class Trip {
+
+    /**
+     * <p>
+     * The number of the trip per vehicle, starting at 0.
+     * </p>
+     */
+    private final int number;
+    /**
+     * <p>
+     * The time of the first data of the trip in milliseconds.
+     * </p>
+     */
+    private final long start;
+    /**
+     * <p>
+     * The time of the last data of the trip in milliseconds.
+     * </p>
+     */
+    private final long end;
+    /**
+     * <p>
+     * The distance travelled in meters.
+     * </p>
+     */
+    private final double distance;
+    /**
+     * <p>
+     * The maximum speed reported by the GPS receiver.
+     * </p>
+     */
+    private final double maxSpeed;
+    /**
+     * <p>
+     * The number of {@link InputData} entries belonging to the trip.
+     * </p>
+     */
+    private final int entries;
+    /**
+     * <p>
+     * The number of accelerations measured during the trip.
+     * </p>
+     */
+    private final long accelerations;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code Trip}.
+     * </p>
+     *
+     * @param number The number of the trip per vehicle, starting at 0.
+     * @param start The time of the first data of the trip in milliseconds.
+     * @param end The time of the last data of the trip in milliseconds.
+     * @param distance The distance travelled in meters.
+     * @param maxSpeed The maximum speed reported by the GPS receiver.
+     * @param entries The number of {@link InputData} entries belonging to the trip.
+     * @param accelerations The number of accelerations measured during the trip.
+     */
+    Trip(final int number, final long start, final long end, final double distance, final double maxSpeed,
+            final int entries, final long accelerations) {
+        this.number = number;
+        this.start = start;
+        this.end = end;
+        this.distance = distance;
+        this.maxSpeed = maxSpeed;
+        this.entries = entries;
+        this.accelerations = accelerations;
+    }
+
+    /**
+     * @return The number of the trip per vehicle, starting at 0.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * @return The time of the first data of the trip in milliseconds.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return The time of the last data of the trip in milliseconds.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return The duration of the trip in milliseconds.
+     */
+    public long getDuration() {
+        return end - start;
+    }
+
+    /**
+     * @return The distance travelled in meters.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return The maximum speed reported by the GPS receiver.
+     */
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    /**
+     * @return The number of {@link InputData} entries belonging to the trip.
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return The number of accelerations measured during the trip.
+     */
+    public long getAccelerations() {
+        return accelerations;
+    }
+
+    /**
+     * <p>
+     * Appends the textual representation of this trip to a {@code StringBuilder}. It is a comma separated line with
+     * the number, start, end, duration, distance, maximum speed, number of entries and number of accelerations.
+     * </p>
+     *
+     * @param builder The builder to append to.
+     */
+    public void appendTo(final StringBuilder builder) {
+        builder.append(number).append(',').append(start).append(',').append(end).append(',').append(getDuration())
+                .append(',').append(distance).append(',').append(maxSpeed).append(',').append(entries).append(',')
+                .append(accelerations);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ret = new StringBuilder();
+        appendTo(ret);
+        return ret.toString();
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Created on 18.10.26 at 01:51.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Splits the data of one vehicle into {@link Trip}s while it is stored and keeps a summary per trip, so trips are
+ * listed without reading the raw data again. A new trip starts if
+ * </p>
+ * <ul>
+ * <li>the time of an entry is further away from the end of the current trip than the configured gap. Since the dongle
+ * measures time since it was started, this includes the time jumping backwards after the ignition was switched off
+ * and on again.</li>
+ * <li>the vehicle moves again after the GPS speed was below the configured stop speed for longer than the configured
+ * stop duration. The previous trip ends when the vehicle stopped.</li>
+ * </ul>
+ * <p>
+ * The time of an entry is the timestamp of its first acceleration. Entries without accelerations carry no time and are
+ * added to the current trip.
+ * </p>
+ * <p>
+ * This class is not thread safe. It is guarded by the lock of the {@code DeviceData} object it belongs to.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class TripDetector {
+
+    /**
+     * <p>
+     * The largest time in milliseconds between two entries of the same trip.
+     * </p>
+     */
+    private final long gap;
+    /**
+     * <p>
+     * The GPS speed below which the vehicle is considered standing.
+     * </p>
+     */
+    private final double stopSpeed;
+    /**
+     * <p>
+     * The time in milliseconds the vehicle must stand to end a trip.
+     * </p>
+     */
+    private final long stopDuration;
+    /**
+     * <p>
+     * The summaries of all completed trips.
+     * </p>
+     */
+    private final List<Trip> completedTrips;
+
+    /**
+     * <p>
+     * Whether there is a current trip.
+     * </p>
+     */
+    private boolean inTrip;
+    /**
+     * <p>
+     * The time the current trip started in milliseconds.
+     * </p>
+     */
+    private long start;
+    /**
+     * <p>
+     * The latest time of the current trip in milliseconds.
+     * </p>
+     */
+    private long end;
+    /**
+     * <p>
+     * The distance travelled during the current trip in meters.
+     * </p>
+     */
+    private double distance;
+    /**
+     * <p>
+     * The maximum GPS speed of the current trip.
+     * </p>
+     */
+    private double maxSpeed;
+    /**
+     * <p>
+     * The number of entries of the current trip.
+     * </p>
+     */
+    private int entries;
+    /**
+     * <p>
+     * The number of accelerations of the current trip.
+     * </p>
+     */
+    private long accelerations;
+    /**
+     * <p>
+     * Whether the current trip has a last known position.
+     * </p>
+     */
+    private boolean hasPosition;
+    /**
+     * <p>
+     * The latitude of the last known position of the current trip.
+     * </p>
+     */
+    private double latitude;
+    /**
+     * <p>
+     * The longitude of the last known position of the current trip.
+     * </p>
+     */
+    private double longitude;
+    /**
+     * <p>
+     * Whether the vehicle is currently standing.
+     * </p>
+     */
+    private boolean standing;
+    /**
+     * <p>
+     * The time the vehicle stopped in milliseconds, if it is currently standing.
+     * </p>
+     */
+    private long standingSince;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code TripDetector} without any trips.
+     * </p>
+     *
+     * @param gap The largest time in milliseconds between two entries of the same trip.
+     * @param stopSpeed The GPS speed below which the vehicle is considered standing.
+     * @param stopDuration The time in milliseconds the vehicle must stand to end a trip.
+     */
+    TripDetector(final long gap, final double stopSpeed, final long stopDuration) {
+        Validate.isTrue(gap > 0L, "Trip gap must be positive.");
+        Validate.isTrue(stopDuration > 0L, "Stop duration must be positive.");
+        this.gap = gap;
+        this.stopSpeed = stopSpeed;
+        this.stopDuration = stopDuration;
+        this.completedTrips = new ArrayList<>();
+    }
+
+    /**
+     * <p>
+     * Adds a stored entry to the current trip or starts a new trip with it.
+     * </p>
+     *
+     * @param entry The entry to add.
+     */
+    void add(final InputData entry) {
+        final GpsData gpsData = entry.getGpsData();
+        final boolean hasTime = entry.getAccelerationCount() > 0;
+        if (!hasTime && !inTrip) {
+            // Without any time the entry can not start a trip.
+            return;
+        }
+        final long time = hasTime ? entry.getAccelerationTimestamp(0) : end;
+
+        if (!inTrip) {
+            startTrip(time);
+        } else if (hasTime && Math.abs(time - end) > gap) {
+            completeTrip(end);
+            startTrip(time);
+        } else if (hasTime && standing && gpsData != null && gpsData.getGpsSpeed() >= stopSpeed
+                && time - standingSince > stopDuration) {
+            completeTrip(standingSince);
+            startTrip(time);
+        }
+
+        for (int i = 0; i < entry.getAccelerationCount(); i++) {
+            end = Math.max(end, entry.getAccelerationTimestamp(i));
+        }
+        entries++;
+        accelerations += entry.getAccelerationCount();
+        if (gpsData != null) {
+            maxSpeed = Math.max(maxSpeed, gpsData.getGpsSpeed());
+            if (Geo.hasPosition(gpsData)) {
+                if (hasPosition) {
+                    distance += Geo.distance(latitude, longitude, gpsData.getLatitude(), gpsData.getLongitude());
+                }
+                latitude = gpsData.getLatitude();
+                longitude = gpsData.getLongitude();
+                hasPosition = true;
+            }
+            if (hasTime) {
+                if (gpsData.getGpsSpeed() >= stopSpeed) {
+                    standing = false;
+                } else if (!standing) {
+                    standing = true;
+                    standingSince = time;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of trips including the current one.
+     */
+    int count() {
+        return completedTrips.size() + (inTrip ? 1 : 0);
+    }
+
+    /**
+     * @param offset The number of trips to skip.
+     * @param limit The maximum number of trips to return.
+     * @return The summaries of the trips in chronological order, including the current one, skipping {@code offset}
+     *         and at most {@code limit}.
+     */
+    List<Trip> find(final int offset, final int limit) {
+        final long last = Math.min((long)offset + limit, count());
+        if (offset >= last) {
+            return Collections.emptyList();
+        }
+        List<Trip> ret = new ArrayList<>((int)(last - offset));
+        for (int i = offset; i < last; i++) {
+            ret.add(i < completedTrips.size() ? completedTrips.get(i) : currentTrip(end));
+        }
+        return ret;
+    }
+
+    /**
+     * @param time The time of the first entry of the new trip in milliseconds.
+     */
+    private void startTrip(final long time) {
+        inTrip = true;
+        start = time;
+        end = time;
+        distance = 0.0;
+        maxSpeed = 0.0;
+        entries = 0;
+        accelerations = 0L;
+        hasPosition = false;
+        standing = false;
+    }
+
+    /**
+     * @param tripEnd The time the current trip ended in milliseconds.
+     */
+    private void completeTrip(final long tripEnd) {
+        completedTrips.add(currentTrip(tripEnd));
+        inTrip = false;
+    }
+
+    /**
+     * @param tripEnd The time the current trip ended in milliseconds.
+     * @return The summary of the current trip.
+     */
+    private Trip currentTrip(final long tripEnd) {
+        return new Trip(completedTrips.size(), start, tripEnd, distance, maxSpeed, entries, accelerations);
+    }
+}
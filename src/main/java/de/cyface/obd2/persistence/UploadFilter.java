@@ -0,0 +1,230 @@
+/*
+ * Created on 18.10.26 at 02:15.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * <p>
+ * Recognizes entries of one vehicle, which were stored recently, so uploads sent again by a dongle after a timeout are
+ * not stored twice. Since the dongle derives all timestamps from an absolute timestamp, an entry equal to a recently
+ * stored entry of the same vehicle is the same upload.
+ * </p>
+ * <p>
+ * The 64 bit fingerprints of the timestamps and values of the latest entries are kept in a ring of
+ * {@code 2 * window} slots, together with the positions of the entries in the stored data. In front of it two bloom
+ * filters cover the latest {@code window} to {@code 2 * window} fingerprints. Whenever the newer filter is full, the
+ * older one is cleared and the two swap roles. A new upload is almost always rejected by both bloom filters in a few
+ * bit operations. Only duplicates and rare false positives are checked against the ring. An entry with a fingerprint
+ * found in the ring is compared with the stored entry at the recorded position, so an upload is never dropped because
+ * of a false positive or two different entries sharing a fingerprint.
+ * </p>
+ * <p>
+ * This class is not thread safe. It is guarded by the lock of the {@code DeviceData} object it belongs to.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class UploadFilter {
+
+    /**
+     * <p>
+     * The number of bits per fingerprint in each bloom filter.
+     * </p>
+     */
+    private static final int BITS_PER_FINGERPRINT = 16;
+    /**
+     * <p>
+     * The number of bits set per fingerprint in each bloom filter.
+     * </p>
+     */
+    private static final int HASHES = 3;
+
+    /**
+     * <p>
+     * The number of fingerprints each bloom filter covers.
+     * </p>
+     */
+    private final int window;
+    /**
+     * <p>
+     * The latest fingerprints in the order they were added.
+     * </p>
+     */
+    private final long[] recent;
+    /**
+     * <p>
+     * The position in the stored data of the entry of each fingerprint in {@link #recent}.
+     * </p>
+     */
+    private final int[] positions;
+    /**
+     * <p>
+     * The mask selecting a bit of a bloom filter from a hash.
+     * </p>
+     */
+    private final int mask;
+    /**
+     * <p>
+     * The bloom filter fingerprints are currently added to.
+     * </p>
+     */
+    private long[] current;
+    /**
+     * <p>
+     * The bloom filter containing the fingerprints added before the current one was cleared.
+     * </p>
+     */
+    private long[] previous;
+    /**
+     * <p>
+     * The number of fingerprints in the current bloom filter.
+     * </p>
+     */
+    private int inCurrent;
+    /**
+     * <p>
+     * The number of fingerprints added since this filter was created.
+     * </p>
+     */
+    private long added;
+
+    /**
+     * <p>
+     * Creates a new empty {@code UploadFilter}.
+     * </p>
+     *
+     * @param window The number of latest uploads, which are recognized for sure.
+     */
+    UploadFilter(final int window) {
+        Validate.isTrue(window > 0, "Window must be positive.");
+        this.window = window;
+        this.recent = new long[2 * window];
+        this.positions = new int[recent.length];
+        final int bits = Integer.highestOneBit(window * BITS_PER_FINGERPRINT - 1) << 1;
+        this.mask = bits - 1;
+        this.current = new long[Math.max(1, bits / Long.SIZE)];
+        this.previous = new long[current.length];
+    }
+
+    /**
+     * @param entry The entry to look up.
+     * @param stored Provides the stored entry at a position passed to {@link #add(InputData, int)}.
+     * @return {@code true} if the entry equals a recently added entry; {@code false} otherwise.
+     */
+    boolean contains(final InputData entry, final IntFunction<InputData> stored) {
+        final long fingerprint = fingerprint(entry);
+        if (mightContain(current, fingerprint) || mightContain(previous, fingerprint)) {
+            final int size = (int)Math.min(added, recent.length);
+            for (int i = 0; i < size; i++) {
+                if (recent[i] == fingerprint && entry.equals(stored.apply(positions[i]))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>
+     * Adds the fingerprint of an entry. This is called once the entry has been stored, so an entry failing to be
+     * stored is not recognized as a duplicate when it is stored again.
+     * </p>
+     *
+     * @param entry The entry to add.
+     * @param position The position of the entry in the stored data.
+     */
+    void add(final InputData entry, final int position) {
+        final long fingerprint = fingerprint(entry);
+        final int slot = (int)(added % recent.length);
+        recent[slot] = fingerprint;
+        positions[slot] = position;
+        added++;
+        if (inCurrent == window) {
+            long[] cleared = previous;
+            Arrays.fill(cleared, 0L);
+            previous = current;
+            current = cleared;
+            inCurrent = 0;
+        }
+        for (int i = 0; i < HASHES; i++) {
+            final int bit = hash(fingerprint, i);
+            current[bit >>> 6] |= 1L << bit;
+        }
+        inCurrent++;
+    }
+
+    /**
+     * @param filter A bloom filter.
+     * @param fingerprint The fingerprint to look up.
+     * @return {@code false} if the fingerprint is not in the bloom filter for sure; {@code true} if it might be.
+     */
+    private boolean mightContain(final long[] filter, final long fingerprint) {
+        for (int i = 0; i < HASHES; i++) {
+            final int bit = hash(fingerprint, i);
+            if ((filter[bit >>> 6] & (1L << bit)) == 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param fingerprint A fingerprint.
+     * @param i The number of the hash function.
+     * @return The bit selected by the hash function for the fingerprint.
+     */
+    private int hash(final long fingerprint, final int i) {
+        // Double hashing derives all hash functions from the two halves of the fingerprint.
+        return ((int)fingerprint + i * ((int)(fingerprint >>> 32) | 1)) & mask;
+    }
+
+    /**
+     * @param entry An entry.
+     * @return A 64 bit hash of all timestamps and values of the entry.
+     */
+    static long fingerprint(final InputData entry) {
+        long ret = mix(0L, entry.getAccelerationCount());
+        for (int i = 0; i < entry.getAccelerationCount(); i++) {
+            ret = mix(ret, entry.getAccelerationTimestamp(i));
+            // Masking keeps negative values from overwriting the upper half of the combined value.
+            ret = mix(ret, ((long)entry.getAx(i) << 32) | (entry.getAy(i) & 0xFFFFFFFFL));
+            ret = mix(ret, entry.getAz(i));
+        }
+        final GpsData gpsData = entry.getGpsData();
+        if (gpsData != null) {
+            ret = mix(ret, gpsData.getGpsTime());
+            ret = mix(ret, Double.doubleToLongBits(gpsData.getLatitude()));
+            ret = mix(ret, Double.doubleToLongBits(gpsData.getLongitude()));
+            ret = mix(ret, Double.doubleToLongBits(gpsData.getGpsSpeed()));
+            ret = mix(ret, ((long)gpsData.getAltitude() << 32) ^ gpsData.getSatellites());
+        }
+        // The finalizer of MurmurHash3 spreads all input bits over the whole fingerprint.
+        ret ^= ret >>> 33;
+        ret *= 0xff51afd7ed558ccdL;
+        ret ^= ret >>> 33;
+        ret *= 0xc4ceb9fe1a85ec53L;
+        ret ^= ret >>> 33;
+        return ret;
+    }
+
+    /**
+     * @param hash The hash of the values so far.
+     * @param value The next value.
+     * @return The hash including the next value.
+     */
+    private static long mix(final long hash, final long value) {
+        return Long.rotateLeft(hash ^ value * 0x9e3779b97f4a7c15L, 31) * 0xbf58476d1ce4e5b9L;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Created on 18.10.26 at 02:18.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.cyface.obd2.persistence;
+
+/**
+ * <p>
+ * The summary of all data stored for one vehicle, as part of a report across all vehicles created by
+ * {@link DataRepository#report()}. Objects of this class are immutable snapshots.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class VehicleReport {
+
+    /**
+     * <p>
+     * The vehicle identification number of the vehicle.
+     * </p>
+     */
+    private final String vehicleIdentificationNumber;
+    /**
+     * <p>
+     * The number of stored {@link InputData} entries.
+     * </p>
+     */
+    private final int entries;
+    /**
+     * <p>
+     * The number of stored accelerations.
+     * </p>
+     */
+    private final long accelerations;
+    /**
+     * <p>
+     * The largest magnitude of all stored accelerations in the raw unit of the dongle.
+     * </p>
+     */
+    private final double maxAcceleration;
+    /**
+     * <p>
+     * The distance between all stored positions in the order they were stored in meters.
+     * </p>
+     */
+    private final double distance;
+    /**
+     * <p>
+     * The maximum speed reported by the GPS receiver.
+     * </p>
+     */
+    private final double maxSpeed;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code VehicleReport}.
+     * </p>
+     *
+     * @param vehicleIdentificationNumber The vehicle identification number of the vehicle.
+     * @param entries The number of stored {@link InputData} entries.
+     * @param accelerations The number of stored accelerations.
+     * @param maxAcceleration The largest magnitude of all stored accelerations in the raw unit of the dongle.
+     * @param distance The distance between all stored positions in the order they were stored in meters.
+     * @param maxSpeed The maximum speed reported by the GPS receiver.
+     */
+    VehicleReport(final String vehicleIdentificationNumber, final int entries, final long accelerations,
+            final double maxAcceleration, final double distance, final double maxSpeed) {
+        this.vehicleIdentificationNumber = vehicleIdentificationNumber;
+        this.entries = entries;
+        this.accelerations = accelerations;
+        this.maxAcceleration = maxAcceleration;
+        this.distance = distance;
+        this.maxSpeed = maxSpeed;
+    }
+
+    /**
+     * @return The vehicle identification number of the vehicle.
+     */
+    public String getVehicleIdentificationNumber() {
+        return vehicleIdentificationNumber;
+    }
+
+    /**
+     * @return The number of stored {@link InputData} entries.
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return The number of stored accelerations.
+     */
+    public long getAccelerations() {
+        return accelerations;
+    }
+
+    /**
+     * @return The largest magnitude of all stored accelerations in the raw unit of the dongle.
+     */
+    public double getMaxAcceleration() {
+        return maxAcceleration;
+    }
+
+    /**
+     * @return The distance between all stored positions in the order they were stored in meters.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return The maximum speed reported by the GPS receiver.
+     */
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    /**
+     * <p>
+     * Appends the textual representation of this report to a {@code StringBuilder}. It is a comma separated line with
+     * the vehicle identification number, the number of entries, the number of accelerations, the largest acceleration,
+     * the distance and the maximum speed.
+     * </p>
+     *
+     * @param builder The builder to append to.
+     */
+    public void appendTo(final StringBuilder builder) {
+        builder.append(vehicleIdentificationNumber).append(',').append(entries).append(',').append(accelerations)
+                .append(',').append(maxAcceleration).append(',').append(distance).append(',').append(maxSpeed);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ret = new StringBuilder();
+        appendTo(ret);
+        return ret.toString();
+    }
+}
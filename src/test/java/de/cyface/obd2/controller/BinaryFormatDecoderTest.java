@@ -0,0 +1,121 @@
+/*
+ * Created on 18.10.26 at 01:37.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * <p>
+ * Tests whether the {@link BinaryFormatDecoder} decodes data encoded by the reference {@link BinaryFormatEncoder}.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class BinaryFormatDecoderTest {
+
+    /**
+     * <p>
+     * The object of the class under test.
+     * </p>
+     */
+    private BinaryFormatDecoder oocut;
+
+    @Before
+    public void setUp() {
+        oocut = new BinaryFormatDecoder();
+    }
+
+    /**
+     * <p>
+     * Tests that data with GPS and accelerations survives a round trip, including timestamps going backwards and
+     * extreme acceleration values, and is equal to the same data parsed from the textual format.
+     * </p>
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        InputData data = new FreematicsParser().parse("#7284,ACC,2,-1,109 5,ACC,-32768,0,32767 3,ACC,1,1,1 "
+                + "7728,UTC,7284200 0,LAT,51.025750 0,LNG,-13.722881 0,ALT,-12 0,SPD,12.5 0,SAT,7");
+        byte[] encoded = BinaryFormatEncoder.encode(data);
+
+        assertThat(oocut.decode(encoded, 0, encoded.length)).isEqualTo(data);
+        assertThat(oocut.decode(new ByteArrayInputStream(encoded))).isEqualTo(data);
+    }
+
+    /**
+     * <p>
+     * Tests that data is decoded correctly from a stream returning only one byte per read and from a section of a
+     * larger array.
+     * </p>
+     */
+    @Test
+    public void testDecodeFragmentedInput() throws Exception {
+        InputData data = new InputData();
+        data.addGpsData(new GpsData(10000L, 51.0, 13.0, 179, 1.0, 12));
+        for (int i = 0; i < 2000; i++) {
+            data.addAccelerationTuple(1_000_000_000L + i * 7L, i % 300, -i % 200, 100);
+        }
+        byte[] encoded = BinaryFormatEncoder.encode(data);
+        byte[] padded = new byte[encoded.length + 10];
+        System.arraycopy(encoded, 0, padded, 5, encoded.length);
+
+        assertThat(oocut.decode(padded, 5, encoded.length)).isEqualTo(data);
+        assertThat(oocut.decode(new FilterInputStream(new ByteArrayInputStream(encoded)) {
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                return super.read(b, off, Math.min(1, len));
+            }
+        })).isEqualTo(data);
+    }
+
+    /**
+     * <p>
+     * Tests that truncated bodies, unknown versions and trailing data are rejected.
+     * </p>
+     */
+    @Test
+    public void testRejectMalformedBodies() throws Exception {
+        InputData data = new InputData();
+        data.addAccelerationTuple(1000L, 1, 2, 3);
+        byte[] encoded = BinaryFormatEncoder.encode(data);
+
+        assertMalformed(Arrays.copyOf(encoded, encoded.length - 1));
+        assertMalformed(Arrays.copyOf(encoded, encoded.length + 1));
+        assertMalformed(new byte[0]);
+        byte[] wrongVersion = encoded.clone();
+        wrongVersion[0] = 2;
+        assertMalformed(wrongVersion);
+    }
+
+    /**
+     * @param body A body that must be rejected when decoded from an array and from a stream.
+     * @throws IOException If reading the stream fails.
+     */
+    private void assertMalformed(final byte[] body) throws IOException {
+        try {
+            oocut.decode(body, 0, body.length);
+            fail("Malformed body was decoded from array.");
+        } catch (final MalformedBodyException e) {
+            // Expected.
+        }
+        try {
+            oocut.decode(new ByteArrayInputStream(body));
+            fail("Malformed body was decoded from stream.");
+        } catch (final MalformedBodyException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Created on 18.10.26 at 01:36.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.apache.commons.lang3.Validate;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * <p>
+ * Reference encoder for the binary format decoded by {@link BinaryFormatDecoder}, as a client would implement it. It
+ * is used for round trip tests and benchmarks.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class BinaryFormatEncoder {
+
+    /**
+     * <p>
+     * Private constructor for utility class.
+     * </p>
+     */
+    private BinaryFormatEncoder() {
+        // Nothing to do here.
+    }
+
+    /**
+     * @param data The data to encode.
+     * @return The data in the binary format.
+     * @throws IllegalArgumentException If an acceleration value does not fit into 16 bits.
+     */
+    public static byte[] encode(final InputData data) {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        ret.write(BinaryFormatDecoder.VERSION);
+        GpsData gpsData = data.getGpsData();
+        ret.write(gpsData == null ? 0 : BinaryFormatDecoder.FLAG_GPS);
+        if (gpsData != null) {
+            writeVarLong(ret, gpsData.getGpsTime());
+            writeZigZagLong(ret, Math.round(gpsData.getLatitude() * BinaryFormatDecoder.COORDINATE_SCALE));
+            writeZigZagLong(ret, Math.round(gpsData.getLongitude() * BinaryFormatDecoder.COORDINATE_SCALE));
+            writeZigZagLong(ret, gpsData.getAltitude());
+            writeVarLong(ret, Math.round(gpsData.getGpsSpeed() * BinaryFormatDecoder.SPEED_SCALE));
+            writeVarLong(ret, gpsData.getSatellites());
+        }
+        writeVarLong(ret, data.getAccelerationCount());
+        for (int i = 0; i < data.getAccelerationCount(); i++) {
+            if (i == 0) {
+                writeVarLong(ret, data.getAccelerationTimestamp(0));
+            } else {
+                writeZigZagLong(ret, data.getAccelerationTimestamp(i) - data.getAccelerationTimestamp(i - 1));
+            }
+            writeShort(ret, data.getAx(i));
+            writeShort(ret, data.getAy(i));
+            writeShort(ret, data.getAz(i));
+        }
+        return ret.toByteArray();
+    }
+
+    /**
+     * @param out The stream to write to.
+     * @param value The value to write as unsigned varint.
+     */
+    private static void writeVarLong(final ByteArrayOutputStream out, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0L) {
+            out.write((int)(remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write((int)remaining);
+    }
+
+    /**
+     * @param out The stream to write to.
+     * @param value The value to write as zigzag encoded varint.
+     */
+    private static void writeZigZagLong(final ByteArrayOutputStream out, final long value) {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * @param out The stream to write to.
+     * @param value The value to write as 16 bit big endian integer.
+     */
+    private static void writeShort(final ByteArrayOutputStream out, final int value) {
+        Validate.isTrue(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE, "Value does not fit into 16 bits.");
+        out.write(value >> 8);
+        out.write(value);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Created on 18.10.26 at 01:13.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.InputData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests whether the {@link ChannelEvictor} closes idle channels correctly.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ChannelEvictorTest {
+
+    /**
+     * <p>
+     * The idle timeout used by the tested evictor.
+     * </p>
+     */
+    private static final long IDLE_TIMEOUT = 1000L;
+
+    /**
+     * <p>
+     * The channels the evictor works on.
+     * </p>
+     */
+    private Channels channels;
+    /**
+     * <p>
+     * The repository receiving the data from evicted channels.
+     * </p>
+     */
+    private DataRepository repo;
+    /**
+     * <p>
+     * The object of the class under test.
+     * </p>
+     */
+    private ChannelEvictor oocut;
+
+    @Before
+    public void setUp() {
+        channels = new Channels();
+        repo = new DataRepository();
+        oocut = new ChannelEvictor(channels, repo, IDLE_TIMEOUT);
+    }
+
+    /**
+     * <p>
+     * Tests that idle channels are released and their remaining data is stored, while active channels stay untouched.
+     * </p>
+     */
+    @Test
+    public void testEvictIdleChannels() {
+        Channel channel = channels.getNextFreeChannel("vin");
+        InputData data = new InputData();
+        data.addAccelerationTuple(10000L, 1, 2, 109);
+        channel.addInputData(data);
+        long now = channel.getLastActivity();
+
+        assertThat(oocut.evictIdleChannels(now + IDLE_TIMEOUT)).isEqualTo(0);
+        assertThat(channels.getChannel(0)).isSameAs(channel);
+
+        assertThat(oocut.evictIdleChannels(now + IDLE_TIMEOUT + 1L)).isEqualTo(1);
+        assertThat(channels.getChannel(0)).isNull();
+        assertThat(channel.getInputData()).isEmpty();
+        assertThat(repo.countInputData("vin")).isEqualTo(1);
+        assertThat(oocut.getEvictedChannels()).isEqualTo(1L);
+        assertThat(oocut.getFreedBytes()).isGreaterThan(0L);
+        assertThat(channels.getNextFreeChannel("vin2").getChannelIdentifier()).isNotEqualTo(0);
+        assertThat(channels.getChannel(0)).isNull();
+    }
+
+    /**
+     * <p>
+     * Tests that a channel whose data fails to be stored does not keep the other channels from being stored, and that
+     * it is stored on the next run without losing data.
+     * </p>
+     */
+    @Test
+    public void testFailedStoreIsRetried() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        DataRepository failingRepo = new DataRepository() {
+            @Override
+            public int store(final Channel data) {
+                if (failing.get() && "broken".equals(data.getVehicleIdentificationNumber())) {
+                    throw new IllegalStateException("Storage failed.");
+                }
+                return super.store(data);
+            }
+        };
+        oocut = new ChannelEvictor(channels, failingRepo, IDLE_TIMEOUT);
+        Channel broken = channels.getNextFreeChannel("broken");
+        Channel working = channels.getNextFreeChannel("vin");
+        for (final Channel channel : Arrays.asList(broken, working)) {
+            InputData data = new InputData();
+            data.addAccelerationTuple(10000L, 1, 2, 109);
+            channel.addInputData(data);
+        }
+        long now = Math.max(broken.getLastActivity(), working.getLastActivity()) + IDLE_TIMEOUT + 1L;
+
+        assertThat(oocut.evictIdleChannels(now)).isEqualTo(1);
+        assertThat(channels.size()).isEqualTo(0);
+        assertThat(failingRepo.countInputData("vin")).isEqualTo(1);
+        assertThat(failingRepo.countInputData("broken")).isEqualTo(0);
+        assertThat(oocut.getEvictedChannels()).isEqualTo(1L);
+
+        assertThat(oocut.evictIdleChannels(now)).isEqualTo(0);
+        failing.set(false);
+        assertThat(oocut.evictIdleChannels(now)).isEqualTo(1);
+        assertThat(failingRepo.countInputData("broken")).isEqualTo(1);
+        assertThat(oocut.getEvictedChannels()).isEqualTo(2L);
+    }
+}
@@ -7,6 +7,15 @@ import de.cyface.obd2.persistence.Channel;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
@@ -78,4 +87,121 @@ public class ChannelsTest {
         assertThat(oocut.getChannel(0)).hasFieldOrPropertyWithValue("vehicleIdentificationNumber", "vin");
         assertThat(oocut.getChannel(0).getInputData()).isEmpty();
     }
+
+    /**
+     * <p>
+     * Tests whether released channels are no longer available and their slots are reused with a new identifier.
+     * </p>
+     */
+    @Test
+    public void testReleaseChannel() {
+        oocut.getNextFreeChannel("vin");
+        final Channel channel1 = oocut.getNextFreeChannel("vin2");
+        oocut.getNextFreeChannel("vin3");
+
+        assertThat(oocut.releaseChannel(1)).isSameAs(channel1);
+        assertThat(oocut.getChannel(1)).isNull();
+        assertThat(oocut.releaseChannel(1)).isNull();
+        assertThat(oocut.size()).isEqualTo(2);
+
+        final Channel reused = oocut.getNextFreeChannel("vin4");
+        assertThat(reused).hasFieldOrPropertyWithValue("channelIdentifier", 1 + (1 << Channels.SLOT_BITS));
+        assertThat(reused).hasFieldOrPropertyWithValue("vehicleIdentificationNumber", "vin4");
+        assertThat(oocut.getChannel(1)).isNull();
+        assertThat(oocut.getNextFreeChannel("vin5")).hasFieldOrPropertyWithValue("channelIdentifier", 3);
+    }
+
+    /**
+     * <p>
+     * Tests that the identifier of an evicted channel stays unknown after its slot has been reused.
+     * </p>
+     */
+    @Test
+    public void testStaleIdentifierIsRejected() {
+        final Channel evicted = oocut.getNextFreeChannel("vin");
+        assertThat(oocut.releaseIdleChannels(Long.MAX_VALUE)).containsOnly(evicted);
+
+        final Channel next = oocut.getNextFreeChannel("vin2");
+
+        assertThat(next.getChannelIdentifier()).isNotEqualTo(evicted.getChannelIdentifier());
+        assertThat(oocut.getChannel(evicted.getChannelIdentifier())).isNull();
+        assertThat(oocut.getChannel(next.getChannelIdentifier())).isSameAs(next);
+    }
+
+    /**
+     * <p>
+     * Tests that released slots are reused in the order they were released.
+     * </p>
+     */
+    @Test
+    public void testReleasedSlotsAreReusedInOrder() {
+        oocut.getNextFreeChannel("vin");
+        oocut.getNextFreeChannel("vin2");
+        oocut.getNextFreeChannel("vin3");
+        oocut.releaseChannel(2);
+        oocut.releaseChannel(0);
+
+        final int generation = 1 << Channels.SLOT_BITS;
+        assertThat(oocut.getNextFreeChannel("vin4").getChannelIdentifier()).isEqualTo(2 + generation);
+        assertThat(oocut.getNextFreeChannel("vin5").getChannelIdentifier()).isEqualTo(generation);
+        assertThat(oocut.getNextFreeChannel("vin6").getChannelIdentifier()).isEqualTo(3);
+    }
+
+    /**
+     * <p>
+     * Tests whether only channels idle since before the provided time are released.
+     * </p>
+     */
+    @Test
+    public void testReleaseIdleChannels() {
+        final Channel channel0 = oocut.getNextFreeChannel("vin");
+        final Channel channel1 = oocut.getNextFreeChannel("vin2");
+
+        assertThat(oocut.releaseIdleChannels(channel0.getLastActivity())).isEmpty();
+        assertThat(oocut.releaseIdleChannels(Long.MAX_VALUE)).containsOnly(channel0, channel1);
+        assertThat(oocut.size()).isEqualTo(0);
+        assertThat(oocut.getChannel(0)).isNull();
+    }
+
+    /**
+     * <p>
+     * Tests that concurrently allocating and releasing channels never assigns the same identifier to two active
+     * channels.
+     * </p>
+     *
+     * @throws Exception If the test threads fail.
+     */
+    @Test
+    public void testConcurrentAllocationAndRelease() throws Exception {
+        final int numberOfThreads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            List<Future<List<Channel>>> results = new ArrayList<>();
+            for (int thread = 0; thread < numberOfThreads; thread++) {
+                results.add(executor.submit(() -> {
+                    List<Channel> kept = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        Channel channel = oocut.getNextFreeChannel("vin");
+                        if (i % 2 == 0) {
+                            assertThat(oocut.releaseChannel(channel.getChannelIdentifier())).isSameAs(channel);
+                        } else {
+                            kept.add(channel);
+                        }
+                    }
+                    return kept;
+                }));
+            }
+
+            Set<Integer> identifiers = new HashSet<>();
+            for (Future<List<Channel>> result : results) {
+                for (Channel channel : result.get(1, TimeUnit.MINUTES)) {
+                    assertThat(identifiers.add(channel.getChannelIdentifier())).isTrue();
+                    assertThat(oocut.getChannel(channel.getChannelIdentifier())).isSameAs(channel);
+                }
+            }
+            assertThat(oocut.size()).isEqualTo(numberOfThreads * 500);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
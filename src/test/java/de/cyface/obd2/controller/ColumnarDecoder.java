@@ -0,0 +1,155 @@
+/*
+ * Created on 18.10.26 at 02:25.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Reference decoder for the columnar binary format encoded by {@link ColumnarEncoder}, as an analytics job would
+ * implement it. It is used for round trip tests.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ColumnarDecoder {
+
+    /**
+     * <p>
+     * The data to decode.
+     * </p>
+     */
+    private final byte[] bytes;
+    /**
+     * <p>
+     * The position of the next byte to decode.
+     * </p>
+     */
+    private int position;
+
+    /**
+     * @param bytes The data to decode.
+     */
+    private ColumnarDecoder(final byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @param bytes Data in the columnar binary format.
+     * @return The decoded entries.
+     * @throws IllegalArgumentException If the data is not valid.
+     */
+    public static List<InputData> decode(final byte[] bytes) {
+        return new ColumnarDecoder(bytes).decode();
+    }
+
+    /**
+     * @return The decoded entries.
+     */
+    private List<InputData> decode() {
+        Validate.isTrue(bytes[position++] == ColumnarEncoder.VERSION, "Unsupported version.");
+        List<InputData> ret = new ArrayList<>();
+        for (int count = (int)readVarLong(); count > 0; count = (int)readVarLong()) {
+            int[] accelerationCounts = new int[count];
+            int accelerations = 0;
+            for (int i = 0; i < count; i++) {
+                accelerationCounts[i] = (int)readVarLong();
+                accelerations += accelerationCounts[i];
+            }
+            long[] timestamps = readDifferences(accelerations);
+            for (int i = 1; i < accelerations; i++) {
+                // Timestamps are encoded as differences of differences, so summing twice restores them.
+                timestamps[i] += timestamps[i - 1];
+            }
+            long[] ax = readDifferences(accelerations);
+            long[] ay = readDifferences(accelerations);
+            long[] az = readDifferences(accelerations);
+            boolean[] hasGpsData = new boolean[count];
+            int gpsCount = 0;
+            for (int i = 0; i < count; i += 8) {
+                final int bits = bytes[position++];
+                for (int j = i; j < Math.min(i + 8, count); j++) {
+                    hasGpsData[j] = (bits & (1 << (j - i))) != 0;
+                    gpsCount += hasGpsData[j] ? 1 : 0;
+                }
+            }
+            long[] gpsTimes = readDifferences(gpsCount);
+            double[] latitudes = readExclusiveOrs(gpsCount);
+            double[] longitudes = readExclusiveOrs(gpsCount);
+            long[] altitudes = readDifferences(gpsCount);
+            double[] speeds = readExclusiveOrs(gpsCount);
+            long[] satellites = readDifferences(gpsCount);
+
+            int acceleration = 0;
+            int gps = 0;
+            for (int i = 0; i < count; i++) {
+                InputData entry = new InputData();
+                if (hasGpsData[i]) {
+                    entry.addGpsData(new GpsData(gpsTimes[gps], latitudes[gps], longitudes[gps], (int)altitudes[gps],
+                            speeds[gps], (int)satellites[gps]));
+                    gps++;
+                }
+                for (int j = 0; j < accelerationCounts[i]; j++) {
+                    entry.addAccelerationTuple(timestamps[acceleration], (int)ax[acceleration], (int)ay[acceleration],
+                            (int)az[acceleration]);
+                    acceleration++;
+                }
+                ret.add(entry);
+            }
+        }
+        Validate.isTrue(position == bytes.length, "Trailing data.");
+        return ret;
+    }
+
+    /**
+     * @param count The number of values of the column.
+     * @return The values of a column encoded as differences to the previous value.
+     */
+    private long[] readDifferences(final int count) {
+        long[] ret = new long[count];
+        long previous = 0L;
+        for (int i = 0; i < count; i++) {
+            final long zigzag = readVarLong();
+            previous += (zigzag >>> 1) ^ -(zigzag & 1L);
+            ret[i] = previous;
+        }
+        return ret;
+    }
+
+    /**
+     * @param count The number of values of the column.
+     * @return The values of a column encoded as exclusive or with the previous value.
+     */
+    private double[] readExclusiveOrs(final int count) {
+        double[] ret = new double[count];
+        long previous = 0L;
+        for (int i = 0; i < count; i++) {
+            previous ^= readVarLong();
+            ret[i] = Double.longBitsToDouble(previous);
+        }
+        return ret;
+    }
+
+    /**
+     * @return The next unsigned varint.
+     */
+    private long readVarLong() {
+        long ret = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte current = bytes[position++];
+            ret |= (long)(current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return ret;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long.");
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Created on 18.10.26 at 02:26.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests whether data encoded by the {@link ColumnarEncoder} is decoded unchanged by the reference
+ * {@link ColumnarDecoder}.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ColumnarEncoderTest {
+
+    /**
+     * <p>
+     * Tests that entries spanning several groups survive a round trip, including entries without GPS data or without
+     * accelerations, timestamps going backwards and extreme values.
+     * </p>
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(42L);
+        List<InputData> entries = new ArrayList<>();
+        for (int i = 0; i < 2 * ColumnarEncoder.GROUP_SIZE + 100; i++) {
+            InputData entry = new InputData();
+            if (i % 3 != 0) {
+                entry.addGpsData(new GpsData(1_000L * i, 51.0 + random.nextDouble(), 13.0 + random.nextDouble(),
+                        random.nextInt(500) - 100, random.nextDouble() * 50.0, random.nextInt(13)));
+            }
+            final int accelerations = i % 5 == 0 ? 0 : random.nextInt(16);
+            for (int j = 0; j < accelerations; j++) {
+                entry.addAccelerationTuple(1_000L * i + random.nextInt(2_000) - 500, random.nextInt(),
+                        random.nextInt(200) - 100, random.nextInt(2_000));
+            }
+            entries.add(entry);
+        }
+        InputData extreme = new InputData();
+        extreme.addGpsData(new GpsData(Long.MAX_VALUE, -90.0, 180.0, Integer.MIN_VALUE, 0.0, Integer.MAX_VALUE));
+        extreme.addAccelerationTuple(Long.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, 0);
+        extreme.addAccelerationTuple(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, -1);
+        entries.add(extreme);
+
+        assertThat(ColumnarDecoder.decode(encode(entries))).isEqualTo(entries);
+    }
+
+    /**
+     * <p>
+     * Tests that encoding no entries results in the version followed by the end of the data.
+     * </p>
+     */
+    @Test
+    public void testNoEntries() throws IOException {
+        assertThat(encode(new ArrayList<>())).containsExactly((byte)ColumnarEncoder.VERSION, (byte)0);
+    }
+
+    /**
+     * <p>
+     * Tests that the columnar format is much smaller than the textual representation for typical data.
+     * </p>
+     */
+    @Test
+    public void testCompactness() throws IOException {
+        List<InputData> entries = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            InputData entry = new InputData();
+            entry.addGpsData(new GpsData(10_000L + 1_000L * i, 51.05 + i * 0.0001, 13.7, 120, 10.0, 8));
+            for (int j = 0; j < 12; j++) {
+                entry.addAccelerationTuple(10_000L + 1_000L * i + 80L * j, j % 3, 2, 100 + j % 2);
+            }
+            entries.add(entry);
+            text.append(entry).append('\n');
+        }
+
+        assertThat(encode(entries).length).isLessThan(text.length() / 8);
+    }
+
+    /**
+     * @param entries The entries to encode.
+     * @return The encoded entries.
+     * @throws IOException Never, since writing to memory does not fail.
+     */
+    private byte[] encode(final List<InputData> entries) throws IOException {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        ColumnarEncoder oocut = new ColumnarEncoder(ret);
+        for (final InputData entry : entries) {
+            oocut.write(entry);
+        }
+        oocut.finish();
+        return ret.toByteArray();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Created on 18.10.26 at 01:06.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests whether the {@link FreematicsParser} parses message bodies in the Freematics data format correctly.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class FreematicsParserTest {
+
+    /**
+     * <p>
+     * The object of the class under test.
+     * </p>
+     */
+    private FreematicsParser oocut;
+
+    @Before
+    public void setUp() {
+        oocut = new FreematicsParser();
+    }
+
+    /**
+     * <p>
+     * Tests whether absolute and relative timestamps as well as all known identifiers are parsed correctly.
+     * </p>
+     */
+    @Test
+    public void testParseAllIdentifiers() {
+        String body = "#12,ACC,2,-1,109 5,ACC,-3,0,110 7728,UTC,7284200 0,LAT,51.025750 0,LNG,-13.722881 0,ALT,-12 "
+                + "0,SPD,12.5 0,SAT,7";
+        InputData expectedData = new InputData();
+        expectedData.addAccelerationTuple(12000L, 2, -1, 109);
+        expectedData.addAccelerationTuple(12005L, -3, 0, 110);
+        expectedData.addGpsData(new GpsData(7284200L, 51.025750, -13.722881, -12, 12.5, 7));
+
+        assertThat(oocut.parse(body)).isEqualTo(expectedData);
+    }
+
+    /**
+     * <p>
+     * Tests whether entries with unknown identifiers or unparseable values are skipped, while all other entries of the
+     * same body are still parsed. Only the unparseable entries are counted as invalid.
+     * </p>
+     */
+    @Test
+    public void testSkipInvalidEntries() {
+        String body = "#1,ACC,1,1,1 0,DTE,090916 0,ACC,a,1,1 0,ACC,1,1 0,ACCX,1,1,1 x,ACC,1,1,1 0,ACC,2,2,2  0,ALT,1.5";
+        InputData expectedData = new InputData();
+        expectedData.addAccelerationTuple(1000L, 1, 1, 1);
+        expectedData.addAccelerationTuple(1000L, 2, 2, 2);
+
+        assertThat(oocut.parse(body)).isEqualTo(expectedData);
+        assertThat(oocut.getInvalidEntries()).isEqualTo(4);
+        oocut.parse("#1,ACC,1,1,1 0,DTE,090916");
+        assertThat(oocut.getInvalidEntries()).isEqualTo(0);
+    }
+
+    /**
+     * <p>
+     * Tests whether parsing a byte encoded body, a stream or a section of a larger body yields the same result as
+     * parsing the plain body.
+     * </p>
+     */
+    @Test
+    public void testParseBytesAndSections() throws Exception {
+        String body = "#75831,ACC,2,0,109 0,ACC,2,-1,108 7732,UTC,7295170 0,LAT,51.025763 0,LNG,13.723145 0,ALT,179";
+        InputData expectedData = oocut.parse(body);
+        byte[] bytes = ("xx" + body + "yy").getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(oocut.parse(bytes, 2, body.length())).isEqualTo(expectedData);
+        assertThat(oocut.parse("xx" + body + "yy", 2, body.length() + 2)).isEqualTo(expectedData);
+        assertThat(oocut.parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.US_ASCII))))
+                .isEqualTo(expectedData);
+    }
+
+    /**
+     * <p>
+     * Tests whether decimal values are parsed to exactly the same {@code double} as the JDK would produce.
+     * </p>
+     */
+    @Test
+    public void testDecimalValuesMatchJdk() {
+        Random random = new Random(42L);
+        for (int i = 0; i < 10000; i++) {
+            String latitude = String.format(Locale.ROOT, "%.6f", random.nextDouble() * 180.0 - 90.0);
+            String longitude = Double.toString(random.nextDouble() * 360.0 - 180.0);
+
+            InputData expectedData = new InputData();
+            expectedData.addGpsData(new GpsData(1L, Double.parseDouble(latitude), Double.parseDouble(longitude), 0,
+                    0.0, 0));
+
+            assertThat(oocut.parse("0,UTC,1 0,LAT," + latitude + " 0,LNG," + longitude)).isEqualTo(expectedData);
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that an empty body results in empty data.
+     * </p>
+     */
+    @Test
+    public void testParseEmptyBody() {
+        assertThat(oocut.parse("")).isEqualTo(new InputData());
+    }
+}
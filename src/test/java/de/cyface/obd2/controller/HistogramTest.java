@@ -0,0 +1,51 @@
+/*
+ * Created on 18.10.26 at 01:32.
+ */
+package de.cyface.obd2.controller;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests whether the {@link Histogram} used for metrics aggregates recorded values correctly.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class HistogramTest {
+
+    /**
+     * <p>
+     * Tests count, sum, mean, maximum and percentiles of some recorded values.
+     * </p>
+     */
+    @Test
+    public void testAggregation() {
+        Histogram oocut = new Histogram();
+        assertThat(oocut.count()).isEqualTo(0L);
+        assertThat(oocut.mean()).isEqualTo(0.0);
+        assertThat(oocut.percentile(0.99)).isEqualTo(0L);
+
+        for (int i = 1; i <= 100; i++) {
+            oocut.record(i);
+        }
+        oocut.record(-5L);
+
+        assertThat(oocut.count()).isEqualTo(101L);
+        assertThat(oocut.sum()).isEqualTo(5050L);
+        assertThat(oocut.max()).isEqualTo(100L);
+        assertThat(oocut.mean()).isEqualTo(5050.0 / 101.0);
+        // The median 50 lies in the bucket from 32 to 63.
+        assertThat(oocut.percentile(0.5)).isEqualTo(63L);
+        // The upper bound of the last bucket is capped by the maximum.
+        assertThat(oocut.percentile(0.99)).isEqualTo(100L);
+        assertThat(oocut.percentile(0.0)).isEqualTo(0L);
+
+        oocut.record(Long.MAX_VALUE);
+        assertThat(oocut.percentile(1.0)).isEqualTo(Long.MAX_VALUE);
+    }
+}
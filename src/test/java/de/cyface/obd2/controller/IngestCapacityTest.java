@@ -0,0 +1,351 @@
+/*
+ * Created on 18.10.26 at 02:03.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.MessboxServerApplication;
+import de.cyface.obd2.persistence.DataRepository;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Compares how many slowly uploading dongles the server is able to handle in the default servlet mode and with message
+ * bodies received without blocking. The server is started with only a few request threads and more dongles than
+ * threads start uploading a message body, but stop halfway, as on a poor cellular link. Then another client tries to
+ * allocate a channel.
+ * </p>
+ * <p>
+ * The tests do not depend on timing. A filter in the server records when requests start and finish, so the tests
+ * wait for the server state they need and check the order of requests afterwards. Timeouts only stop a test from
+ * hanging, if the server never answers.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class IngestCapacityTest {
+
+    /**
+     * <p>
+     * The number of request threads of the started server.
+     * </p>
+     */
+    private static final int THREADS = 4;
+    /**
+     * <p>
+     * The number of slowly uploading dongles, which is a multiple of the number of request threads.
+     * </p>
+     */
+    private static final int SLOW_CLIENTS = 4 * THREADS;
+    /**
+     * <p>
+     * The time in milliseconds to wait for any response or server state, before a test fails instead of hanging.
+     * </p>
+     */
+    private static final int TIMEOUT = 60_000;
+    /**
+     * <p>
+     * The message body uploaded by each dongle.
+     * </p>
+     */
+    private static final String BODY = "#1000,ACC,1,2,3 0,ACC,1,4,3";
+
+    /**
+     * <p>
+     * The started server.
+     * </p>
+     */
+    private ConfigurableApplicationContext context;
+    /**
+     * <p>
+     * The filter recording the requests handled by the started server.
+     * </p>
+     */
+    private final RequestRecorder recorder = new RequestRecorder();
+    /**
+     * <p>
+     * The connections of the slowly uploading dongles.
+     * </p>
+     */
+    private final List<Socket> connections = new ArrayList<>();
+
+    /**
+     * <p>
+     * Closes all connections and stops the server.
+     * </p>
+     */
+    @After
+    public void tearDown() throws IOException {
+        for (final Socket connection : connections) {
+            connection.close();
+        }
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that slowly uploading dongles occupy all request threads in the default servlet mode, so no other client
+     * is answered until they finish.
+     * </p>
+     */
+    @Test
+    public void testSlowClientsExhaustServletMode() throws IOException, InterruptedException {
+        final int port = start(false, 10485760L);
+        final List<String> channels = allocateChannels(port);
+        for (final String channel : channels) {
+            connections.add(startUpload(port, channel));
+        }
+        assertThat(recorder.busyRequestThreads.await(TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+
+        final Socket probe = send(port,
+                "GET /push?VIN=probe HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        connections.add(probe);
+        for (final Socket connection : connections.subList(0, SLOW_CLIENTS)) {
+            finishUpload(connection);
+        }
+        for (final Socket connection : connections) {
+            assertThat(statusLine(connection)).isEqualTo("HTTP/1.1 200");
+        }
+        assertThat(recorder.uploadsFinishedBeforeProbe.get()).isGreaterThan(0);
+    }
+
+    /**
+     * <p>
+     * Tests that slowly uploading dongles do not occupy request threads if message bodies are received without
+     * blocking, so other clients are still answered, and that all uploaded data is stored afterwards.
+     * </p>
+     */
+    @Test
+    public void testSlowClientsDoNotExhaustNonBlockingMode() throws IOException {
+        final int port = start(true, 10485760L);
+        final List<String> channels = allocateChannels(port);
+        for (final String channel : channels) {
+            connections.add(startUpload(port, channel));
+        }
+
+        assertThat(request(port, "GET /push?VIN=probe HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"))
+                .isEqualTo("HTTP/1.1 200");
+
+        for (final Socket connection : connections) {
+            finishUpload(connection);
+        }
+        for (final Socket connection : connections) {
+            assertThat(statusLine(connection)).isEqualTo("HTTP/1.1 200");
+        }
+        DataRepository repo = context.getBean(DataRepository.class);
+        for (int i = 0; i < SLOW_CLIENTS; i++) {
+            assertThat(repo.countInputData("slow" + i, Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(1);
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that message bodies larger than the configured maximum size are rejected, if they are received without
+     * blocking.
+     * </p>
+     */
+    @Test
+    public void testTooLargeBodyIsRejectedInNonBlockingMode() throws IOException {
+        final int port = start(true, 8L);
+        final String channel = allocateChannels(port).get(0);
+
+        assertThat(request(port, "POST /post?id=" + channel + " HTTP/1.1\r\nHost: localhost\r\n"
+                + "Content-Type: text/plain\r\nTransfer-Encoding: chunked\r\nConnection: close\r\n\r\n"
+                + Integer.toHexString(BODY.length()) + "\r\n" + BODY + "\r\n0\r\n\r\n")).isEqualTo("HTTP/1.1 413");
+    }
+
+    /**
+     * @param nonBlocking Whether message bodies are received without blocking.
+     * @param maxBodySize The maximum size in bytes of a message body.
+     * @return The port of the started server.
+     */
+    private int start(final boolean nonBlocking, final long maxBodySize) {
+        context = new SpringApplicationBuilder(MessboxServerApplication.class)
+                .initializers(created -> created.getBeanFactory().registerSingleton("requestRecorder", recorder))
+                .run("--server.port=0", "--server.tomcat.max-threads=" + THREADS, "--spring.jmx.enabled=false",
+                        "--freematics.ingest.non-blocking=" + nonBlocking,
+                        "--freematics.post.max-body-size=" + maxBodySize);
+        return ((EmbeddedWebApplicationContext)context).getEmbeddedServletContainer().getPort();
+    }
+
+    /**
+     * @param port The port of the server.
+     * @return The identifiers of the channels allocated for all slowly uploading dongles.
+     * @throws IOException If communicating with the server fails.
+     */
+    private List<String> allocateChannels(final int port) throws IOException {
+        List<String> ret = new ArrayList<>();
+        for (int i = 0; i < SLOW_CLIENTS; i++) {
+            try (Socket socket = new Socket("localhost", port)) {
+                socket.setSoTimeout(TIMEOUT);
+                final String request = "GET /push?VIN=slow" + i
+                        + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+                socket.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String line = reader.readLine();
+                while (line != null && !line.startsWith("CH:")) {
+                    line = reader.readLine();
+                }
+                assertThat(line).isNotNull();
+                ret.add(line.substring("CH:".length()));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Sends the request headers and the first half of the message body, but not the rest.
+     * </p>
+     *
+     * @param port The port of the server.
+     * @param channel The identifier of the channel to upload to.
+     * @return The connection of the upload.
+     * @throws IOException If communicating with the server fails.
+     */
+    private Socket startUpload(final int port, final String channel) throws IOException {
+        Socket ret = new Socket("localhost", port);
+        ret.setSoTimeout(TIMEOUT);
+        OutputStream output = ret.getOutputStream();
+        output.write(("POST /post?id=" + channel + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: text/plain\r\n"
+                + "Content-Length: " + BODY.length() + "\r\nConnection: close\r\n\r\n"
+                + BODY.substring(0, BODY.length() / 2)).getBytes(StandardCharsets.UTF_8));
+        output.flush();
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Sends the rest of the message body of an upload started by {@link #startUpload(int, String)}.
+     * </p>
+     *
+     * @param connection The connection of the upload.
+     * @throws IOException If communicating with the server fails.
+     */
+    private void finishUpload(final Socket connection) throws IOException {
+        connection.getOutputStream().write(BODY.substring(BODY.length() / 2).getBytes(StandardCharsets.UTF_8));
+        connection.getOutputStream().flush();
+    }
+
+    /**
+     * @param port The port of the server.
+     * @param request The complete request to send.
+     * @return The status line of the response without the reason phrase.
+     * @throws IOException If communicating with the server fails.
+     */
+    private String request(final int port, final String request) throws IOException {
+        try (Socket socket = send(port, request)) {
+            return statusLine(socket);
+        }
+    }
+
+    /**
+     * @param port The port of the server.
+     * @param request The complete request to send.
+     * @return The connection the request was sent on.
+     * @throws IOException If communicating with the server fails.
+     */
+    private Socket send(final int port, final String request) throws IOException {
+        Socket ret = new Socket("localhost", port);
+        ret.setSoTimeout(TIMEOUT);
+        ret.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+        ret.getOutputStream().flush();
+        return ret;
+    }
+
+    /**
+     * @param connection A connection a request was sent on.
+     * @return The status line of the response without the reason phrase.
+     * @throws IOException If communicating with the server fails.
+     */
+    private String statusLine(final Socket connection) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+        final String line = reader.readLine();
+        return line == null ? null : line.substring(0, Math.min(line.length(), "HTTP/1.1 200".length()));
+    }
+
+    /**
+     * <p>
+     * A filter recording when the uploads and the probe are handled by a request thread of the server.
+     * </p>
+     */
+    private static final class RequestRecorder implements Filter {
+        /**
+         * <p>
+         * Counted down by each upload, which started to occupy a request thread.
+         * </p>
+         */
+        private final CountDownLatch busyRequestThreads = new CountDownLatch(THREADS);
+        /**
+         * <p>
+         * The number of uploads finished so far.
+         * </p>
+         */
+        private final AtomicInteger finishedUploads = new AtomicInteger();
+        /**
+         * <p>
+         * The number of uploads finished before the probe started or -1 if it did not start yet.
+         * </p>
+         */
+        private final AtomicInteger uploadsFinishedBeforeProbe = new AtomicInteger(-1);
+
+        @Override
+        public void init(final FilterConfig filterConfig) {
+            // Nothing to do here.
+        }
+
+        @Override
+        public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
+                throws IOException, ServletException {
+            final HttpServletRequest httpRequest = (HttpServletRequest)request;
+            final boolean upload = "POST".equals(httpRequest.getMethod());
+            if (upload) {
+                busyRequestThreads.countDown();
+            } else if ("VIN=probe".equals(httpRequest.getQueryString())) {
+                uploadsFinishedBeforeProbe.set(finishedUploads.get());
+            }
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                if (upload) {
+                    finishedUploads.incrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public void destroy() {
+            // Nothing to do here.
+        }
+    }
+}
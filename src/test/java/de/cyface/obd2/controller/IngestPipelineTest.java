@@ -0,0 +1,122 @@
+/*
+ * Created on 18.10.26 at 01:27.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * <p>
+ * Tests whether the {@link IngestPipeline} stores all queued data and applies back pressure if it is full.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class IngestPipelineTest {
+
+    /**
+     * <p>
+     * Tests that all data queued for many channels is stored in the order it was received per channel.
+     * </p>
+     *
+     * @throws Exception If stopping the pipeline fails.
+     */
+    @Test
+    public void testAllDataIsStoredInOrder() throws Exception {
+        DataRepository repo = new DataRepository();
+        IngestPipeline oocut = new IngestPipeline(repo, new IngestMetrics(), true, 64, 4, 8, IngestPipeline.BackPressure.BLOCK);
+        oocut.start();
+        List<Channel> channels = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            channels.add(new Channel(i, "vin" + i));
+        }
+
+        for (int message = 0; message < 500; message++) {
+            for (final Channel channel : channels) {
+                oocut.submit(channel, String.format("#%d,ACC,1,2,3", 1000 + message));
+            }
+        }
+        oocut.stop();
+
+        assertThat(oocut.getProcessed()).isEqualTo(5000L);
+        assertThat(oocut.getQueueDepth()).isEqualTo(0);
+        assertThat(oocut.getMaxLag()).isGreaterThanOrEqualTo(oocut.getLastLag()).isGreaterThan(0L);
+        for (int i = 0; i < 10; i++) {
+            assertThat(repo.countInputData("vin" + i)).isEqualTo(500);
+            assertThat(repo.findInputData("vin" + i, 0L, Long.MAX_VALUE, 0, 1000))
+                    .extracting(entry -> entry.getAccelerationTimestamp(0)).isSorted();
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that data is rejected if the queue is full and the back pressure strategy is to reject.
+     * </p>
+     *
+     * @throws Exception If stopping the pipeline fails.
+     */
+    @Test
+    public void testRejectIfFull() throws Exception {
+        DataRepository repo = new DataRepository();
+        IngestPipeline oocut = new IngestPipeline(repo, new IngestMetrics(), true, 2, 1, 8, IngestPipeline.BackPressure.REJECT);
+        Channel channel = new Channel(0, "vin");
+
+        oocut.submit(channel, "#1000,ACC,1,2,3");
+        oocut.submit(channel, "#1001,ACC,1,2,3");
+        try {
+            oocut.submit(channel, "#1002,ACC,1,2,3");
+            fail("Queue should be full.");
+        } catch (final IngestQueueFullException e) {
+            assertThat(oocut.getRejected()).isEqualTo(1L);
+        }
+        assertThat(oocut.getQueueDepth()).isEqualTo(2);
+
+        oocut.start();
+        oocut.stop();
+        assertThat(repo.countInputData("vin")).isEqualTo(2);
+    }
+
+    /**
+     * <p>
+     * Tests that a failure to store the data of one channel is counted, does not prevent storing other channels and
+     * keeps the data of the failed channel for the next attempt.
+     * </p>
+     *
+     * @throws Exception If stopping the pipeline fails.
+     */
+    @Test
+    public void testFailedStoreKeepsData() throws Exception {
+        DataRepository repo = new DataRepository() {
+            @Override
+            public int store(final Channel data) {
+                if ("broken".equals(data.getVehicleIdentificationNumber())) {
+                    throw new IllegalStateException("Storage failed.");
+                }
+                return super.store(data);
+            }
+        };
+        IngestPipeline oocut = new IngestPipeline(repo, new IngestMetrics(), true, 8, 1, 8,
+                IngestPipeline.BackPressure.BLOCK);
+        Channel broken = new Channel(0, "broken");
+        Channel working = new Channel(1, "vin");
+
+        oocut.submit(broken, "#1000,ACC,1,2,3");
+        oocut.submit(working, "#1000,ACC,1,2,3");
+        oocut.start();
+        oocut.stop();
+
+        assertThat(oocut.getFailedStores()).isEqualTo(1L);
+        assertThat(repo.countInputData("vin")).isEqualTo(1);
+        assertThat(broken.getInputData()).hasSize(1);
+    }
+}
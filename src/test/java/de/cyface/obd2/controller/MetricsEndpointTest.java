@@ -0,0 +1,69 @@
+/*
+ * Created on 18.10.26 at 01:32.
+ */
+package de.cyface.obd2.controller;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests whether the metrics of this server are published via the <tt>/metrics</tt> endpoint. The context is discarded
+ * afterwards, since the test leaves data in the repository.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext
+public class MetricsEndpointTest {
+
+    /**
+     * <p>
+     * Client used to communicate with the test server.
+     * </p>
+     */
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    /**
+     * <p>
+     * Tests that allocating a channel and posting data to it is counted.
+     * </p>
+     */
+    @Test
+    public void testIngestIsMeasured() {
+        String channel = restTemplate.getForObject("/push?VIN=metricsVIN", String.class);
+        String id = channel.substring("CH:".length());
+        restTemplate.postForEntity("/post?id=" + id, "#1000,ACC,1,2,3 0,ACC,1,x,3", String.class);
+
+        ResponseEntity<Map<String, Object>> response = restTemplate.exchange("/metrics", HttpMethod.GET, null,
+                new ParameterizedTypeReference<Map<String, Object>>() {
+                });
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Map<String, Object> metrics = response.getBody();
+        assertThat(((Number)metrics.get("freematics.push.count")).longValue()).isGreaterThanOrEqualTo(1L);
+        assertThat(((Number)metrics.get("freematics.post.count")).longValue()).isGreaterThanOrEqualTo(1L);
+        assertThat(((Number)metrics.get("freematics.parse.errors")).longValue()).isGreaterThanOrEqualTo(1L);
+        assertThat(((Number)metrics.get("freematics.channels.active")).intValue()).isGreaterThanOrEqualTo(1);
+        assertThat(metrics).containsKeys("freematics.store.time.p99", "freematics.repository.entries",
+                "freematics.repository.duplicates", "freematics.ingest.queue.depth", "freematics.channels.evicted");
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Created on 18.10.26 at 01:34.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.InputData;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * <p>
+ * Tests for transmitting many message bodies with one request.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@RunWith(SpringRunner.class)
+@WebMvcTest(Obd2Controller.class)
+public class Obd2BatchControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private DataRepository repo;
+
+    @MockBean
+    private Channels channels;
+
+    @MockBean
+    private IngestPipeline pipeline;
+
+    @MockBean
+    private IngestMetrics metrics;
+
+    @MockBean
+    private RateLimiter rateLimiter;
+
+    @Captor
+    private ArgumentCaptor<Collection<Channel>> stored;
+
+    /**
+     * <p>
+     * Tests that items for many channels are parsed, all affected channels are stored with one call and the status of
+     * each item is reported.
+     * </p>
+     */
+    @Test
+    public void testBatchForManyChannels() throws Exception {
+        Channel channel1 = new Channel(1, "vin1");
+        Channel channel2 = new Channel(2, "vin2");
+        given(channels.getChannel(1)).willReturn(channel1);
+        given(channels.getChannel(2)).willReturn(channel2);
+        String body = "1:#1000,ACC,1,2,3\n2:#1000,ACC,4,5,6\r\n\n3:#1000,ACC,1,1,1\nno identifier\n1:#1001,ACC,7,8,9";
+
+        mvc.perform(post("/batch").content(body)).andExpect(status().isOk())
+                .andExpect(content().string("0,OK\n1,OK\n2,UNKNOWN_CHANNEL\n3,MALFORMED\n4,OK\n"));
+
+        verify(repo, times(1)).storeAll(stored.capture());
+        assertThat(stored.getValue()).containsOnly(channel1, channel2);
+        InputData expected1 = new InputData();
+        expected1.addAccelerationTuple(1000000L, 1, 2, 3);
+        InputData expected2 = new InputData();
+        expected2.addAccelerationTuple(1001000L, 7, 8, 9);
+        assertThat(channel1.getInputData()).containsExactly(expected1, expected2);
+        assertThat(channel2.getInputData()).hasSize(1);
+    }
+
+    /**
+     * <p>
+     * Tests that all lines are used as message bodies for the same channel, if the channel is provided as parameter.
+     * </p>
+     */
+    @Test
+    public void testBatchForOneChannel() throws Exception {
+        Channel channel = new Channel(1, "vin");
+        given(channels.getChannel(1)).willReturn(channel);
+
+        mvc.perform(post("/batch").param("id", "1").content("#1000,ACC,1,2,3\n#1001,ACC,1,2,3\n#1002,ACC,1,2,3"))
+                .andExpect(status().isOk()).andExpect(content().string("0,OK\n1,OK\n2,OK\n"));
+
+        assertThat(channel.getInputData()).hasSize(3);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Created on 18.10.26 at 01:12.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Matchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * <p>
+ * Tests for closing channels on the server.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@RunWith(SpringRunner.class)
+@WebMvcTest(Obd2Controller.class)
+public class Obd2CloseControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private DataRepository repo;
+
+    @MockBean
+    private Channels channels;
+
+    @MockBean
+    private IngestPipeline pipeline;
+
+    @MockBean
+    private IngestMetrics metrics;
+
+    @MockBean
+    private RateLimiter rateLimiter;
+
+    /**
+     * <p>
+     * Tests that closing an active channel releases it and stores its remaining data.
+     * </p>
+     */
+    @Test
+    public void testCloseActiveChannel() throws Exception {
+        Channel exampleChannel = new Channel(1, "testVIN");
+        given(channels.releaseChannel(1)).willReturn(exampleChannel);
+
+        mvc.perform(get("/close").param("id", "1")).andExpect(status().isOk());
+        verify(channels, times(1)).releaseChannel(1);
+        verify(repo, times(1)).store(exampleChannel);
+    }
+
+    /**
+     * <p>
+     * Tests that closing a channel without an identifier fails.
+     * </p>
+     */
+    @Test
+    public void testCloseWithMissingIdentifier() throws Exception {
+        mvc.perform(get("/close")).andExpect(status().is4xxClientError());
+        verify(repo, never()).store(any(Channel.class));
+    }
+}
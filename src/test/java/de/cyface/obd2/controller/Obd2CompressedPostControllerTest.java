@@ -0,0 +1,164 @@
+/*
+ * Created on 18.10.26 at 01:39.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.InputData;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * <p>
+ * Tests for transmitting compressed data to the server.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@RunWith(SpringRunner.class)
+@WebMvcTest(Obd2Controller.class)
+@TestPropertySource(properties = "freematics.post.max-body-size=4096")
+public class Obd2CompressedPostControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private DataRepository repo;
+
+    @MockBean
+    private Channels channels;
+
+    @MockBean
+    private IngestPipeline pipeline;
+
+    @MockBean
+    private IngestMetrics metrics;
+
+    @MockBean
+    private RateLimiter rateLimiter;
+
+    /**
+     * <p>
+     * Tests that a gzip compressed body in the textual format is parsed and stored.
+     * </p>
+     */
+    @Test
+    public void testGzipTextBody() throws Exception {
+        Channel exampleChannel = new Channel(1, "testVIN");
+        given(this.channels.getChannel(1)).willReturn(exampleChannel);
+        String body = "#1000,ACC,1,2,3 10,ACC,4,5,6 0,UTC,7284200";
+
+        mvc.perform(post("/post").param("id", "1").header("Content-Encoding", "gzip").contentType("text/plain")
+                .content(gzip(body.getBytes(StandardCharsets.US_ASCII)))).andExpect(status().isOk());
+
+        verify(repo, times(1)).store(exampleChannel);
+        assertThat(exampleChannel.getInputData()).containsExactly(new FreematicsParser().parse(body));
+    }
+
+    /**
+     * <p>
+     * Tests that a deflate compressed body in the binary format is decoded and stored.
+     * </p>
+     */
+    @Test
+    public void testDeflateBinaryBody() throws Exception {
+        Channel exampleChannel = new Channel(1, "testVIN");
+        given(this.channels.getChannel(1)).willReturn(exampleChannel);
+        InputData data = new InputData();
+        data.addAccelerationTuple(1000L, 1, 2, 3);
+
+        mvc.perform(post("/post").param("id", "1").header("Content-Encoding", "deflate")
+                .contentType(BinaryFormatDecoder.CONTENT_TYPE).content(deflate(BinaryFormatEncoder.encode(data))))
+                .andExpect(status().isOk());
+
+        assertThat(exampleChannel.getInputData()).containsExactly(data);
+    }
+
+    /**
+     * <p>
+     * Tests that a small compressed body inflating beyond the maximum size is rejected.
+     * </p>
+     */
+    @Test
+    public void testRejectBodyInflatingTooLarge() throws Exception {
+        given(this.channels.getChannel(1)).willReturn(new Channel(1, "testVIN"));
+        StringBuilder body = new StringBuilder();
+        while (body.length() <= 4096) {
+            body.append("0,ACC,1,2,3 ");
+        }
+        byte[] compressed = gzip(body.toString().getBytes(StandardCharsets.US_ASCII));
+        assertThat(compressed.length).isLessThan(4096);
+
+        mvc.perform(post("/post").param("id", "1").header("Content-Encoding", "gzip").content(compressed))
+                .andExpect(status().isPayloadTooLarge());
+        verify(repo, never()).store(any(Channel.class));
+    }
+
+    /**
+     * <p>
+     * Tests that unsupported encodings and corrupt compressed bodies are rejected.
+     * </p>
+     */
+    @Test
+    public void testRejectInvalidEncodings() throws Exception {
+        given(this.channels.getChannel(1)).willReturn(new Channel(1, "testVIN"));
+
+        mvc.perform(post("/post").param("id", "1").header("Content-Encoding", "br").content(new byte[] {1, 2}))
+                .andExpect(status().isUnsupportedMediaType());
+        mvc.perform(post("/post").param("id", "1").header("Content-Encoding", "gzip").content(new byte[] {1, 2}))
+                .andExpect(status().isBadRequest());
+        verify(repo, never()).store(any(Channel.class));
+    }
+
+    /**
+     * @param data The data to compress.
+     * @return The data compressed with gzip.
+     * @throws IOException If compressing fails.
+     */
+    private static byte[] gzip(final byte[] data) throws IOException {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(ret)) {
+            out.write(data);
+        }
+        return ret.toByteArray();
+    }
+
+    /**
+     * @param data The data to compress.
+     * @return The data compressed with deflate in the zlib format.
+     * @throws IOException If compressing fails.
+     */
+    private static byte[] deflate(final byte[] data) throws IOException {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(ret)) {
+            out.write(data);
+        }
+        return ret.toByteArray();
+    }
+}
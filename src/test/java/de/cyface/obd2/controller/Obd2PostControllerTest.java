@@ -12,6 +12,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -21,6 +22,9 @@ import java.nio.file.Paths;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -38,6 +42,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 // TODO make a parameterized test from this as soon as I know how this works with SpringRunner
 @RunWith(SpringRunner.class)
 @WebMvcTest(Obd2Controller.class)
+@TestPropertySource(properties = "freematics.post.max-body-size=65536")
 public class Obd2PostControllerTest {
 
     @Autowired
@@ -49,6 +54,15 @@ public class Obd2PostControllerTest {
     @MockBean
     private Channels channels;
 
+    @MockBean
+    private IngestPipeline pipeline;
+
+    @MockBean
+    private IngestMetrics metrics;
+
+    @MockBean
+    private RateLimiter rateLimiter;
+
     /**
      * <p>
      * Tests if data send with an invalid entry is gracefully ignored.
@@ -117,4 +131,108 @@ public class Obd2PostControllerTest {
         assertThat(exampleChannel.getInputData()).hasSize(1);
         assertThat(exampleChannel.getInputData()).containsExactly(expectedData);
     }
+
+    /**
+     * <p>
+     * Tests that data is only queued if the asynchronous ingest pipeline is enabled.
+     * </p>
+     */
+    @Test
+    public void postDataAsynchronously() throws Exception {
+        Channel exampleChannel = new Channel(1, "testVIN");
+        given(this.channels.getChannel(1)).willReturn(exampleChannel);
+        given(this.pipeline.isEnabled()).willReturn(true);
+
+        mvc.perform(post("/post").param("id", "1").content("#1000,ACC,1,2,3")).andExpect(status().isOk());
+        verify(pipeline, times(1)).submit(exampleChannel, "#1000,ACC,1,2,3");
+        verify(repo, never()).store(any(Channel.class));
+        assertThat(exampleChannel.getInputData()).isEmpty();
+    }
+
+    /**
+     * <p>
+     * Tests that clients are asked to retry later if the asynchronous ingest pipeline is full.
+     * </p>
+     */
+    @Test
+    public void postDataWithFullQueue() throws Exception {
+        Channel exampleChannel = new Channel(1, "testVIN");
+        given(this.channels.getChannel(1)).willReturn(exampleChannel);
+        given(this.pipeline.isEnabled()).willReturn(true);
+        willThrow(new IngestQueueFullException("Full.")).given(pipeline).submit(exampleChannel, "#1000,ACC,1,2,3");
+
+        mvc.perform(post("/post").param("id", "1").content("#1000,ACC,1,2,3"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    /**
+     * <p>
+     * Tests that data of a vehicle exceeding its rate limit is rejected with 429 Too Many Requests and not stored.
+     * </p>
+     */
+    @Test
+    public void postWhileRateLimitExceeded() throws Exception {
+        Channel exampleChannel = new Channel(1, "testVIN");
+        given(this.channels.getChannel(1)).willReturn(exampleChannel);
+        willThrow(new RateLimitExceededException("Too many.")).given(rateLimiter).acquire(exampleChannel);
+
+        mvc.perform(post("/post").param("id", "1").content("#1000,ACC,1,2,3"))
+                .andExpect(status().isTooManyRequests());
+        verify(repo, never()).store(any(Channel.class));
+        assertThat(exampleChannel.getInputData()).isEmpty();
+    }
+
+    /**
+     * <p>
+     * Tests that data in the binary format is decoded and stored.
+     * </p>
+     */
+    @Test
+    public void postBinaryData() throws Exception {
+        Channel exampleChannel = new Channel(1, "testVIN");
+        InputData expectedData = new InputData();
+        expectedData.addAccelerationTuple(75831000L, 2, 0, 109);
+        expectedData.addAccelerationTuple(75831010L, 2, -1, 108);
+        expectedData.addGpsData(new GpsData(7295170, 51.025763, 13.723145, 179, 0.0, 0));
+        given(this.channels.getChannel(1)).willReturn(exampleChannel);
+
+        mvc.perform(post("/post").param("id", "1").contentType(BinaryFormatDecoder.CONTENT_TYPE)
+                .content(BinaryFormatEncoder.encode(expectedData))).andExpect(status().isOk());
+        verify(repo, times(1)).store(exampleChannel);
+        assertThat(exampleChannel.getInputData()).containsExactly(expectedData);
+    }
+
+    /**
+     * <p>
+     * Tests that a malformed body in the binary format is rejected.
+     * </p>
+     */
+    @Test
+    public void postMalformedBinaryData() throws Exception {
+        given(this.channels.getChannel(1)).willReturn(new Channel(1, "testVIN"));
+
+        mvc.perform(post("/post").param("id", "1").contentType(BinaryFormatDecoder.CONTENT_TYPE)
+                .content(new byte[] {1, 0, 5})).andExpect(status().isBadRequest());
+        verify(repo, never()).store(any(Channel.class));
+    }
+
+    /**
+     * <p>
+     * Tests that a body in the binary format larger than the maximum size is rejected.
+     * </p>
+     */
+    @Test
+    public void postTooLargeBinaryData() throws Exception {
+        given(this.channels.getChannel(1)).willReturn(new Channel(1, "testVIN"));
+        InputData data = new InputData();
+        for (int i = 0; i < 20_000; i++) {
+            data.addAccelerationTuple(10L * i, 2, -1, 109);
+        }
+        byte[] body = BinaryFormatEncoder.encode(data);
+        assertThat(body.length).isGreaterThan(65536);
+
+        mvc.perform(post("/post").param("id", "1").contentType(BinaryFormatDecoder.CONTENT_TYPE).content(body))
+                .andExpect(status().isPayloadTooLarge());
+        verify(repo, never()).store(any(Channel.class));
+    }
 }
@@ -39,6 +39,15 @@ public class Obd2PushControllerTest {
     @MockBean
     private Channels channels;
 
+    @MockBean
+    private IngestPipeline pipeline;
+
+    @MockBean
+    private IngestMetrics metrics;
+
+    @MockBean
+    private RateLimiter rateLimiter;
+
     @Test
     public void testPushWithCorrectVin() throws Exception {
         final String vin = "vin";
@@ -0,0 +1,219 @@
+/*
+ * Created on 18.10.26 at 01:25.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * <p>
+ * Tests for querying the data of a vehicle inside a time range.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@RunWith(SpringRunner.class)
+@WebMvcTest(QueryController.class)
+public class QueryControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private DataRepository repo;
+
+    /**
+     * <p>
+     * Tests that the requested page of the time range is returned together with the number of entries in the range.
+     * </p>
+     */
+    @Test
+    public void testQueryPage() throws Exception {
+        InputData data1 = new InputData();
+        data1.addAccelerationTuple(10000L, -1, 2, 107);
+        InputData data2 = new InputData();
+        data2.addAccelerationTuple(10002L, 1, 1, 107);
+        given(repo.countInputData("vin", 10000L, 20000L)).willReturn(5);
+        given(repo.findInputData("vin", 10000L, 20000L, 2, 2)).willReturn(Arrays.asList(data1, data2));
+
+        mvc.perform(get("/vehicles/vin/data").param("from", "10000").param("to", "20000").param("page", "1")
+                .param("size", "2")).andExpect(status().isOk()).andExpect(header().string("X-Total-Count", "5"))
+                .andExpect(content().string("\t\t\ttimestamp: 10000 ax: -1 ay: 2 az: 107\n\n"
+                        + "\t\t\ttimestamp: 10002 ax: 1 ay: 1 az: 107\n\n"));
+    }
+
+    /**
+     * <p>
+     * Tests that the statistics per window are returned as one line of comma separated values per window.
+     * </p>
+     */
+    @Test
+    public void testQueryRollups() throws Exception {
+        DataRepository source = new DataRepository();
+        Channel channel = new Channel(0, "vin");
+        InputData data = new InputData();
+        data.addAccelerationTuple(10000L, -1, 2, 107);
+        data.addAccelerationTuple(10500L, 1, 2, 107);
+        data.addAccelerationTuple(11000L, 4, 0, 100);
+        channel.addInputData(data);
+        source.store(channel);
+        given(repo.countRollups("vin", 10000L, 20000L)).willReturn(2);
+        given(repo.findRollups("vin", 10000L, 20000L, 0, 10))
+                .willReturn(source.findRollups("vin", 10000L, 20000L, 0, 10));
+
+        mvc.perform(get("/vehicles/vin/rollups").param("from", "10000").param("to", "20000").param("size", "10"))
+                .andExpect(status().isOk()).andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(content().string("10000,2,-1,1,0.0,1.0,2,2,2.0,2.0,107,107,107.0,107.0\n"
+                        + "11000,1,4,4,4.0,4.0,0,0,0.0,0.0,100,100,100.0,100.0\n"));
+    }
+
+    /**
+     * <p>
+     * Tests that trips are listed as one line of comma separated values per trip.
+     * </p>
+     */
+    @Test
+    public void testQueryTrips() throws Exception {
+        DataRepository source = new DataRepository();
+        Channel channel = new Channel(0, "vin");
+        InputData data = new InputData();
+        data.addAccelerationTuple(10000L, -1, 2, 107);
+        data.addAccelerationTuple(10500L, 1, 2, 107);
+        channel.addInputData(data);
+        source.store(channel);
+        given(repo.countTrips("vin")).willReturn(1);
+        given(repo.findTrips("vin", 0, 100)).willReturn(source.findTrips("vin", 0, 100));
+
+        mvc.perform(get("/vehicles/vin/trips")).andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "1"))
+                .andExpect(content().string("0,10000,10500,500,0.0,0.0,1,2\n"));
+    }
+
+    /**
+     * <p>
+     * Tests that exported data is returned as one line of comma separated values per acceleration, with empty columns
+     * for missing GPS data or accelerations.
+     * </p>
+     */
+    @Test
+    public void testExportCsv() throws Exception {
+        given(repo.iterateInputData("vin", 10000L, Long.MAX_VALUE)).willReturn(createExport().iterator());
+
+        mvc.perform(get("/vehicles/vin/export").param("from", "10000")).andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", startsWith(CsvEncoder.CONTENT_TYPE)))
+                .andExpect(content().string(CsvEncoder.HEADER + "10000,-1,2,107,10000,51.05,13.7,120,10.5,8\n"
+                        + "10040,1,2,107,10000,51.05,13.7,120,10.5,8\n" + "10080,0,0,100,,,,,,\n"
+                        + ",,,,11000,51.06,13.7,121,11.0,8\n"));
+    }
+
+    /**
+     * <p>
+     * Tests that exported data in the columnar binary format is decoded unchanged.
+     * </p>
+     */
+    @Test
+    public void testExportColumnar() throws Exception {
+        given(repo.iterateInputData("vin", Long.MIN_VALUE, Long.MAX_VALUE)).willReturn(createExport().iterator());
+
+        MvcResult result = mvc.perform(get("/vehicles/vin/export").param("format", "columnar"))
+                .andExpect(status().isOk()).andExpect(header().string("Content-Type", ColumnarEncoder.CONTENT_TYPE))
+                .andReturn();
+        assertThat(ColumnarDecoder.decode(result.getResponse().getContentAsByteArray())).isEqualTo(createExport());
+    }
+
+    /**
+     * <p>
+     * Tests that exporting in an unsupported format is rejected.
+     * </p>
+     */
+    @Test
+    public void testRejectUnknownExportFormat() throws Exception {
+        mvc.perform(get("/vehicles/vin/export").param("format", "xml")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * @return Example data to export with and without GPS data and accelerations.
+     */
+    private List<InputData> createExport() {
+        InputData first = new InputData();
+        first.addGpsData(new GpsData(10000L, 51.05, 13.7, 120, 10.5, 8));
+        first.addAccelerationTuple(10000L, -1, 2, 107);
+        first.addAccelerationTuple(10040L, 1, 2, 107);
+        InputData withoutGpsData = new InputData();
+        withoutGpsData.addAccelerationTuple(10080L, 0, 0, 100);
+        InputData withoutAccelerations = new InputData();
+        withoutAccelerations.addGpsData(new GpsData(11000L, 51.06, 13.7, 121, 11.0, 8));
+        return Arrays.asList(first, withoutGpsData, new InputData(), withoutAccelerations);
+    }
+
+    /**
+     * <p>
+     * Tests that a query without a time range and paging parameters returns the first page of all data.
+     * </p>
+     */
+    @Test
+    public void testQueryWithDefaults() throws Exception {
+        given(repo.countInputData("vin", Long.MIN_VALUE, Long.MAX_VALUE)).willReturn(0);
+        given(repo.findInputData("vin", Long.MIN_VALUE, Long.MAX_VALUE, 0, 100))
+                .willReturn(Collections.<InputData>emptyList());
+
+        mvc.perform(get("/vehicles/vin/data")).andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "0")).andExpect(content().string(""));
+    }
+
+    /**
+     * <p>
+     * Tests that a page size out of range is answered with a client error instead of a server error.
+     * </p>
+     */
+    @Test
+    public void testQueryWithInvalidPageSize() throws Exception {
+        mvc.perform(get("/vehicles/vin/data").param("size", "0")).andExpect(status().isBadRequest());
+        mvc.perform(get("/vehicles/vin/data").param("page", "-1")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * <p>
+     * Tests that a page size out of range is answered with a client error when querying rollups.
+     * </p>
+     */
+    @Test
+    public void testQueryRollupsWithInvalidPageSize() throws Exception {
+        mvc.perform(get("/vehicles/vin/rollups").param("size", "1001")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * <p>
+     * Tests that a negative page is answered with a client error when listing trips.
+     * </p>
+     */
+    @Test
+    public void testQueryTripsWithInvalidPage() throws Exception {
+        mvc.perform(get("/vehicles/vin/trips").param("page", "-1")).andExpect(status().isBadRequest());
+    }
+}
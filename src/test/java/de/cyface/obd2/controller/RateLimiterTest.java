@@ -0,0 +1,98 @@
+/*
+ * Created on 18.10.26 at 01:45.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests whether the {@link RateLimiter} accepts bursts and the configured average rate per vehicle, but no more.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class RateLimiterTest {
+
+    /**
+     * <p>
+     * The time in nanoseconds between two requests at the configured rate of ten requests per second.
+     * </p>
+     */
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100L);
+
+    /**
+     * <p>
+     * The object of the class under test.
+     * </p>
+     */
+    private RateLimiter oocut;
+
+    @Before
+    public void setUp() {
+        oocut = new RateLimiter(true, 10.0, 5);
+    }
+
+    /**
+     * <p>
+     * Tests that a burst of the configured size is accepted at once, while further requests are only accepted at the
+     * configured rate.
+     * </p>
+     */
+    @Test
+    public void testBurstAndRate() {
+        final long start = -3L * INTERVAL;
+        for (int i = 0; i < 5; i++) {
+            assertThat(oocut.tryAcquire("vin", start)).isTrue();
+        }
+        assertThat(oocut.tryAcquire("vin", start)).isFalse();
+        assertThat(oocut.tryAcquire("vin", start + INTERVAL - 1L)).isFalse();
+        assertThat(oocut.tryAcquire("vin", start + INTERVAL)).isTrue();
+        assertThat(oocut.tryAcquire("vin", start + INTERVAL)).isFalse();
+        assertThat(oocut.getThrottled()).isEqualTo(3L);
+
+        // Other vehicles have their own bucket.
+        assertThat(oocut.tryAcquire("other", start)).isTrue();
+    }
+
+    /**
+     * <p>
+     * Tests that vehicles are only forgotten once their bucket is full again.
+     * </p>
+     */
+    @Test
+    public void testRemoveIdleVehicles() {
+        oocut.tryAcquire("vin", 0L);
+        oocut.tryAcquire("vin", 0L);
+        oocut.tryAcquire("other", 0L);
+
+        assertThat(oocut.removeIdleVehicles(INTERVAL)).isEqualTo(1);
+        assertThat(oocut.getTrackedVehicles()).isEqualTo(1);
+        assertThat(oocut.removeIdleVehicles(2L * INTERVAL)).isEqualTo(1);
+        assertThat(oocut.getTrackedVehicles()).isEqualTo(0);
+    }
+
+    /**
+     * <p>
+     * Tests that nothing is limited if rate limiting is disabled.
+     * </p>
+     */
+    @Test
+    public void testDisabled() {
+        RateLimiter disabled = new RateLimiter(false, 1.0, 1);
+        Channel channel = new Channel(0, "vin");
+        for (int i = 0; i < 100; i++) {
+            disabled.acquire(channel);
+        }
+        assertThat(disabled.getThrottled()).isEqualTo(0L);
+        assertThat(disabled.getTrackedVehicles()).isEqualTo(0);
+    }
+}
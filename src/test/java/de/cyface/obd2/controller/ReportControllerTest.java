@@ -0,0 +1,68 @@
+/*
+ * Created on 18.10.26 at 02:19.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * <p>
+ * Tests for reporting a summary of the data of every vehicle.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@RunWith(SpringRunner.class)
+@WebMvcTest(ReportController.class)
+public class ReportControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private DataRepository repo;
+
+    /**
+     * <p>
+     * Tests that each vehicle is returned as one line of comma separated values and the number of vehicles is
+     * returned in the {@code X-Total-Count} header.
+     * </p>
+     */
+    @Test
+    public void testReport() throws Exception {
+        DataRepository source = new DataRepository();
+        Channel first = new Channel(0, "vin1");
+        InputData entry = new InputData();
+        entry.addGpsData(new GpsData(10000L, 51.05, 13.7, 120, 10.0, 8));
+        entry.addAccelerationTuple(10000L, 0, 60, 80);
+        entry.addAccelerationTuple(10100L, 0, 0, 90);
+        first.addInputData(entry);
+        Channel second = new Channel(1, "vin2");
+        second.addInputData(new InputData());
+        source.storeAll(Arrays.asList(first, second));
+        given(repo.report()).willReturn(source.report());
+
+        mvc.perform(get("/report")).andExpect(status().isOk()).andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(content().string("vin1,1,2,100.0,0.0,10.0\nvin2,1,0,0.0,0.0,0.0\n"));
+    }
+}
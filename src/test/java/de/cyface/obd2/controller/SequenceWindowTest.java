@@ -0,0 +1,97 @@
+/*
+ * Created on 18.10.26 at 02:07.
+ */
+package de.cyface.obd2.controller;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests for detecting duplicated and missing datagrams.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SequenceWindowTest {
+
+    /**
+     * <p>
+     * Tests that sequence numbers received once are duplicates afterwards.
+     * </p>
+     */
+    @Test
+    public void testDuplicates() {
+        SequenceWindow oocut = new SequenceWindow();
+        assertThat(oocut.isDuplicate(5L)).isFalse();
+        oocut.accept(5L);
+        oocut.accept(6L);
+
+        assertThat(oocut.isDuplicate(5L)).isTrue();
+        assertThat(oocut.isDuplicate(6L)).isTrue();
+        assertThat(oocut.isDuplicate(7L)).isFalse();
+        assertThat(oocut.getMissing()).isEqualTo(0L);
+    }
+
+    /**
+     * <p>
+     * Tests that sequence numbers below the first one received, as sent before it but reordered, are accepted once
+     * without being counted as missing.
+     * </p>
+     */
+    @Test
+    public void testBelowFirst() {
+        SequenceWindow oocut = new SequenceWindow();
+        oocut.accept(5L);
+
+        assertThat(oocut.isDuplicate(4L)).isFalse();
+        oocut.accept(4L);
+        assertThat(oocut.isDuplicate(4L)).isTrue();
+        assertThat(oocut.getMissing()).isEqualTo(0L);
+    }
+
+    /**
+     * <p>
+     * Tests that skipped sequence numbers are missing until they arrive late.
+     * </p>
+     */
+    @Test
+    public void testLateArrival() {
+        SequenceWindow oocut = new SequenceWindow();
+        oocut.accept(0L);
+        oocut.accept(4L);
+        assertThat(oocut.getMissing()).isEqualTo(3L);
+
+        assertThat(oocut.isDuplicate(2L)).isFalse();
+        oocut.accept(2L);
+        assertThat(oocut.isDuplicate(2L)).isTrue();
+        assertThat(oocut.getMissing()).isEqualTo(2L);
+    }
+
+    /**
+     * <p>
+     * Tests that sequence numbers below the window are never duplicates, since it can not tell whether they arrived,
+     * and that accepting them changes nothing.
+     * </p>
+     */
+    @Test
+    public void testTooOld() {
+        SequenceWindow oocut = new SequenceWindow();
+        oocut.accept(0L);
+        oocut.accept(2L);
+        oocut.accept(2L + SequenceWindow.SIZE);
+
+        assertThat(oocut.isDuplicate(1L)).isFalse();
+        assertThat(oocut.isDuplicate(0L)).isFalse();
+        assertThat(oocut.isDuplicate(3L)).isFalse();
+        assertThat(oocut.getMissing()).isEqualTo(SequenceWindow.SIZE);
+
+        oocut.accept(1L);
+        assertThat(oocut.isDuplicate(1L)).isFalse();
+        assertThat(oocut.isDuplicate(2L + SequenceWindow.SIZE)).isTrue();
+        assertThat(oocut.getMissing()).isEqualTo(SequenceWindow.SIZE);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Created on 18.10.26 at 01:56.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * <p>
+ * Tests for querying the places vehicles have been at.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@RunWith(SpringRunner.class)
+@WebMvcTest(SpatialQueryController.class)
+public class SpatialQueryControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private DataRepository repo;
+
+    /**
+     * <p>
+     * Tests that the places inside a bounding box are returned as one line of comma separated values per place.
+     * </p>
+     */
+    @Test
+    public void testQueryArea() throws Exception {
+        DataRepository source = createSource();
+        given(repo.findLocationsInArea(51.0, 13.0, 52.0, 14.0, 1000))
+                .willReturn(source.findLocationsInArea(51.0, 13.0, 52.0, 14.0, 1000));
+
+        mvc.perform(get("/locations").param("minLat", "51.0").param("minLon", "13.0").param("maxLat", "52.0")
+                .param("maxLon", "14.0")).andExpect(status().isOk())
+                .andExpect(content().string("vin,10000,51.05,13.7\nvin,10500,51.06,13.7\n"));
+    }
+
+    /**
+     * <p>
+     * Tests that the places around a center are returned, the nearest first.
+     * </p>
+     */
+    @Test
+    public void testQueryNear() throws Exception {
+        DataRepository source = createSource();
+        given(repo.findLocationsNear(51.06, 13.7, 5000.0, 10))
+                .willReturn(source.findLocationsNear(51.06, 13.7, 5000.0, 10));
+
+        mvc.perform(get("/locations/near").param("lat", "51.06").param("lon", "13.7").param("radius", "5000")
+                .param("limit", "10")).andExpect(status().isOk())
+                .andExpect(content().string("vin,10500,51.06,13.7\nvin,10000,51.05,13.7\n"));
+    }
+
+    /**
+     * <p>
+     * Tests that queries for an area with swapped borders or a limit out of range are rejected.
+     * </p>
+     */
+    @Test
+    public void testRejectInvalidArea() throws Exception {
+        mvc.perform(get("/locations").param("minLat", "52.0").param("minLon", "13.0").param("maxLat", "51.0")
+                .param("maxLon", "14.0")).andExpect(status().isBadRequest());
+        mvc.perform(get("/locations").param("minLat", "51.0").param("minLon", "14.0").param("maxLat", "52.0")
+                .param("maxLon", "13.0")).andExpect(status().isBadRequest());
+        mvc.perform(get("/locations").param("minLat", "51.0").param("minLon", "13.0").param("maxLat", "52.0")
+                .param("maxLon", "14.0").param("limit", "0")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * <p>
+     * Tests that queries around a center with a negative radius or a limit out of range are rejected.
+     * </p>
+     */
+    @Test
+    public void testRejectInvalidNear() throws Exception {
+        mvc.perform(get("/locations/near").param("lat", "51.06").param("lon", "13.7").param("radius", "-1"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/locations/near").param("lat", "51.06").param("lon", "13.7").param("radius", "5000")
+                .param("limit", "10001")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * @return A repository containing two places of one vehicle.
+     */
+    private DataRepository createSource() {
+        DataRepository ret = new DataRepository();
+        Channel channel = new Channel(0, "vin");
+        InputData first = new InputData();
+        first.addGpsData(new GpsData(10000L, 51.05, 13.7, 120, 10.0, 8));
+        first.addAccelerationTuple(10000L, -1, 2, 107);
+        channel.addInputData(first);
+        InputData second = new InputData();
+        second.addGpsData(new GpsData(10500L, 51.06, 13.7, 120, 10.0, 8));
+        second.addAccelerationTuple(10500L, 1, 2, 107);
+        channel.addInputData(second);
+        ret.store(channel);
+        return ret;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Created on 18.10.26 at 02:08.
+ */
+package de.cyface.obd2.controller;
+
+import de.cyface.obd2.persistence.DataRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests for receiving data over UDP.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class UdpListenerTest {
+
+    /**
+     * <p>
+     * The repository the received data is stored to.
+     * </p>
+     */
+    private DataRepository repo;
+    /**
+     * <p>
+     * The channels used by the listener.
+     * </p>
+     */
+    private Channels channels;
+    /**
+     * <p>
+     * The object of the class under test.
+     * </p>
+     */
+    private UdpListener oocut;
+
+    /**
+     * <p>
+     * Starts a listener on a free port.
+     * </p>
+     */
+    @Before
+    public void setUp() throws IOException {
+        repo = new DataRepository();
+        IngestMetrics metrics = new IngestMetrics();
+        channels = new Channels();
+        oocut = new UdpListener(channels, repo,
+                new IngestPipeline(repo, metrics, false, 64, 1, 8, IngestPipeline.BackPressure.REJECT), metrics,
+                new RateLimiter(false, 10.0, 50), true, 0);
+        oocut.start();
+    }
+
+    /**
+     * <p>
+     * Stops the listener.
+     * </p>
+     */
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        oocut.stop();
+    }
+
+    /**
+     * <p>
+     * Tests that the data of many dongles is stored exactly once, while skipped and duplicated datagrams are counted.
+     * </p>
+     */
+    @Test
+    public void testLossAndDuplicates() throws IOException {
+        UdpLoadGenerator generator = new UdpLoadGenerator(new InetSocketAddress("localhost", oocut.getPort()), 42L);
+
+        UdpLoadGenerator.Result result = generator.run(10, 500, 0.05, 0.1);
+
+        assertThat(result.getSkipped()).isGreaterThan(0L);
+        assertThat(result.getDuplicates()).isGreaterThan(0L);
+        assertThat(result.getAcknowledged()).isEqualTo(result.getSent() + result.getDuplicates());
+        long stored = 0L;
+        for (int dongle = 0; dongle < 10; dongle++) {
+            stored += repo.countInputData("LOAD" + dongle, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        assertThat(stored).isEqualTo(result.getSent());
+        assertThat(oocut.getDuplicates()).isEqualTo(result.getDuplicates());
+        assertThat(oocut.getLost()).isEqualTo(result.getSkipped());
+    }
+
+    /**
+     * <p>
+     * Tests that a datagram sent again more than {@link SequenceWindow#SIZE} sequence numbers behind the latest one is
+     * stored and acknowledged, while sending stored data again that far behind does not store it twice.
+     * </p>
+     */
+    @Test
+    public void testResendBelowWindow() throws IOException {
+        final String channel = exchange("VIN=RESEND").substring("CH:".length());
+        final int latest = SequenceWindow.SIZE + 5;
+        for (int sequence = 0; sequence <= latest; sequence++) {
+            if (sequence != 1) {
+                assertThat(exchange(channel + ":" + sequence + ":#" + (1000 + sequence) + ",ACC,1,2,100"))
+                        .isEqualTo("ACK:" + sequence);
+            }
+        }
+        assertThat(repo.countInputData("RESEND", Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(latest);
+
+        assertThat(exchange(channel + ":1:#1001,ACC,1,2,100")).isEqualTo("ACK:1");
+        assertThat(exchange(channel + ":0:#1000,ACC,1,2,100")).isEqualTo("ACK:0");
+
+        assertThat(repo.countInputData("RESEND", Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(latest + 1);
+        assertThat(oocut.getDuplicates()).isEqualTo(0L);
+    }
+
+    /**
+     * <p>
+     * Tests that the sequence numbers of released channels are not kept once their slot is reused, so allocating
+     * channels again and again does not fill up memory.
+     * </p>
+     */
+    @Test
+    public void testReleasedChannelsAreForgotten() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            final int channel = Integer.parseInt(exchange("VIN=REUSE" + i).substring("CH:".length()));
+            assertThat(exchange(channel + ":0:#1000,ACC,1,2,100")).isEqualTo("ACK:0");
+            assertThat(channels.releaseChannel(channel)).isNotNull();
+        }
+
+        assertThat(oocut.getSequenceCount()).isEqualTo(1);
+        assertThat(repo.countInputData()).isEqualTo(100L);
+    }
+
+    /**
+     * <p>
+     * Tests that data for a channel that was never allocated is answered with an error.
+     * </p>
+     */
+    @Test
+    public void testUnknownChannel() throws IOException {
+        assertThat(exchange("17:4:#1000,ACC,1,2,100")).isEqualTo("ERR:4");
+        assertThat(repo.countInputData()).isEqualTo(0L);
+    }
+
+    /**
+     * <p>
+     * Tests that invalid datagrams are counted, but not answered.
+     * </p>
+     */
+    @Test
+    public void testMalformedDatagram() throws IOException {
+        assertThat(exchange("VIN=")).isNull();
+        assertThat(exchange("0:x:#1000,ACC,1,2,100")).isNull();
+        assertThat(exchange("garbage")).isNull();
+        assertThat(oocut.getMalformed()).isEqualTo(3L);
+    }
+
+    /**
+     * @param datagram The content of a datagram to send to the listener.
+     * @return The content of the answer or {@code null} if there was none.
+     * @throws IOException If communicating with the listener fails.
+     */
+    private String exchange(final String datagram) throws IOException {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(500);
+            final byte[] content = datagram.getBytes(StandardCharsets.US_ASCII);
+            socket.send(new DatagramPacket(content, content.length,
+                    new InetSocketAddress("localhost", oocut.getPort())));
+            DatagramPacket answer = new DatagramPacket(new byte[64], 64);
+            socket.receive(answer);
+            return new String(answer.getData(), 0, answer.getLength(), StandardCharsets.US_ASCII);
+        } catch (final SocketTimeoutException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Created on 18.10.26 at 02:07.
+ */
+package de.cyface.obd2.controller;
+
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * <p>
+ * Simulates many dongles transmitting data to a {@link UdpListener}, as a client would implement the protocol. Lost
+ * and duplicated datagrams are simulated by skipping datagrams and sending datagrams twice. The last datagram of each
+ * dongle is never skipped, so every skipped datagram is noticed by the listener. At most {@link #WINDOW} datagrams are
+ * sent before waiting for their acknowledgements, so the receive buffer of the listener does not overflow.
+ * </p>
+ * <p>
+ * The generator is used by tests, but may also be run against a running server with the arguments
+ * {@code <host> <port> <dongles> <datagrams per dongle>}.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class UdpLoadGenerator {
+
+    /**
+     * <p>
+     * The maximum number of datagrams sent without waiting for acknowledgements.
+     * </p>
+     */
+    private static final int WINDOW = 32;
+    /**
+     * <p>
+     * The time in milliseconds to wait for an answer.
+     * </p>
+     */
+    private static final int TIMEOUT = 2000;
+
+    /**
+     * <p>
+     * The address of the listener.
+     * </p>
+     */
+    private final InetSocketAddress target;
+    /**
+     * <p>
+     * The source of randomness deciding which datagrams are skipped or duplicated.
+     * </p>
+     */
+    private final Random random;
+
+    /**
+     * <p>
+     * Creates a new completely initialized {@code UdpLoadGenerator}.
+     * </p>
+     *
+     * @param target The address of the listener.
+     * @param seed The seed deciding which datagrams are skipped or duplicated.
+     */
+    public UdpLoadGenerator(final InetSocketAddress target, final long seed) {
+        Validate.notNull(target);
+        this.target = target;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * <p>
+     * Allocates a channel per dongle and sends the datagrams of all dongles interleaved. Each datagram contains one
+     * acceleration.
+     * </p>
+     *
+     * @param dongles The number of simulated dongles. Their vehicle identification numbers are {@code LOAD0},
+     *            {@code LOAD1} and so on.
+     * @param datagramsPerDongle The number of datagrams per dongle, including the skipped ones.
+     * @param lossRate The probability of a datagram to be skipped.
+     * @param duplicateRate The probability of a datagram to be sent twice.
+     * @return What was sent and acknowledged.
+     * @throws IOException If sending fails or a channel could not be allocated.
+     */
+    public Result run(final int dongles, final int datagramsPerDongle, final double lossRate,
+            final double duplicateRate) throws IOException {
+        Validate.isTrue(dongles > 0 && datagramsPerDongle > 0, "Dongles and datagrams must be positive.");
+        Result ret = new Result();
+        final long start = System.nanoTime();
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(TIMEOUT);
+            int[] channels = new int[dongles];
+            for (int dongle = 0; dongle < dongles; dongle++) {
+                send(socket, "VIN=LOAD" + dongle);
+                final String answer = receive(socket);
+                if (answer == null || !answer.startsWith("CH:")) {
+                    throw new IOException(String.format("Failed to allocate channel for dongle %d.", dongle));
+                }
+                channels[dongle] = Integer.parseInt(answer.substring("CH:".length()));
+            }
+
+            int inFlight = 0;
+            for (int sequence = 0; sequence < datagramsPerDongle; sequence++) {
+                for (int dongle = 0; dongle < dongles; dongle++) {
+                    if (sequence < datagramsPerDongle - 1 && random.nextDouble() < lossRate) {
+                        ret.skipped++;
+                        continue;
+                    }
+                    final String datagram = String.format("%d:%d:#%d,ACC,%d,2,100", channels[dongle], sequence,
+                            10_000 + sequence * 10, sequence % 100);
+                    send(socket, datagram);
+                    ret.sent++;
+                    inFlight++;
+                    if (random.nextDouble() < duplicateRate) {
+                        send(socket, datagram);
+                        ret.duplicates++;
+                        inFlight++;
+                    }
+                    if (inFlight >= WINDOW) {
+                        ret.acknowledged += awaitAcknowledgements(socket, inFlight);
+                        inFlight = 0;
+                    }
+                }
+            }
+            ret.acknowledged += awaitAcknowledgements(socket, inFlight);
+        }
+        ret.nanos = System.nanoTime() - start;
+        return ret;
+    }
+
+    /**
+     * @param socket The socket to send with.
+     * @param datagram The content of the datagram.
+     * @throws IOException If sending fails.
+     */
+    private void send(final DatagramSocket socket, final String datagram) throws IOException {
+        final byte[] content = datagram.getBytes(StandardCharsets.US_ASCII);
+        socket.send(new DatagramPacket(content, content.length, target));
+    }
+
+    /**
+     * @param socket The socket to receive with.
+     * @return The content of the received datagram or {@code null} if nothing arrived in time.
+     * @throws IOException If receiving fails.
+     */
+    private String receive(final DatagramSocket socket) throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[64], 64);
+        try {
+            socket.receive(packet);
+        } catch (final SocketTimeoutException e) {
+            return null;
+        }
+        return new String(packet.getData(), 0, packet.getLength(), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param socket The socket to receive with.
+     * @param expected The number of expected acknowledgements.
+     * @return The number of acknowledgements received, before they stopped arriving.
+     * @throws IOException If receiving fails.
+     */
+    private int awaitAcknowledgements(final DatagramSocket socket, final int expected) throws IOException {
+        int ret = 0;
+        while (ret < expected) {
+            final String answer = receive(socket);
+            if (answer == null) {
+                break;
+            }
+            if (answer.startsWith("ACK:")) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Runs the generator against a running server and prints the achieved throughput.
+     * </p>
+     *
+     * @param args The host and port of the server, the number of dongles and the number of datagrams per dongle.
+     * @throws IOException If sending fails.
+     */
+    public static void main(final String[] args) throws IOException {
+        Validate.isTrue(args.length == 4, "Usage: <host> <port> <dongles> <datagrams per dongle>");
+        Result result = new UdpLoadGenerator(new InetSocketAddress(args[0], Integer.parseInt(args[1])), 42L)
+                .run(Integer.parseInt(args[2]), Integer.parseInt(args[3]), 0.0, 0.0);
+        System.out.printf("sent %d datagrams, %d acknowledged, %.0f datagrams/s%n", result.getSent(),
+                result.getAcknowledged(), result.getSent() * 1e9 / result.getNanos());
+    }
+
+    /**
+     * <p>
+     * What a run of the generator sent and how much of it was acknowledged.
+     * </p>
+     */
+    public static final class Result {
+        /**
+         * <p>
+         * The number of datagrams sent, not counting duplicates.
+         * </p>
+         */
+        private long sent;
+        /**
+         * <p>
+         * The number of datagrams sent a second time.
+         * </p>
+         */
+        private long duplicates;
+        /**
+         * <p>
+         * The number of datagrams skipped to simulate loss.
+         * </p>
+         */
+        private long skipped;
+        /**
+         * <p>
+         * The number of acknowledgements received, including those for duplicates.
+         * </p>
+         */
+        private long acknowledged;
+        /**
+         * <p>
+         * The duration of the run in nanoseconds.
+         * </p>
+         */
+        private long nanos;
+
+        /**
+         * @return The number of datagrams sent, not counting duplicates.
+         */
+        public long getSent() {
+            return sent;
+        }
+
+        /**
+         * @return The number of datagrams sent a second time.
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * @return The number of datagrams skipped to simulate loss.
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return The number of acknowledgements received, including those for duplicates.
+         */
+        public long getAcknowledged() {
+            return acknowledged;
+        }
+
+        /**
+         * @return The duration of the run in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Created on 18.10.26 at 03:10.
+ */
+package de.cyface.obd2.persistence;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests that blocks of entries are encoded compactly and decoded unchanged.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class BlockCodecTest {
+
+    /**
+     * <p>
+     * Tests that a full block with GPS fixes, decreasing values, a missing GPS speed and irregular timestamps is
+     * decoded unchanged.
+     * </p>
+     */
+    @Test
+    public void testRoundTrip() {
+        InputData[] entries = new InputData[CompressedSeries.BLOCK_SIZE];
+        for (int i = 0; i < entries.length; i++) {
+            InputData entry = new InputData();
+            if (i % 3 != 2) {
+                entry.addGpsData(new GpsData(1476748800L + i, 51.0291 + i * 0.00001, 13.7306 - i * 0.00002,
+                        120 - i * 2, i % 7 == 0 ? Double.NaN : 8.5 + i % 4, 12 - i % 5));
+            }
+            for (int j = 0; j < i % 4; j++) {
+                entry.addAccelerationTuple(1476748800000L + i * 100L + j * (j + 3), 15 - i, -i * j, 1000 - i * 3);
+            }
+            entries[i] = entry;
+        }
+
+        byte[] encoded = BlockCodec.encode(entries, entries.length);
+
+        assertThat(BlockCodec.decode(encoded, entries.length)).isEqualTo(entries);
+    }
+
+    /**
+     * <p>
+     * Tests that slightly changing GPS positions take only a few bytes per value.
+     * </p>
+     */
+    @Test
+    public void testSmallGpsChangesAreCompact() {
+        InputData[] entries = new InputData[CompressedSeries.BLOCK_SIZE];
+        for (int i = 0; i < entries.length; i++) {
+            InputData entry = new InputData();
+            entry.addGpsData(new GpsData(1476748800L + i, 51.0291 + i * 0.00001, 13.7306 - i * 0.00002, 120, 8.5, 12));
+            entries[i] = entry;
+        }
+
+        byte[] encoded = BlockCodec.encode(entries, entries.length);
+
+        // Header, GPS time, speed, altitude and satellites take one byte each, which leaves at most six bytes each for
+        // latitude and longitude, rather than the nine or ten bytes of a full 64 bit value.
+        assertThat(encoded.length).isLessThanOrEqualTo(entries.length * 17 + 16);
+        assertThat(BlockCodec.decode(encoded, entries.length)).isEqualTo(entries);
+    }
+}
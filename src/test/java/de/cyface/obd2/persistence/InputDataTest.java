@@ -0,0 +1,116 @@
+/*
+ * Created on 18.10.26 at 02:39.
+ */
+package de.cyface.obd2.persistence;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * <p>
+ * Tests whether {@link InputData} stores its accelerations in primitive columns correctly.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class InputDataTest {
+
+    /**
+     * <p>
+     * Tests that all accelerations are returned unchanged and in order, after the columns grew several times.
+     * </p>
+     */
+    @Test
+    public void testAddAndGetAcrossGrowth() {
+        InputData oocut = new InputData();
+        for (int i = 0; i < 100; i++) {
+            oocut.addAccelerationTuple(1_000L * i, i, -i, 100 + i);
+        }
+
+        assertThat(oocut.getAccelerationCount()).isEqualTo(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(oocut.getAccelerationTimestamp(i)).isEqualTo(1_000L * i);
+            assertThat(oocut.getAx(i)).isEqualTo(i);
+            assertThat(oocut.getAy(i)).isEqualTo(-i);
+            assertThat(oocut.getAz(i)).isEqualTo(100 + i);
+        }
+        assertThatThrownBy(() -> oocut.getAx(100)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> oocut.getAccelerationTimestamp(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    /**
+     * <p>
+     * Tests that trimming releases unused capacity without changing the accelerations and that accelerations may still
+     * be added afterwards.
+     * </p>
+     */
+    @Test
+    public void testTrimToSize() {
+        InputData oocut = new InputData();
+        for (int i = 0; i < 17; i++) {
+            oocut.addAccelerationTuple(i, i, i, i);
+        }
+        final long untrimmedSize = oocut.estimateSize();
+
+        oocut.trimToSize();
+
+        assertThat(oocut.estimateSize()).isLessThan(untrimmedSize);
+        assertThat(oocut.getAccelerationCount()).isEqualTo(17);
+        assertThat(oocut.getAz(16)).isEqualTo(16);
+
+        oocut.addAccelerationTuple(17L, 17, 17, 17);
+        assertThat(oocut.getAccelerationCount()).isEqualTo(18);
+        assertThat(oocut.getAccelerationTimestamp(17)).isEqualTo(17L);
+
+        InputData empty = new InputData();
+        empty.trimToSize();
+        empty.addAccelerationTuple(1L, 2, 3, 4);
+        assertThat(empty.getAy(0)).isEqualTo(3);
+    }
+
+    /**
+     * <p>
+     * Tests that objects with the same data are equal and have the same hash code independent of their capacity, and
+     * that the hash code is the same as that of a list with one value object per acceleration.
+     * </p>
+     */
+    @Test
+    public void testEqualsAndHashCode() {
+        GpsData gpsData = new GpsData(1000L, 51.05, 13.74, 120, 10.5, 8);
+        InputData trimmed = new InputData();
+        InputData grown = new InputData();
+        for (int i = 0; i < 20; i++) {
+            trimmed.addAccelerationTuple(10L * i, i, 2, 100);
+            grown.addAccelerationTuple(10L * i, i, 2, 100);
+        }
+        trimmed.addGpsData(gpsData);
+        grown.addGpsData(gpsData);
+        trimmed.trimToSize();
+
+        assertThat(trimmed).isEqualTo(grown);
+        assertThat(trimmed.hashCode()).isEqualTo(grown.hashCode());
+
+        int expectedHashCode = 1;
+        for (int i = 0; i < 20; i++) {
+            int accelerationHashCode = Long.hashCode(10L * i);
+            accelerationHashCode = 31 * accelerationHashCode + i;
+            accelerationHashCode = 31 * accelerationHashCode + 2;
+            accelerationHashCode = 31 * accelerationHashCode + 100;
+            expectedHashCode = 31 * expectedHashCode + accelerationHashCode;
+        }
+        expectedHashCode = 31 * expectedHashCode + gpsData.hashCode();
+        assertThat(grown.hashCode()).isEqualTo(expectedHashCode);
+
+        grown.addAccelerationTuple(200L, 0, 0, 0);
+        assertThat(trimmed).isNotEqualTo(grown);
+        InputData withoutGpsData = new InputData();
+        for (int i = 0; i < 20; i++) {
+            withoutGpsData.addAccelerationTuple(10L * i, i, 2, 100);
+        }
+        assertThat(withoutGpsData).isNotEqualTo(trimmed);
+    }
+}
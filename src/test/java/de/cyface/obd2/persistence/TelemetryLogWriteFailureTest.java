@@ -0,0 +1,225 @@
+/*
+ * Created on 18.10.26 at 03:09.
+ */
+package de.cyface.obd2.persistence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * <p>
+ * Tests that a record failing to be written to the {@link TelemetryLog} does not corrupt the records written after
+ * it.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class TelemetryLogWriteFailureTest {
+
+    /**
+     * <p>
+     * The directory the tested logs are stored in.
+     * </p>
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * <p>
+     * Tests that a record only partially written before the write failed is removed, so that the record written by
+     * the retry and all records after it are restored after a restart.
+     * </p>
+     *
+     * @throws Exception If accessing the log fails.
+     */
+    @Test
+    public void testPartialWriteIsRemoved() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        List<FailingFileChannel> segments = new ArrayList<>();
+        try (TelemetryLog oocut = new TelemetryLog(directory, 1024L * 1024L, TelemetryLog.FsyncPolicy.ALWAYS, 1,
+                segmentFile -> {
+                    FailingFileChannel ret = new FailingFileChannel(FileChannel.open(segmentFile,
+                            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                    segments.add(ret);
+                    return ret;
+                })) {
+            oocut.append("vin", createInputData(0));
+            segments.get(0).failNextWrite = true;
+            try {
+                oocut.append("vin", createInputData(1));
+                fail("Appending should fail if writing fails.");
+            } catch (final UncheckedIOException e) {
+                assertThat(e.getCause()).hasMessage("Disk full.");
+            }
+            oocut.append("vin", createInputData(1));
+            oocut.append("vin", createInputData(2));
+        }
+
+        List<InputData> replayed = new ArrayList<>();
+        try (TelemetryLog restored = new TelemetryLog(directory, 1024L * 1024L, TelemetryLog.FsyncPolicy.ALWAYS, 1)) {
+            assertThat(restored.replay((vin, data) -> replayed.add(data))).isEqualTo(3L);
+        }
+        assertThat(replayed).isEqualTo(Arrays.asList(createInputData(0), createInputData(1), createInputData(2)));
+    }
+
+    /**
+     * @param index A running index used to make the created data unique.
+     * @return Some example data.
+     */
+    private InputData createInputData(final int index) {
+        InputData ret = new InputData();
+        ret.addGpsData(new GpsData(10000L + index, 51.0 + index / 1000.0, 13.7, 179, 1.5, 12));
+        for (int i = 0; i < 5; i++) {
+            ret.addAccelerationTuple(10000L + index * 10L + i, i, -i, 109 + index);
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * A channel writing only half of a buffer before failing, if requested, and otherwise delegating to a real file
+     * channel.
+     * </p>
+     *
+     * @author Klemens Muthmann
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static final class FailingFileChannel extends FileChannel {
+        /**
+         * <p>
+         * The channel all calls are delegated to.
+         * </p>
+         */
+        private final FileChannel delegate;
+        /**
+         * <p>
+         * Whether the next write writes half of its buffer and fails afterwards.
+         * </p>
+         */
+        private boolean failNextWrite;
+
+        /**
+         * @param delegate The channel all calls are delegated to.
+         */
+        FailingFileChannel(final FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            if (!failNextWrite) {
+                return delegate.write(src);
+            }
+            failNextWrite = false;
+            ByteBuffer half = src.duplicate();
+            half.limit(src.position() + src.remaining() / 2);
+            delegate.write(half);
+            throw new IOException("Disk full.");
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(final long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(final long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(final boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(final long position, final long count, final WritableByteChannel target)
+                throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(final ReadableByteChannel src, final long position, final long count)
+                throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(final ByteBuffer dst, final long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(final ByteBuffer src, final long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(final MapMode mode, final long position, final long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(final long position, final long size, final boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(final long position, final long size, final boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Created on 18.10.26 at 02:58.
+ */
+package de.cyface.obd2.persistence;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests for recognizing recently stored entries.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class UploadFilterTest {
+
+    /**
+     * <p>
+     * Tests that an entry with the fingerprint of a recently added entry is only recognized, if it equals the stored
+     * entry.
+     * </p>
+     */
+    @Test
+    public void testFingerprintMatchIsConfirmedByStoredEntry() {
+        UploadFilter oocut = new UploadFilter(4);
+        InputData entry = createEntry(1000L, 1, 2, 100);
+        oocut.add(entry, 7);
+
+        assertThat(oocut.contains(createEntry(1000L, 1, 2, 100), position -> position == 7 ? entry : null)).isTrue();
+        assertThat(oocut.contains(entry, position -> createEntry(1000L, 1, 2, 101))).isFalse();
+        assertThat(oocut.contains(createEntry(1010L, 1, 2, 100), position -> entry)).isFalse();
+    }
+
+    /**
+     * <p>
+     * Tests that a negative value does not cancel out other values in the fingerprint, as a negative {@code az} would
+     * if it were sign extended over {@code ay}.
+     * </p>
+     */
+    @Test
+    public void testNegativeValuesChangeFingerprint() {
+        assertThat(UploadFilter.fingerprint(createEntry(1000L, 0, 0, -65536)))
+                .isNotEqualTo(UploadFilter.fingerprint(createEntry(1000L, 0, -1, 0)));
+    }
+
+    /**
+     * @param timestamp The timestamp of the acceleration.
+     * @param ax The acceleration along the x axis.
+     * @param ay The acceleration along the y axis.
+     * @param az The acceleration along the z axis.
+     * @return An entry with a single acceleration.
+     */
+    private InputData createEntry(final long timestamp, final int ax, final int ay, final int az) {
+        InputData ret = new InputData();
+        ret.addAccelerationTuple(timestamp, ax, ay, az);
+        return ret;
+    }
+}
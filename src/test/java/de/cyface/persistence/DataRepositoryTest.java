@@ -0,0 +1,684 @@
+/*
+ * Created on 18.10.26 at 01:02.
+ */
+package de.cyface.persistence;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.Geo;
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import de.cyface.obd2.persistence.Location;
+import de.cyface.obd2.persistence.Rollup;
+import de.cyface.obd2.persistence.Trip;
+import de.cyface.obd2.persistence.VehicleReport;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>
+ * Tests whether the {@link DataRepository} stores the data received via a {@link Channel} correctly.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class DataRepositoryTest {
+
+    /**
+     * <p>
+     * The object of the class under test.
+     * </p>
+     */
+    private DataRepository oocut;
+
+    @Before
+    public void setUp() {
+        oocut = new DataRepository();
+    }
+
+    /**
+     * <p>
+     * Tests that storing the same channel after every post only adds the newly arrived data, so that N posts result
+     * in exactly N stored entries and every store call merges exactly one entry.
+     * </p>
+     */
+    @Test
+    public void testRepeatedStoreOnlyAddsNewData() {
+        final int numberOfPosts = 1000;
+        Channel channel = new Channel(0, "vin");
+
+        for (int i = 0; i < numberOfPosts; i++) {
+            channel.addInputData(createInputData(i));
+            assertThat(oocut.store(channel)).isEqualTo(1);
+        }
+
+        assertThat(oocut.countInputData("vin")).isEqualTo(numberOfPosts);
+    }
+
+    /**
+     * <p>
+     * Tests that storing removes the data from the channel and storing a channel without new data does not change the
+     * repository.
+     * </p>
+     */
+    @Test
+    public void testStoreWithoutNewData() {
+        Channel channel = new Channel(0, "vin");
+        channel.addInputData(createInputData(0));
+        channel.addInputData(createInputData(1));
+
+        assertThat(oocut.store(channel)).isEqualTo(2);
+        assertThat(channel.getInputData()).isEmpty();
+        assertThat(oocut.store(channel)).isEqualTo(0);
+        assertThat(oocut.countInputData("vin")).isEqualTo(2);
+    }
+
+    /**
+     * <p>
+     * Tests that data from different channels for the same vehicle is merged.
+     * </p>
+     */
+    @Test
+    public void testMergeChannelsForSameVehicle() {
+        Channel channel0 = new Channel(0, "vin");
+        Channel channel1 = new Channel(1, "vin");
+        Channel channel2 = new Channel(2, "vin2");
+        channel0.addInputData(createInputData(0));
+        channel1.addInputData(createInputData(1));
+        channel2.addInputData(createInputData(2));
+
+        oocut.store(channel0);
+        oocut.store(channel1);
+        oocut.store(channel2);
+
+        assertThat(oocut.countInputData("vin")).isEqualTo(2);
+        assertThat(oocut.countInputData("vin2")).isEqualTo(1);
+        assertThat(oocut.countInputData("unknown")).isEqualTo(0);
+    }
+
+    /**
+     * <p>
+     * Stores data from dozens of threads via many channels for a few vehicles, while another thread continuously reads
+     * the repository, and checks that no data is lost.
+     * </p>
+     *
+     * @throws Exception If the test threads fail.
+     */
+    @Test
+    public void testConcurrentStore() throws Exception {
+        final int numberOfThreads = 48;
+        final int numberOfVehicles = 8;
+        final int postsPerThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            List<Future<Integer>> writers = new ArrayList<>();
+            for (int thread = 0; thread < numberOfThreads; thread++) {
+                final Channel channel = new Channel(thread, "vin" + (thread % numberOfVehicles));
+                // Each thread sends different data, since equal data for the same vehicle is dropped as a replay.
+                final int firstIndex = thread * postsPerThread;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    int stored = 0;
+                    for (int i = 0; i < postsPerThread; i++) {
+                        channel.addInputData(createInputData(firstIndex + i));
+                        stored += oocut.store(channel);
+                    }
+                    return stored;
+                }));
+            }
+            Future<?> reader = executor.submit(() -> {
+                start.await();
+                while (running.get()) {
+                    assertThat(oocut.toString()).isNotNull();
+                }
+                return null;
+            });
+
+            start.countDown();
+            for (Future<Integer> writer : writers) {
+                assertThat(writer.get(1, TimeUnit.MINUTES)).isEqualTo(postsPerThread);
+            }
+            running.set(false);
+            reader.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int vehicle = 0; vehicle < numberOfVehicles; vehicle++) {
+            assertThat(oocut.countInputData("vin" + vehicle))
+                    .isEqualTo(numberOfThreads / numberOfVehicles * postsPerThread);
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that entries are found by time range in chronological order, even if they arrived out of order, and that
+     * paging through the result returns every entry exactly once.
+     * </p>
+     */
+    @Test
+    public void testFindByTimeRange() {
+        Channel channel = new Channel(0, "vin");
+        for (final int index : new int[] {5, 1, 3, 9, 7, 2, 8, 0, 6, 4}) {
+            channel.addInputData(createInputData(index * 100));
+        }
+        channel.addInputData(new InputData());
+        oocut.store(channel);
+
+        assertThat(oocut.countInputData("vin", 10200L, 10600L)).isEqualTo(5);
+        assertThat(oocut.countInputData("vin", 10201L, 10599L)).isEqualTo(3);
+        assertThat(oocut.countInputData("vin", 10600L, 10200L)).isEqualTo(0);
+        assertThat(oocut.countInputData("unknown", 0L, Long.MAX_VALUE)).isEqualTo(0);
+
+        List<InputData> found = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            found.addAll(oocut.findInputData("vin", 10200L, 10600L, page * 2, 2));
+        }
+        assertThat(found).extracting(entry -> entry.getAccelerationTimestamp(0)).containsExactly(10200L, 10300L,
+                10400L, 10500L, 10600L);
+        assertThat(oocut.findInputData("vin", Long.MIN_VALUE, Long.MAX_VALUE, 0, 100)).hasSize(10);
+        assertThat(oocut.findInputData("vin", 10000L, 11000L, Integer.MAX_VALUE, 10)).isEmpty();
+        assertThat(oocut.findInputData("unknown", 0L, Long.MAX_VALUE, 0, 10)).isEmpty();
+    }
+
+    /**
+     * <p>
+     * Tests that the repository is streamed to the {@code Writer} in chunks of bounded size and that the memory
+     * allocated between two chunks does not grow with the amount of stored data. A repository buffering its output
+     * before writing it would allocate memory proportional to its size before the first chunk. The test also checks
+     * that the written output is the same as the textual representation of the repository.
+     * </p>
+     *
+     * @throws Exception If writing fails.
+     */
+    @Test
+    public void testWriteToStreamsInBoundedChunks() throws Exception {
+        long[] largestAllocations = new long[2];
+        long[] written = new long[2];
+        int[] numbersOfEntries = new int[] {1_000, 100_000};
+        for (int size = 0; size < numbersOfEntries.length; size++) {
+            DataRepository repository = new DataRepository();
+            Channel channel = new Channel(0, "vin");
+            for (int i = 0; i < numbersOfEntries[size]; i++) {
+                channel.addInputData(createInputData(i));
+            }
+            repository.store(channel);
+
+            ChunkRecordingWriter writer = new ChunkRecordingWriter();
+            repository.writeTo(writer);
+
+            assertThat(writer.largestChunk).isLessThanOrEqualTo(8192);
+            assertThat(writer.written).isEqualTo(repository.toString().length());
+            largestAllocations[size] = writer.largestAllocation;
+            written[size] = writer.written;
+        }
+        assertThat(written[1]).isGreaterThan(50L * written[0]);
+        assertThat(largestAllocations[1]).isLessThan(Math.max(4L * largestAllocations[0], 1024L * 1024L));
+        assertThat(largestAllocations[1]).isLessThan(written[1]);
+
+        DataRepository repository = new DataRepository();
+        Channel channel = new Channel(0, "vin");
+        channel.addInputData(createInputData(0));
+        repository.store(channel);
+        assertThat(repository.toString()).isEqualTo("vin: \n" + createInputData(0) + "\n");
+    }
+
+    /**
+     * <p>
+     * Tests that entries read back from the repository are equal to the stored ones, even after they were compressed.
+     * The entries cover several compressed blocks and contain values changing irregularly, extreme values and entries
+     * without GPS data or accelerations.
+     * </p>
+     */
+    @Test
+    public void testCompressedEntriesAreReadUnchanged() {
+        Random random = new Random(42L);
+        List<InputData> expected = new ArrayList<>();
+        Channel channel = new Channel(0, "vin");
+        long timestamp = 1_000_000L;
+        for (int i = 0; i < 1000; i++) {
+            InputData entry = new InputData();
+            if (i % 7 != 0) {
+                entry.addGpsData(new GpsData(timestamp + random.nextInt(5), 51.0 + random.nextDouble() / 100.0,
+                        13.0 + random.nextDouble() / 100.0, random.nextInt(400) - 50, random.nextDouble() * 40.0,
+                        random.nextInt(13)));
+            }
+            final int accelerations = i % 11 == 0 ? 0 : random.nextInt(20);
+            for (int j = 0; j < accelerations; j++) {
+                timestamp += 38 + random.nextInt(5);
+                entry.addAccelerationTuple(timestamp, random.nextInt(200) - 100, random.nextInt(200) - 100,
+                        i % 13 == 0 ? Integer.MIN_VALUE : 980 + random.nextInt(30));
+            }
+            if (i == 500) {
+                entry.addGpsData(new GpsData(Long.MIN_VALUE, Double.NaN, -0.0, Integer.MAX_VALUE,
+                        Double.POSITIVE_INFINITY, -1));
+                entry.addAccelerationTuple(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, 0);
+            }
+            channel.addInputData(entry);
+            expected.add(entry);
+        }
+        oocut.store(channel);
+
+        List<InputData> found = oocut.findInputData("vin", Long.MIN_VALUE, Long.MAX_VALUE, 0, 1000);
+        List<InputData> expectedWithTime = new ArrayList<>();
+        for (final InputData entry : expected) {
+            if (entry.getAccelerationCount() > 0) {
+                expectedWithTime.add(entry);
+            }
+        }
+        expectedWithTime.sort(Comparator.comparingLong(entry -> entry.getAccelerationTimestamp(0)));
+        assertThat(found).containsExactlyElementsOf(expectedWithTime);
+
+        StringBuilder expectedText = new StringBuilder("vin: \n");
+        for (final InputData entry : expected) {
+            expectedText.append(entry).append('\n');
+        }
+        assertThat(oocut.toString()).isEqualTo(expectedText.toString());
+    }
+
+    /**
+     * <p>
+     * Tests that the statistics per window are updated as data arrives, including data arriving late for an earlier
+     * window.
+     * </p>
+     */
+    @Test
+    public void testRollups() {
+        Channel channel = new Channel(0, "vin");
+        InputData first = new InputData();
+        first.addAccelerationTuple(1000L, 1, -2, 100);
+        first.addAccelerationTuple(1500L, 3, 2, 100);
+        first.addAccelerationTuple(3999L, 7, 0, 98);
+        InputData late = new InputData();
+        late.addAccelerationTuple(1999L, -1, 0, 104);
+        channel.addInputData(first);
+        channel.addInputData(late);
+        channel.addInputData(new InputData());
+        oocut.store(channel);
+
+        assertThat(oocut.countRollups("vin", Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(2);
+        assertThat(oocut.countRollups("vin", 1001L, 2999L)).isEqualTo(0);
+        assertThat(oocut.countRollups("unknown", Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(0);
+        List<Rollup> rollups = oocut.findRollups("vin", 0L, 10000L, 0, 10);
+        assertThat(rollups).extracting(Rollup::getStart).containsExactly(1000L, 3000L);
+
+        Rollup rollup = rollups.get(0);
+        assertThat(rollup.getDuration()).isEqualTo(1000L);
+        assertThat(rollup.getCount()).isEqualTo(3);
+        assertThat(rollup.getMin(Rollup.Axis.X)).isEqualTo(-1);
+        assertThat(rollup.getMax(Rollup.Axis.X)).isEqualTo(3);
+        assertThat(rollup.getMean(Rollup.Axis.X)).isEqualTo(1.0);
+        assertThat(rollup.getRms(Rollup.Axis.Y)).isEqualTo(Math.sqrt(8.0 / 3.0));
+        assertThat(rollup.getMean(Rollup.Axis.Z)).isEqualTo(304.0 / 3.0);
+        assertThat(rollups.get(1).getCount()).isEqualTo(1);
+        assertThat(rollups.get(1).toString()).isEqualTo("3000,1,7,7,7.0,7.0,0,0,0.0,0.0,98,98,98.0,98.0");
+        assertThat(oocut.findRollups("vin", 0L, 10000L, 1, 10)).containsExactly(rollups.get(1));
+    }
+
+    /**
+     * <p>
+     * Tests that data is split into trips at time gaps, at restarts of the dongle and after standing for a while, and
+     * that the summaries of the trips are correct.
+     * </p>
+     */
+    @Test
+    public void testTrips() {
+        Channel channel = new Channel(0, "vin");
+        // First trip: driving north for one hundredth of a degree, which is about 1112 meters, then standing.
+        channel.addInputData(createTripData(1_000L, 51.00, 30.0));
+        channel.addInputData(createTripData(2_000L, 51.01, 50.0));
+        channel.addInputData(createTripData(3_000L, 51.01, 0.0));
+        channel.addInputData(createTripData(200_000L, 51.01, 0.0));
+        // Second trip: moving again after standing for more than three minutes.
+        channel.addInputData(createTripData(350_000L, 51.01, 20.0));
+        // Third trip: the dongle was restarted, so time starts again.
+        channel.addInputData(createTripData(500L, 51.02, 10.0));
+        InputData withoutTime = new InputData();
+        withoutTime.addGpsData(new GpsData(0L, 51.03, 13.0, 100, 15.0, 8));
+        channel.addInputData(withoutTime);
+        // Fourth trip: no data for more than five minutes.
+        channel.addInputData(createTripData(400_000L, 51.03, 10.0));
+        oocut.store(channel);
+
+        assertThat(oocut.countTrips("vin")).isEqualTo(4);
+        assertThat(oocut.countTrips("unknown")).isEqualTo(0);
+        List<Trip> trips = oocut.findTrips("vin", 0, 10);
+        assertThat(trips).extracting(Trip::getNumber).containsExactly(0, 1, 2, 3);
+        assertThat(trips).extracting(Trip::getStart).containsExactly(1_000L, 350_000L, 500L, 400_000L);
+        assertThat(trips).extracting(Trip::getEnd).containsExactly(3_000L, 350_000L, 500L, 400_000L);
+        assertThat(trips).extracting(Trip::getEntries).containsExactly(4, 1, 2, 1);
+        assertThat(trips).extracting(Trip::getMaxSpeed).containsExactly(50.0, 20.0, 15.0, 10.0);
+        assertThat(trips.get(0).getDuration()).isEqualTo(2_000L);
+        assertThat(trips.get(0).getAccelerations()).isEqualTo(4L);
+        assertThat(trips.get(0).getDistance()).isBetween(1111.0, 1113.0);
+        assertThat(trips.get(2).getDistance()).isBetween(1111.0, 1113.0);
+        assertThat(trips.get(3).getDistance()).isEqualTo(0.0);
+        assertThat(oocut.findTrips("vin", 3, 10)).extracting(Trip::getNumber).containsExactly(3);
+        assertThat(oocut.findTrips("vin", 4, 10)).isEmpty();
+    }
+
+    /**
+     * <p>
+     * Tests that the places of all vehicles are found by bounding box and radius, while entries without position or
+     * time are not.
+     * </p>
+     */
+    @Test
+    public void testSpatialQueries() {
+        Channel dresden = new Channel(0, "dresden");
+        dresden.addInputData(createTripData(1_000L, 51.05, 30.0));
+        dresden.addInputData(createTripData(2_000L, 51.06, 30.0));
+        InputData withoutPosition = new InputData();
+        withoutPosition.addGpsData(new GpsData(3_000L, 0.0, 0.0, 0, 0.0, 0));
+        withoutPosition.addAccelerationTuple(3_000L, 0, 0, 100);
+        dresden.addInputData(withoutPosition);
+        InputData withoutTime = new InputData();
+        withoutTime.addGpsData(new GpsData(4_000L, 51.05, 13.0, 0, 0.0, 8));
+        dresden.addInputData(withoutTime);
+        Channel leipzig = new Channel(1, "leipzig");
+        InputData inLeipzig = new InputData();
+        inLeipzig.addGpsData(new GpsData(5_000L, 51.34, 12.37, 100, 0.0, 8));
+        inLeipzig.addAccelerationTuple(5_000L, 0, 0, 100);
+        leipzig.addInputData(inLeipzig);
+        Channel alsoDresden = new Channel(2, "another");
+        alsoDresden.addInputData(createTripData(6_000L, 51.051, 30.0));
+        oocut.storeAll(Arrays.asList(dresden, leipzig, alsoDresden));
+
+        List<Location> inDresden = oocut.findLocationsInArea(51.0, 12.9, 51.1, 13.1, 10);
+        assertThat(inDresden).extracting(Location::getVehicleIdentificationNumber).containsExactly("another",
+                "dresden", "dresden");
+        assertThat(inDresden).extracting(Location::getTimestamp).containsExactly(6_000L, 1_000L, 2_000L);
+        assertThat(oocut.findLocationsInArea(51.0, 12.9, 51.1, 13.1, 1)).extracting(Location::getTimestamp)
+                .containsExactly(6_000L);
+        assertThat(oocut.findLocationsInArea(-90.0, -180.0, 90.0, 180.0, 10)).hasSize(4);
+        assertThat(oocut.findLocationsInArea(-1.0, -1.0, 1.0, 1.0, 10)).isEmpty();
+
+        List<Location> nearby = oocut.findLocationsNear(51.0504, 13.0, 2_000.0, 10);
+        assertThat(nearby).extracting(Location::getTimestamp).containsExactly(1_000L, 6_000L, 2_000L);
+        assertThat(oocut.findLocationsNear(51.0504, 13.0, 100.0, 10)).extracting(Location::getTimestamp)
+                .containsExactly(1_000L, 6_000L);
+        assertThat(oocut.findLocationsNear(51.0504, 13.0, 100_000.0, 10)).hasSize(4);
+        assertThat(oocut.findLocationsNear(51.0504, 13.0, 2_000.0, 2)).extracting(Location::getTimestamp)
+                .containsExactly(1_000L, 6_000L);
+    }
+
+    /**
+     * <p>
+     * Tests that the places around a center next to the antimeridian are found on both sides of it.
+     * </p>
+     */
+    @Test
+    public void testSpatialQueryAcrossAntimeridian() {
+        Channel channel = new Channel(0, "vin");
+        InputData east = new InputData();
+        east.addGpsData(new GpsData(1_000L, 10.0, 179.99, 0, 0.0, 8));
+        east.addAccelerationTuple(1_000L, 0, 0, 100);
+        channel.addInputData(east);
+        InputData west = new InputData();
+        west.addGpsData(new GpsData(2_000L, 10.0, -179.99, 0, 0.0, 8));
+        west.addAccelerationTuple(2_000L, 0, 0, 100);
+        channel.addInputData(west);
+        oocut.store(channel);
+
+        assertThat(oocut.findLocationsNear(10.0, 179.995, 5_000.0, 10)).extracting(Location::getTimestamp)
+                .containsExactly(1_000L, 2_000L);
+        assertThat(oocut.findLocationsNear(10.0, -179.995, 5_000.0, 10)).extracting(Location::getTimestamp)
+                .containsExactly(2_000L, 1_000L);
+    }
+
+    /**
+     * <p>
+     * Tests that data sent again via a new channel, as a dongle does after a timeout, is stored only once, while
+     * different data with the same timestamp is stored.
+     * </p>
+     */
+    @Test
+    public void testReplayedUploadsAreDropped() {
+        Channel channel = new Channel(0, "vin");
+        channel.addInputData(createInputData(0));
+        assertThat(oocut.store(channel)).isEqualTo(1);
+
+        Channel replay = new Channel(1, "vin");
+        replay.addInputData(createInputData(0));
+        replay.addInputData(createInputData(1));
+        assertThat(oocut.store(replay)).isEqualTo(1);
+        Channel sameTimestamp = new Channel(2, "vin");
+        InputData differentValues = createInputData(0);
+        differentValues.addAccelerationTuple(10_001L, 3, 2, 109);
+        sameTimestamp.addInputData(differentValues);
+        assertThat(oocut.store(sameTimestamp)).isEqualTo(1);
+        Channel otherVehicle = new Channel(3, "other");
+        otherVehicle.addInputData(createInputData(0));
+        assertThat(oocut.store(otherVehicle)).isEqualTo(1);
+
+        assertThat(oocut.countInputData("vin")).isEqualTo(3);
+        assertThat(oocut.countDuplicates()).isEqualTo(1L);
+    }
+
+    /**
+     * <p>
+     * Tests that replays are recognized for at least the configured number of latest entries, but no longer than
+     * twice that number, and that a window of 0 keeps all entries.
+     * </p>
+     */
+    @Test
+    public void testDeduplicationWindow() {
+        DataRepository repository = new DataRepository(1000L, 300_000L, 2.0, 180_000L, 0.01, 4);
+        Channel channel = new Channel(0, "vin");
+        for (int i = 0; i < 12; i++) {
+            channel.addInputData(createInputData(i));
+        }
+        assertThat(repository.store(channel)).isEqualTo(12);
+
+        Channel replay = new Channel(1, "vin");
+        for (int i = 8; i < 12; i++) {
+            replay.addInputData(createInputData(i));
+        }
+        assertThat(repository.store(replay)).isEqualTo(0);
+        assertThat(repository.countDuplicates()).isEqualTo(4L);
+        Channel old = new Channel(2, "vin");
+        old.addInputData(createInputData(0));
+        assertThat(repository.store(old)).isEqualTo(1);
+
+        DataRepository withoutDeduplication = new DataRepository(1000L, 300_000L, 2.0, 180_000L, 0.01, 0);
+        Channel first = new Channel(0, "vin");
+        first.addInputData(createInputData(0));
+        Channel second = new Channel(1, "vin");
+        second.addInputData(createInputData(0));
+        assertThat(withoutDeduplication.storeAll(Arrays.asList(first, second))).isEqualTo(2);
+        assertThat(withoutDeduplication.countDuplicates()).isEqualTo(0L);
+    }
+
+    /**
+     * <p>
+     * Tests that iterating a time range returns the same entries as finding them, and that entries stored after the
+     * iteration started are left out.
+     * </p>
+     */
+    @Test
+    public void testIterateInputData() {
+        Channel channel = new Channel(0, "vin");
+        for (final int index : new int[] {4, 1, 3, 0, 2}) {
+            channel.addInputData(createInputData(index * 100));
+        }
+        oocut.store(channel);
+
+        Iterator<InputData> iterator = oocut.iterateInputData("vin", 10_100L, 10_300L);
+        channel.addInputData(createInputData(150));
+        oocut.store(channel);
+        List<InputData> iterated = new ArrayList<>();
+        iterator.forEachRemaining(iterated::add);
+        assertThat(iterated).extracting(entry -> entry.getAccelerationTimestamp(0)).containsExactly(10_100L, 10_200L,
+                10_300L);
+
+        iterated.clear();
+        oocut.iterateInputData("vin", Long.MIN_VALUE, Long.MAX_VALUE).forEachRemaining(iterated::add);
+        assertThat(iterated).isEqualTo(oocut.findInputData("vin", Long.MIN_VALUE, Long.MAX_VALUE, 0, 100));
+        assertThat(oocut.iterateInputData("unknown", Long.MIN_VALUE, Long.MAX_VALUE).hasNext()).isFalse();
+        assertThat(oocut.iterateInputData("vin", 10_300L, 10_100L).hasNext()).isFalse();
+    }
+
+    /**
+     * <p>
+     * Tests that the report summarizes the data of each vehicle correctly and is the same, no matter how many threads
+     * create it.
+     * </p>
+     */
+    @Test
+    public void testReport() {
+        Channel moving = new Channel(0, "moving");
+        moving.addInputData(createTripData(1_000L, 51.05, 10.0));
+        moving.addInputData(createTripData(2_000L, 51.06, 30.0));
+        InputData withoutPosition = new InputData();
+        withoutPosition.addGpsData(new GpsData(3_000L, 0.0, 0.0, 0, 0.0, 0));
+        withoutPosition.addAccelerationTuple(3_000L, 60, -80, 100);
+        withoutPosition.addAccelerationTuple(3_100L, 0, 0, 100);
+        moving.addInputData(withoutPosition);
+        oocut.store(moving);
+        for (int vehicle = 0; vehicle < 20; vehicle++) {
+            Channel channel = new Channel(vehicle + 1, "fleet" + (char)('a' + vehicle));
+            for (int i = 0; i <= vehicle; i++) {
+                channel.addInputData(createInputData(i));
+            }
+            oocut.store(channel);
+        }
+
+        List<VehicleReport> reports = oocut.report();
+        assertThat(reports).hasSize(21);
+        assertThat(reports).extracting(VehicleReport::getVehicleIdentificationNumber).startsWith("fleeta", "fleetb")
+                .endsWith("fleett", "moving");
+        assertThat(reports.get(4).getEntries()).isEqualTo(5);
+        assertThat(reports.get(4).getAccelerations()).isEqualTo(5L);
+        assertThat(reports.get(4).getMaxAcceleration()).isEqualTo(Math.sqrt(1 + 4 + 109 * 109));
+        assertThat(reports.get(4).getDistance()).isEqualTo(0.0);
+        VehicleReport report = reports.get(20);
+        assertThat(report.getEntries()).isEqualTo(3);
+        assertThat(report.getAccelerations()).isEqualTo(4L);
+        assertThat(report.getMaxAcceleration()).isEqualTo(Math.sqrt(20_000.0));
+        assertThat(report.getDistance()).isEqualTo(Geo.distance(51.05, 13.0, 51.06, 13.0));
+        assertThat(report.getMaxSpeed()).isEqualTo(30.0);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertThat(oocut.report(pool).toString()).isEqualTo(reports.toString());
+        } finally {
+            pool.shutdown();
+        }
+        assertThat(new DataRepository().report()).isEmpty();
+    }
+
+    /**
+     * @param time The time of the created data in milliseconds.
+     * @param latitude The latitude of the created data.
+     * @param speed The speed of the created data.
+     * @return Example data at the provided time and place.
+     */
+    private InputData createTripData(final long time, final double latitude, final double speed) {
+        InputData ret = new InputData();
+        ret.addGpsData(new GpsData(time, latitude, 13.0, 100, speed, 8));
+        ret.addAccelerationTuple(time, 0, 0, 100);
+        return ret;
+    }
+
+    /**
+     * @param index A running index used to make the created data unique.
+     * @return Some example data.
+     */
+    private InputData createInputData(final int index) {
+        InputData ret = new InputData();
+        ret.addGpsData(new GpsData(10000L + index, 51.0, 13.0, 179, 1.0, 12));
+        ret.addAccelerationTuple(10000L + index, 1, 2, 109);
+        return ret;
+    }
+
+    /**
+     * <p>
+     * A {@code Writer} discarding all output, while recording the largest number of characters written at once and the
+     * largest number of bytes allocated by the writing thread between two writes.
+     * </p>
+     */
+    private static final class ChunkRecordingWriter extends Writer {
+        /**
+         * <p>
+         * Provides the number of bytes allocated per thread.
+         * </p>
+         */
+        private final com.sun.management.ThreadMXBean threads;
+        /**
+         * <p>
+         * The largest number of characters written by one call.
+         * </p>
+         */
+        private int largestChunk;
+        /**
+         * <p>
+         * The total number of characters written.
+         * </p>
+         */
+        private long written;
+        /**
+         * <p>
+         * The number of bytes allocated by the writing thread until the previous write or the creation of this object.
+         * </p>
+         */
+        private long allocated;
+        /**
+         * <p>
+         * The largest number of bytes allocated by the writing thread between two writes.
+         * </p>
+         */
+        private long largestAllocation;
+
+        /**
+         * <p>
+         * Creates a new {@code ChunkRecordingWriter} recording allocations of the current thread from now on.
+         * </p>
+         */
+        ChunkRecordingWriter() {
+            this.threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+            this.allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) throws IOException {
+            final long now = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            largestAllocation = Math.max(largestAllocation, now - allocated);
+            largestChunk = Math.max(largestChunk, length);
+            written += length;
+            allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Nothing to do here.
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Nothing to do here.
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Created on 18.10.26 at 01:20.
+ */
+package de.cyface.persistence;
+
+import de.cyface.obd2.persistence.Channel;
+import de.cyface.obd2.persistence.DataRepository;
+import de.cyface.obd2.persistence.GpsData;
+import de.cyface.obd2.persistence.InputData;
+import de.cyface.obd2.persistence.TelemetryLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * <p>
+ * Tests whether data written to the {@link TelemetryLog} survives a restart and is restored correctly.
+ * </p>
+ *
+ * @author Klemens Muthmann
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class TelemetryLogTest {
+
+    /**
+     * <p>
+     * The directory the tested logs are stored in.
+     * </p>
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * <p>
+     * Tests that all appended data is read back unchanged and in order after reopening the log.
+     * </p>
+     *
+     * @throws Exception If accessing the log fails.
+     */
+    @Test
+    public void testReplayAfterRestart() throws Exception {
+        List<InputData> expected = new ArrayList<>();
+        try (TelemetryLog oocut = createLog(1024L * 1024L)) {
+            for (int i = 0; i < 100; i++) {
+                InputData data = createInputData(i, i % 2 == 0);
+                expected.add(data);
+                oocut.append("WVW ZZZ/1", data);
+            }
+        }
+
+        List<InputData> replayed = new ArrayList<>();
+        try (TelemetryLog oocut = createLog(1024L * 1024L)) {
+            assertThat(oocut.replay((vin, data) -> {
+                assertThat(vin).isEqualTo("WVW ZZZ/1");
+                replayed.add(data);
+            })).isEqualTo(100L);
+        }
+        assertThat(replayed).isEqualTo(expected);
+    }
+
+    /**
+     * <p>
+     * Tests that a new segment is started once a segment is full and that data is read back across segments.
+     * </p>
+     *
+     * @throws Exception If accessing the log fails.
+     */
+    @Test
+    public void testSegmentRolling() throws Exception {
+        try (TelemetryLog oocut = createLog(512L)) {
+            for (int i = 0; i < 50; i++) {
+                oocut.append("vin", createInputData(i, true));
+            }
+        }
+
+        File[] vehicleDirectories = folder.getRoot().listFiles();
+        assertThat(vehicleDirectories).hasSize(1);
+        assertThat(vehicleDirectories[0].listFiles().length).isGreaterThan(1);
+        for (final File segment : vehicleDirectories[0].listFiles()) {
+            assertThat(segment.length()).isLessThanOrEqualTo(512L);
+        }
+        try (TelemetryLog oocut = createLog(512L)) {
+            assertThat(oocut.replay((vin, data) -> {
+            })).isEqualTo(50L);
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that an incompletely written record at the end of the log is removed on restart, so that data appended
+     * afterwards is still readable.
+     * </p>
+     *
+     * @throws Exception If accessing the log fails.
+     */
+    @Test
+    public void testTornRecordIsRemoved() throws Exception {
+        try (TelemetryLog oocut = createLog(1024L * 1024L)) {
+            for (int i = 0; i < 10; i++) {
+                oocut.append("vin", createInputData(i, true));
+            }
+        }
+        File segment = folder.getRoot().listFiles()[0].listFiles()[0];
+        Files.write(segment.toPath(), new byte[] {0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (TelemetryLog oocut = createLog(1024L * 1024L)) {
+            assertThat(oocut.replay((vin, data) -> {
+            })).isEqualTo(10L);
+            oocut.append("vin", createInputData(10, true));
+        }
+        try (TelemetryLog oocut = createLog(1024L * 1024L)) {
+            assertThat(oocut.replay((vin, data) -> {
+            })).isEqualTo(11L);
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that a zero filled tail, as left in a segment by a power loss, is removed on restart instead of being read
+     * as empty records.
+     * </p>
+     *
+     * @throws Exception If accessing the log fails.
+     */
+    @Test
+    public void testZeroFilledTailIsRemoved() throws Exception {
+        try (TelemetryLog oocut = createLog(1024L * 1024L)) {
+            for (int i = 0; i < 10; i++) {
+                oocut.append("vin", createInputData(i, false));
+            }
+        }
+        File segment = folder.getRoot().listFiles()[0].listFiles()[0];
+        final long validSize = segment.length();
+        Files.write(segment.toPath(), new byte[4096], StandardOpenOption.APPEND);
+
+        List<InputData> replayed = new ArrayList<>();
+        try (TelemetryLog oocut = createLog(1024L * 1024L)) {
+            assertThat(oocut.replay((vin, data) -> replayed.add(data))).isEqualTo(10L);
+            assertThat(segment.length()).isEqualTo(validSize);
+            oocut.append("vin", createInputData(10, false));
+        }
+        try (TelemetryLog oocut = createLog(1024L * 1024L)) {
+            assertThat(oocut.replay((vin, data) -> {
+            })).isEqualTo(11L);
+        }
+        assertThat(replayed.get(9)).isEqualTo(createInputData(9, false));
+    }
+
+    /**
+     * <p>
+     * Tests that a {@link DataRepository} using a log is restored after a restart.
+     * </p>
+     *
+     * @throws Exception If accessing the log fails.
+     */
+    @Test
+    public void testRepositoryRecovery() throws Exception {
+        String expected;
+        try (TelemetryLog log = createLog(4096L)) {
+            DataRepository repository = new DataRepository();
+            repository.setTelemetryLog(log);
+            Channel channel0 = new Channel(0, "vin0");
+            Channel channel1 = new Channel(1, "vin1");
+            for (int i = 0; i < 40; i++) {
+                channel0.addInputData(createInputData(i, true));
+                channel1.addInputData(createInputData(i, false));
+                repository.store(channel0);
+                repository.store(channel1);
+            }
+            expected = repository.toString();
+        }
+
+        try (TelemetryLog log = createLog(4096L)) {
+            DataRepository restored = new DataRepository();
+            restored.setTelemetryLog(log);
+            assertThat(restored.countInputData("vin0")).isEqualTo(40);
+            assertThat(restored.countInputData("vin1")).isEqualTo(40);
+            assertThat(restored.toString()).isEqualTo(expected);
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that data failing to be written to the log stays in its channel and is stored by the next attempt.
+     * </p>
+     *
+     * @throws Exception If accessing the log fails.
+     */
+    @Test
+    public void testFailedAppendKeepsData() throws Exception {
+        Channel channel = new Channel(0, "vin");
+        TelemetryLog failing = createLog(4096L);
+        DataRepository repository = new DataRepository();
+        repository.setTelemetryLog(failing);
+        channel.addInputData(createInputData(0, true));
+        repository.store(channel);
+        for (int i = 1; i < 4; i++) {
+            channel.addInputData(createInputData(i, true));
+        }
+        failing.close();
+
+        try {
+            repository.store(channel);
+            fail("Storing to a closed log should fail.");
+        } catch (final IllegalStateException e) {
+            assertThat(repository.countInputData("vin")).isEqualTo(1);
+            assertThat(channel.getInputData()).hasSize(3);
+        }
+
+        try (TelemetryLog log = createLog(4096L)) {
+            DataRepository restored = new DataRepository();
+            restored.setTelemetryLog(log);
+            assertThat(restored.store(channel)).isEqualTo(3);
+            assertThat(restored.countInputData("vin")).isEqualTo(4);
+            assertThat(channel.getInputData()).isEmpty();
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that segments too large to be read through a single memory mapping are rejected.
+     * </p>
+     *
+     * @throws Exception If accessing the log fails.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLargeSegmentSizeIsRejected() throws Exception {
+        createLog(Integer.MAX_VALUE + 1L);
+    }
+
+    /**
+     * @param segmentSize The size in bytes after which a new segment is started.
+     * @return A log in the temporary folder, which forces each record to disk.
+     * @throws Exception If creating the log fails.
+     */
+    private TelemetryLog createLog(final long segmentSize) throws Exception {
+        Path directory = folder.getRoot().toPath();
+        return new TelemetryLog(directory, segmentSize, TelemetryLog.FsyncPolicy.ALWAYS, 1);
+    }
+
+    /**
+     * @param index A running index used to make the created data unique.
+     * @param withGps Whether the created data contains a GPS fix.
+     * @return Some example data.
+     */
+    private InputData createInputData(final int index, final boolean withGps) {
+        InputData ret = new InputData();
+        if (withGps) {
+            ret.addGpsData(new GpsData(10000L + index, 51.0 + index / 1000.0, 13.7, 179, 1.5, 12));
+        }
+        for (int i = 0; i < index % 5 + 1; i++) {
+            ret.addAccelerationTuple(10000L + index * 10L + i, i, -i, 109 + index);
+        }
+        return ret;
+    }
+}